@@ -1286,6 +1286,11 @@ class GASHAdminDispatch implements Runnable {
     handleReturnVal(aSession.runEmbeddedSweep());
   }
 
+  String getLockReport() throws RemoteException
+  {
+    return aSession.getLockReport();
+  }
+
   GASHSchema pullSchema() throws RemoteException
   {
     SchemaEdit editor = null;
@@ -233,6 +233,9 @@ public class GASHAdminFrame extends JFrame implements ActionListener, rowSelectC
   JMenuItem runEmbeddedSweepMI = null;
   final String REPAIREMBEDDED = "repair embedded";
 
+  JMenuItem showLocksMI = null;
+  final String SHOWLOCKS = "show locks";
+
   JMenu helpMenu = null;
 
   JMenuItem showAboutMI = null;
@@ -355,6 +358,8 @@ public class GASHAdminFrame extends JFrame implements ActionListener, rowSelectC
 
   aboutJavaDialog java_ver_dialog = null;
 
+  lockStatusDialog lock_status_dialog = null;
+
   LAFMenu LandFMenu = null;
 
   private JPanel statusBox = null;
@@ -577,10 +582,23 @@ public class GASHAdminFrame extends JFrame implements ActionListener, rowSelectC
 
     runEmbeddedSweepMI.addActionListener(this);
 
+    // "Show Lock Status"
+    showLocksMI = new JMenuItem(ts.l("init.debug_menu_4"));
+    showLocksMI.setActionCommand(SHOWLOCKS);
+
+    if (ts.hasPattern("init.debug_menu_4_key_optional"))
+      {
+        showLocksMI.setMnemonic((int) ts.l("init.debug_menu_4_key_optional").charAt(0));
+      }
+
+    showLocksMI.addActionListener(this);
+
     debugMenu.add(runInvidTestMI);
     debugMenu.add(runInvidSweepMI);
     debugMenu.add(runEmbeddedTestMI);
     debugMenu.add(runEmbeddedSweepMI);
+    debugMenu.addSeparator();
+    debugMenu.add(showLocksMI);
 
     // "Help"
     helpMenu = new JMenu(ts.l("init.help_menu"));
@@ -1665,6 +1683,10 @@ public class GASHAdminFrame extends JFrame implements ActionListener, rowSelectC
               }
           }
       }
+    else if (SHOWLOCKS.equals(event.getActionCommand()))
+      {
+        showLockStatus();
+      }
     else if (JAVAVERSION.equals(event.getActionCommand()))
       {
         showJavaVersion();
@@ -1713,6 +1735,20 @@ public class GASHAdminFrame extends JFrame implements ActionListener, rowSelectC
     java_ver_dialog.setVisible(true);
   }
 
+  /**
+   * Shows the lock status dialog.
+   */
+
+  public void showLockStatus()
+  {
+    if (lock_status_dialog == null)
+      {
+        lock_status_dialog = new lockStatusDialog(this, adminDispatch);
+      }
+
+    lock_status_dialog.setVisible(true);
+  }
+
   /**
    * Shows the About... dialog.
    */
@@ -0,0 +1,217 @@
+/*
+   lockStatusDialog.java
+
+   A dialog for watching database lock activity in the Ganymede Server.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package arlut.csd.ganymede.admin;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.rmi.RemoteException;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+
+import arlut.csd.Util.TranslationService;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                lockStatusDialog
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>Non-modal dialog showing the server's database lock report, as
+ * returned by {@link
+ * arlut.csd.ganymede.rmi.adminSession#getLockReport()}.  The report
+ * lists the locks currently held and waiting, what each waiting lock
+ * is blocked behind, and per-base wait and hold time statistics.</p>
+ *
+ * <p>While the dialog is visible and auto-refresh is checked, the
+ * report is reloaded every few seconds so that lock contention can be
+ * watched as it happens.</p>
+ */
+
+class lockStatusDialog extends JDialog implements ActionListener {
+
+  /**
+   * TranslationService object for handling string localization in
+   * the Ganymede admin console.
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.admin.lockStatusDialog");
+
+  /**
+   * How often, in milliseconds, to reload the report while
+   * auto-refresh is on.
+   */
+
+  static final int REFRESH_INTERVAL = 2000;
+
+  private final GASHAdminDispatch adminDispatch;
+
+  private final JTextArea reportArea;
+  private final JButton refreshButton;
+  private final JButton closeButton;
+  private final JCheckBox autoRefreshBox;
+  private final Timer timer;
+
+  /* -- */
+
+  public lockStatusDialog(JFrame frame, GASHAdminDispatch adminDispatch)
+  {
+    // "Database Lock Status"
+    super(frame, ts.l("init.title"), false); // not modal
+
+    this.adminDispatch = adminDispatch;
+
+    reportArea = new JTextArea(30, 100);
+    reportArea.setEditable(false);
+    reportArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+
+    JScrollPane scrollPane = new JScrollPane(reportArea);
+
+    // "Auto-refresh"
+    autoRefreshBox = new JCheckBox(ts.l("init.auto_refresh"), true);
+    autoRefreshBox.addActionListener(this);
+
+    // "Refresh"
+    refreshButton = new JButton(ts.l("init.refresh"));
+    refreshButton.addActionListener(this);
+
+    // "Close"
+    closeButton = new JButton(ts.l("init.close"));
+    closeButton.addActionListener(this);
+
+    JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+    buttonPanel.add(autoRefreshBox);
+    buttonPanel.add(refreshButton);
+    buttonPanel.add(closeButton);
+
+    JPanel pane = new JPanel(new BorderLayout());
+    pane.add(scrollPane, BorderLayout.CENTER);
+    pane.add(buttonPanel, BorderLayout.SOUTH);
+
+    this.setContentPane(pane);
+
+    timer = new Timer(REFRESH_INTERVAL, this);
+
+    pack();
+
+    setLocationRelativeTo(frame);
+  }
+
+  public void setVisible(boolean state)
+  {
+    if (state)
+      {
+        refresh();
+
+        if (autoRefreshBox.isSelected())
+          {
+            timer.start();
+          }
+      }
+    else
+      {
+        timer.stop();
+      }
+
+    super.setVisible(state);
+  }
+
+  public void actionPerformed(ActionEvent event)
+  {
+    Object source = event.getSource();
+
+    if (source == closeButton)
+      {
+        setVisible(false);
+      }
+    else if (source == autoRefreshBox)
+      {
+        if (autoRefreshBox.isSelected())
+          {
+            timer.start();
+          }
+        else
+          {
+            timer.stop();
+          }
+      }
+    else if (source == refreshButton || source == timer)
+      {
+        refresh();
+      }
+  }
+
+  /**
+   * Reloads the lock report from the server.
+   */
+
+  private void refresh()
+  {
+    try
+      {
+        reportArea.setText(adminDispatch.getLockReport());
+        reportArea.setCaretPosition(0);
+      }
+    catch (RemoteException ex)
+      {
+        timer.stop();
+        autoRefreshBox.setSelected(false);
+
+        // "Could not retrieve the lock report from the server:\n{0}"
+        reportArea.setText(ts.l("refresh.error", ex.getMessage()));
+      }
+  }
+}
@@ -81,6 +81,15 @@ import java.io.IOException;
 public final class Invid implements java.io.Externalizable {
 
   static private InvidAllocator allocator = null;
+
+  /**
+   * <p>The allocator, if it is an {@link
+   * arlut.csd.ganymede.common.InvidTable InvidTable}.  InvidTable
+   * lookups take no locks, so we bypass the synchronized
+   * find-and-store sequence in intern() when we have one.</p>
+   */
+
+  static private InvidTable table = null;
   static private int counter = 0;
   static private int reuseCounter = 0;
 
@@ -91,6 +100,11 @@ public final class Invid implements java.io.Externalizable {
 
   static final public int getCount()
   {
+    if (table != null)
+      {
+        return table.size();
+      }
+
     return counter;
   }
 
@@ -109,6 +123,15 @@ public final class Invid implements java.io.Externalizable {
   static final public void setAllocator(InvidAllocator newAllocator)
   {
     Invid.allocator = newAllocator;
+
+    if (newAllocator instanceof InvidTable)
+      {
+        Invid.table = (InvidTable) newAllocator;
+      }
+    else
+      {
+        Invid.table = null;
+      }
   }
 
   /**
@@ -118,6 +141,13 @@ public final class Invid implements java.io.Externalizable {
 
   static final public Invid createInvid(short type, int num)
   {
+    InvidTable currentTable = table;
+
+    if (currentTable != null)
+      {
+        return currentTable.createInvid(type, num);
+      }
+
     if (allocator == null)
       {
         counter++;
@@ -190,11 +220,11 @@ public final class Invid implements java.io.Externalizable {
   }
 
   /**
-   * Private constructor.  Use the static createInvid factory methods
-   * to create Invids, please.
+   * Package-private constructor.  Use the static createInvid factory
+   * methods to create Invids, please.
    */
 
-  private Invid(short type, int num)
+  Invid(short type, int num)
   {
     this.type = type;
     this.num = num;
@@ -281,18 +311,33 @@ public final class Invid implements java.io.Externalizable {
         return this;
       }
 
-    Invid result = allocator.findInvid(this);
+    InvidTable currentTable = table;
 
-    if (result != null)
+    if (currentTable != null)
       {
-        reuseCounter++;
-        return result;
+        return currentTable.intern(this);
       }
 
-    counter++;
-    allocator.storeInvid(this);
-    this.interned = true;
-    return this;
+    // we lock the allocator across the find and the store so that
+    // two threads interning equal Invids at the same time (as when
+    // the server is loading ganymede.db bases in parallel) can't both
+    // store their own copy
+
+    synchronized (allocator)
+      {
+        Invid result = allocator.findInvid(this);
+
+        if (result != null)
+          {
+            reuseCounter++;
+            return result;
+          }
+
+        counter++;
+        allocator.storeInvid(this);
+        this.interned = true;
+        return this;
+      }
   }
 
   // pull the values
@@ -312,6 +357,16 @@ public final class Invid implements java.io.Externalizable {
     return this.interned;
   }
 
+  /**
+   * <p>Marks this Invid as the canonical instance held by an {@link
+   * arlut.csd.ganymede.common.InvidTable InvidTable}.</p>
+   */
+
+  void setInterned()
+  {
+    this.interned = true;
+  }
+
   // externalization methods
 
   public void writeExternal(ObjectOutput out) throws IOException
@@ -0,0 +1,340 @@
+/*
+
+   InvidTable.java
+
+   Dense, per-type canonicalization table for server-side Invids.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.common;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                      InvidTable
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>InvidTable is the {@link arlut.csd.ganymede.common.InvidAllocator
+ * InvidAllocator} used by the Ganymede server.  It keeps the canonical
+ * Invid for each object in a dense per-type array indexed by object
+ * number, taking advantage of the fact that each DBObjectBase hands
+ * out object numbers in increasing order from 1.</p>
+ *
+ * <p>Lookups of an Invid that has already been interned are a pair
+ * of array reads and take no locks, so the Invid traffic generated by
+ * loading, journal replay, XML import and RMI deserialization does
+ * not contend on a shared monitor.  Only the first creation of a
+ * given Invid, and the occasional growth of a per-type array, are
+ * synchronized.</p>
+ *
+ * <p>Unlike {@link arlut.csd.ganymede.common.InvidPool InvidPool},
+ * InvidTable holds its Invids strongly.  This costs one slot per
+ * object number ever allocated in a base, and avoids the soft
+ * reference bookkeeping and the GC pressure that comes with it.</p>
+ *
+ * <p>The server tells the table how far each type's ids extend with
+ * {@link #reserve(short,int) reserve()} as object bases are loaded
+ * and allocate new object numbers, and only reserve() grows a type's
+ * array.  An Invid outside the reserved range, as when a client
+ * sends us an Invid for an object that doesn't exist, is handed back
+ * uninterned, so that Invids we haven't allocated ourselves can't
+ * make us allocate anything.</p>
+ */
+
+public final class InvidTable implements InvidAllocator {
+
+  /**
+   * <p>The smallest per-type array we'll allocate.</p>
+   */
+
+  private static final int MIN_ROW = 256;
+
+  // ---
+
+  /**
+   * <p>Per-type Invid arrays, indexed by type number.  The outer array
+   * is copied and republished whenever a row is added or grown, so
+   * that readers always see a fully constructed row through this
+   * volatile field.</p>
+   */
+
+  private volatile AtomicReferenceArray<Invid>[] rows = newRows(0);
+
+  /**
+   * <p>Number of Invids held in this table.  Only written while
+   * synchronized.</p>
+   */
+
+  private volatile int size = 0;
+
+  /* -- */
+
+  public InvidTable()
+  {
+  }
+
+  /**
+   * <p>Returns the canonical Invid for type and num, creating and
+   * storing it if need be, or a new uninterned Invid if num is
+   * outside of the range reserved for type.</p>
+   */
+
+  public Invid createInvid(short type, int num)
+  {
+    Invid result = get(type, num);
+
+    if (result != null)
+      {
+        return result;
+      }
+
+    return store(type, num, null);
+  }
+
+  /**
+   * <p>Returns the canonical Invid equal to invid, storing invid
+   * itself as the canonical instance if there is none yet, or invid
+   * itself, uninterned, if it is outside of the range reserved for
+   * its type.</p>
+   */
+
+  public Invid intern(Invid invid)
+  {
+    Invid result = get(invid.getType(), invid.getNum());
+
+    if (result != null)
+      {
+        return result;
+      }
+
+    return store(invid.getType(), invid.getNum(), invid);
+  }
+
+  /**
+   * <p>Returns the canonical Invid for type and num, or null if none
+   * has been created yet.  Takes no locks.</p>
+   */
+
+  public Invid get(short type, int num)
+  {
+    AtomicReferenceArray<Invid>[] currentRows = rows;
+
+    if (type < 0 || type >= currentRows.length || num < 0)
+      {
+        return null;
+      }
+
+    AtomicReferenceArray<Invid> row = currentRows[type];
+
+    if (row == null || num >= row.length())
+      {
+        return null;
+      }
+
+    return row.get(num);
+  }
+
+  /**
+   * <p>Ensures that the array for type has room for object numbers up
+   * to and including maxNum, so that Invids in that range can always
+   * be interned.</p>
+   *
+   * <p>This is the only way a type's array grows, and should only be
+   * called by the server with object numbers that it has loaded or
+   * allocated itself.</p>
+   */
+
+  public void reserve(short type, int maxNum)
+  {
+    if (type < 0 || maxNum < 0)
+      {
+        return;
+      }
+
+    AtomicReferenceArray<Invid>[] currentRows = rows;
+
+    if (type < currentRows.length &&
+        currentRows[type] != null &&
+        maxNum < currentRows[type].length())
+      {
+        return;
+      }
+
+    synchronized (this)
+      {
+        growRow(type, maxNum);
+      }
+  }
+
+  /**
+   * <p>Returns the number of Invids held in this table.</p>
+   */
+
+  public int size()
+  {
+    return size;
+  }
+
+  // InvidAllocator
+
+  public Invid findInvid(Invid matchInvid)
+  {
+    return get(matchInvid.getType(), matchInvid.getNum());
+  }
+
+  public void storeInvid(Invid newInvid)
+  {
+    store(newInvid.getType(), newInvid.getNum(), newInvid);
+  }
+
+  // ---
+
+  /**
+   * <p>Stores candidate (or a newly created Invid, if candidate is
+   * null) as the canonical Invid for type and num, unless another
+   * thread has beaten us to it.  Returns whichever Invid is
+   * canonical, or an uninterned Invid if num is beyond what has been
+   * reserved for type.</p>
+   */
+
+  private synchronized Invid store(short type, int num, Invid candidate)
+  {
+    AtomicReferenceArray<Invid> row = null;
+
+    if (type >= 0 && type < rows.length && num >= 0)
+      {
+        row = rows[type];
+
+        if (row != null && num >= row.length())
+          {
+            row = null;
+          }
+      }
+
+    if (row == null)
+      {
+        return candidate != null ? candidate : new Invid(type, num);
+      }
+
+    Invid result = row.get(num);
+
+    if (result != null)
+      {
+        return result;
+      }
+
+    if (candidate == null)
+      {
+        candidate = new Invid(type, num);
+      }
+
+    candidate.setInterned();
+    row.set(num, candidate);
+    size++;
+
+    return candidate;
+  }
+
+  /**
+   * <p>Grows the array for type so that it can hold num, at least
+   * doubling it, and republishes the row table.  Must be called while
+   * synchronized, and only on behalf of reserve().</p>
+   */
+
+  private AtomicReferenceArray<Invid> growRow(short type, int num)
+  {
+    AtomicReferenceArray<Invid>[] newRows = rows;
+
+    if (type >= newRows.length)
+      {
+        AtomicReferenceArray<Invid>[] copy = newRows(type + 1);
+        System.arraycopy(newRows, 0, copy, 0, newRows.length);
+        newRows = copy;
+      }
+    else
+      {
+        newRows = newRows.clone();
+      }
+
+    AtomicReferenceArray<Invid> oldRow = newRows[type];
+    int oldLength = (oldRow == null) ? 0 : oldRow.length();
+
+    if (num < oldLength)
+      {
+        return oldRow;
+      }
+
+    int newLength = Math.max(MIN_ROW, oldLength * 2);
+
+    while (newLength <= num && newLength > 0)
+      {
+        newLength = newLength * 2;
+      }
+
+    if (newLength <= num)
+      {
+        newLength = Integer.MAX_VALUE - 8;
+      }
+
+    AtomicReferenceArray<Invid> newRow = new AtomicReferenceArray<Invid>(newLength);
+
+    for (int i = 0; i < oldLength; i++)
+      {
+        newRow.set(i, oldRow.get(i));
+      }
+
+    newRows[type] = newRow;
+    rows = newRows;
+
+    return newRow;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static AtomicReferenceArray<Invid>[] newRows(int length)
+  {
+    return (AtomicReferenceArray<Invid>[]) new AtomicReferenceArray[length];
+  }
+}
@@ -139,6 +139,62 @@ public class Query implements java.io.Serializable {
 
   private Set<Short> permitSet = null;
 
+  /**
+   * <p>True if setSort() has been called on this query.</p>
+   *
+   * <p>If this is false, the server only sorts the results if an
+   * offset, limit, or cursor position is also given, in which case it
+   * sorts them by label.  Otherwise the client sorts QueryResults by
+   * label itself as they are received.</p>
+   *
+   * <p>This is kept separate from sortField so that a Query
+   * serialized by a client that predates sorting, which will carry
+   * none of these fields, deserializes as unsorted rather than as
+   * sorted by field 0.</p>
+   */
+
+  private boolean sorted = false;
+
+  /**
+   * <p>The id of the field that the server should sort the objects
+   * matching this query by, or QueryDataNode.LABELVAL to sort them by
+   * label.  Only meaningful if sorted is true.</p>
+   */
+
+  private short sortField = QueryDataNode.LABELVAL;
+
+  /**
+   * <p>If true, the server will sort matching objects in descending
+   * order.  Objects with no value in the sort field come last either
+   * way.</p>
+   */
+
+  private boolean sortDescending = false;
+
+  /**
+   * <p>The number of matching objects, in sort order, that the server
+   * should skip before it starts returning results.</p>
+   */
+
+  private int offset = 0;
+
+  /**
+   * <p>The most matching objects that the server should return.  If
+   * zero, all matching objects will be returned.</p>
+   */
+
+  private int limit = 0;
+
+  /**
+   * <p>If afterInvid is set, the server will only return objects
+   * which come after the object with this sort key and Invid in sort
+   * order.  See {@link #setAfter(java.lang.Object,
+   * arlut.csd.ganymede.common.Invid) setAfter()}.</p>
+   */
+
+  private Object afterKey = null;
+  private Invid afterInvid = null;
+
   /**
    * <p>If we are on the server, we'll have a generic reference to a
    * GanymedeSession so that we can look up the description of the
@@ -147,6 +203,19 @@ public class Query implements java.io.Serializable {
 
   transient QueryDescriber describer = null;
 
+  /**
+   * <p>On the server, the compiled form of this query, cached by
+   * arlut.csd.ganymede.server.DBQueryPredicate so that the query tree
+   * need only be compiled once for each object base it is matched
+   * against.</p>
+   *
+   * <p>We declare this as a transient generic so that the client
+   * doesn't have to have the server's classes, and so that we don't
+   * transport the compiled query across RMI.</p>
+   */
+
+  public transient Object compiledPredicate = null;
+
   /* -- */
 
   /**
@@ -272,6 +341,108 @@ public class Query implements java.io.Serializable {
     this.filtered = filtered;
   }
 
+  /**
+   * <p>Asks the server to sort the objects matching this query by
+   * the given field, or by label if fieldId is
+   * QueryDataNode.LABELVAL.</p>
+   *
+   * <p>Vector fields are sorted by their first value, and invid
+   * fields by the label of the object they point to.  Objects with
+   * no value in the field, or whose value the user can't see, come
+   * last.  Objects with equal values are sorted by Invid.</p>
+   */
+
+  public void setSort(short fieldId, boolean descending)
+  {
+    this.sorted = true;
+    this.sortField = fieldId;
+    this.sortDescending = descending;
+  }
+
+  /**
+   * <p>Returns the id of the field that the server is to sort the
+   * results of this query by, QueryDataNode.LABELVAL if they are to
+   * be sorted by label, or QueryDataNode.UNUSEDVAL if setSort() was
+   * never called.</p>
+   */
+
+  public short getSortField()
+  {
+    return sorted ? sortField : QueryDataNode.UNUSEDVAL;
+  }
+
+  public boolean isSortDescending()
+  {
+    return sorted && sortDescending;
+  }
+
+  /**
+   * <p>Asks the server to skip the first offset matching objects in
+   * sort order, and to return no more than limit of those that
+   * remain.  A limit of zero returns all that remain.</p>
+   */
+
+  public void setPage(int offset, int limit)
+  {
+    if (offset < 0 || limit < 0)
+      {
+        throw new IllegalArgumentException("negative offset or limit");
+      }
+
+    this.offset = offset;
+    this.limit = limit;
+  }
+
+  public int getOffset()
+  {
+    return offset;
+  }
+
+  public int getLimit()
+  {
+    return limit;
+  }
+
+  /**
+   * <p>Asks the server to return only those matching objects which
+   * come after the given position in sort order, so that a client
+   * can page through a result without the server having to count off
+   * an offset that may have shifted as objects were created and
+   * deleted.</p>
+   *
+   * <p>key and invid should be taken from the last row of the
+   * previous page: key is the row's label if the query is sorted by
+   * label, or the value returned for the sort field in a DumpResult
+   * otherwise.  If invid is null, the query starts from the
+   * beginning.</p>
+   */
+
+  public void setAfter(Object key, Invid invid)
+  {
+    this.afterKey = key;
+    this.afterInvid = invid;
+  }
+
+  public Object getAfterKey()
+  {
+    return afterKey;
+  }
+
+  public Invid getAfterInvid()
+  {
+    return afterInvid;
+  }
+
+  /**
+   * <p>Returns true if the server is to sort the results of this
+   * query, and perhaps return only a page of them.</p>
+   */
+
+  public boolean isPaged()
+  {
+    return sorted || offset != 0 || limit != 0 || afterInvid != null;
+  }
+
   /**
    * <p>This method resets the permitSet, allowing
    * all fields to be returned by default.</p>
@@ -414,6 +585,45 @@ public class Query implements java.io.Serializable {
         result.append(root.toString());
       }
 
+    if (sorted)
+      {
+        result.append(",sort = ");
+
+        if (sortField == QueryDataNode.LABELVAL)
+          {
+            result.append("<label>");
+          }
+        else
+          {
+            result.append(describeField(sortField));
+          }
+
+        if (sortDescending)
+          {
+            result.append(" descending");
+          }
+      }
+
+    if (offset > 0)
+      {
+        result.append(",offset = ");
+        result.append(offset);
+      }
+
+    if (limit > 0)
+      {
+        result.append(",limit = ");
+        result.append(limit);
+      }
+
+    if (afterInvid != null)
+      {
+        result.append(",after = ");
+        result.append(afterKey);
+        result.append("/");
+        result.append(afterInvid);
+      }
+
     return result.toString();
   }
 
@@ -122,6 +122,23 @@ public class QueryResult implements java.io.Externalizable {
   private Set<String> labelSet = null;
   private boolean nonEditable = false;
 
+  /**
+   * <p>If true, the server has put the rows of this QueryResult in
+   * the order asked for by a Query's sort settings, and they are to
+   * be kept in that order, rather than being sorted by label when
+   * they are received.</p>
+   */
+
+  private boolean ordered = false;
+
+  /**
+   * <p>If this QueryResult holds a page of a larger result, the
+   * number of rows in the whole result, or -1 if this QueryResult
+   * holds the whole result.</p>
+   */
+
+  private int totalSize = -1;
+
   /* -- */
 
   public QueryResult()
@@ -163,6 +180,8 @@ public class QueryResult implements java.io.Externalizable {
     copy.invidSet = new HashSet<Invid>(this.invidSet);
     copy.labelSet = new HashSet<String>(this.labelSet);
     copy.handles = new Vector<ObjectHandle>(this.handles);
+    copy.ordered = this.ordered;
+    copy.totalSize = this.totalSize;
 
     return copy;
   }
@@ -267,6 +286,42 @@ public class QueryResult implements java.io.Externalizable {
     labelSet.add(label);
   }
 
+  /**
+   * <p>Marks this QueryResult as holding rows in an order set by the
+   * server, which will be kept when it is sent to the client.</p>
+   */
+
+  public void setOrdered()
+  {
+    this.ordered = true;
+  }
+
+  public boolean isOrdered()
+  {
+    return this.ordered;
+  }
+
+  /**
+   * <p>Records the number of rows in the whole result that this
+   * QueryResult holds a page of.</p>
+   */
+
+  public void setTotalSize(int totalSize)
+  {
+    this.totalSize = totalSize;
+  }
+
+  /**
+   * <p>Returns the number of rows in the whole result that this
+   * QueryResult holds a page of, or size() if this QueryResult holds
+   * the whole result.</p>
+   */
+
+  public int getTotalSize()
+  {
+    return (this.totalSize < 0) ? size() : this.totalSize;
+  }
+
   // ***
   //
   // The following methods are intended to be called on a QueryResult
@@ -474,6 +529,8 @@ public class QueryResult implements java.io.Externalizable {
 
   public synchronized void writeExternal(ObjectOutput out) throws IOException
   {
+    out.writeBoolean(this.ordered);
+    out.writeInt(this.totalSize);
     out.writeInt(this.handles.size());
 
     for (ObjectHandle handle: this.handles)
@@ -486,6 +543,9 @@ public class QueryResult implements java.io.Externalizable {
   {
     VecSortInsert inserter = new VecSortInsert(comparator);
 
+    this.ordered = in.readBoolean();
+    this.totalSize = in.readInt();
+
     int size = in.readInt();
     this.handles = new Vector<ObjectHandle>(size);
 
@@ -496,7 +556,17 @@ public class QueryResult implements java.io.Externalizable {
 
         invidSet.add(handle.getInvid());
         labelSet.add(handle.getLabel());
-        inserter.insert(this.handles, handle);
+
+        // if the server sorted the rows for us, keep its order
+
+        if (this.ordered)
+          {
+            this.handles.add(handle);
+          }
+        else
+          {
+            inserter.insert(this.handles, handle);
+          }
       }
 
     if (this.handles.size() != size)
@@ -0,0 +1,105 @@
+/*
+
+   QueryCursor.java
+
+   Server-side interface for a cursor that the client can use to pull
+   down the results of a query a page at a time.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+
+package arlut.csd.ganymede.rmi;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import arlut.csd.ganymede.common.DumpResult;
+import arlut.csd.ganymede.common.NotLoggedInException;
+import arlut.csd.ganymede.common.QueryResult;
+
+/*------------------------------------------------------------------------------
+                                                                       interface
+                                                                     QueryCursor
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>Interface for a cursor over the results of a query, returned by
+ * {@link arlut.csd.ganymede.rmi.Session#openQueryCursor(arlut.csd.ganymede.common.Query,int)
+ * Session.openQueryCursor()}, which the client can use to pull down
+ * a large result a page at a time rather than all at once.</p>
+ *
+ * <p>The rows are returned in the order asked for by the Query's sort
+ * settings, or by label if it has none.</p>
+ */
+
+public interface QueryCursor extends Remote {
+
+  /**
+   * <p>Returns the number of rows in the whole result.</p>
+   */
+
+  public int getSize() throws RemoteException;
+
+  /**
+   * <p>Returns the next page of the result, or null once every row
+   * has been returned.</p>
+   */
+
+  public QueryResult getNextPage() throws NotLoggedInException, RemoteException;
+
+  /**
+   * <p>Returns the fields asked for by the Query from the objects in
+   * the next page of the result, or null once every row has been
+   * returned.</p>
+   */
+
+  public DumpResult getNextDumpPage() throws NotLoggedInException, RemoteException;
+
+  /**
+   * <p>This method is called to notify the QueryCursor that no more
+   * of the result will be pulled, so that it can be released.</p>
+   */
+
+  public void close() throws RemoteException;
+}
@@ -617,6 +617,42 @@ public interface Session extends Remote {
 
   QueryResult    query(Query query) throws RemoteException;
 
+  /**
+   * <p>Runs a query and returns a {@link
+   * arlut.csd.ganymede.rmi.QueryCursor QueryCursor} which can be used
+   * to pull down the objects matching it pageSize at a time, rather
+   * than all at once.</p>
+   *
+   * <p>The rows are returned in the order given by the Query's sort
+   * settings, or by label if it has none, and the Query's offset,
+   * limit and setAfter() settings are applied before the cursor is
+   * opened.  The cursor should be closed when the client is done
+   * with it.</p>
+   */
+
+  QueryCursor    openQueryCursor(Query query, int pageSize) throws RemoteException;
+
+  /**
+   * <p>Returns a description of the plan the server would follow to
+   * answer a query, showing which Invid, namespace, or field index
+   * lookups would be used to find candidate objects, or whether the
+   * server would need to scan every object of the query's type.</p>
+   *
+   * <p>This version of explainQuery() takes a query in string form,
+   * based on Deepak's ANTLR-specified Ganymede query grammar.</p>
+   */
+
+  String    explainQuery(String queryString) throws RemoteException;
+
+  /**
+   * <p>Returns a description of the plan the server would follow to
+   * answer a query, showing which Invid, namespace, or field index
+   * lookups would be used to find candidate objects, or whether the
+   * server would need to scan every object of the query's type.</p>
+   */
+
+  String    explainQuery(Query query) throws RemoteException;
+
   /**
    * <p>This method returns the label for a specific invid.</p>
    */
@@ -251,4 +251,14 @@ public interface adminSession extends Remote {
    */
 
   String getLoginHistory(Date startDate) throws RemoteException;
+
+  /**
+   * <p>Retrieves a multi-line String describing the database locks
+   * currently held and waiting in the server, which locks the
+   * waiting locks are blocked behind, and wait and hold time
+   * statistics for each object base since the server was
+   * started.</p>
+   */
+
+  String getLockReport() throws RemoteException;
 }
@@ -379,6 +379,19 @@ public final class DBBaseCategory implements Category, CategoryNode {
    */
 
   synchronized void emit(DataOutput out) throws IOException
+  {
+    emit(out, true);
+  }
+
+  /**
+   * <p>Emits this category and its contents to &lt;out&gt;, in
+   * ganymede.db form.</p>
+   *
+   * @param dumpObjects If false, the object bases will be written
+   * without their objects, which will be written separately.
+   */
+
+  synchronized void emit(DataOutput out, boolean dumpObjects) throws IOException
   {
     out.writeUTF(this.getPath());
     out.writeInt(contents.size());
@@ -391,12 +404,12 @@ public final class DBBaseCategory implements Category, CategoryNode {
         if (node instanceof DBBaseCategory)
           {
             out.writeBoolean(false); // it's a category
-            ((DBBaseCategory) node).emit(out);
+            ((DBBaseCategory) node).emit(out, dumpObjects);
           }
         else if (node instanceof DBObjectBase)
           {
             out.writeBoolean(true); // it's a base
-            ((DBObjectBase) node).emit(out, true);
+            ((DBObjectBase) node).emit(out, dumpObjects);
           }
       }
   }
@@ -0,0 +1,332 @@
+/*
+
+   DBBlockInputStream.java
+
+   Block input stream for reading compressed, checksummed ganymede.db
+   and journal files.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.server;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import arlut.csd.Util.TranslationService;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                              DBBlockInputStream
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>An InputStream that reads the blocks written by {@link
+ * arlut.csd.ganymede.server.DBBlockOutputStream DBBlockOutputStream},
+ * decompressing each block and verifying its CRC32 checksum before
+ * any of its data is returned.</p>
+ *
+ * <p>The end of the underlying data is only treated as the end of
+ * this stream if it comes at a block boundary.  If the data ends
+ * partway through a block, or if a block's checksum doesn't match,
+ * an IOException is thrown reporting the offset of the damaged
+ * block, and {@link #isDamaged()} will return true from then on.  If
+ * the caller told us where the data ends, {@link #isTornTail()} will
+ * tell whether the damage was confined to the final block, as
+ * happens when the server is killed in the middle of a write.</p>
+ */
+
+final class DBBlockInputStream extends InputStream {
+
+  /**
+   * <p>TranslationService object for handling string localization in
+   * the Ganymede server.</p>
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBBlockInputStream");
+
+  // ---
+
+  private final DataInput in;
+  private final Inflater inflater = new Inflater();
+
+  /**
+   * <p>The offset in the underlying file of the next block we'll
+   * read.</p>
+   */
+
+  private long position;
+
+  /**
+   * <p>The offset in the underlying file at which the data ends, or
+   * -1 if unknown.</p>
+   */
+
+  private final long limit;
+
+  private byte[] buffer = new byte[0];
+  private byte[] stored = new byte[0];
+  private int count = 0;
+  private int index = 0;
+
+  private boolean eof = false;
+  private boolean damaged = false;
+  private boolean tornTail = false;
+
+  /* -- */
+
+  /**
+   * @param in The source of the block data.  This may be a
+   * RandomAccessFile positioned at the first block to be read.
+   * @param position The offset in the file at which the first block
+   * begins, used for reporting damaged blocks.
+   * @param limit The offset in the file at which the block data ends,
+   * or -1 if unknown.
+   */
+
+  public DBBlockInputStream(DataInput in, long position, long limit)
+  {
+    this.in = in;
+    this.position = position;
+    this.limit = limit;
+  }
+
+  public int read() throws IOException
+  {
+    if (index == count && !nextBlock())
+      {
+        return -1;
+      }
+
+    return buffer[index++] & 0xff;
+  }
+
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    if (len == 0)
+      {
+        return 0;
+      }
+
+    if (index == count && !nextBlock())
+      {
+        return -1;
+      }
+
+    int chunk = Math.min(len, count - index);
+
+    System.arraycopy(buffer, index, b, off, chunk);
+    index += chunk;
+
+    return chunk;
+  }
+
+  public int available()
+  {
+    return count - index;
+  }
+
+  public void close()
+  {
+    inflater.end();
+  }
+
+  /**
+   * <p>Returns true if we have encountered a truncated block or a
+   * block whose checksum did not match.</p>
+   */
+
+  public boolean isDamaged()
+  {
+    return damaged;
+  }
+
+  /**
+   * <p>Returns true if the damaged block we encountered was the last
+   * block in the file, so that everything before it is intact.</p>
+   */
+
+  public boolean isTornTail()
+  {
+    return tornTail;
+  }
+
+  /**
+   * <p>Reads, decompresses, and verifies the next block into our
+   * buffer.  Returns false if there are no more blocks.</p>
+   */
+
+  private boolean nextBlock() throws IOException
+  {
+    byte kind;
+    int rawLength, storedLength, checksum;
+    long blockPosition = position;
+
+    /* -- */
+
+    if (eof)
+      {
+        return false;
+      }
+
+    if (damaged)
+      {
+        throw new IOException(ts.l("nextBlock.damaged", Long.valueOf(blockPosition)));
+      }
+
+    try
+      {
+        kind = in.readByte();
+      }
+    catch (EOFException ex)
+      {
+        eof = true;
+        return false;
+      }
+
+    try
+      {
+        rawLength = in.readInt();
+        storedLength = in.readInt();
+        checksum = in.readInt();
+
+        // DBBlockOutputStream never writes a block larger than
+        // MAX_BLOCK_SIZE, and only keeps deflated data that is
+        // smaller than what it encodes.  check that before we
+        // allocate anything, so that a damaged header can't have us
+        // trying to allocate gigabytes.
+
+        if ((kind != DBBlockOutputStream.STORED && kind != DBBlockOutputStream.DEFLATED) ||
+            rawLength < 0 || rawLength > DBBlockOutputStream.MAX_BLOCK_SIZE ||
+            storedLength < 0 || storedLength > rawLength ||
+            (kind == DBBlockOutputStream.STORED && rawLength != storedLength))
+          {
+            throw damage(blockPosition, false);
+          }
+
+        if (limit >= 0 && blockPosition + DBBlockOutputStream.HEADER_LENGTH + storedLength > limit)
+          {
+            throw damage(blockPosition, true);
+          }
+
+        if (stored.length < storedLength)
+          {
+            stored = new byte[storedLength];
+          }
+
+        in.readFully(stored, 0, storedLength);
+      }
+    catch (EOFException ex)
+      {
+        throw damage(blockPosition, true);
+      }
+
+    position = blockPosition + DBBlockOutputStream.HEADER_LENGTH + storedLength;
+
+    if (kind == DBBlockOutputStream.STORED)
+      {
+        byte[] swap = buffer;
+        buffer = stored;
+        stored = swap;
+      }
+    else
+      {
+        if (buffer.length < rawLength)
+          {
+            buffer = new byte[rawLength];
+          }
+
+        inflater.reset();
+        inflater.setInput(stored, 0, storedLength);
+
+        try
+          {
+            if (inflater.inflate(buffer, 0, rawLength) != rawLength || !inflater.finished())
+              {
+                throw damage(blockPosition, position == limit);
+              }
+          }
+        catch (DataFormatException ex)
+          {
+            throw damage(blockPosition, position == limit);
+          }
+      }
+
+    CRC32 crc = new CRC32();
+    crc.update(buffer, 0, rawLength);
+
+    if ((int) crc.getValue() != checksum)
+      {
+        throw damage(blockPosition, position == limit);
+      }
+
+    count = rawLength;
+    index = 0;
+
+    return true;
+  }
+
+  /**
+   * <p>Records that the block at blockPosition is damaged, and
+   * returns an IOException describing the damage.</p>
+   *
+   * @param tail True if the damaged block runs to the end of the
+   * file.
+   */
+
+  private IOException damage(long blockPosition, boolean tail)
+  {
+    damaged = true;
+    tornTail = tail;
+    count = 0;
+    index = 0;
+
+    // "Damaged or incomplete block at offset {0,number,#}"
+    return new IOException(ts.l("nextBlock.damaged", Long.valueOf(blockPosition)));
+  }
+}
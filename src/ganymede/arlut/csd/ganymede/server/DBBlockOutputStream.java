@@ -0,0 +1,366 @@
+/*
+
+   DBBlockOutputStream.java
+
+   Compressing, checksumming block output stream for the ganymede.db
+   and journal files.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import arlut.csd.Util.TranslationService;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                             DBBlockOutputStream
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>An OutputStream that collects the bytes written to it into
+ * blocks, and writes each block to the underlying stream compressed
+ * with a fast deflate and protected by a CRC32 checksum.  This is
+ * the compressed on-disk format optionally used for the ganymede.db
+ * file by {@link arlut.csd.ganymede.server.DBStore DBStore} and for
+ * the journal by {@link arlut.csd.ganymede.server.DBJournal
+ * DBJournal}, as controlled by the ganymede.compressedformat
+ * property.</p>
+ *
+ * <p>Each block is written as a one byte block kind, the length of
+ * the uncompressed data, the length of the data as stored, the CRC32
+ * of the uncompressed data, and then the stored data.  A block whose
+ * data doesn't shrink when compressed is stored as is.  Blocks are
+ * read back by {@link arlut.csd.ganymede.server.DBBlockInputStream
+ * DBBlockInputStream}, which verifies each block's checksum as it
+ * goes, so that a damaged or torn file is detected at the block it
+ * was damaged in rather than by a later parse failure.</p>
+ *
+ * <p>Calling flush() ends the current block, so that the next byte
+ * written will begin a new block at a known position in the
+ * underlying file.  DBStore uses this to make each object base's
+ * section of ganymede.db independently readable.</p>
+ */
+
+final class DBBlockOutputStream extends OutputStream {
+
+  /**
+   * <p>TranslationService object for handling string localization in
+   * the Ganymede server.</p>
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBBlockOutputStream");
+
+  /**
+   * <p>Block kind for data stored without compression.</p>
+   */
+
+  static final byte STORED = 0;
+
+  /**
+   * <p>Block kind for deflated data.</p>
+   */
+
+  static final byte DEFLATED = 1;
+
+  /**
+   * <p>The number of bytes in a block header.</p>
+   */
+
+  static final int HEADER_LENGTH = 13;
+
+  /**
+   * <p>The default amount of uncompressed data that we'll collect
+   * into a block before compressing and writing it.</p>
+   */
+
+  static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * <p>The largest amount of uncompressed data that we'll put in a
+   * single block.  Since we only keep deflated data if it comes out
+   * smaller than the data it encodes, no block's stored data is
+   * larger than this either.  {@link
+   * arlut.csd.ganymede.server.DBBlockInputStream DBBlockInputStream}
+   * treats any block header claiming more as damage, rather than
+   * trying to allocate a buffer for it.</p>
+   */
+
+  static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * <p>Encodes length bytes of data starting at offset as a single
+   * block.  If deflater is null, the block is stored without
+   * compression.  The deflater, if given, is reset before use.</p>
+   *
+   * @throws IllegalArgumentException if length is greater than
+   * MAX_BLOCK_SIZE
+   */
+
+  static byte[] encodeBlock(byte[] data, int offset, int length, Deflater deflater)
+  {
+    byte[] stored = null;
+    int storedLength = 0;
+
+    /* -- */
+
+    if (length > MAX_BLOCK_SIZE)
+      {
+        throw new IllegalArgumentException("block of " + length + " bytes exceeds MAX_BLOCK_SIZE");
+      }
+
+    if (deflater != null && length > 0)
+      {
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+
+        // we'll only keep the deflated data if it comes out smaller
+
+        stored = new byte[length];
+
+        while (!deflater.finished() && storedLength < stored.length)
+          {
+            storedLength += deflater.deflate(stored, storedLength, stored.length - storedLength);
+          }
+
+        if (!deflater.finished())
+          {
+            stored = null;
+          }
+      }
+
+    CRC32 crc = new CRC32();
+    crc.update(data, offset, length);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_LENGTH + (stored == null ? length : storedLength));
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    try
+      {
+        if (stored == null)
+          {
+            out.writeByte(STORED);
+            out.writeInt(length);
+            out.writeInt(length);
+            out.writeInt((int) crc.getValue());
+            out.write(data, offset, length);
+          }
+        else
+          {
+            out.writeByte(DEFLATED);
+            out.writeInt(length);
+            out.writeInt(storedLength);
+            out.writeInt((int) crc.getValue());
+            out.write(stored, 0, storedLength);
+          }
+
+        out.flush();
+      }
+    catch (IOException ex)
+      {
+        // can't happen writing to a ByteArrayOutputStream
+
+        throw new RuntimeException(ex);
+      }
+
+    return bytes.toByteArray();
+  }
+
+  // ---
+
+  private OutputStream out;
+  private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+  private final byte[] buffer;
+  private int count = 0;
+
+  /**
+   * <p>The number of blocks written so far.</p>
+   */
+
+  private int blockCount = 0;
+
+  /**
+   * <p>The number of uncompressed bytes written so far.</p>
+   */
+
+  private long rawBytes = 0;
+
+  /**
+   * <p>The number of bytes written to the underlying stream so
+   * far.</p>
+   */
+
+  private long storedBytes = 0;
+
+  /* -- */
+
+  public DBBlockOutputStream(OutputStream out)
+  {
+    this(out, DEFAULT_BLOCK_SIZE);
+  }
+
+  public DBBlockOutputStream(OutputStream out, int blockSize)
+  {
+    if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE)
+      {
+        throw new IllegalArgumentException("bad block size " + blockSize);
+      }
+
+    this.out = out;
+    this.buffer = new byte[blockSize];
+  }
+
+  public void write(int b) throws IOException
+  {
+    if (count == buffer.length)
+      {
+        writeBlock();
+      }
+
+    buffer[count++] = (byte) b;
+  }
+
+  public void write(byte[] b, int off, int len) throws IOException
+  {
+    while (len > 0)
+      {
+        if (count == buffer.length)
+          {
+            writeBlock();
+          }
+
+        int chunk = Math.min(len, buffer.length - count);
+
+        System.arraycopy(b, off, buffer, count, chunk);
+        count += chunk;
+        off += chunk;
+        len -= chunk;
+      }
+  }
+
+  /**
+   * <p>Ends the current block, if any data has been written to it,
+   * and flushes the underlying stream.</p>
+   */
+
+  public void flush() throws IOException
+  {
+    writeBlock();
+    out.flush();
+  }
+
+  /**
+   * <p>Ends the current block, and then writes data to the
+   * underlying stream as a block of its own, stored without
+   * compression.  Because a stored block's length doesn't depend on
+   * its contents, it can later be overwritten in place with other
+   * data of the same length, using {@link #encodeBlock(byte[], int,
+   * int, java.util.zip.Deflater) encodeBlock()} with a null
+   * deflater.</p>
+   */
+
+  public void writeStoredBlock(byte[] data) throws IOException
+  {
+    writeBlock();
+    writeEncoded(encodeBlock(data, 0, data.length, null), data.length);
+    out.flush();
+  }
+
+  public void close() throws IOException
+  {
+    if (out == null)
+      {
+        return;
+      }
+
+    try
+      {
+        flush();
+        out.close();
+      }
+    finally
+      {
+        out = null;
+        deflater.end();
+      }
+  }
+
+  /**
+   * <p>Returns a description of how much the data written to this
+   * stream was compressed.</p>
+   */
+
+  public String getStatistics()
+  {
+    // "{0,number,#} blocks, {1,number,#} bytes compressed to {2,number,#}"
+    return ts.l("getStatistics.report", Integer.valueOf(blockCount), Long.valueOf(rawBytes), Long.valueOf(storedBytes));
+  }
+
+  private void writeBlock() throws IOException
+  {
+    if (count == 0)
+      {
+        return;
+      }
+
+    writeEncoded(encodeBlock(buffer, 0, count, deflater), count);
+    count = 0;
+  }
+
+  private void writeEncoded(byte[] block, int length) throws IOException
+  {
+    out.write(block);
+
+    blockCount++;
+    rawBytes += length;
+    storedBytes += block.length;
+  }
+}
@@ -50,8 +50,6 @@
 
 package arlut.csd.ganymede.server;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /*------------------------------------------------------------------------------
@@ -121,7 +119,7 @@ final class DBDumpLock extends DBLock {
   {
     super(store.lockSync);
 
-    this.baseSet = Collections.unmodifiableList(new ArrayList(store.getBases()));
+    this.baseSet = orderBases(store.getBases());
   }
 
   /**
@@ -132,7 +130,7 @@ final class DBDumpLock extends DBLock {
   {
     super(store.lockSync);
 
-    this.baseSet = Collections.unmodifiableList(new ArrayList(baseSet));
+    this.baseSet = orderBases(baseSet);
   }
 
   /**
@@ -162,6 +160,11 @@ final class DBDumpLock extends DBLock {
     return this.abort;
   }
 
+  @Override final int getLockKind()
+  {
+    return DBLockStats.DUMP;
+  }
+
   /**
    * Returns immutable list of DBObjectBases that this lock is meant
    * to cover.
@@ -186,8 +189,8 @@ final class DBDumpLock extends DBLock {
 
   /**
    * <p>A thread that calls establish() will be suspended (waiting on
-   * the server's {@link arlut.csd.ganymede.server.DBLockSync
-   * DBLockSync} until all DBObjectBases listed in this DBDumpLock's
+   * a Condition of the server's {@link arlut.csd.ganymede.server.DBLockSync
+   * DBLockSync}) until all DBObjectBases listed in this DBDumpLock's
    * constructor are available to be locked.  At that point, the
    * thread blocking on establish() will wake up possessing a shared
    * dump lock on the requested DBObjectBases.</p>
@@ -217,6 +220,7 @@ final class DBDumpLock extends DBLock {
   {
     boolean waiting = false;
     boolean okay = false;
+    DBObjectBase blocker = null;
 
     /* -- */
 
@@ -227,13 +231,17 @@ final class DBDumpLock extends DBLock {
         Ganymede.printCallStack();
       }
 
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         if (!lockSync.claimLockKey(key, this))
           {
             throw new RuntimeException("Error: dump lock sought by owner of existing lockset.");
           }
 
+        noteRequested(key);
+
         try
           {
             lockSync.incLocksWaitingCount();
@@ -273,13 +281,14 @@ final class DBDumpLock extends DBLock {
                         if (debug) debug("establish() blocked on base with writer: " + base.getName());
 
                         okay = false;
+                        blocker = base;
                         break;
                       }
                   }
 
                 if (!okay)
                   {
-                    lockSync.wait(2500);
+                    lockSync.await(this, blocker);
                     continue;
                   }
 
@@ -291,11 +300,13 @@ final class DBDumpLock extends DBLock {
                   }
 
                 this.locked = true;
+                noteGranted();
                 lockSync.incLockCount();
               }
           }
         finally
           {
+            lockSync.dequeue(this);
             lockSync.decLocksWaitingCount();
             this.inEstablish = false;
 
@@ -309,13 +320,18 @@ final class DBDumpLock extends DBLock {
 
             if (!this.locked)
               {
+                noteFailed();
                 lockSync.unclaimLockKey(key, this);
                 this.key = null;
               }
 
-            lockSync.notifyAll();
+            this.settled.signalAll();
           }
       }
+    finally
+      {
+        lockSync.unlock();
+      }
 
     if (debug) debug("establish() got the lock.");
   }
@@ -332,19 +348,15 @@ final class DBDumpLock extends DBLock {
         Ganymede.printCallStack();
       }
 
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         while (this.inEstablish)
           {
             if (debug) debug("release() waiting for inEstablish");
 
-            try
-              {
-                lockSync.wait(2500); // or until notify'ed
-              }
-            catch (InterruptedException ex)
-              {
-              }
+            this.settled.awaitUninterruptibly();
           }
 
         // note that we have to check locked here or else we might accidentally
@@ -356,6 +368,8 @@ final class DBDumpLock extends DBLock {
             return;
           }
 
+        noteReleased();
+
         for (DBObjectBase base: baseSet)
           {
             base.removeDumpLock(this);
@@ -369,7 +383,10 @@ final class DBDumpLock extends DBLock {
         this.key = null;             // gc
 
         lockSync.decLockCount();  // notify consoles
-        lockSync.notifyAll();   // many threads might want to check to see what we freed
+      }
+    finally
+      {
+        lockSync.unlock();
       }
   }
 
@@ -388,12 +405,19 @@ final class DBDumpLock extends DBLock {
 
   @Override public final void abort()
   {
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         if (debug) debug("abort() aborting");
         this.abort = true;
+        lockSync.signal(this);  // wake establish() if it is waiting
         release();
       }
+    finally
+      {
+        lockSync.unlock();
+      }
   }
 
   private void debug(Object key, String message)
@@ -3296,6 +3296,14 @@ public class DBEditObject extends DBObject implements ObjectStatus {
    * on a field in an embedded object and in the object itself, using
    * the GanymedeSession query calls, or else you will lock the server.</p>
    *
+   * <p>If the ganymede.optimisticcommits property is set, this method
+   * is first called before the database is locked.  If another
+   * transaction commits changes to any object, object base, or
+   * namespace value looked at during that call before the database
+   * is locked, this object will be
+   * {@link arlut.csd.ganymede.server.DBEditObject#release(boolean) released}
+   * and this method will be called again.</p>
+   *
    * <p>This method should NEVER try to edit or change any DBEditObject
    * in the server.. at this point in the game, the server has fixed the
    * transaction working set and is depending on commitPhase1() not trying
@@ -63,11 +63,19 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import arlut.csd.Util.NamedStack;
 import arlut.csd.Util.TranslationService;
 import arlut.csd.Util.VectorUtils;
 import arlut.csd.ganymede.common.ErrorTypeEnum;
+import arlut.csd.ganymede.common.FieldBook;
 import arlut.csd.ganymede.common.Invid;
 import arlut.csd.ganymede.common.ObjectStatus;
 import arlut.csd.ganymede.common.ReturnVal;
@@ -163,6 +171,78 @@ public final class DBEditSet {
 
   static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBEditSet");
 
+  /**
+   * <p>Worker threads used by committing transactions to write to
+   * incremental sync channels in parallel.  Created on first use by
+   * {@link arlut.csd.ganymede.server.DBEditSet#getSyncPool()
+   * getSyncPool()}.</p>
+   */
+
+  private static ExecutorService syncPool = null;
+
+  /**
+   * <p>Set on a {@link arlut.csd.ganymede.server.DBLogPipeline
+   * DBLogPipeline} thread to the transaction it is logging.  See
+   * {@link
+   * arlut.csd.ganymede.server.DBEditSet#getLoggingTransaction()
+   * getLoggingTransaction()}.</p>
+   */
+
+  private static final ThreadLocal<DBEditSet> loggingTransaction = new ThreadLocal<DBEditSet>();
+
+  /**
+   * <p>Set on a thread to the transaction it is validating for an
+   * optimistic commit.  See {@link
+   * arlut.csd.ganymede.server.DBEditSet#getValidatingTransaction()
+   * getValidatingTransaction()}.</p>
+   */
+
+  private static final ThreadLocal<DBEditSet> validatingTransaction = new ThreadLocal<DBEditSet>();
+
+  /**
+   * <p>The number of threads currently validating a transaction for
+   * an optimistic commit, so that getValidatingTransaction() can
+   * skip the ThreadLocal lookup when there are none.</p>
+   */
+
+  private static final AtomicInteger validatingCount = new AtomicInteger();
+
+  /**
+   * <p>Returns the committed transaction that the current thread is
+   * logging on behalf of the DBLogPipeline, or null.</p>
+   *
+   * <p>By the time the DBLogPipeline gets to a transaction, its
+   * objects have been integrated into the DBStore and the DBSession
+   * that committed it may have moved on to another transaction.
+   * DBSession.viewDBObject() uses this to show the DBLog each
+   * object as the logged transaction left it, as it would have seen
+   * it if the transaction had been logged during commit.</p>
+   */
+
+  static DBEditSet getLoggingTransaction()
+  {
+    return loggingTransaction.get();
+  }
+
+  /**
+   * <p>Returns the transaction that the current thread is validating
+   * for an optimistic commit, or null.</p>
+   *
+   * <p>DBObjectBase and DBNameSpace use this to record the objects,
+   * bases, and namespace values that a transaction's validation
+   * looks at, however they are reached.</p>
+   */
+
+  static DBEditSet getValidatingTransaction()
+  {
+    if (validatingCount.get() == 0)
+      {
+        return null;
+      }
+
+    return validatingTransaction.get();
+  }
+
   /**
    * <p>Maps Invids to {@link arlut.csd.ganymede.server.DBEditObject
    * DBEditObject}s checked out in care of this transaction.</p>
@@ -264,6 +344,78 @@ public final class DBEditSet {
 
   private String comment = null;
 
+  /**
+   * <p>While an optimistic commit is validating this transaction
+   * without holding a write lock, this is the thread doing the
+   * validation.  Objects looked up through our DBSession by this
+   * thread are recorded in readObjects and readBases.</p>
+   */
+
+  private Thread readTracker = null;
+
+  /**
+   * <p>The committed version of each object read by our
+   * commitPhase1() hooks during an optimistic commit, keyed by Invid.
+   * A null value records that the object did not exist.</p>
+   */
+
+  private Map<Invid, DBObject> readObjects = null;
+
+  /**
+   * <p>The iteration set of each DBObjectBase scanned by a query
+   * during an optimistic commit's validation.</p>
+   */
+
+  private Map<DBObjectBase, DBIterationSet> readBases = null;
+
+  /**
+   * <p>For each DBNameSpace looked up during an optimistic commit's
+   * validation, the Invid of the committed object that held each
+   * value looked up.  A null Invid records that no committed object
+   * held the value.</p>
+   */
+
+  private Map<DBNameSpace, Map<Object, Invid>> readValues = null;
+
+  /**
+   * <p>True while worker threads are writing this transaction to our
+   * incremental sync channels.  See {@link
+   * arlut.csd.ganymede.server.DBEditSet#isWritingSyncChannels()
+   * isWritingSyncChannels()}.</p>
+   */
+
+  private volatile boolean writingSyncChannels = false;
+
+  /**
+   * <p>Log events generated during commit, collected by
+   * commit_logTransaction() to be written to the DBLog in one
+   * go.</p>
+   */
+
+  private List<DBLogEvent> commitLogEvents = null;
+
+  /**
+   * <p>Our place in the {@link arlut.csd.ganymede.server.DBLogPipeline
+   * DBLogPipeline}, reserved during commit if the ganymede.asynclog
+   * property is set.</p>
+   */
+
+  private DBLogPipeline.Ticket logTicket = null;
+
+  /**
+   * <p>The job that will log this transaction through logTicket, once
+   * our commit is complete.</p>
+   */
+
+  private Runnable logJob = null;
+
+  /**
+   * <p>A copy of this transaction's objects at the time of commit,
+   * kept for the DBLogPipeline until it has logged us.</p>
+   */
+
+  private volatile Map<Invid, DBEditObject> loggedObjects = null;
+
   /* -- */
 
   /**
@@ -430,7 +582,52 @@ public final class DBEditSet {
 
   public DBEditObject findObject(Invid invid)
   {
-    return this.objects.get(invid);
+    DBEditObject eObj = this.objects.get(invid);
+
+    if (eObj == null)
+      {
+        Map<Invid, DBEditObject> logged = this.loggedObjects;
+
+        if (logged != null)
+          {
+            eObj = logged.get(invid);
+          }
+      }
+
+    return eObj;
+  }
+
+  /**
+   * <p>Returns the version of an object that the DBLog should see
+   * while logging this committed transaction on a DBLogPipeline
+   * thread.  Objects that were in this transaction are seen as the
+   * transaction left them, if looked up through the DBSession that
+   * committed the transaction.  Otherwise, we just return obj, the
+   * committed version of the object.</p>
+   */
+
+  DBObject viewLoggedObject(DBSession viewer, DBObject obj, Invid invid, boolean getOriginal)
+  {
+    Map<Invid, DBEditObject> logged = this.loggedObjects;
+
+    if (viewer != this.session || logged == null)
+      {
+        return obj;
+      }
+
+    DBEditObject eObj = logged.get(invid);
+
+    if (eObj == null)
+      {
+        return obj;
+      }
+
+    if (getOriginal && eObj.getStatus() == ObjectStatus.DELETING)
+      {
+        return eObj.getOriginal();
+      }
+
+    return eObj;
   }
 
   /**
@@ -601,7 +798,7 @@ public final class DBEditSet {
                                       admin, adminName,
                                       objects, notifyList);
 
-    Ganymede.log.streamEvent(event, this);
+    commitLogEvents.add(event);
   }
 
   /**
@@ -615,7 +812,7 @@ public final class DBEditSet {
 
   private void streamLogEvent(DBLogEvent event)
   {
-    Ganymede.log.streamEvent(event, this);
+    commitLogEvents.add(event);
   }
 
   /**
@@ -632,7 +829,7 @@ public final class DBEditSet {
   private void streamLogMail(Vector<String> addresses, String subject, String message,
                              Invid admin, String adminName, Vector<Invid> objects)
   {
-    Ganymede.log.streamEvent(new DBLogEvent(addresses, subject, message, admin, adminName, objects), this);
+    commitLogEvents.add(new DBLogEvent(addresses, subject, message, admin, adminName, objects));
   }
 
   /**
@@ -645,7 +842,7 @@ public final class DBEditSet {
 
   private void streamLogMail(Vector<String> addresses, String subject, String message)
   {
-    Ganymede.log.streamEvent(new DBLogEvent(addresses, subject, message, null, null, null), this);
+    commitLogEvents.add(new DBLogEvent(addresses, subject, message, null, null, null));
   }
 
   /**
@@ -1020,13 +1217,31 @@ public final class DBEditSet {
     try
       {
         commit_run_precommit_hooks();
-        commit_lockBases(); // may block
-        commit_verifyNamespaces();
-        commit_handlePhase1();
+
+        if (Ganymede.optimisticCommitsProperty)
+          {
+            commit_validateOptimistically(); // may block
+          }
+        else
+          {
+            commit_lockBases(); // may block
+            commit_verifyNamespaces();
+            commit_handlePhase1();
+          }
+
         commit_recordModificationDates();
         commit_integrateChanges();
         releaseWriteLock();
 
+        if (logTicket != null)
+          {
+            // hand our log job off to the DBLogPipeline now that
+            // we're no longer holding any locks.  this may block if
+            // the pipeline is backed up.
+
+            Ganymede.log.getPipeline().submit(logTicket, logJob);
+          }
+
         return null;
       }
     catch (CommitNonFatalException ex)
@@ -1058,6 +1273,15 @@ public final class DBEditSet {
         // if we successfully released before, this is a no-op
 
         releaseWriteLock();
+
+        // if we reserved a place in the DBLogPipeline but didn't get
+        // as far as filling it, give it up so that later
+        // transactions don't wait on us
+
+        if (logTicket != null)
+          {
+            Ganymede.log.getPipeline().cancel(logTicket); // no-op if submitted
+          }
       }
   }
 
@@ -1135,11 +1359,290 @@ public final class DBEditSet {
     popCheckpoint(checkpointKey);
   }
 
+  /**
+   * <p>Validates this transaction for commit before taking the write
+   * lock, so that slow commitPhase1() hooks don't keep other
+   * transactions from committing into our bases while they run.</p>
+   *
+   * <p>We run the namespace verification and commitPhase1() checks
+   * against the committed state of the database, recording every
+   * object, base, and namespace value that our hooks look at,
+   * including lookups that found nothing.  Objects are recorded by
+   * DBObjectBase.getObject(), which DBSession, DBStore and the query
+   * engine all go through, bases by DBObjectBase's iteration methods
+   * and by queries, and namespace values by DBNameSpace's lookup
+   * methods.  We then take the write
+   * lock and check whether any of those objects or bases have been
+   * changed by a transaction that committed in the meantime.  If
+   * not, our validation still holds and we can proceed directly to
+   * integration.  If so, we back our objects out of commit mode and
+   * run the validation again, this time under the write lock, just
+   * as we would have without optimistic commits.</p>
+   *
+   * <p>Reads that don't go through those methods, such as a hook
+   * consulting its own cache of database state or a resource outside
+   * of the Ganymede database, are not recorded, and so a concurrent
+   * change to them won't cause revalidation.</p>
+   *
+   * <p>Throws a CommitNonFatalException if validation fails or if we
+   * can't get the lock.</p>
+   */
+
+  private final void commit_validateOptimistically() throws CommitNonFatalException
+  {
+    startReadTracking();
+
+    try
+      {
+        commit_verifyNamespaces();
+        commit_handlePhase1();
+      }
+    finally
+      {
+        stopReadTracking();
+      }
+
+    try
+      {
+        commit_lockBases(); // may block
+      }
+    catch (CommitNonFatalException ex)
+      {
+        commit_releasePhase1();
+        clearReadTracking();
+        throw ex;
+      }
+
+    boolean valid = commit_readsStillValid();
+
+    clearReadTracking();
+
+    if (valid)
+      {
+        return;
+      }
+
+    // "DBEditSet.commit(): transaction {0} read objects changed by a concurrent commit, revalidating under write lock"
+    Ganymede.debug(ts.l("commit_validateOptimistically.conflict", description));
+
+    commit_releasePhase1();
+    commit_verifyNamespaces();
+    commit_handlePhase1();
+  }
+
+  /**
+   * <p>Returns true if every object, base, and namespace value
+   * recorded during optimistic validation is unchanged in the
+   * committed database.  Since every commit replaces the DBObjects it
+   * changes and the iteration sets of the bases it touches, comparing
+   * references is enough for those.  For namespace values, we check
+   * that the same committed object (or none) still holds each
+   * value.</p>
+   */
+
+  private final boolean commit_readsStillValid()
+  {
+    synchronized (this.readObjects)
+      {
+        for (Map.Entry<Invid, DBObject> entry: this.readObjects.entrySet())
+          {
+            Invid invid = entry.getKey();
+            DBObjectBase base = dbStore.getObjectBase(invid.getType());
+
+            if (base == null || base.getObject(invid.getNum()) != entry.getValue())
+              {
+                return false;
+              }
+          }
+
+        for (Map.Entry<DBObjectBase, DBIterationSet> entry: this.readBases.entrySet())
+          {
+            if (entry.getKey().getIterationSnapshot() != entry.getValue())
+              {
+                return false;
+              }
+          }
+
+        for (Map.Entry<DBNameSpace, Map<Object, Invid>> entry: this.readValues.entrySet())
+          {
+            DBNameSpace namespace = entry.getKey();
+
+            for (Map.Entry<Object, Invid> value: entry.getValue().entrySet())
+              {
+                Invid holder = namespace.lookupCommittedInvid(value.getKey());
+
+                if (holder == null ? value.getValue() != null : !holder.equals(value.getValue()))
+                  {
+                    return false;
+                  }
+              }
+          }
+      }
+
+    return true;
+  }
+
+  /**
+   * <p>Takes all of our objects back out of commit mode after
+   * commit_handlePhase1() has succeeded, so that they can be run
+   * through it again or returned to the client for further
+   * editing.</p>
+   */
+
+  private final void commit_releasePhase1()
+  {
+    for (DBEditObject eObj: this.objects.values())
+      {
+        eObj.release(false); // unlock commit mode
+      }
+  }
+
+  private final void startReadTracking()
+  {
+    this.readObjects = Collections.synchronizedMap(new HashMap<Invid, DBObject>());
+    this.readBases = new HashMap<DBObjectBase, DBIterationSet>();
+    this.readValues = new HashMap<DBNameSpace, Map<Object, Invid>>();
+    this.readTracker = Thread.currentThread();
+
+    validatingTransaction.set(this);
+    validatingCount.incrementAndGet();
+  }
+
+  private final void stopReadTracking()
+  {
+    if (this.readTracker == null)
+      {
+        return;
+      }
+
+    this.readTracker = null;
+
+    validatingTransaction.remove();
+    validatingCount.decrementAndGet();
+  }
+
+  private final void clearReadTracking()
+  {
+    stopReadTracking();
+
+    this.readObjects = null;
+    this.readBases = null;
+    this.readValues = null;
+  }
+
+  /**
+   * <p>Called whenever an object is looked up from the committed
+   * database, so that an optimistic commit can record the version of
+   * the object that its validation saw.</p>
+   *
+   * @param invid The Invid of the object looked up
+   * @param obj The committed version of the object, or null if it
+   * did not exist
+   */
+
+  void noteRead(Invid invid, DBObject obj)
+  {
+    if (this.readTracker != Thread.currentThread())
+      {
+        return;
+      }
+
+    Map<Invid, DBObject> reads = this.readObjects;
+
+    synchronized (reads)
+      {
+        if (!reads.containsKey(invid))
+          {
+            reads.put(invid, obj);
+          }
+      }
+  }
+
+  /**
+   * <p>Called whenever a base's objects are iterated over, as by a
+   * query on behalf of our DBSession, so that an optimistic commit
+   * can detect that a concurrent commit changed the set of objects
+   * its validation saw.</p>
+   */
+
+  void noteScan(DBObjectBase base, DBIterationSet set)
+  {
+    if (this.readTracker != Thread.currentThread())
+      {
+        return;
+      }
+
+    Map<Invid, DBObject> reads = this.readObjects;
+
+    synchronized (reads)
+      {
+        if (!this.readBases.containsKey(base))
+          {
+            this.readBases.put(base, set);
+          }
+      }
+  }
+
+  /**
+   * <p>Called by a DBNameSpace whenever a value is looked up in it,
+   * so that an optimistic commit can detect that a concurrent commit
+   * claimed or released a value its validation looked for.</p>
+   *
+   * @param holder The Invid of the committed object holding value,
+   * or null if no committed object held it
+   */
+
+  void noteValueRead(DBNameSpace namespace, Object value, Invid holder)
+  {
+    if (this.readTracker != Thread.currentThread())
+      {
+        return;
+      }
+
+    Map<Invid, DBObject> reads = this.readObjects;
+
+    synchronized (reads)
+      {
+        Map<Object, Invid> values = this.readValues.get(namespace);
+
+        if (values == null)
+          {
+            values = new HashMap<Object, Invid>();
+            this.readValues.put(namespace, values);
+          }
+
+        if (!values.containsKey(value))
+          {
+            values.put(value, holder);
+          }
+      }
+  }
+
+  /**
+   * <p>Returns true if the current thread is validating this
+   * transaction for an optimistic commit, in which case every object
+   * it looks at must be looked up on this thread so that noteRead()
+   * can record it.</p>
+   */
+
+  boolean isTrackingReads()
+  {
+    return this.readTracker == Thread.currentThread();
+  }
+
   /**
    * <p>Obtain a write lock on all bases modified by this transaction.
    * This method may block indefinitely, waiting on other transactions
    * which are in the process of modifying the DBStore hashes.</p>
    *
+   * <p>If the ganymede.concurrentcommits property is set, the write
+   * lock is a shared one, which other committing transactions may
+   * hold on the same bases at the same time.  That's safe because
+   * the objects we are committing are checked out to us alone, and
+   * the namespace values we are committing are reserved to us alone,
+   * so two transactions that could commit together cannot change the
+   * same object or claim the same unique value.</p>
+   *
    * <p>Returns a List of DBObjectBases that we have locked if we
    * succeed.</p>
    *
@@ -1172,7 +1675,14 @@ public final class DBEditSet {
 
     try
       {
-        wLock = session.openWriteLock(baseSet); // wait for write lock *synchronized*
+        if (Ganymede.concurrentCommitsProperty)
+          {
+            wLock = session.openCommitLock(baseSet); // wait for shared write lock *synchronized*
+          }
+        else
+          {
+            wLock = session.openWriteLock(baseSet); // wait for write lock *synchronized*
+          }
       }
    catch (InterruptedException ex)
       {
@@ -1535,8 +2045,25 @@ public final class DBEditSet {
           }
 
         commit_finalizeTransaction();
+
+        // if we are logging asynchronously, we take our place in the
+        // DBLogPipeline while we still hold the journal monitor, so
+        // that transactions are logged in the order they were
+        // committed
+
+        if (Ganymede.log != null && Ganymede.log.getPipeline() != null)
+          {
+            logTicket = Ganymede.log.getPipeline().reserve(persistedTransaction.getTransactionNumber());
+          }
       }
 
+    // if the journal is doing group commits, our finalize record may
+    // still be waiting to be synced along with other transactions
+    // committing concurrently.  we wait for it outside of the journal
+    // monitor so that those other transactions can join our batch.
+
+    commit_awaitDurability();
+
     // we've successfully persisted the transaction, written the
     // transaction to the sync channels, and finalized the
     // transaction.. we can proceed
@@ -1553,11 +2080,21 @@ public final class DBEditSet {
 
         commit_handlePhase2();
         commit_logTransaction(fieldsTouched); // *sync* Ganymede.log
-        commit_replace_objects();
-        commit_updateNamespaces(); // *sync* over each namespace in Ganymede.db.nameSpaces
-        DBDeletionManager.releaseSession(session);   // *sync* static DBDeletionManager
-        Ganymede.db.aSymLinkTracker.commit(session); // *sync* Ganymede.db.aSymLinkTracker
-        commit_updateBases(fieldsTouched);
+
+        // if we are committing under a shared write lock, another
+        // transaction may be integrating into the same bases right
+        // now.  we hold dbStore.integrationLock while we put our
+        // objects in place and publish the new read view, so that
+        // no read view shows only some of a transaction's changes
+
+        synchronized (dbStore.integrationLock)
+          {
+            commit_replace_objects();
+            commit_updateNamespaces(); // *sync* over each namespace in Ganymede.db.nameSpaces
+            DBDeletionManager.releaseSession(session);   // *sync* static DBDeletionManager
+            Ganymede.db.aSymLinkTracker.commit(session); // *sync* Ganymede.db.aSymLinkTracker
+            commit_updateBases(fieldsTouched);
+          }
       }
     catch (Throwable ex)
       {
@@ -1621,6 +2158,7 @@ public final class DBEditSet {
   private final void commit_writeSyncChannels() throws CommitFatalException
   {
     DBEditObject[] objectList = getObjectList();
+    List<SyncRunner> incrementals = new ArrayList<SyncRunner>();
 
     try
       {
@@ -1628,31 +2166,29 @@ public final class DBEditSet {
           {
             SyncRunner sync = (SyncRunner) handle.task;
 
-            try
+            if (sync.isIncremental())
               {
-                if (sync.isIncremental())
-                  {
-                    sync.writeIncrementalSync(persistedTransaction, objectList, this);
-                  }
-                else if (sync.isFullState())
+                if (sync.isActive())
                   {
-                    sync.checkBuildNeeded(persistedTransaction, objectList, this);
+                    incrementals.add(sync);
                   }
               }
-            catch (java.io.FileNotFoundException in_ex)
+            else if (sync.isFullState())
               {
-                // "Couldn''t write transaction to sync channel.  Exception caught writing to sync channel."
-                // "Couldn''t write transaction to sync channel {0} due to a FileNotFoundException.
-                //
-                // This sync channel is configured to write to {1}, but this directory does not exist or is not writable.
-                //
-                // Transaction Cancelled."
-
-                throw new CommitFatalException(Ganymede.createErrorDialog(this.getGSession(),
-                                                                          ts.l("commit_writeSyncChannels.exception"),
-                                                                          ts.l("commit_writeSyncChannels.no_sync_found", sync.getName(), sync.getDirectory())));
+                sync.checkBuildNeeded(persistedTransaction, objectList, this);
               }
           }
+
+        writingSyncChannels = true;
+
+        try
+          {
+            commit_writeIncrementalSyncs(incrementals, objectList);
+          }
+        finally
+          {
+            writingSyncChannels = false;
+          }
       }
     catch (Throwable ex)
       {
@@ -1704,6 +2240,199 @@ public final class DBEditSet {
       }
   }
 
+  /**
+   * <p>This private helper method for commit_writeSyncChannels()
+   * writes the transaction to each of the given incremental sync
+   * channels, using the worker threads in {@link
+   * arlut.csd.ganymede.server.DBEditSet#getSyncPool() getSyncPool()}
+   * if there is more than one channel to write.</p>
+   *
+   * <p>We first build one FieldBook for each distinct {@link
+   * arlut.csd.ganymede.server.SyncRunner#getFieldBookKey() FieldBook
+   * key} among the channels, and then write all of the channels,
+   * each using the FieldBook for its key.  We wait for every channel
+   * to finish before returning or throwing, so that
+   * undoSyncChannels() never runs while a channel is still being
+   * written.</p>
+   */
+
+  private final void commit_writeIncrementalSyncs(List<SyncRunner> channels,
+                                                  final DBEditObject[] objectList) throws Exception
+  {
+    if (channels.size() == 0)
+      {
+        return;
+      }
+
+    Map<String, FieldBook> books = new HashMap<String, FieldBook>();
+    List<String> bookKeys = new ArrayList<String>();
+    List<SyncRunner> bookRunners = new ArrayList<SyncRunner>();
+    List<Callable<FieldBook>> bookTasks = new ArrayList<Callable<FieldBook>>();
+
+    for (final SyncRunner sync: channels)
+      {
+        String key = sync.getFieldBookKey();
+
+        if (bookKeys.contains(key))
+          {
+            continue;
+          }
+
+        bookKeys.add(key);
+        bookRunners.add(sync);
+        bookTasks.add(new Callable<FieldBook>() {
+            public FieldBook call()
+            {
+              return sync.createFieldBook(objectList);
+            }
+          });
+      }
+
+    List<FieldBook> results = runSyncTasks(bookTasks, bookRunners);
+
+    for (int i = 0; i < bookKeys.size(); i++)
+      {
+        books.put(bookKeys.get(i), results.get(i));
+      }
+
+    List<Callable<Object>> writeTasks = new ArrayList<Callable<Object>>();
+
+    for (final SyncRunner sync: channels)
+      {
+        final FieldBook book = books.get(sync.getFieldBookKey());
+
+        writeTasks.add(new Callable<Object>() {
+            public Object call() throws IOException
+            {
+              sync.writeIncrementalSync(persistedTransaction, DBEditSet.this, book);
+              return null;
+            }
+          });
+      }
+
+    runSyncTasks(writeTasks, channels);
+  }
+
+  /**
+   * <p>Runs tasks, one per sync channel in runners, on the sync
+   * channel worker pool, or directly if there is only one task or no
+   * pool.  Returns the results in order once all of the tasks have
+   * finished, or throws the exception thrown by the first failing
+   * task once all of the tasks have finished.</p>
+   */
+
+  private final <T> List<T> runSyncTasks(List<Callable<T>> tasks, List<SyncRunner> runners) throws Exception
+  {
+    List<T> results = new ArrayList<T>(tasks.size());
+    ExecutorService pool = getSyncPool();
+
+    if (pool == null || tasks.size() == 1)
+      {
+        for (int i = 0; i < tasks.size(); i++)
+          {
+            try
+              {
+                results.add(tasks.get(i).call());
+              }
+            catch (java.io.FileNotFoundException ex)
+              {
+                throw syncNotFound(runners.get(i));
+              }
+          }
+
+        return results;
+      }
+
+    List<Future<T>> futures = pool.invokeAll(tasks);
+
+    for (int i = 0; i < futures.size(); i++)
+      {
+        try
+          {
+            results.add(futures.get(i).get());
+          }
+        catch (ExecutionException ex)
+          {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof java.io.FileNotFoundException)
+              {
+                throw syncNotFound(runners.get(i));
+              }
+            else if (cause instanceof Exception)
+              {
+                throw (Exception) cause;
+              }
+            else if (cause instanceof Error)
+              {
+                throw (Error) cause;
+              }
+
+            throw new RuntimeException(cause);
+          }
+      }
+
+    return results;
+  }
+
+  private final CommitFatalException syncNotFound(SyncRunner sync)
+  {
+    // "Couldn''t write transaction to sync channel.  Exception caught writing to sync channel."
+    // "Couldn''t write transaction to sync channel {0} due to a FileNotFoundException.
+    //
+    // This sync channel is configured to write to {1}, but this directory does not exist or is not writable.
+    //
+    // Transaction Cancelled."
+
+    return new CommitFatalException(Ganymede.createErrorDialog(this.getGSession(),
+                                                               ts.l("commit_writeSyncChannels.exception"),
+                                                               ts.l("commit_writeSyncChannels.no_sync_found", sync.getName(), sync.getDirectory())));
+  }
+
+  /**
+   * <p>Returns true while this transaction's commit is writing to its
+   * incremental sync channels.</p>
+   *
+   * <p>The committing thread holds this transaction's DBSession
+   * monitor throughout commit, and the transaction's objects are
+   * locked in commit mode, so nothing in the transaction can change
+   * while this is true.  DBSession uses this to let sync channel
+   * worker threads look up objects in the transaction without trying
+   * to take the DBSession monitor that the committing thread is
+   * holding while it waits for them.</p>
+   */
+
+  boolean isWritingSyncChannels()
+  {
+    return writingSyncChannels;
+  }
+
+  /**
+   * <p>Returns the worker pool shared by all committing transactions
+   * for writing to incremental sync channels, or null if the
+   * ganymede.syncchannelthreads property is one or less.</p>
+   */
+
+  private static synchronized ExecutorService getSyncPool()
+  {
+    if (syncPool == null && Ganymede.syncChannelThreadsProperty > 1)
+      {
+        syncPool = Executors.newFixedThreadPool(Ganymede.syncChannelThreadsProperty, new ThreadFactory() {
+            private int count = 0;
+
+            public synchronized Thread newThread(Runnable r)
+            {
+              Thread thread = new Thread(r, "Ganymede Sync Channel Writer Thread " + (++count));
+              thread.setDaemon(true);
+
+              return thread;
+            }
+          });
+      }
+
+    return syncPool;
+  }
+
   /**
    * <p>This private helper method scrubs the sync channels of the
    * persistedTransaction, so that we can avoid having bits of the
@@ -1773,6 +2502,42 @@ public final class DBEditSet {
             Ganymede.debug(ts.l("commit_finalizeTransaction.badundo", Ganymede.stackTrace(ex)));
           }
 
+        persistedTransaction = null;
+
+        // "Couldn''t finalize transaction to journal.  IOException caught writing to journal."
+        // "Couldn''t finalize transaction to journal, the server may have run out of disk space.\n\n{0}"
+        throw new CommitFatalException(Ganymede.createErrorDialog(this.getGSession(),
+                                                                  ts.l("commit_finalizeTransaction.exception"),
+                                                                  ts.l("commit_finalizeTransaction.exception_text",
+                                                                       Ganymede.stackTrace(ex))));
+      }
+  }
+
+  /**
+   * <p>This private helper method for commit() waits until our
+   * finalized transaction has been synced to disk by the journal.
+   * If the journal is not in group commit mode, the transaction was
+   * synced by commit_finalizeTransaction(), and this method returns
+   * immediately.</p>
+   *
+   * <p>Will throw a CommitException if the journal was unable to
+   * make our transaction durable.</p>
+   */
+
+  private final void commit_awaitDurability() throws CommitFatalException
+  {
+    try
+      {
+        dbStore.journal.awaitDurable(persistedTransaction);
+      }
+    catch (IOException ex)
+      {
+        // the journal writer has already truncated our transaction
+        // out of the journal, so we just need to clear out the sync
+        // channels
+
+        undoSyncChannels();
+
         // "Couldn''t finalize transaction to journal.  IOException caught writing to journal."
         // "Couldn''t finalize transaction to journal, the server may have run out of disk space.\n\n{0}"
         throw new CommitFatalException(Ganymede.createErrorDialog(this.getGSession(),
@@ -2263,49 +3028,123 @@ public final class DBEditSet {
     // collect the list of invids that we know were touched in this
     // transaction for the start transaction log record
 
-    Vector<Invid> invids = new Vector<Invid>(this.objects.keySet());
+    final Vector<Invid> invids = new Vector<Invid>(this.objects.keySet());
+    final Invid logInvid = responsibleInvid;
+    final String logName = responsibleName;
+    final Date logTime = new Date();
+
+    // first collect any pre-recorded log events that we have
+    // accumulated during the user's session/transaction
+
+    commitLogEvents = new ArrayList<DBLogEvent>(logEvents);
 
-    synchronized (Ganymede.log)
+    // for garbage collection
+
+    logEvents.clear();
+    logEvents = null;
+
+    try
       {
-        try
-          {
-            Ganymede.log.startTransactionLog(invids, responsibleName, responsibleInvid, comment, this);
+        // then create log events describing the objects that are in
+        // this transaction at the time of commit.  we do this here
+        // whether or not we are logging asynchronously, as it is
+        // what fills in fieldsTouched for commit_updateBases()
 
-            // then transmit/log any pre-recorded log events that we
-            // have accumulated during the user's session/transaction
+        commit_log_events(fieldsTouched);
+      }
+    catch (Throwable ex)
+      {
+        // exceptions during logging aren't important enough to break a
+        // transaction commit in progress, but we do want to record any
+        // such
 
-            for (DBLogEvent event: logEvents)
-              {
-                streamLogEvent(event);
-              }
+        Ganymede.debug(Ganymede.stackTrace(ex));
+      }
 
-            // for garbage collection
+    Runnable job = new Runnable() {
+        public void run()
+        {
+          writeTransactionLog(invids, logName, logInvid, logTime);
+        }
+      };
 
-            logEvents.clear();
+    if (logTicket == null)
+      {
+        job.run();
+      }
+    else
+      {
+        // commit_replace_objects() is about to empty our objects
+        // map, so we keep a copy of it for the DBLogPipeline
+
+        loggedObjects = new HashMap<Invid, DBEditObject>(this.objects);
+        logJob = job;
+      }
+  }
+
+  /**
+   * <p>This method writes out the log events that commit_logTransaction()
+   * collected to the DBLog, and sends out any email that we need to
+   * send.</p>
+   *
+   * <p>If the ganymede.asynclog property is set, this method is run
+   * on the {@link arlut.csd.ganymede.server.DBLogPipeline
+   * DBLogPipeline}'s thread after our commit has completed, in
+   * transaction order.  Otherwise, it is run directly by
+   * commit_logTransaction().</p>
+   */
 
-            // then create and stream log events describing the
-            // objects that are in this transaction at the time of
-            // commit
+  private void writeTransactionLog(Vector<Invid> invids, String responsibleName,
+                                   Invid responsibleInvid, Date logTime)
+  {
+    boolean async = (logTicket != null);
 
-            commit_log_events(fieldsTouched);
+    /* -- */
 
-            // finish the transaction to disk and send out any email
-            // that we need to send
+    if (async)
+      {
+        loggingTransaction.set(this);
+      }
 
-            Ganymede.log.endTransactionLog(invids, responsibleName, responsibleInvid, this);
-          }
-        catch (Throwable ex)
+    try
+      {
+        synchronized (Ganymede.log)
           {
-            // exceptions during logging aren't important enough to break a
-            // transaction commit in progress, but we do want to record any
-            // such
+            try
+              {
+                Ganymede.log.startTransactionLog(invids, responsibleName, responsibleInvid, comment, this, logTime);
 
-            Ganymede.debug(Ganymede.stackTrace(ex));
+                for (DBLogEvent event: commitLogEvents)
+                  {
+                    Ganymede.log.streamEvent(event, this);
+                  }
+
+                // finish the transaction to disk and send out any
+                // email that we need to send
+
+                Ganymede.log.endTransactionLog(invids, responsibleName, responsibleInvid, this);
+              }
+            catch (Throwable ex)
+              {
+                // exceptions during logging aren't important enough
+                // to break a transaction commit in progress, but we
+                // do want to record any such
+
+                Ganymede.debug(Ganymede.stackTrace(ex));
+              }
+            finally
+              {
+                commitLogEvents = null;
+                Ganymede.log.cleanupTransaction();
+              }
           }
-        finally
+      }
+    finally
+      {
+        if (async)
           {
-            logEvents = null;
-            Ganymede.log.cleanupTransaction();
+            loggingTransaction.remove();
+            loggedObjects = null;
           }
       }
   }
@@ -2446,22 +3285,18 @@ public final class DBEditSet {
   {
     for (DBObjectBase base: this.basesModified)
       {
-        base.updateTimeStamp();
-
-        // and, very important, update the base's snapshot vector
-        // so that any new queries that are issued will proceed
-        // against the new state of objects in this base
+        // very important, update the base's snapshot vector so that
+        // any new queries that are issued will proceed against the
+        // new state of objects in this base
 
         base.updateIterationSet();
       }
 
-    // And in addition to updating the time stamps on the object
-    // bases, update the time stamps on each field.
+    // then publish a new read view with all of our bases' new
+    // snapshots swapped in at once.  publishView() also updates the
+    // time stamps on the bases and on each field we touched.
 
-    for (DBObjectBaseField fieldDef: fieldsTouched)
-      {
-        fieldDef.updateTimeStamp();
-      }
+    dbStore.publishView(this.basesModified, fieldsTouched);
   }
 
   /**
@@ -2474,13 +3309,15 @@ public final class DBEditSet {
   {
     // if we are called while we are waiting on a write lock in order
     // to commit() on another thread, try to kill it off.  We
-    // synchronize on Ganymede.db.lockSync here because we are using
-    // that as a monitor for all lock operations, and we need the
+    // hold the Ganymede.db.lockSync mutex here because we are using
+    // that to guard all lock operations, and we need the
     // wLock.inEstablish check to be sync'ed so that we don't force an
     // abort after we have gotten our lock established and are busy
     // mucking with the server's DBObjectTables.
 
-    synchronized (Ganymede.db.lockSync)
+    Ganymede.db.lockSync.lock();
+
+    try
       {
         if (wLock != null)
           {
@@ -2492,6 +3329,10 @@ public final class DBEditSet {
             wLock.abort();
           }
       }
+    finally
+      {
+        Ganymede.db.lockSync.unlock();
+      }
 
     release();
 
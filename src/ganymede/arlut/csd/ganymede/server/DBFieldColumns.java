@@ -0,0 +1,486 @@
+/*
+
+   DBFieldColumns.java
+
+   Packed columnar storage for the fields of loaded DBObjects.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import arlut.csd.ganymede.common.FieldType;
+import arlut.csd.ganymede.common.Invid;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                  DBFieldColumns
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>DBFieldColumns is a compact, read-only representation of the
+ * fields of the {@link arlut.csd.ganymede.server.DBObject DBObjects}
+ * loaded into a {@link arlut.csd.ganymede.server.DBObjectBase
+ * DBObjectBase} from ganymede.db.</p>
+ *
+ * <p>Ordinarily, each DBObject holds an array of {@link
+ * arlut.csd.ganymede.server.DBField DBField} objects, each with its
+ * own owner pointer, field code, and boxed value.  For a large object
+ * base, that per-field overhead dominates the heap.  When the
+ * ganymede.compactobjects property is set, DBObjectBase hands the
+ * objects it has loaded to {@link #compact(java.util.List)}, which
+ * copies the values of their scalar boolean, numeric, float, date,
+ * invid, and string fields into one packed column per field
+ * definition, and has each object drop its DBField array in favor
+ * of a row number in the columns.  Fields of other types, and vector
+ * fields, are held in their columns as the DBField objects
+ * themselves.</p>
+ *
+ * <p>A compacted DBObject can answer simple value lookups like
+ * {@link arlut.csd.ganymede.server.DBObject#getFieldValueLocal(short)
+ * getFieldValueLocal()} and {@link
+ * arlut.csd.ganymede.server.DBObject#getLabel() getLabel()} straight
+ * from the columns.  Query matching, sorting, and field indexing
+ * read its fields through {@link
+ * arlut.csd.ganymede.server.DBObject#peekField(short) peekField()},
+ * which builds a temporary DBField from the columns without keeping
+ * it.  Its DBFields are only materialized for good when something
+ * asks for the fields themselves, as when a session views the
+ * object or checks it out for editing.</p>
+ *
+ * <p>Committed DBObjects are never modified, and a DBFieldColumns is
+ * never modified once it is built, so it needs no
+ * synchronization.  Objects committed after the server starts are
+ * ordinary DBObjects.  The rows of the objects they replace are not
+ * reclaimed until every object in the columns has been replaced, at
+ * which point the columns themselves become garbage.</p>
+ */
+
+final class DBFieldColumns implements FieldType {
+
+  /**
+   * <p>Column kind for fields held as DBField objects.</p>
+   */
+
+  private static final short FIELD_OBJECTS = -1;
+
+  /**
+   * <p>Compacts the given objects, which must all belong to the same
+   * DBObjectBase and must not yet be visible to any other thread.
+   * Returns the DBFieldColumns now holding their fields, or null if
+   * there were no objects to compact.</p>
+   */
+
+  static DBFieldColumns compact(List<DBObject> objects)
+  {
+    if (objects.size() == 0)
+      {
+        return null;
+      }
+
+    DBFieldColumns columns = new DBFieldColumns(objects);
+
+    for (int row = 0; row < objects.size(); row++)
+      {
+        objects.get(row).setColumns(columns, row);
+      }
+
+    return columns;
+  }
+
+  // ---
+
+  /**
+   * <p>The ids of the fields we have columns for, in ascending
+   * order.</p>
+   */
+
+  private final short[] ids;
+
+  private final Column[] columns;
+
+  private final int rows;
+
+  /* -- */
+
+  private DBFieldColumns(List<DBObject> objects)
+  {
+    this.rows = objects.size();
+
+    // find all of the fields defined in any of the objects, in
+    // field id order
+
+    DBObjectBase base = objects.get(0).getBase();
+    List<Column> tmpColumns = new ArrayList<Column>();
+
+    for (DBObjectBaseField fieldDef: base.getFieldsInFieldOrder())
+      {
+        short id = fieldDef.getID();
+        Column column = null;
+
+        for (int row = 0; row < rows; row++)
+          {
+            DBField field = objects.get(row).getField(id);
+
+            if (field == null || !field.isDefined())
+              {
+                continue;
+              }
+
+            if (column == null)
+              {
+                column = new Column(id, fieldDef.isArray() ? FIELD_OBJECTS : fieldDef.getType(), rows);
+                tmpColumns.add(column);
+              }
+
+            column.set(row, field);
+          }
+      }
+
+    this.columns = tmpColumns.toArray(new Column[tmpColumns.size()]);
+    this.ids = new short[columns.length];
+
+    for (int i = 0; i < columns.length; i++)
+      {
+        ids[i] = columns[i].id;
+      }
+  }
+
+  /**
+   * <p>Returns a new array of DBFields for the given row, owned by
+   * owner.</p>
+   */
+
+  DBField[] materialize(DBObject owner, int row)
+  {
+    int count = 0;
+
+    for (Column column: columns)
+      {
+        if (column.isDefined(row))
+          {
+            count++;
+          }
+      }
+
+    DBField[] result = new DBField[count];
+    int i = 0;
+
+    for (Column column: columns)
+      {
+        if (column.isDefined(row))
+          {
+            result[i++] = column.getField(owner, row);
+          }
+      }
+
+    return result;
+  }
+
+  /**
+   * <p>Returns a DBField holding the value of the given field id in
+   * the given row, owned by owner, or null if the row has no value
+   * for the field.  Packed values are copied into a new DBField,
+   * which the caller may use for reading and then let go of.</p>
+   */
+
+  DBField getField(DBObject owner, short id, int row)
+  {
+    int index = java.util.Arrays.binarySearch(ids, id);
+
+    if (index < 0 || !columns[index].isDefined(row))
+      {
+        return null;
+      }
+
+    return columns[index].getField(owner, row);
+  }
+
+  /**
+   * <p>Returns true if any object in these columns has a value for
+   * the given field id.</p>
+   */
+
+  boolean hasColumn(short id)
+  {
+    return java.util.Arrays.binarySearch(ids, id) >= 0;
+  }
+
+  /**
+   * <p>Returns true if the values of the given field id are held in
+   * packed form, so that {@link #getValue(short, int)} can return
+   * them without materializing a DBField.</p>
+   */
+
+  boolean isPacked(short id)
+  {
+    int index = java.util.Arrays.binarySearch(ids, id);
+
+    return index >= 0 && columns[index].kind != FIELD_OBJECTS;
+  }
+
+  /**
+   * <p>Returns true if the values of the given field id are held in
+   * packed form as Strings.</p>
+   */
+
+  boolean isPackedString(short id)
+  {
+    int index = java.util.Arrays.binarySearch(ids, id);
+
+    return index >= 0 && columns[index].kind == STRING;
+  }
+
+  /**
+   * <p>Returns true if the given row has a defined value for the
+   * given field id.</p>
+   */
+
+  boolean isDefined(short id, int row)
+  {
+    int index = java.util.Arrays.binarySearch(ids, id);
+
+    return index >= 0 && columns[index].isDefined(row);
+  }
+
+  /**
+   * <p>Returns the value of the given packed field id in the given
+   * row, as DBField.getValueLocal() would return it, or null if the
+   * row has no value for the field.</p>
+   */
+
+  Object getValue(short id, int row)
+  {
+    int index = java.util.Arrays.binarySearch(ids, id);
+
+    if (index < 0 || !columns[index].isDefined(row))
+      {
+        return null;
+      }
+
+    return columns[index].getValue(row);
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                         Column
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>The values of a single field, one row per object.  Only the
+   * array needed for the column's kind is allocated.</p>
+   */
+
+  private static final class Column {
+
+    final short id;
+    final short kind;
+
+    /**
+     * <p>One bit per row, set if the row has a value.</p>
+     */
+
+    final long[] defined;
+
+    /**
+     * <p>For BOOLEAN columns, one bit per row.</p>
+     */
+
+    long[] bits;
+
+    /**
+     * <p>For NUMERIC columns, the values.  For INVID columns, the
+     * object numbers.</p>
+     */
+
+    int[] ints;
+
+    /**
+     * <p>For INVID columns, the object types.</p>
+     */
+
+    short[] shorts;
+
+    /**
+     * <p>For DATE columns, the millisecond times.  For FLOAT columns,
+     * the raw bits of the doubles.</p>
+     */
+
+    long[] longs;
+
+    /**
+     * <p>For STRING columns, the Strings.  For FIELD_OBJECTS columns,
+     * the DBFields.</p>
+     */
+
+    Object[] objects;
+
+    Column(short id, short kind, int rows)
+    {
+      this.id = id;
+      this.defined = new long[(rows + 63) >>> 6];
+
+      switch (kind)
+        {
+        case BOOLEAN:
+          bits = new long[defined.length];
+          break;
+
+        case NUMERIC:
+          ints = new int[rows];
+          break;
+
+        case INVID:
+          ints = new int[rows];
+          shorts = new short[rows];
+          break;
+
+        case DATE:
+        case FLOAT:
+          longs = new long[rows];
+          break;
+
+        case STRING:
+          objects = new Object[rows];
+          break;
+
+        default:
+          kind = FIELD_OBJECTS;
+          objects = new Object[rows];
+        }
+
+      this.kind = kind;
+    }
+
+    boolean isDefined(int row)
+    {
+      return (defined[row >>> 6] & (1L << row)) != 0;
+    }
+
+    void set(int row, DBField field)
+    {
+      defined[row >>> 6] |= (1L << row);
+
+      switch (kind)
+        {
+        case BOOLEAN:
+          if (((Boolean) field.value).booleanValue())
+            {
+              bits[row >>> 6] |= (1L << row);
+            }
+          break;
+
+        case NUMERIC:
+          ints[row] = ((Integer) field.value).intValue();
+          break;
+
+        case INVID:
+          Invid invid = (Invid) field.value;
+          shorts[row] = invid.getType();
+          ints[row] = invid.getNum();
+          break;
+
+        case DATE:
+          longs[row] = ((Date) field.value).getTime();
+          break;
+
+        case FLOAT:
+          longs[row] = Double.doubleToRawLongBits(((Double) field.value).doubleValue());
+          break;
+
+        case STRING:
+          objects[row] = field.value;
+          break;
+
+        default:
+          objects[row] = field;
+        }
+    }
+
+    Object getValue(int row)
+    {
+      switch (kind)
+        {
+        case BOOLEAN:
+          return Boolean.valueOf((bits[row >>> 6] & (1L << row)) != 0);
+
+        case NUMERIC:
+          return Integer.valueOf(ints[row]);
+
+        case INVID:
+          return Invid.createInvid(shorts[row], ints[row]);
+
+        case DATE:
+          return new Date(longs[row]);
+
+        case FLOAT:
+          return Double.valueOf(Double.longBitsToDouble(longs[row]));
+
+        case STRING:
+          return objects[row];
+        }
+
+      throw new IllegalStateException();
+    }
+
+    DBField getField(DBObject owner, int row)
+    {
+      if (kind == FIELD_OBJECTS)
+        {
+          // these are the fields the object was loaded with, which
+          // are already owned by it
+
+          return (DBField) objects[row];
+        }
+
+      DBField field = DBField.createTypedField(owner, owner.getFieldDef(id));
+      field.value = getValue(row);
+
+      return field;
+    }
+  }
+}
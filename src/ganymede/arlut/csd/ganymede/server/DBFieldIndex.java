@@ -0,0 +1,648 @@
+/*
+
+   DBFieldIndex.java
+
+   Secondary index on the values of a DBObjectBaseField.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import arlut.csd.ganymede.common.Invid;
+import arlut.csd.ganymede.common.QueryDataNode;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                    DBFieldIndex
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>A secondary index on the values held in a particular {@link
+ * arlut.csd.ganymede.server.DBObjectBaseField DBObjectBaseField},
+ * mapping each value to the ids of the objects in the base that hold
+ * it.  Fields are indexed when their definition in the schema is
+ * marked as indexed.</p>
+ *
+ * <p>String and Invid fields get a hash index, which can answer
+ * EQUALS tests.  Numeric, float and date fields get an ordered index,
+ * which can also answer LESS, LESSEQ, GREAT and GREATEQ tests.  A
+ * vector field indexes each of its values separately, so that an
+ * index lookup finds any object containing the value.</p>
+ *
+ * <p>Each DBFieldIndex reflects exactly one {@link
+ * arlut.csd.ganymede.server.DBIterationSet DBIterationSet} of its
+ * {@link arlut.csd.ganymede.server.DBObjectBase DBObjectBase}.  The
+ * DBObjectBase brings it forward in updateIterationSet(), applying
+ * the objects changed by each commit at the same time as it brings
+ * the iteration set forward, and rebuilds it from scratch when the
+ * database is loaded or the schema is edited.  {@link
+ * #lookup(byte,Object,DBIterationSet) lookup()} will only answer for
+ * the iteration set the index currently reflects, so a query
+ * iterating over an older {@link
+ * arlut.csd.ganymede.server.DBStoreView DBStoreView} falls back to
+ * scanning.</p>
+ *
+ * <p>The ids returned by an index lookup are only candidates.  The
+ * {@link arlut.csd.ganymede.server.DBQueryEngine DBQueryEngine}
+ * still runs each candidate through {@link
+ * arlut.csd.ganymede.server.DBQueryHandler DBQueryHandler}, which
+ * takes care of field permissions and of objects being edited in the
+ * querying session's transaction.</p>
+ */
+
+final class DBFieldIndex {
+
+  /**
+   * <p>The id of the field we are indexing.</p>
+   */
+
+  private final short fieldID;
+
+  /**
+   * <p>The type of the field we are indexing, from {@link
+   * arlut.csd.ganymede.common.FieldType FieldType}.</p>
+   */
+
+  private final short fieldType;
+
+  /**
+   * <p>Maps each value held in the field to the ids of the objects
+   * holding it.  A TreeMap if the index is ordered, else a
+   * HashMap.</p>
+   */
+
+  private final Map<Object, IDList> map;
+
+  /**
+   * <p>The DBObjectBase iteration set that this index currently
+   * reflects, or null if the index has not been built.</p>
+   */
+
+  private DBIterationSet snapshot = null;
+
+  /* -- */
+
+  DBFieldIndex(DBObjectBaseField fieldDef)
+  {
+    this.fieldID = fieldDef.getID();
+    this.fieldType = fieldDef.getType();
+
+    if (isOrdered(fieldDef))
+      {
+        this.map = new TreeMap<Object, IDList>();
+      }
+    else
+      {
+        this.map = new HashMap<Object, IDList>();
+      }
+  }
+
+  /**
+   * <p>Returns true if fieldDef is of a type that we can index.</p>
+   */
+
+  static boolean isIndexable(DBObjectBaseField fieldDef)
+  {
+    return fieldDef.isString() || fieldDef.isInvid() || isOrdered(fieldDef);
+  }
+
+  /**
+   * <p>Returns true if fieldDef would be given an ordered index.</p>
+   */
+
+  static boolean isOrdered(DBObjectBaseField fieldDef)
+  {
+    return fieldDef.isNumeric() || fieldDef.isFloat() || fieldDef.isDate();
+  }
+
+  /**
+   * <p>Returns true if this index can answer range comparisons.</p>
+   */
+
+  boolean isOrdered()
+  {
+    return map instanceof TreeMap;
+  }
+
+  /**
+   * <p>Returns the number of distinct values held in this index.</p>
+   */
+
+  synchronized int size()
+  {
+    return map.size();
+  }
+
+  /**
+   * <p>Rebuilds this index from scratch to reflect set.</p>
+   */
+
+  synchronized void rebuild(DBIterationSet set)
+  {
+    map.clear();
+
+    for (DBObject obj: set)
+      {
+        add(obj);
+      }
+
+    snapshot = set;
+  }
+
+  /**
+   * <p>Brings this index forward from oldSet to newSet.</p>
+   *
+   * <p>If changedIDs is not null and this index currently reflects
+   * oldSet, only the objects with the given ids are reindexed.
+   * Otherwise, the index is rebuilt from newSet.</p>
+   */
+
+  synchronized void update(DBIterationSet oldSet, DBIterationSet newSet, Collection<Integer> changedIDs)
+  {
+    if (snapshot == newSet)
+      {
+        return;
+      }
+
+    if (changedIDs == null || snapshot == null || snapshot != oldSet)
+      {
+        rebuild(newSet);
+        return;
+      }
+
+    for (Integer id: changedIDs)
+      {
+        DBObject oldObj = oldSet.getByID(id.intValue());
+        DBObject newObj = newSet.getByID(id.intValue());
+
+        if (oldObj == newObj)
+          {
+            continue;
+          }
+
+        if (oldObj != null)
+          {
+            remove(oldObj);
+          }
+
+        if (newObj != null)
+          {
+            add(newObj);
+          }
+      }
+
+    snapshot = newSet;
+  }
+
+  /**
+   * <p>Returns the ids, in ascending order, of the objects in set
+   * whose indexed field might satisfy comparator against value, or
+   * null if this index can't answer the comparison, or if set is not
+   * the iteration set that this index currently reflects.</p>
+   */
+
+  synchronized int[] lookup(byte comparator, Object value, DBIterationSet set)
+  {
+    if (set != snapshot)
+      {
+        return null;
+      }
+
+    Object key = queryKey(value);
+
+    if (key == null)
+      {
+        return null;
+      }
+
+    Collection<IDList> matches = find(comparator, key);
+
+    if (matches == null)
+      {
+        return null;
+      }
+
+    IDList result = new IDList();
+
+    for (IDList ids: matches)
+      {
+        result.addAll(ids);
+      }
+
+    return result.toArray();
+  }
+
+  /**
+   * <p>Returns an estimate of the number of objects whose indexed
+   * field satisfies comparator against value, or -1 if this index
+   * can't answer the comparison.  Used by {@link
+   * arlut.csd.ganymede.server.DBQueryPlan DBQueryPlan} to choose
+   * between access paths.</p>
+   */
+
+  synchronized int estimate(byte comparator, Object value)
+  {
+    Object key = queryKey(value);
+
+    if (key == null)
+      {
+        return -1;
+      }
+
+    Collection<IDList> matches = find(comparator, key);
+
+    if (matches == null)
+      {
+        return -1;
+      }
+
+    int count = 0;
+
+    for (IDList ids: matches)
+      {
+        count += ids.size();
+      }
+
+    return count;
+  }
+
+  /**
+   * <p>Returns the id lists for the keys satisfying comparator against
+   * key, or null if this index can't answer the comparison.</p>
+   */
+
+  private Collection<IDList> find(byte comparator, Object key)
+  {
+    if (comparator == QueryDataNode.EQUALS)
+      {
+        IDList ids = map.get(key);
+
+        if (ids == null)
+          {
+            return Collections.<IDList>emptyList();
+          }
+
+        return Collections.singletonList(ids);
+      }
+
+    if (!isOrdered())
+      {
+        return null;
+      }
+
+    NavigableMap<Object, IDList> ordered = (TreeMap<Object, IDList>) map;
+
+    switch (comparator)
+      {
+      case QueryDataNode.LESS:
+        return ordered.headMap(key, false).values();
+
+      case QueryDataNode.LESSEQ:
+        return ordered.headMap(key, true).values();
+
+      case QueryDataNode.GREAT:
+        return ordered.tailMap(key, false).values();
+
+      case QueryDataNode.GREATEQ:
+        return ordered.tailMap(key, true).values();
+      }
+
+    return null;
+  }
+
+  /**
+   * <p>Returns the ids found in either of two ascending id
+   * arrays.</p>
+   */
+
+  static int[] union(int[] ids1, int[] ids2)
+  {
+    int[] result = new int[ids1.length + ids2.length];
+    int i = 0, j = 0, k = 0;
+
+    while (i < ids1.length || j < ids2.length)
+      {
+        if (j == ids2.length || (i < ids1.length && ids1[i] < ids2[j]))
+          {
+            result[k++] = ids1[i++];
+          }
+        else if (i == ids1.length || ids2[j] < ids1[i])
+          {
+            result[k++] = ids2[j++];
+          }
+        else
+          {
+            result[k++] = ids1[i];
+            i++;
+            j++;
+          }
+      }
+
+    return Arrays.copyOf(result, k);
+  }
+
+  /**
+   * <p>Indexes the values of our field in obj.</p>
+   */
+
+  private void add(DBObject obj)
+  {
+    Object value = getValue(obj);
+
+    if (value == null)
+      {
+        return;
+      }
+
+    if (value instanceof Vector)
+      {
+        for (Object element: (Vector) value)
+          {
+            add(element, obj.getID());
+          }
+      }
+    else
+      {
+        add(value, obj.getID());
+      }
+  }
+
+  private void add(Object value, int id)
+  {
+    Object key = indexKey(value);
+
+    if (key == null)
+      {
+        return;
+      }
+
+    IDList ids = map.get(key);
+
+    if (ids == null)
+      {
+        ids = new IDList();
+        map.put(key, ids);
+      }
+
+    ids.add(id);
+  }
+
+  /**
+   * <p>Removes the values of our field in obj from this index.</p>
+   */
+
+  private void remove(DBObject obj)
+  {
+    Object value = getValue(obj);
+
+    if (value == null)
+      {
+        return;
+      }
+
+    if (value instanceof Vector)
+      {
+        for (Object element: (Vector) value)
+          {
+            remove(element, obj.getID());
+          }
+      }
+    else
+      {
+        remove(value, obj.getID());
+      }
+  }
+
+  private void remove(Object value, int id)
+  {
+    Object key = indexKey(value);
+
+    if (key == null)
+      {
+        return;
+      }
+
+    IDList ids = map.get(key);
+
+    if (ids != null && ids.remove(id) && ids.isEmpty())
+      {
+        map.remove(key);
+      }
+  }
+
+  /**
+   * <p>Returns the value of our field in obj, a Vector of values if
+   * our field is a vector field, or null if the field is not
+   * defined.</p>
+   */
+
+  private Object getValue(DBObject obj)
+  {
+    DBField field = obj.peekField(fieldID);
+
+    if (field == null || !field.isDefined())
+      {
+        return null;
+      }
+
+    if (field.isVector())
+      {
+        return field.getValuesLocal();
+      }
+
+    return field.getValueLocal();
+  }
+
+  /**
+   * <p>Returns the key that we store value under.  Dates are stored
+   * as their millisecond time, since Date objects are mutable.</p>
+   */
+
+  private Object indexKey(Object value)
+  {
+    if (value instanceof Date)
+      {
+        return Long.valueOf(((Date) value).getTime());
+      }
+
+    return value;
+  }
+
+  /**
+   * <p>Returns the key to look up a query value under, or null if
+   * value is not of the type that DBQueryHandler would compare
+   * directly against the values of our field.</p>
+   */
+
+  private Object queryKey(Object value)
+  {
+    switch (fieldType)
+      {
+      case DBObjectBaseField.STRING:
+        return (value instanceof String) ? value : null;
+
+      case DBObjectBaseField.INVID:
+        return (value instanceof Invid) ? value : null;
+
+      case DBObjectBaseField.NUMERIC:
+        return (value instanceof Integer) ? value : null;
+
+      case DBObjectBaseField.FLOAT:
+        return (value instanceof Double) ? value : null;
+
+      case DBObjectBaseField.DATE:
+        return (value instanceof Date) ? indexKey(value) : null;
+      }
+
+    return null;
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                     inner class
+                                                                          IDList
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>The ids of the objects holding a particular value.  Ids are
+   * appended as they are added, and sorted when the list is next
+   * read.</p>
+   */
+
+  static final class IDList {
+
+    private int[] ids = new int[1];
+    private int size = 0;
+    private boolean sorted = true;
+
+    /* -- */
+
+    void add(int id)
+    {
+      if (size == ids.length)
+        {
+          ids = Arrays.copyOf(ids, size * 2);
+        }
+
+      if (size > 0 && ids[size - 1] >= id)
+        {
+          sorted = false;
+        }
+
+      ids[size++] = id;
+    }
+
+    void addAll(IDList other)
+    {
+      for (int i = 0; i < other.size; i++)
+        {
+          add(other.ids[i]);
+        }
+    }
+
+    boolean remove(int id)
+    {
+      for (int i = 0; i < size; i++)
+        {
+          if (ids[i] == id)
+            {
+              System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+              size--;
+
+              return true;
+            }
+        }
+
+      return false;
+    }
+
+    boolean isEmpty()
+    {
+      return size == 0;
+    }
+
+    int size()
+    {
+      return size;
+    }
+
+    /**
+     * <p>Returns the ids in this list in ascending order, without
+     * duplicates.</p>
+     */
+
+    int[] toArray()
+    {
+      if (!sorted)
+        {
+          Arrays.sort(ids, 0, size);
+
+          int k = 0;
+
+          for (int i = 0; i < size; i++)
+            {
+              if (k == 0 || ids[k - 1] != ids[i])
+                {
+                  ids[k++] = ids[i];
+                }
+            }
+
+          size = k;
+          sorted = true;
+        }
+
+      return Arrays.copyOf(ids, size);
+    }
+  }
+}
@@ -0,0 +1,470 @@
+/*
+
+   DBIterationSet.java
+
+   Persistent, structurally shared snapshot of the objects in a DBObjectBase.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                  DBIterationSet
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>An immutable List of the DBObjects held in a {@link
+ * arlut.csd.ganymede.server.DBObjectBase DBObjectBase} at a point in
+ * time, used as the base's iteration set.</p>
+ *
+ * <p>A DBIterationSet is a 32-way radix trie keyed on object id.
+ * Since object ids are allocated densely from 1, the trie is nearly
+ * full and only a few levels deep.  {@link #with(DBObject) with()}
+ * and {@link #without(int) without()} return a new DBIterationSet
+ * that shares every node with this one except the few along the
+ * path to the changed id.  This lets a commit that touches k objects
+ * in a base of N produce the base's next iteration set in O(k log N),
+ * rather than copying the whole object table.  Queries that grabbed
+ * the previous set keep iterating over it undisturbed.</p>
+ *
+ * <p>Iteration runs in object id order.  Each trie node records the
+ * number of objects beneath it, so size() is constant time and
+ * positional get() is logarithmic.</p>
+ */
+
+final class DBIterationSet extends AbstractList<DBObject> {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  static final DBIterationSet EMPTY = new DBIterationSet(null, 0, 0);
+
+  /**
+   * <p>Builds a DBIterationSet holding objects.  The trie is built in
+   * place, without the path copying that with() does.</p>
+   */
+
+  static DBIterationSet build(Collection<DBObject> objects)
+  {
+    Node root = null;
+    int shift = 0;
+    int size = 0;
+
+    for (DBObject obj: objects)
+      {
+        int id = checkID(obj.getID());
+
+        while ((id >>> shift) >= WIDTH)
+          {
+            if (root != null)
+              {
+                Node newRoot = new Node();
+                newRoot.slots[0] = root;
+                newRoot.count = root.count;
+                root = newRoot;
+              }
+
+            shift += BITS;
+          }
+
+        if (lookup(root, shift, id) == null)
+          {
+            root = assoc(root, shift, id, obj, 1, true);
+            size++;
+          }
+        else
+          {
+            root = assoc(root, shift, id, obj, 0, true);
+          }
+      }
+
+    return new DBIterationSet(root, shift, size);
+  }
+
+  // ---
+
+  private final Node root;
+
+  /**
+   * <p>The bit shift used to index the root node.  Leaf nodes, which
+   * hold the DBObjects themselves, are indexed with a shift of
+   * 0.</p>
+   */
+
+  private final int shift;
+  private final int size;
+
+  /* -- */
+
+  private DBIterationSet(Node root, int shift, int size)
+  {
+    this.root = root;
+    this.shift = shift;
+    this.size = size;
+  }
+
+  /**
+   * <p>Returns the object with the given id, or null if there is no
+   * such object in this set.</p>
+   */
+
+  public DBObject getByID(int id)
+  {
+    if (id < 0)
+      {
+        return null;
+      }
+
+    return lookup(root, shift, id);
+  }
+
+  /**
+   * <p>Returns a DBIterationSet in which obj replaces any object with
+   * the same id.</p>
+   */
+
+  public DBIterationSet with(DBObject obj)
+  {
+    int id = checkID(obj.getID());
+    DBObject old = getByID(id);
+
+    if (old == obj)
+      {
+        return this;
+      }
+
+    Node newRoot = this.root;
+    int newShift = this.shift;
+
+    while ((id >>> newShift) >= WIDTH)
+      {
+        if (newRoot != null)
+          {
+            Node grown = new Node();
+            grown.slots[0] = newRoot;
+            grown.count = newRoot.count;
+            newRoot = grown;
+          }
+
+        newShift += BITS;
+      }
+
+    int delta = (old == null) ? 1 : 0;
+
+    return new DBIterationSet(assoc(newRoot, newShift, id, obj, delta, false), newShift, size + delta);
+  }
+
+  /**
+   * <p>Returns a DBIterationSet without the object with the given
+   * id.</p>
+   */
+
+  public DBIterationSet without(int id)
+  {
+    if (getByID(id) == null)
+      {
+        return this;
+      }
+
+    return new DBIterationSet(assoc(root, shift, id, null, -1, false), shift, size - 1);
+  }
+
+  // List
+
+  @Override public int size()
+  {
+    return size;
+  }
+
+  @Override public DBObject get(int index)
+  {
+    if (index < 0 || index >= size)
+      {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+
+    Node node = root;
+
+    for (int level = shift; level > 0; level -= BITS)
+      {
+        for (Object slot: node.slots)
+          {
+            if (slot == null)
+              {
+                continue;
+              }
+
+            int count = ((Node) slot).count;
+
+            if (index < count)
+              {
+                node = (Node) slot;
+                break;
+              }
+
+            index -= count;
+          }
+      }
+
+    for (Object slot: node.slots)
+      {
+        if (slot != null && index-- == 0)
+          {
+            return (DBObject) slot;
+          }
+      }
+
+    throw new IllegalStateException();
+  }
+
+  @Override public boolean contains(Object o)
+  {
+    if (!(o instanceof DBObject))
+      {
+        return false;
+      }
+
+    DBObject found = getByID(((DBObject) o).getID());
+
+    return found != null && found.equals(o);
+  }
+
+  @Override public Iterator<DBObject> iterator()
+  {
+    return new Itr();
+  }
+
+  // ---
+
+  private static int checkID(int id)
+  {
+    if (id < 0)
+      {
+        throw new IllegalArgumentException("negative object id " + id);
+      }
+
+    return id;
+  }
+
+  private static DBObject lookup(Node node, int shift, int id)
+  {
+    if ((id >>> shift) >= WIDTH)
+      {
+        return null;
+      }
+
+    while (node != null && shift > 0)
+      {
+        node = (Node) node.slots[(id >>> shift) & MASK];
+        shift -= BITS;
+      }
+
+    return (node == null) ? null : (DBObject) node.slots[id & MASK];
+  }
+
+  /**
+   * <p>Returns node with obj (or null, to remove) stored at id,
+   * adjusting the object counts along the path by delta.  If inPlace
+   * is false, every node along the path is copied rather than
+   * modified.  Returns null if the node is left empty.</p>
+   */
+
+  private static Node assoc(Node node, int shift, int id, DBObject obj, int delta, boolean inPlace)
+  {
+    Node result;
+
+    if (node == null)
+      {
+        result = new Node();
+      }
+    else if (inPlace)
+      {
+        result = node;
+      }
+    else
+      {
+        result = new Node(node);
+      }
+
+    int i = (id >>> shift) & MASK;
+
+    if (shift == 0)
+      {
+        result.slots[i] = obj;
+      }
+    else
+      {
+        result.slots[i] = assoc((Node) result.slots[i], shift - BITS, id, obj, delta, inPlace);
+      }
+
+    result.count += delta;
+
+    return (result.count == 0) ? null : result;
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                           Node
+  ----------------------------------------------------------------------------*/
+
+  private static final class Node {
+
+    final Object[] slots;
+
+    /**
+     * <p>Number of DBObjects held beneath this node.  Only modified
+     * before the node is published in a DBIterationSet.</p>
+     */
+
+    int count;
+
+    Node()
+    {
+      this.slots = new Object[WIDTH];
+    }
+
+    Node(Node original)
+    {
+      this.slots = original.slots.clone();
+      this.count = original.count;
+    }
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                            Itr
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>Depth-first walk over the trie, in id order.</p>
+   */
+
+  private final class Itr implements Iterator<DBObject> {
+
+    private final Node[] stack;
+    private final int[] position;
+    private int depth;
+    private DBObject next;
+
+    Itr()
+    {
+      stack = new Node[shift / BITS + 1];
+      position = new int[stack.length];
+      depth = -1;
+
+      if (root != null)
+        {
+          stack[0] = root;
+          depth = 0;
+        }
+
+      advance();
+    }
+
+    public boolean hasNext()
+    {
+      return next != null;
+    }
+
+    public DBObject next()
+    {
+      if (next == null)
+        {
+          throw new NoSuchElementException();
+        }
+
+      DBObject result = next;
+      advance();
+
+      return result;
+    }
+
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    private void advance()
+    {
+      next = null;
+
+      while (depth >= 0)
+        {
+          int i = position[depth];
+
+          if (i >= WIDTH)
+            {
+              depth--;
+              continue;
+            }
+
+          position[depth] = i + 1;
+
+          Object slot = stack[depth].slots[i];
+
+          if (slot == null)
+            {
+              continue;
+            }
+
+          if (depth == stack.length - 1)
+            {
+              next = (DBObject) slot;
+              return;
+            }
+
+          depth++;
+          stack[depth] = (Node) slot;
+          position[depth] = 0;
+        }
+    }
+  }
+}
@@ -49,14 +49,23 @@
 
 package arlut.csd.ganymede.server;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
 
 import arlut.csd.Util.StringUtils;
 import arlut.csd.Util.TranslationService;
@@ -93,6 +102,28 @@ import arlut.csd.ganymede.rmi.db_field;
  * <p>See the {@link arlut.csd.ganymede.server.DBEditSet DBEditSet}
  * class for more information on Ganymede transactions.</p>
  *
+ * <p>If the ganymede.journal.groupcommit property is set to true,
+ * the DBJournal operates in group commit mode.  In this mode,
+ * transaction records are handed to a {@link
+ * arlut.csd.ganymede.server.DBJournalWriter DBJournalWriter} thread,
+ * which syncs the journal once for each batch of concurrently
+ * committing transactions, rather than once per transaction.
+ * Committing threads must call {@link
+ * #awaitDurable(arlut.csd.ganymede.server.DBJournalTransaction)}
+ * after finalizing a transaction, and without holding the DBJournal
+ * monitor, to learn that their transaction is durable on disk.</p>
+ *
+ * <p>If the ganymede.journal.segmentsize or
+ * ganymede.journal.segmenttransactions properties are set, the
+ * active journal file is closed as a numbered journal segment
+ * whenever it grows past those thresholds, and a background {@link
+ * arlut.csd.ganymede.server.journalCompactionTask
+ * journalCompactionTask} folds the closed segments into a new
+ * ganymede.db with a {@link
+ * arlut.csd.ganymede.server.DBStore#snapshotDump(java.lang.String,
+ * boolean) snapshot dump}.  At startup, the closed segments are
+ * replayed in order before the active journal file.</p>
+ *
  * <p>Nota bene: this class includes synchronized methods which
  * serialize operations on the Ganymede transaction journal.  The
  * DBJournal monitor is intended to be the innermost monitor for
@@ -120,12 +151,19 @@ public final class DBJournal implements ObjectStatus {
 
   static final String id_string = "GJournal";
   static final short major_version = 2;
-  static final short minor_version = 3;
+  static final short minor_version = 4;
 
   static final String OPENTRANS = "open";
   static final String CLOSETRANS = "close";
   static final String FINALIZE = "finalize";
 
+  /**
+   * <p>Closed journal segments are named by appending this suffix and
+   * the segment number to the journal's filename.</p>
+   */
+
+  static final String SEGMENT_SUFFIX = ".segment.";
+
   static final byte CREATE = 1;
   static final byte EDIT = 2;
   static final byte DELETE = 3;
@@ -149,9 +187,67 @@ public final class DBJournal implements ObjectStatus {
 
   private DBJournalTransaction incompleteTransaction = null;
 
+  /**
+   * <p>If we are in group commit mode, this is the thread that
+   * appends to and syncs jFile.  If null, we write and sync jFile
+   * directly from the committing thread.</p>
+   */
+
+  private DBJournalWriter writer = null;
+
+  /**
+   * <p>In group commit mode, the length the journal file will have
+   * once all records queued to the writer have been written.  Used
+   * to record the undo offset of each transaction.</p>
+   */
+
+  private long appendOffset = 0;
+
+  /**
+   * <p>The closed journal segments that have not yet been folded
+   * into ganymede.db, mapped from segment number to the number of
+   * transactions each holds.  The transactions in the closed
+   * segments precede those in the active journal file, in segment
+   * number order.</p>
+   */
+
+  private final SortedMap<Integer, Integer> closedSegments = new TreeMap<Integer, Integer>();
+
+  /**
+   * <p>The number to give the next journal segment we close.</p>
+   */
+
+  private int nextSegment = 1;
+
+  /**
+   * <p>The number of transactions in the active journal file.</p>
+   */
+
+  private int activeTransactions = 0;
+
+  /**
+   * <p>True if the records in this journal file are written as
+   * compressed, checksummed blocks by {@link
+   * arlut.csd.ganymede.server.DBBlockOutputStream#encodeBlock(byte[],
+   * int, int, java.util.zip.Deflater)
+   * DBBlockOutputStream.encodeBlock()}.  An existing journal file
+   * keeps the format recorded in its header, while a new journal
+   * file is written in the format chosen by the
+   * ganymede.compressedformat property.</p>
+   */
+
+  private boolean compressed = false;
+
+  /**
+   * <p>The Deflater we use to compress records, if we are
+   * compressed.</p>
+   */
+
+  private Deflater deflater = null;
+
   /* -- */
 
-  static void initialize(DataOutput out, DBStore store) throws IOException
+  static void initialize(DataOutput out, DBStore store, boolean compressed) throws IOException
   {
     out.writeUTF(DBJournal.id_string);
     out.writeShort(DBJournal.major_version);
@@ -159,6 +255,7 @@ public final class DBJournal implements ObjectStatus {
     out.writeShort(store.major_version);
     out.writeShort(store.minor_version);
     out.writeLong(System.currentTimeMillis());
+    out.writeByte(compressed ? DBStore.block_format : DBStore.raw_format); // added in version 2.4
   }
 
   /* -- */
@@ -176,6 +273,18 @@ public final class DBJournal implements ObjectStatus {
    */
 
   public DBJournal(DBStore store, String filename) throws IOException
+  {
+    this(store, filename, false);
+  }
+
+  /**
+   * <p>If readOnly is true, this constructor opens an existing
+   * journal file for loading only.  This is used to replay closed
+   * journal segments.  Read only journals can not have transactions
+   * written to them.</p>
+   */
+
+  private DBJournal(DBStore store, String filename, boolean readOnly) throws IOException
   {
     this.store = store;
     this.filename = filename;
@@ -208,7 +317,8 @@ public final class DBJournal implements ObjectStatus {
         // "Writing DBStore Journal header"
         debug(ts.l("init.writing"));
 
-        initialize(jFile, this.store);
+        compressed = Ganymede.compressedFormatProperty;
+        initialize(jFile, this.store, compressed);
 
         dirty = false;
       }
@@ -219,14 +329,17 @@ public final class DBJournal implements ObjectStatus {
         // "Opening Journal File for Append"
         debug(ts.l("init.opening"));
 
-        jFile = new RandomAccessFile(filename, "rw");
+        jFile = new RandomAccessFile(filename, readOnly ? "r" : "rw");
 
         // look to see if there are any transactions in the journal
         readHeaders();
 
+        DBBlockInputStream blockIn = openBlocks();
+        DataInput in = (blockIn == null) ? jFile : new DataInputStream(blockIn);
+
         try
           {
-            if (jFile.readUTF().compareTo(OPENTRANS) != 0)
+            if (in.readUTF().compareTo(OPENTRANS) != 0)
               {
                 // "DBJournal constructor: open string mismatch"
                 throw new IOException(ts.l("init.badheader"));
@@ -240,11 +353,43 @@ public final class DBJournal implements ObjectStatus {
           {
             dirty = false;      // we have no transactions in the existing journal
           }
+        catch (IOException ex)
+          {
+            if (blockIn == null || !blockIn.isTornTail())
+              {
+                throw ex;
+              }
+
+            // the first transaction was torn, we'll let load() sort
+            // it out
+
+            dirty = true;
+          }
+        finally
+          {
+            if (blockIn != null)
+              {
+                blockIn.close();
+              }
+          }
+
+        if (readOnly)
+          {
+            return;
+          }
 
         // from now on, write to append to the end of the file
 
         jFile.seek(jFile.length());
       }
+
+    findSegments();
+
+    if (Ganymede.journalGroupCommitProperty)
+      {
+        appendOffset = jFile.length();
+        writer = new DBJournalWriter(store, jFile, Ganymede.journalBatchDelayProperty);
+      }
   }
 
   /**
@@ -334,25 +479,308 @@ public final class DBJournal implements ObjectStatus {
    * location and truncate it.  reset() should be called immediately
    * after the DBStore is dumped to disk and before the DumpLock is
    * relinquished.</p>
+   *
+   * <p>Any closed journal segments are deleted as well, since the
+   * dump that called us has captured everything in them.</p>
    */
 
   public synchronized void reset() throws IOException
   {
-    String newname;
-
-    /* - */
-
     // "DBJournal: Resetting Journal File"
     debug(ts.l("reset.resetting"));
 
+    replaceFile(filename + ".old");
+
+    retireSegments(nextSegment - 1);
+
+    activeTransactions = 0;
+    transactionsInJournal = 0;
+    GanymedeAdmin.updateTransCount();
+
+    if (Ganymede.log != null)
+      {
+        Ganymede.log.logSystemEvent(new DBLogEvent("journalreset",
+                                                   ts.l("reset.logstring"), // "Ganymede Journal Reset"
+                                                   null,
+                                                   null,
+                                                   null,
+                                                   null));
+      }
+  }
+
+  /**
+   * <p>Returns true if this journal is configured to close its
+   * active file as a journal segment whenever it grows past the
+   * ganymede.journal.segmentsize or
+   * ganymede.journal.segmenttransactions thresholds.</p>
+   */
+
+  public boolean isSegmented()
+  {
+    return Ganymede.journalSegmentSizeProperty > 0 || Ganymede.journalSegmentTransactionsProperty > 0;
+  }
+
+  /**
+   * <p>Closes the active journal file as a new journal segment and
+   * starts a fresh active journal file.  If the active journal file
+   * has no transactions in it, no segment is closed.</p>
+   *
+   * <p>When called while a DumpLock is held, as by {@link
+   * arlut.csd.ganymede.server.DBStore#snapshotDump(java.lang.String,
+   * boolean) DBStore.snapshotDump()}, the closed segments will hold
+   * exactly the transactions in the in-memory database.</p>
+   *
+   * @return The number of the most recently closed segment, which
+   * may be passed to {@link #retireSegments(int)} once the closed
+   * segments have been folded into ganymede.db.
+   */
+
+  public synchronized int closeSegment() throws IOException
+  {
+    if (dirty)
+      {
+        int segment = nextSegment++;
+
+        // "DBJournal: closing Journal segment {0}"
+        debug(ts.l("closeSegment.closing", getSegmentFilename(segment)));
+
+        replaceFile(getSegmentFilename(segment));
+
+        closedSegments.put(Integer.valueOf(segment), Integer.valueOf(activeTransactions));
+        activeTransactions = 0;
+      }
+
+    return nextSegment - 1;
+  }
+
+  /**
+   * <p>Deletes all closed journal segments numbered through segment,
+   * once their transactions have been safely written to
+   * ganymede.db.</p>
+   */
+
+  public synchronized void retireSegments(int segment) throws IOException
+  {
+    Iterator<Map.Entry<Integer, Integer>> it = closedSegments.entrySet().iterator();
+
+    while (it.hasNext())
+      {
+        Map.Entry<Integer, Integer> entry = it.next();
+
+        if (entry.getKey().intValue() > segment)
+          {
+            break;
+          }
+
+        File segmentFile = new File(getSegmentFilename(entry.getKey().intValue()));
+
+        // "DBJournal: retiring Journal segment {0}"
+        debug(ts.l("retireSegments.retiring", segmentFile.getPath()));
+
+        if (segmentFile.exists() && !segmentFile.delete())
+          {
+            throw new IOException("Couldn't delete " + segmentFile.getPath());
+          }
+
+        transactionsInJournal -= entry.getValue().intValue();
+        it.remove();
+      }
+
+    GanymedeAdmin.updateTransCount();
+  }
+
+  /**
+   * <p>Returns true if there are closed journal segments which have
+   * not yet been folded into ganymede.db.</p>
+   */
+
+  public synchronized boolean hasClosedSegments()
+  {
+    return !closedSegments.isEmpty();
+  }
+
+  /**
+   * <p>Returns the name of the file for journal segment number
+   * segment.</p>
+   */
+
+  public String getSegmentFilename(int segment)
+  {
+    return filename + SEGMENT_SUFFIX + segment;
+  }
+
+  /**
+   * <p>Replays the transactions in the closed journal segments, in
+   * order.  These transactions precede those in the active journal
+   * file, and must be loaded first.</p>
+   *
+   * <p>If the server went down after a snapshot dump put a new
+   * ganymede.db in place but before it could retire the segments it
+   * captured, the transactions in those segments will already have
+   * been loaded with ganymede.db, and they will be skipped.</p>
+   *
+   * <p>If replay is not null, the transactions are recorded in it
+   * rather than applied directly.</p>
+   *
+   * @return true if all of the closed segments were in a consistent
+   * state
+   */
+
+  synchronized boolean loadSegments(DBJournalReplay replay) throws IOException
+  {
+    boolean consistent = true;
+
+    /* -- */
+
+    for (Map.Entry<Integer, Integer> entry: closedSegments.entrySet())
+      {
+        String segmentName = getSegmentFilename(entry.getKey().intValue());
+        DBJournal segmentJournal = new DBJournal(store, segmentName, true);
+
+        // "DBJournal: loading transactions from Journal segment {0}"
+        debug(ts.l("loadSegments.loading", segmentName));
+
+        try
+          {
+            if (!segmentJournal.load(true, replay))
+              {
+                consistent = false;
+              }
+
+            entry.setValue(Integer.valueOf(segmentJournal.activeTransactions));
+            transactionsInJournal += segmentJournal.activeTransactions;
+          }
+        finally
+          {
+            segmentJournal.close();
+          }
+      }
+
+    return consistent;
+  }
+
+  /**
+   * <p>Closes the journal file, shutting down the group commit
+   * writer thread if we have one.</p>
+   */
+
+  public synchronized void close() throws IOException
+  {
+    if (writer != null)
+      {
+        writer.close();
+        writer = null;
+      }
+
     if (jFile != null)
       {
         jFile.close();
+        jFile = null;
       }
 
-    File file = new File(filename);
+    if (deflater != null)
+      {
+        deflater.end();
+        deflater = null;
+      }
+  }
+
+  /**
+   * <p>Scans the journal's directory for closed journal segments
+   * left by a previous run of the server.</p>
+   */
+
+  private void findSegments()
+  {
+    File journalFile = new File(filename).getAbsoluteFile();
+    String prefix = journalFile.getName() + SEGMENT_SUFFIX;
+    String[] names = journalFile.getParentFile().list();
+
+    /* -- */
+
+    if (names == null)
+      {
+        return;
+      }
 
-    newname = filename + ".old";
+    for (String name: names)
+      {
+        if (!name.startsWith(prefix))
+          {
+            continue;
+          }
+
+        try
+          {
+            int segment = Integer.parseInt(name.substring(prefix.length()));
+
+            closedSegments.put(Integer.valueOf(segment), Integer.valueOf(0));
+
+            if (segment >= nextSegment)
+              {
+                nextSegment = segment + 1;
+              }
+          }
+        catch (NumberFormatException ex)
+          {
+            // not one of ours
+          }
+      }
+  }
+
+  /**
+   * <p>Returns true if the active journal file has grown past one of
+   * the segment thresholds.</p>
+   */
+
+  private boolean isSegmentFull() throws IOException
+  {
+    if (Ganymede.journalSegmentTransactionsProperty > 0 &&
+        activeTransactions >= Ganymede.journalSegmentTransactionsProperty)
+      {
+        return true;
+      }
+
+    if (Ganymede.journalSegmentSizeProperty > 0)
+      {
+        long length = (writer != null) ? appendOffset : jFile.length();
+
+        return length >= Ganymede.journalSegmentSizeProperty;
+      }
+
+    return false;
+  }
+
+  /**
+   * <p>Moves the current journal file to newname and creates a fresh
+   * journal file in its place.</p>
+   */
+
+  private void replaceFile(String newname) throws IOException
+  {
+    if (writer != null)
+      {
+        debug(writer.getStatistics());
+
+        try
+          {
+            writer.flush();
+          }
+        catch (IOException ex)
+          {
+            // the writer has failed, which means it has truncated
+            // the journal back to its last durable state, and the
+            // transactions it couldn't write have been rejected.
+            // we can safely set the file aside and start afresh.
+          }
+      }
+
+    if (jFile != null)
+      {
+        jFile.close();
+      }
+
+    File file = new File(filename);
 
     // "DBJournal: saving old Journal as {0}"
     debug(ts.l("reset.savingold", newname));
@@ -366,23 +794,17 @@ public final class DBJournal implements ObjectStatus {
     debug(ts.l("reset.freshness", filename));
 
     jFile = new RandomAccessFile(filename, "rw");
-    initialize(jFile, this.store);
+    compressed = Ganymede.compressedFormatProperty;
+    initialize(jFile, this.store, compressed);
     jFile.getFD().sync();
 
-    dirty = false;
-
-    transactionsInJournal = 0;
-    GanymedeAdmin.updateTransCount();
-
-    if (Ganymede.log != null)
+    if (writer != null)
       {
-        Ganymede.log.logSystemEvent(new DBLogEvent("journalreset",
-                                                   ts.l("reset.logstring"), // "Ganymede Journal Reset"
-                                                   null,
-                                                   null,
-                                                   null,
-                                                   null));
+        writer.setFile(jFile);
+        appendOffset = jFile.length();
       }
+
+    dirty = false;
   }
 
   /**
@@ -401,6 +823,35 @@ public final class DBJournal implements ObjectStatus {
    */
 
   public synchronized boolean load() throws IOException
+  {
+    return load(false, null);
+  }
+
+  /**
+   * <p>Reads in the transactions in this journal, recording their
+   * net effect in replay rather than applying them to the DBStore
+   * one object at a time.  The caller is responsible for calling
+   * {@link
+   * arlut.csd.ganymede.server.DBJournalReplay#apply(arlut.csd.ganymede.server.DBStore)}
+   * once all journal files have been read.</p>
+   */
+
+  synchronized boolean load(DBJournalReplay replay) throws IOException
+  {
+    return load(false, replay);
+  }
+
+  /**
+   * <p>Reads in and applies the transactions in this journal.  If
+   * skipDumped is true, transactions whose transaction numbers show
+   * that they are already included in the loaded ganymede.db file
+   * will be read past without being applied.</p>
+   *
+   * <p>If replay is not null, the transactions are recorded in it
+   * rather than applied directly.</p>
+   */
+
+  private synchronized boolean load(boolean skipDumped, DBJournalReplay replay) throws IOException
   {
     long transaction_time = 0;
     Date transactionDate = null;
@@ -413,6 +864,7 @@ public final class DBJournal implements ObjectStatus {
     DBObject obj;
     String status = null;
     int nextTransactionNumber = 0;
+    boolean skipping = false;
     /* - */
 
     entries = new ArrayList<JournalEntry>();
@@ -420,12 +872,15 @@ public final class DBJournal implements ObjectStatus {
     // skip past the journal header block
     readHeaders();
 
+    DBBlockInputStream blockIn = openBlocks();
+    DataInput in = (blockIn == null) ? jFile : new DataInputStream(blockIn);
+
     // start reading and applying the changes
     try
       {
         while (true)
           {
-            if (jFile.readUTF().compareTo(OPENTRANS) != 0)
+            if (in.readUTF().compareTo(OPENTRANS) != 0)
               {
                 // "DBJournal.load(): Transaction open string mismatch"
                 debug(ts.l("load.openmismatch"));
@@ -441,15 +896,22 @@ public final class DBJournal implements ObjectStatus {
 
             // "Reading transaction time"
             status = ts.l("load.readingtime");
-            transaction_time = jFile.readLong();
+            transaction_time = in.readLong();
             transactionDate = new Date(transaction_time);
 
             debug(ts.l("load.showtime", transactionDate));
 
             if (isAtLeast(2,1))
               {
-                nextTransactionNumber = jFile.readInt();
-                Ganymede.db.updateTransactionNumber(nextTransactionNumber);
+                nextTransactionNumber = in.readInt();
+
+                skipping = skipDumped && nextTransactionNumber <= store.getTransactionNumber();
+
+                if (!skipping)
+                  {
+                    Ganymede.db.updateTransactionNumber(nextTransactionNumber);
+                  }
+
                 debug("nextTransactionNumber:"+nextTransactionNumber);
               }
 
@@ -457,7 +919,7 @@ public final class DBJournal implements ObjectStatus {
             status = ts.l("load.readingobjcount");
 
             // read object information
-            object_count = jFile.readInt();
+            object_count = in.readInt();
 
             debug("Objects In Transaction: " + object_count);
 
@@ -472,11 +934,11 @@ public final class DBJournal implements ObjectStatus {
 
                 // "Reading operation code for object {0}"
                 status = ts.l("load.readingopcode", iObj);
-                operation = jFile.readByte();
+                operation = in.readByte();
 
                 // "Reading object type for object {0}"
                 status = ts.l("load.readingtype", iObj);
-                obj_type = jFile.readShort();
+                obj_type = in.readShort();
                 base = store.getObjectBase(obj_type);
 
                 switch (operation)
@@ -485,7 +947,7 @@ public final class DBJournal implements ObjectStatus {
                     // "Reading created object {0}"
                     status = ts.l("load.readingcreated", iObj);
 
-                    obj = new DBObject(base, jFile, true);
+                    obj = new DBObject(base, in, true);
 
                     if (debug)
                       {
@@ -501,8 +963,26 @@ public final class DBJournal implements ObjectStatus {
                     // "Reading edited object {0}"
                     status = ts.l("load.readingedited", iObj);
 
-                    DBObjectDeltaRec delta = new DBObjectDeltaRec(jFile);
-                    DBObject original = DBStore.viewDBObject(delta.getInvid());
+                    DBObjectDeltaRec delta = new DBObjectDeltaRec(in, replay);
+
+                    if (skipping)
+                      {
+                        // the object in memory already has this
+                        // change, and possibly later ones as well
+
+                        break;
+                      }
+
+                    DBObject original;
+
+                    if (replay != null)
+                      {
+                        original = replay.viewDBObject(delta.getInvid());
+                      }
+                    else
+                      {
+                        original = DBStore.viewDBObject(delta.getInvid());
+                      }
 
                     obj = new DBObject(original, delta);
 
@@ -530,7 +1010,7 @@ public final class DBJournal implements ObjectStatus {
                     // "Reading deleted object {0}"
                     status = ts.l("load.readingdeleted", iObj);
 
-                    obj_id = jFile.readShort();
+                    obj_id = in.readShort();
 
                     // "Delete: {0}:{1}"
                     debug(ts.l("load.delete", base.getName(), Short.valueOf(obj_id)));
@@ -544,12 +1024,12 @@ public final class DBJournal implements ObjectStatus {
             status = ts.l("load.readingclosed");
 
 
-            String closeDebug = jFile.readUTF();
-            Long transTimeDebug = jFile.readLong();
+            String closeDebug = in.readUTF();
+            Long transTimeDebug = in.readLong();
             debug("closeDebug and transTimeDebug:"+ closeDebug +"*"+ transTimeDebug.toString()+"* transaction_time:"+transaction_time);
 
-            //if ((jFile.readUTF().compareTo(CLOSETRANS) != 0) ||
-            //  (jFile.readLong() != transaction_time))
+            //if ((in.readUTF().compareTo(CLOSETRANS) != 0) ||
+            //  (in.readLong() != transaction_time))
             if ((closeDebug.compareTo(CLOSETRANS) != 0) ||
                 (transTimeDebug != transaction_time))
               {
@@ -571,9 +1051,9 @@ public final class DBJournal implements ObjectStatus {
 
                 try
                   {
-                    success = ((jFile.readUTF().compareTo(FINALIZE) == 0) &&
-                               (jFile.readLong() == transaction_time) &&
-                               (jFile.readInt() == nextTransactionNumber));
+                    success = ((in.readUTF().compareTo(FINALIZE) == 0) &&
+                               (in.readLong() == transaction_time) &&
+                               (in.readInt() == nextTransactionNumber));
 
                     if (!success)
                       {
@@ -614,14 +1094,34 @@ public final class DBJournal implements ObjectStatus {
 
             // okay, process this transaction
 
-            for (JournalEntry entry: entries)
+            if (skipping)
               {
-                entry.process(store);
+                // "Transaction {0,number,#} is already in the loaded database, skipping"
+                debug(ts.l("load.skipping", Integer.valueOf(nextTransactionNumber)));
+
+                if (replay != null)
+                  {
+                    replay.skipTransaction();
+                  }
+              }
+            else if (replay != null)
+              {
+                replay.addTransaction(entries);
+              }
+            else
+              {
+                for (JournalEntry entry: entries)
+                  {
+                    entry.process(store);
+                  }
               }
 
             // clear the entries we've now processed
             entries.clear();
 
+            activeTransactions++;
+            transactionsInJournal++;
+
             EOFok = true;
           }
       }
@@ -643,6 +1143,31 @@ public final class DBJournal implements ObjectStatus {
             return false;
           }
       }
+    catch (IOException ex)
+      {
+        // if the last block in a compressed journal was torn by the
+        // server going down in the middle of a write, we've lost
+        // at most the transaction it held, just as if we had hit EOF
+        // in the middle of a transaction.  if the damage is anywhere
+        // else, we can't trust the rest of the journal.
+
+        if (blockIn == null || !blockIn.isTornTail())
+          {
+            throw ex;
+          }
+
+        // "DBJournal file ends with a damaged block: state = {0}\n{1}"
+        debug(ts.l("load.tornblock", status, ex.getMessage()));
+
+        return false;
+      }
+    finally
+      {
+        if (blockIn != null)
+          {
+            blockIn.close();
+          }
+      }
   }
 
   /**
@@ -674,12 +1199,25 @@ public final class DBJournal implements ObjectStatus {
     DBJournalTransaction transRecord;
     Date now;
     DBEditObject[] objects = transaction.getObjectList();
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(buffer);
 
     /* - */
 
+    // if the active journal file has grown past our segment
+    // thresholds, close it out before we write this transaction, and
+    // have the compaction task fold it into ganymede.db in the
+    // background
+
+    if (dirty && isSegmented() && isSegmentFull())
+      {
+        closeSegment();
+        Ganymede.runJournalCompaction();
+      }
+
     now = new Date();
     transRecord = new DBJournalTransaction(now.getTime(),
-                                           jFile.getFilePointer(),
+                                           writer == null ? jFile.getFilePointer() : appendOffset,
                                            Ganymede.db.getNextTransactionNumber(),
                                            transaction.getUsername());
 
@@ -688,23 +1226,27 @@ public final class DBJournal implements ObjectStatus {
 
     try
       {
-        jFile.writeUTF(OPENTRANS);
-        jFile.writeLong(transRecord.getTime());
-        jFile.writeInt(transRecord.getTransactionNumber());
+        // we serialize the whole transaction into memory first, so
+        // that we can write it to the journal in a single operation,
+        // rather than in a write call per field.
+
+        out.writeUTF(OPENTRANS);
+        out.writeLong(transRecord.getTime());
+        out.writeInt(transRecord.getTransactionNumber());
 
         // "Objects in Transaction: {0}"
         debug(ts.l("writeTransaction.objcount", Integer.valueOf(objects.length)));
 
-        jFile.writeInt(objects.length);
+        out.writeInt(objects.length);
 
         for (DBEditObject eObj: objects)
           {
             switch (eObj.getStatus())
               {
               case CREATING:
-                jFile.writeByte(CREATE);
-                jFile.writeShort(eObj.objectBase.getTypeID());
-                eObj.emit(jFile);
+                out.writeByte(CREATE);
+                out.writeShort(eObj.objectBase.getTypeID());
+                eObj.emit(out);
 
                 if (debug)
                   {
@@ -716,11 +1258,11 @@ public final class DBJournal implements ObjectStatus {
                 break;
 
               case EDITING:
-                jFile.writeByte(EDIT);
-                jFile.writeShort(eObj.objectBase.getTypeID());
+                out.writeByte(EDIT);
+                out.writeShort(eObj.objectBase.getTypeID());
 
                 DBObjectDeltaRec delta = new DBObjectDeltaRec(eObj.original, eObj);
-                delta.emit(jFile);
+                delta.emit(out);
 
                 if (debug)
                   {
@@ -732,9 +1274,9 @@ public final class DBJournal implements ObjectStatus {
                 break;
 
               case DELETING:
-                jFile.writeByte(DELETE);
-                jFile.writeShort(eObj.objectBase.getTypeID());
-                jFile.writeShort(eObj.getID());
+                out.writeByte(DELETE);
+                out.writeShort(eObj.objectBase.getTypeID());
+                out.writeShort(eObj.getID());
 
                 // "Wrote object deletion record:\n\t{0} : {1}"
                 debug(ts.l("writeTransaction.wroteobjdel", eObj.objectBase.getName(),Integer.valueOf(eObj.getID())));
@@ -752,12 +1294,33 @@ public final class DBJournal implements ObjectStatus {
               }
           }
 
-        dirty = true;
-
         // write out the end of transaction stamp.. the transaction_time
         // is used to verify that we completed this write okay.
-        jFile.writeUTF(CLOSETRANS);
-        jFile.writeLong(transRecord.getTime());
+        out.writeUTF(CLOSETRANS);
+        out.writeLong(transRecord.getTime());
+        out.flush();
+
+        byte[] record = frame(buffer.toByteArray());
+
+        dirty = true;
+
+        if (writer == null)
+          {
+            jFile.write(record);
+          }
+        else
+          {
+            // we don't need this record to be synced until we
+            // finalize, but we do want it in the file before the
+            // sync channels are written, so that we can scrub them
+            // on restart if we die before finalizing.  the writer
+            // appends it on this thread, without waiting on any sync
+            // in progress.
+
+            DBJournalWriter.Ticket ticket = writer.append(record, false, transRecord.getTransactionNumber());
+            appendOffset += record.length;
+            ticket.awaitWritten();
+          }
 
         // "Transaction {0} persisted to Journal."
         debug(ts.l("writeTransaction.written", now));
@@ -797,22 +1360,80 @@ public final class DBJournal implements ObjectStatus {
    * thrown.  The Journal entries are structured so that if a Journal
    * entry can't be completed, the transaction's whole entry will
    * be ignored at load time.
+   *
+   * In group commit mode, finalizeTransaction() only queues the
+   * finalize record to the journal writer thread.  The caller must
+   * then release the DBJournal monitor and call awaitDurable() to
+   * wait for the batch containing the finalize record to be synced.
    */
 
   public synchronized void finalizeTransaction(DBJournalTransaction transRecord) throws IOException
   {
-    jFile.writeUTF(FINALIZE);
-    jFile.writeLong(transRecord.getTime());
-    jFile.writeInt(transRecord.getTransactionNumber());
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(buffer);
+
+    out.writeUTF(FINALIZE);
+    out.writeLong(transRecord.getTime());
+    out.writeInt(transRecord.getTransactionNumber());
+    out.flush();
+
+    byte[] record = frame(buffer.toByteArray());
+
+    if (writer != null)
+      {
+        transRecord.setDurabilityTicket(writer.append(record, true, transRecord.getTransactionNumber()));
+        appendOffset += record.length;
+
+        return;
+      }
+
+    jFile.write(record);
 
     // and push the blocks to disk
 
     jFile.getFD().sync();
 
+    activeTransactions++;
     transactionsInJournal++;
     GanymedeAdmin.updateTransCount();
   }
 
+  /**
+   * <p>Blocks until the given finalized transaction has been synced
+   * to disk.  If the journal is not in group commit mode,
+   * finalizeTransaction() has already synced the journal, and this
+   * method returns immediately.</p>
+   *
+   * <p>This method must not be called while holding the DBJournal
+   * monitor, or else no other transaction will be able to join the
+   * batch we are waiting on.</p>
+   *
+   * <p>If the journal writer failed to make the transaction durable,
+   * an IOException is thrown.  The writer will already have truncated
+   * the journal back to its last durable state, and given back the
+   * numbers of all of the transactions in the failed batch.</p>
+   */
+
+  public void awaitDurable(DBJournalTransaction transRecord) throws IOException
+  {
+    DBJournalWriter.Ticket ticket = transRecord.getDurabilityTicket();
+
+    if (ticket == null)
+      {
+        return;
+      }
+
+    ticket.awaitDurable();
+
+    synchronized (this)
+      {
+        activeTransactions++;
+        transactionsInJournal++;
+      }
+
+    GanymedeAdmin.updateTransCount();
+  }
+
   /**
    * <p>The undoTransaction() method is responsible for rolling back the
    * most recent transaction written to the journal, in the event that
@@ -822,13 +1443,41 @@ public final class DBJournal implements ObjectStatus {
 
   public synchronized void undoTransaction(DBJournalTransaction transRecord) throws IOException
   {
-    jFile.setLength(transRecord.getOffset()-1);
-    jFile.seek(transRecord.getOffset());
+    if (writer != null)
+      {
+        // the writer will truncate and sync in order with respect to
+        // any previously queued records
 
-    // try to make sure the disk operations we just did are committed
-    // to disk
+        appendOffset = transRecord.getOffset();
 
-    jFile.getFD().sync();
+        try
+          {
+            writer.truncate(transRecord.getOffset()).awaitDurable();
+          }
+        catch (IOException ex)
+          {
+            if (!writer.hasFailed())
+              {
+                throw ex;
+              }
+
+            // the writer has already truncated the journal back to
+            // its last durable state, which precedes this
+            // transaction.  if we took our transaction number after
+            // the writer reset the transaction counter, we still
+            // need to give it back below.
+          }
+      }
+    else
+      {
+        jFile.setLength(transRecord.getOffset());
+        jFile.seek(transRecord.getOffset());
+
+        // try to make sure the disk operations we just did are committed
+        // to disk
+
+        jFile.getFD().sync();
+      }
 
     Ganymede.db.undoNextTransactionNumber(transRecord.getTransactionNumber());
   }
@@ -864,12 +1513,14 @@ public final class DBJournal implements ObjectStatus {
   }
 
   /**
-   * Returns true if the journal does not contain any transactions.
+   * Returns true if the journal does not contain any transactions,
+   * and there are no closed journal segments waiting to be folded
+   * into ganymede.db.
    */
 
-  public boolean isClean()
+  public synchronized boolean isClean()
   {
-    return !dirty;
+    return !dirty && closedSegments.isEmpty();
   }
 
   /**
@@ -951,221 +1602,83 @@ public final class DBJournal implements ObjectStatus {
         // JAMES QUESTION - why is this only not in debug mode.... odd??!?!!
         jFile.readLong();               // date is there for others to look at
       }
-  }
 
-  private void printObject(DBObject obj)
-  {
-    String objectStr = obj.getPrintString();
-    objectStr = StringUtils.replaceStr(objectStr, "\n", "\n\t");
-    System.err.println("\t" + objectStr);
+    // At journal version 2,4 we record whether the transaction
+    // records are written in compressed blocks
+
+    if (isAtLeast(2,4))
+      {
+        compressed = (jFile.readByte() == DBStore.block_format);
+      }
+    else
+      {
+        compressed = false;
+      }
   }
 
   /**
-   * This is a convenience method used by server-side code to send
-   * debug output to stderr and to any attached admin consoles.
+   * <p>If this journal is compressed, returns a DBBlockInputStream
+   * reading the journal's records from the current position of
+   * jFile, which should be just past the headers.  Returns null if
+   * the journal's records are written directly to jFile.</p>
    */
 
-  static public void debug(String string)
+  private DBBlockInputStream openBlocks() throws IOException
   {
-    if (debug)
+    if (!compressed)
       {
-        System.err.println(string);
+        return null;
       }
-  }
-}
 
-/*------------------------------------------------------------------------------
-                                                                           class
-                                                                    JournalEntry
-
-------------------------------------------------------------------------------*/
-
-/**
- * <p>This class holds data corresponding to a modification record for
- * a single object in the server's {@link
- * arlut.csd.ganymede.server.DBJournal DBJournal} class.</p>
- */
-
-class JournalEntry {
-
-  static boolean debug = false;
-
-  // ---
-
-  DBObjectBase base;
-  int id;
-  DBObject obj;                 // if null, we'll delete
-
-  /* -- */
-
-  public JournalEntry(DBObjectBase base, int id, DBObject obj)
-  {
-    this.base = base;
-    this.id = id;
-    this.obj = obj;
+    return new DBBlockInputStream(jFile, jFile.getFilePointer(), jFile.length());
   }
 
-  void process(DBStore store)
-  {
-    DBObjectBaseField definition;
-    DBObject oldObject;
-
-    /* -- */
-
-    debug("JournalEntry.process():"+
-          "\t" + StringUtils.replaceStr(this.toString(), "\n", "\n\t"));
+  /**
+   * <p>Returns record in the form it should be written to the
+   * journal file, as compressed, checksummed blocks if this journal
+   * is compressed.  Each record written to a compressed journal
+   * starts a block of its own, so that a transaction can be truncated
+   * from the journal at the offset where its record begins.  A
+   * record larger than {@link
+   * arlut.csd.ganymede.server.DBBlockOutputStream#MAX_BLOCK_SIZE
+   * MAX_BLOCK_SIZE} is split across as many blocks as it needs.</p>
+   */
 
-    if (obj == null)
+  private byte[] frame(byte[] record)
+  {
+    if (!compressed)
       {
-        // delete the object
-        oldObject = base.getObject(id);
-
-        if (oldObject == null)
-          {
-            Ganymede.debug("Warning.. journal is instructing us to delete an object not in the database");
-          }
-        else
-          {
-            // Remove the object.  If any of the fields are namespace
-            // restricted, see if any of the values currently held in
-            // such a field are registered in a namespace.  If so, and
-            // if the field we're deleting is the one currently taking
-            // that value's slot in the namespace, remove the value
-            // from the namespace hash.
-
-            // NOTE: we don't want to do a full-up object delete here
-            // because that would just get put into a new transaction.
-            // All invid linking issues are taken care of when this
-            // transaction was written to the journal.. the invid
-            // unbinding process would automatically include the other
-            // objects in their post-commit state, so we don't have
-            // to worry about it here.
-
-            // We do need to unregister the former asymmetric links
-            // from the DBStore aSymLinkTracker, however.
-
-            oldObject.unregisterAsymmetricLinks();
-
-            // and we need to clear out any namespace pointers
-
-            DBField[] tempFields = oldObject.listDBFields();
-
-            for (DBField _field: tempFields)
-              {
-                definition = _field.getFieldDef();
-
-                if (definition.getNameSpace() != null)
-                  {
-                    if (_field.isVector())
-                      {
-                        for (int j = 0; j < _field.size(); j++)
-                          {
-                            if (definition.getNameSpace().lookupPersistent(_field.key(j)) != _field)
-                              {
-                                throw new RuntimeException("Error, namespace mismatch in DBJournal code [" + j + "]");
-                              }
-
-                            definition.getNameSpace().removeHandle(_field.key(j));
-                          }
-                      }
-                    else
-                      {
-                        if (definition.getNameSpace().lookupPersistent(_field.key()) != _field)
-                          {
-                            throw new RuntimeException("Error, namespace mismatch in DBJournal code");
-                          }
-
-                        definition.getNameSpace().removeHandle(_field.key());
-                      }
-                  }
-              }
-          }
-
-        base.remove(id);
+        return record;
       }
-    else
-      {
-        // put the new object in place
-
-        // First we need to clear any back links from the old version
-        // of the object, if there was any such.
-
-        oldObject = base.getObject(id);
-
-        if (oldObject != null)
-          {
-            oldObject.unregisterAsymmetricLinks();
-          }
-
-        // Second, we need to go through and put these values in the namespace.. note that
-        // we don't bother checking to see if the values are already allocated in the
-        // namespace.. we are assuming that the transaction would not have been written
-        // out to disk with improper namespace management.  We pretty much have to make
-        // this assumption here unless we're going to go to the trouble of doing multiple
-        // passes through the set of changes in this transaction, first unmarking any
-        // values freed by object deletion or changes, then going through and allocating
-        // new values.  We may still wind up doing this.
-
-        DBField[] tempFields = obj.listDBFields();
-
-        for (DBField _field: tempFields)
-          {
-            definition = _field.getFieldDef();
 
-            if (definition.getNameSpace() != null)
-              {
-                if (_field.isVector())
-                  {
-                    // mark the elements in the vector in the namespace
-                    // note that we don't use the namespace mark method here,
-                    // because we are just setting up the namespace, not
-                    // manipulating it in the context of an editset
+    if (deflater == null)
+      {
+        deflater = new Deflater(Deflater.BEST_SPEED);
+      }
 
-                    for (int j = 0; j < _field.size(); j++)
-                      {
-                        definition.getNameSpace().receiveValue(_field.key(j), _field);
-                      }
-                  }
-                else
-                  {
-                    // mark the scalar value in the namespace
-                    definition.getNameSpace().receiveValue(_field.key(), _field);
-                  }
-              }
-          }
+    if (record.length <= DBBlockOutputStream.MAX_BLOCK_SIZE)
+      {
+        return DBBlockOutputStream.encodeBlock(record, 0, record.length, deflater);
+      }
 
-        // update the backpointers for this object
+    ByteArrayOutputStream blocks = new ByteArrayOutputStream();
 
-        obj.registerAsymmetricLinks();
+    for (int offset = 0; offset < record.length; offset += DBBlockOutputStream.MAX_BLOCK_SIZE)
+      {
+        int length = Math.min(DBBlockOutputStream.MAX_BLOCK_SIZE, record.length - offset);
+        byte[] block = DBBlockOutputStream.encodeBlock(record, offset, length, deflater);
 
-        base.put(obj);
+        blocks.write(block, 0, block.length);
       }
+
+    return blocks.toByteArray();
   }
 
-  public String toString()
+  private void printObject(DBObject obj)
   {
-    if (base != null && obj != null)
-      {
-        return obj.getPrintString();
-      }
-    else if (base != null)
-      {
-        return "base: " + base.toString() + "\n" +
-          "id: " + id + "\n" +
-          "obj: null";
-      }
-    else if (obj != null)
-      {
-        return "base: null\n" +
-          "id: " + id + "\n" +
-          "obj: \n" + obj.getPrintString();
-      }
-    else
-      {
-        return "base: null\n" +
-          "id: " + id + "\n" +
-          "obj: null";
-      }
+    String objectStr = obj.getPrintString();
+    objectStr = StringUtils.replaceStr(objectStr, "\n", "\n\t");
+    System.err.println("\t" + objectStr);
   }
 
   /**
@@ -0,0 +1,342 @@
+/*
+   GASH 2
+
+   DBJournalReplay.java
+
+   The GANYMEDE object storage system.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package arlut.csd.ganymede.server;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import arlut.csd.Util.TranslationService;
+import arlut.csd.ganymede.common.Invid;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                 DBJournalReplay
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>DBJournalReplay accumulates the net effect of the transactions
+ * read from the {@link arlut.csd.ganymede.server.DBJournal DBJournal}
+ * at server startup, so that they can be applied to the {@link
+ * arlut.csd.ganymede.server.DBStore DBStore} all at once.</p>
+ *
+ * <p>As the journal is read, each object record simply replaces any
+ * earlier state recorded for the same Invid, so an object that was
+ * edited many times since the last dump is only put into its {@link
+ * arlut.csd.ganymede.server.DBObjectBase DBObjectBase} once.  When
+ * the journal has been completely read, {@link
+ * #apply(arlut.csd.ganymede.server.DBStore)} unlinks the versions of
+ * the changed objects that were loaded from ganymede.db from the
+ * namespaces and the asymmetric link tracker, puts the final
+ * versions into their bases, and then links the final versions back
+ * in, in a single pass over each.</p>
+ *
+ * <p>Used by DBStore.loadJournal() when the ganymede.journal.bulkreplay
+ * property is true.</p>
+ */
+
+final class DBJournalReplay {
+
+  /**
+   * <p>TranslationService object for handling string localization in
+   * the Ganymede server.</p>
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBJournalReplay");
+
+  // ---
+
+  /**
+   * <p>The final state of each object touched by the journal, in the
+   * order first touched.  A null value means that the object was
+   * deleted.</p>
+   */
+
+  private final Map<Invid, DBObject> netState = new LinkedHashMap<Invid, DBObject>();
+
+  private int transactionCount = 0;
+  private int skippedCount = 0;
+  private int recordCount = 0;
+  private int deletedCount = 0;
+
+  private final long startTime;
+  private long readTime = 0;
+  private long unlinkTime = 0;
+  private long applyTime = 0;
+  private long linkTime = 0;
+
+  /* -- */
+
+  DBJournalReplay()
+  {
+    this.startTime = System.currentTimeMillis();
+  }
+
+  /**
+   * <p>Returns the current version of the object with the given
+   * Invid, taking into account the journal records read so far.
+   * Used when reading object delta records from the journal, which
+   * must be applied to the object as it stood after the previous
+   * transaction.</p>
+   */
+
+  DBObject viewDBObject(Invid invid)
+  {
+    if (netState.containsKey(invid))
+      {
+        return netState.get(invid);
+      }
+
+    return DBStore.viewDBObject(invid);
+  }
+
+  /**
+   * <p>Records the object changes from a complete transaction read
+   * from the journal.</p>
+   */
+
+  void addTransaction(List<JournalEntry> entries)
+  {
+    for (JournalEntry entry: entries)
+      {
+        netState.put(Invid.createInvid(entry.base.getTypeID(), entry.id), entry.obj);
+        recordCount++;
+      }
+
+    transactionCount++;
+  }
+
+  /**
+   * <p>Records that a transaction was read from the journal but
+   * skipped, because ganymede.db already included it.</p>
+   */
+
+  void skipTransaction()
+  {
+    skippedCount++;
+  }
+
+  /**
+   * <p>Applies the net state accumulated from the journal to the
+   * DBStore.</p>
+   */
+
+  void apply(DBStore store)
+  {
+    List<DBObject> oldObjects = new ArrayList<DBObject>();
+    Set<DBObjectBase> touchedBases = new HashSet<DBObjectBase>();
+    long phaseStart = System.currentTimeMillis();
+
+    /* -- */
+
+    readTime = phaseStart - startTime;
+
+    // first pass, unlink the versions loaded from ganymede.db.  We do
+    // all of the unlinking before any of the relinking so that a
+    // namespace value that moved from one object to another in the
+    // journal is released before it is claimed.
+
+    for (Invid invid: netState.keySet())
+      {
+        DBObjectBase base = store.getObjectBase(invid.getType());
+        DBObject oldObject = base.getObject(invid.getNum());
+
+        if (oldObject != null)
+          {
+            oldObjects.add(oldObject);
+          }
+        else if (netState.get(invid) == null)
+          {
+            continue;   // created and deleted within the journal
+          }
+
+        touchedBases.add(base);
+      }
+
+    for (DBObject oldObject: oldObjects)
+      {
+        oldObject.unregisterAsymmetricLinks();
+        unlinkNameSpaces(oldObject);
+      }
+
+    unlinkTime = System.currentTimeMillis() - phaseStart;
+    phaseStart = System.currentTimeMillis();
+
+    // second pass, put the final versions in place
+
+    for (Map.Entry<Invid, DBObject> entry: netState.entrySet())
+      {
+        Invid invid = entry.getKey();
+        DBObject obj = entry.getValue();
+        DBObjectBase base = store.getObjectBase(invid.getType());
+
+        if (obj == null)
+          {
+            base.remove(invid.getNum());
+            deletedCount++;
+          }
+        else
+          {
+            base.put(obj);
+          }
+      }
+
+    for (DBObjectBase base: touchedBases)
+      {
+        base.updateIterationSet();
+      }
+
+    applyTime = System.currentTimeMillis() - phaseStart;
+    phaseStart = System.currentTimeMillis();
+
+    // third pass, link the final versions into the namespaces and
+    // the asymmetric link tracker
+
+    for (DBObject obj: netState.values())
+      {
+        if (obj != null)
+          {
+            linkNameSpaces(obj);
+            obj.registerAsymmetricLinks();
+          }
+      }
+
+    linkTime = System.currentTimeMillis() - phaseStart;
+  }
+
+  /**
+   * <p>Returns a report of the work done by this replay.</p>
+   */
+
+  String getStatistics()
+  {
+    // "Journal replay: {0,number,#} transactions applied, {1,number,#} skipped, {2,number,#} object records, {3,number,#} net objects ({4,number,#} deleted)\nread {5,number,#} ms, unlink {6,number,#} ms, apply {7,number,#} ms, relink {8,number,#} ms"
+    return ts.l("getStatistics.report",
+                Integer.valueOf(transactionCount),
+                Integer.valueOf(skippedCount),
+                Integer.valueOf(recordCount),
+                Integer.valueOf(netState.size()),
+                Integer.valueOf(deletedCount),
+                Long.valueOf(readTime),
+                Long.valueOf(unlinkTime),
+                Long.valueOf(applyTime),
+                Long.valueOf(linkTime));
+  }
+
+  /**
+   * <p>Removes the values in obj's namespace constrained fields from
+   * their namespaces, wherever obj's field is still the holder of
+   * record.</p>
+   */
+
+  private void unlinkNameSpaces(DBObject obj)
+  {
+    for (DBField field: obj.listDBFields())
+      {
+        DBNameSpace namespace = field.getFieldDef().getNameSpace();
+
+        if (namespace == null)
+          {
+            continue;
+          }
+
+        if (field.isVector())
+          {
+            for (int i = 0; i < field.size(); i++)
+              {
+                if (namespace.lookupPersistent(field.key(i)) == field)
+                  {
+                    namespace.removeHandle(field.key(i));
+                  }
+              }
+          }
+        else
+          {
+            if (namespace.lookupPersistent(field.key()) == field)
+              {
+                namespace.removeHandle(field.key());
+              }
+          }
+      }
+  }
+
+  /**
+   * <p>Registers the values in obj's namespace constrained fields in
+   * their namespaces.</p>
+   */
+
+  private void linkNameSpaces(DBObject obj)
+  {
+    for (DBField field: obj.listDBFields())
+      {
+        DBNameSpace namespace = field.getFieldDef().getNameSpace();
+
+        if (namespace == null)
+          {
+            continue;
+          }
+
+        if (field.isVector())
+          {
+            for (int i = 0; i < field.size(); i++)
+              {
+                namespace.receiveValue(field.key(i), field);
+              }
+          }
+        else
+          {
+            namespace.receiveValue(field.key(), field);
+          }
+      }
+  }
+}
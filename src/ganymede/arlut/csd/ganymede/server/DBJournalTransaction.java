@@ -91,6 +91,16 @@ final class DBJournalTransaction {
 
   private final String username;
 
+  /**
+   * <p>If the journal is operating in group commit mode, this ticket
+   * will be set when the transaction's finalize record is queued to
+   * the {@link arlut.csd.ganymede.server.DBJournalWriter
+   * DBJournalWriter}, and can be waited on to learn when the
+   * transaction is durable on disk.</p>
+   */
+
+  private DBJournalWriter.Ticket durabilityTicket = null;
+
   /* -- */
 
   public DBJournalTransaction(long time, long fileOffset, int transactionNumber, String username)
@@ -120,4 +130,14 @@ final class DBJournalTransaction {
   {
     return this.username;
   }
+
+  void setDurabilityTicket(DBJournalWriter.Ticket ticket)
+  {
+    this.durabilityTicket = ticket;
+  }
+
+  DBJournalWriter.Ticket getDurabilityTicket()
+  {
+    return this.durabilityTicket;
+  }
 }
@@ -0,0 +1,794 @@
+/*
+
+   DBJournalWriter.java
+
+   Background group-commit writer thread for the DBJournal.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package arlut.csd.ganymede.server;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import arlut.csd.Util.TranslationService;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                 DBJournalWriter
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>The DBJournalWriter manages appending to and syncing the {@link
+ * arlut.csd.ganymede.server.DBJournal DBJournal} file when the
+ * journal is operating in group commit mode.</p>
+ *
+ * <p>Committing transactions serialize their journal records into
+ * memory and hand them to the writer, which appends each record with
+ * a single write on the committing thread and returns a {@link
+ * arlut.csd.ganymede.server.DBJournalWriter.Ticket Ticket} for it.
+ * The expensive fsync is left to the writer's own thread, which
+ * collects every durable record that arrives within the configured
+ * batch delay.  A single getFD().sync() then makes the whole batch
+ * durable, and every committing thread waiting on a ticket in that
+ * batch is released at once.  Records can be appended while a sync
+ * is in progress, so committing threads never wait on a sync just to
+ * get their records into the file.</p>
+ *
+ * <p>If a write or a sync fails, the writer truncates the journal
+ * back to the last known durable length, gives back the numbers of
+ * every transaction that did not make it to disk, and refuses all
+ * further records.  This keeps a partially written batch from leaving
+ * the journal with finalize records whose transaction bodies were
+ * lost.  The failure is reported to the admin consoles, and the
+ * writer stays wedged until the journal is reset, which the admin
+ * can do by dumping the database from the admin console.  A
+ * successful dump writes all committed transactions into ganymede.db
+ * and gives the writer a fresh journal file.</p>
+ *
+ * <p>The DBJournalWriter's monitor protects its state and is held
+ * while records are written, but the writer thread does not hold it
+ * while syncing.</p>
+ */
+
+final class DBJournalWriter implements Runnable {
+
+  static boolean debug = false;
+
+  /**
+   * TranslationService object for handling string localization in
+   * the Ganymede server.
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBJournalWriter");
+
+  // ---
+
+  private final DBStore store;
+
+  /**
+   * <p>The journal file we are appending to.  The DBJournal may use
+   * it directly only after a {@link #flush()} while holding the
+   * DBJournal monitor, so that no new records can be appended.</p>
+   */
+
+  private RandomAccessFile jFile;
+
+  /**
+   * <p>The longest time, in milliseconds, that the writer will hold
+   * a durable record waiting for other transactions to join its
+   * batch before syncing.  If zero, the writer syncs as soon as it
+   * is woken, and batching only happens with records that were
+   * appended while the previous sync was in progress.</p>
+   */
+
+  private final long maxBatchDelay;
+
+  /**
+   * <p>Durable tickets that have been written but not yet synced, in
+   * file order.</p>
+   */
+
+  private List<Ticket> pendingSync = new ArrayList<Ticket>();
+
+  /**
+   * <p>The time at which the writer thread should sync the tickets
+   * in pendingSync.</p>
+   */
+
+  private long deadline = 0;
+
+  /**
+   * <p>True while the writer thread is syncing the file.  The file
+   * must not be truncated while this is true.</p>
+   */
+
+  private boolean syncing = false;
+
+  /**
+   * <p>The length of the journal file as of the last successful
+   * sync.  We'll truncate back to this on any I/O failure.</p>
+   */
+
+  private long durableLength;
+
+  /**
+   * <p>The length of the journal file after the last write.</p>
+   */
+
+  private long writtenLength;
+
+  /**
+   * <p>The number of the last transaction whose finalize record has
+   * been synced, or -1 if no transactions have been appended to the
+   * current file.  When a batch fails, we put the server's
+   * transaction counter back to this number.</p>
+   */
+
+  private int lastDurableTransaction = -1;
+
+  /**
+   * <p>If non-null, the writer has hit an I/O failure and will
+   * reject all tickets until a new file is provided with {@link
+   * #setFile(java.io.RandomAccessFile)}.</p>
+   */
+
+  private IOException failure = null;
+
+  private boolean running = true;
+
+  private final Thread thread;
+
+  /**
+   * <p>Number of syncs performed, for statistics reporting.</p>
+   */
+
+  private long syncCount = 0;
+
+  /**
+   * <p>Number of durable records made durable by those syncs, for
+   * statistics reporting.</p>
+   */
+
+  private long durableCount = 0;
+
+  /* -- */
+
+  public DBJournalWriter(DBStore store, RandomAccessFile jFile, long maxBatchDelay) throws IOException
+  {
+    this.store = store;
+    this.jFile = jFile;
+    this.maxBatchDelay = maxBatchDelay < 0 ? 0 : maxBatchDelay;
+    this.durableLength = jFile.length();
+    this.writtenLength = this.durableLength;
+
+    this.thread = new Thread(this, "Ganymede Journal Writer Thread");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * <p>Appends a block of bytes to the journal.  The returned ticket
+   * will already be written, or failed.  If durable is true, the
+   * ticket will not be marked complete until the bytes have been
+   * synced to disk.</p>
+   *
+   * @param transactionNumber The number of the transaction the
+   * record belongs to.  If the record is durable, the transaction is
+   * taken to be complete once the record is synced.
+   */
+
+  public Ticket append(byte[] data, boolean durable, int transactionNumber)
+  {
+    Ticket ticket = new Ticket(durable, transactionNumber);
+    IOException writeFailure;
+    List<Ticket> failed;
+    int lastTransaction;
+
+    /* -- */
+
+    synchronized (this)
+      {
+        if (failure != null)
+          {
+            ticket.fail(failure);
+            return ticket;
+          }
+
+        if (!running)
+          {
+            ticket.fail(new IOException("DBJournalWriter closed"));
+            return ticket;
+          }
+
+        try
+          {
+            jFile.write(data);
+            writtenLength += data.length;
+
+            if (lastDurableTransaction < 0)
+              {
+                // everything before the first transaction appended
+                // to this file is already on disk
+
+                lastDurableTransaction = transactionNumber - 1;
+              }
+
+            ticket.endOffset = writtenLength;
+            ticket.markWritten();
+
+            if (durable)
+              {
+                addPending(ticket);
+              }
+
+            return ticket;
+          }
+        catch (IOException ex)
+          {
+            ticket.fail(ex);
+
+            waitForSync();
+
+            if (failure != null)
+              {
+                return ticket;
+              }
+
+            writeFailure = ex;
+            failed = markFailed(ex);
+            lastTransaction = lastDurableTransaction;
+          }
+      }
+
+    reportFailure(writeFailure, failed, lastTransaction);
+
+    return ticket;
+  }
+
+  /**
+   * <p>Truncates the journal to the given length.  The returned
+   * ticket will be marked complete once the truncation has been
+   * synced to disk.</p>
+   */
+
+  public synchronized Ticket truncate(long length)
+  {
+    Ticket ticket = new Ticket(true, -1);
+
+    /* -- */
+
+    if (failure != null)
+      {
+        ticket.fail(failure);
+        return ticket;
+      }
+
+    waitForSync();
+
+    if (failure != null)
+      {
+        ticket.fail(failure);
+        return ticket;
+      }
+
+    try
+      {
+        jFile.setLength(length);
+        jFile.seek(length);
+      }
+    catch (IOException ex)
+      {
+        // the file is in an unknown state, but the truncation is
+        // only ever done to back a failed transaction out of the
+        // journal.  we'll let the next sync report any lasting
+        // problem.
+
+        ticket.fail(ex);
+        return ticket;
+      }
+
+    writtenLength = length;
+
+    if (durableLength > length)
+      {
+        durableLength = length;
+      }
+
+    ticket.endOffset = length;
+    ticket.markWritten();
+    addPending(ticket);
+
+    return ticket;
+  }
+
+  /**
+   * <p>Blocks until every record appended before this call has been
+   * synced.</p>
+   *
+   * @throws IOException if the writer has failed
+   */
+
+  public void flush() throws IOException
+  {
+    Ticket ticket = new Ticket(true, -1);
+
+    /* -- */
+
+    synchronized (this)
+      {
+        if (failure != null)
+          {
+            throw failure;
+          }
+
+        ticket.endOffset = writtenLength;
+        ticket.markWritten();
+        addPending(ticket);
+        deadline = 0;
+      }
+
+    ticket.awaitDurable();
+  }
+
+  /**
+   * <p>Returns true if the writer has failed and is rejecting all
+   * records until it is given a new file.</p>
+   */
+
+  public synchronized boolean hasFailed()
+  {
+    return failure != null;
+  }
+
+  /**
+   * <p>Replaces the journal file we are writing to, clearing any
+   * previous failure.  The caller must have called {@link #flush()}
+   * and must prevent new records from being appended until this
+   * method returns.</p>
+   */
+
+  public void setFile(RandomAccessFile newFile) throws IOException
+  {
+    boolean recovered;
+
+    /* -- */
+
+    synchronized (this)
+      {
+        waitForSync();
+
+        this.jFile = newFile;
+        this.durableLength = newFile.length();
+        this.writtenLength = this.durableLength;
+        this.lastDurableTransaction = -1;
+
+        recovered = this.failure != null;
+        this.failure = null;
+      }
+
+    if (recovered)
+      {
+        // "The journal has been reset, and transactions are being accepted again."
+        Ganymede.debug(ts.l("setFile.recovered"));
+        GanymedeAdmin.setState(DBStore.normal_state);
+      }
+  }
+
+  /**
+   * <p>Shuts down the writer thread after any pending records are
+   * synced.</p>
+   */
+
+  public void close()
+  {
+    synchronized (this)
+      {
+        running = false;
+        this.notifyAll();
+      }
+
+    try
+      {
+        thread.join();
+      }
+    catch (InterruptedException ex)
+      {
+      }
+  }
+
+  /**
+   * <p>Returns a short description of this writer's batching
+   * statistics.</p>
+   */
+
+  public synchronized String getStatistics()
+  {
+    double average = syncCount == 0 ? 0.0 : (double) durableCount / syncCount;
+
+    return "journal syncs: " + syncCount + ", durable records: " + durableCount +
+      ", average batch: " + String.format("%.2f", Double.valueOf(average));
+  }
+
+  /**
+   * <p>Adds a written durable ticket to the next batch to be synced.
+   * Must be called while holding the writer's monitor.</p>
+   */
+
+  private void addPending(Ticket ticket)
+  {
+    if (pendingSync.isEmpty())
+      {
+        deadline = System.currentTimeMillis() + maxBatchDelay;
+      }
+
+    pendingSync.add(ticket);
+    this.notifyAll();
+  }
+
+  /**
+   * <p>Waits until the writer thread is not syncing.  Must be called
+   * while holding the writer's monitor.</p>
+   */
+
+  private void waitForSync()
+  {
+    while (syncing)
+      {
+        try
+          {
+            this.wait();
+          }
+        catch (InterruptedException ex)
+          {
+          }
+      }
+  }
+
+  public void run()
+  {
+    List<Ticket> batch;
+    RandomAccessFile file;
+    long syncLength;
+    int batchTransaction;
+
+    /* -- */
+
+    while (true)
+      {
+        synchronized (this)
+          {
+            while (true)
+              {
+                if (pendingSync.isEmpty())
+                  {
+                    if (!running)
+                      {
+                        return;
+                      }
+
+                    try
+                      {
+                        this.wait();
+                      }
+                    catch (InterruptedException ex)
+                      {
+                      }
+                  }
+                else
+                  {
+                    long remaining = deadline - System.currentTimeMillis();
+
+                    if (remaining <= 0 || !running)
+                      {
+                        break;
+                      }
+
+                    try
+                      {
+                        this.wait(remaining);
+                      }
+                    catch (InterruptedException ex)
+                      {
+                      }
+                  }
+              }
+
+            batch = pendingSync;
+            pendingSync = new ArrayList<Ticket>();
+            file = jFile;
+            syncLength = writtenLength;
+            syncing = true;
+          }
+
+        batchTransaction = -1;
+
+        for (Ticket ticket: batch)
+          {
+            if (ticket.transactionNumber > batchTransaction)
+              {
+                batchTransaction = ticket.transactionNumber;
+              }
+          }
+
+        try
+          {
+            file.getFD().sync();
+          }
+        catch (IOException ex)
+          {
+            List<Ticket> failed;
+            int lastTransaction;
+
+            synchronized (this)
+              {
+                syncing = false;
+                this.notifyAll();
+
+                failed = markFailed(ex);
+                failed.addAll(0, batch);
+                lastTransaction = lastDurableTransaction;
+              }
+
+            reportFailure(ex, failed, lastTransaction);
+
+            continue;
+          }
+
+        synchronized (this)
+          {
+            syncing = false;
+            this.notifyAll();
+
+            durableLength = syncLength;
+            syncCount++;
+            durableCount += batch.size();
+
+            if (batchTransaction > lastDurableTransaction)
+              {
+                lastDurableTransaction = batchTransaction;
+              }
+          }
+
+        if (debug)
+          {
+            System.err.println("DBJournalWriter: synced " + batch.size() + " records");
+          }
+
+        for (Ticket ticket: batch)
+          {
+            ticket.markDurable();
+          }
+      }
+  }
+
+  /**
+   * <p>Puts the writer into its failed state after an I/O failure.
+   * We try to truncate the journal back to its last durable length,
+   * and return the tickets that were waiting to be synced, which the
+   * caller must fail with {@link #reportFailure(java.io.IOException,
+   * java.util.List, int) reportFailure()} once it has released the
+   * writer's monitor.</p>
+   *
+   * <p>Must be called while holding the writer's monitor, when the
+   * writer thread is not syncing.</p>
+   */
+
+  private List<Ticket> markFailed(IOException ex)
+  {
+    List<Ticket> failed = pendingSync;
+
+    /* -- */
+
+    failure = ex;
+    pendingSync = new ArrayList<Ticket>();
+
+    try
+      {
+        jFile.setLength(durableLength);
+        jFile.seek(durableLength);
+        writtenLength = durableLength;
+      }
+    catch (IOException inex)
+      {
+        Ganymede.logError(inex);
+      }
+
+    return failed;
+  }
+
+  /**
+   * <p>Gives back the numbers of every transaction that didn't make
+   * it to disk, fails the tickets that were waiting on them, and
+   * tells the admin consoles that the journal is refusing
+   * transactions.</p>
+   *
+   * <p>The transaction numbers are reset once for the whole failed
+   * batch, before any of the committing threads are released, so that
+   * the next transaction to commit will follow the last one that is
+   * actually in the journal.</p>
+   */
+
+  private void reportFailure(IOException ex, List<Ticket> failed, int lastTransaction)
+  {
+    if (lastTransaction >= 0)
+      {
+        store.resetTransactionNumber(lastTransaction);
+      }
+
+    for (Ticket ticket: failed)
+      {
+        ticket.fail(ex);
+      }
+
+    Ganymede.logError(ex, "DBJournalWriter: journal I/O failure");
+
+    // "***\n*** The journal could not be written to disk, and all transactions will be refused until\n*** the journal is reset.  Dump the database from the admin console once the problem is fixed.\n***\n\n{0}"
+    Ganymede.debug(ts.l("reportFailure.wedged", ex.toString()));
+
+    // "Journal Failed - Dump Database to Recover"
+    GanymedeAdmin.setState(ts.l("reportFailure.state"));
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                     inner class
+                                                                          Ticket
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>Handle for a single record appended to the DBJournalWriter.
+   * Committing threads block on their ticket until the record has
+   * been synced to disk.</p>
+   */
+
+  static final class Ticket {
+
+    final boolean durable;
+    final int transactionNumber;
+
+    /**
+     * <p>The length of the journal file once this ticket's record was
+     * written.</p>
+     */
+
+    long endOffset = -1;
+
+    private boolean written = false;
+    private boolean done = false;
+    private IOException exception = null;
+
+    /* -- */
+
+    Ticket(boolean durable, int transactionNumber)
+    {
+      this.durable = durable;
+      this.transactionNumber = transactionNumber;
+    }
+
+    /**
+     * <p>Throws an IOException if this ticket's record could not be
+     * written to the journal file.</p>
+     */
+
+    public synchronized void awaitWritten() throws IOException
+    {
+      while (!written && exception == null)
+        {
+          try
+            {
+              this.wait();
+            }
+          catch (InterruptedException ex)
+            {
+            }
+        }
+
+      if (exception != null)
+        {
+          throw exception;
+        }
+    }
+
+    /**
+     * <p>Blocks until this ticket's record has been made durable.
+     * For non-durable tickets, this is the same as {@link
+     * #awaitWritten()}.</p>
+     */
+
+    public synchronized void awaitDurable() throws IOException
+    {
+      if (!durable)
+        {
+          awaitWritten();
+          return;
+        }
+
+      while (!done && exception == null)
+        {
+          try
+            {
+              this.wait();
+            }
+          catch (InterruptedException ex)
+            {
+            }
+        }
+
+      if (exception != null)
+        {
+          throw exception;
+        }
+    }
+
+    synchronized void markWritten()
+    {
+      written = true;
+
+      if (!durable)
+        {
+          done = true;
+        }
+
+      this.notifyAll();
+    }
+
+    synchronized void markDurable()
+    {
+      done = true;
+      this.notifyAll();
+    }
+
+    synchronized void fail(IOException ex)
+    {
+      if (done)
+        {
+          return;
+        }
+
+      exception = ex;
+      this.notifyAll();
+    }
+  }
+}
@@ -50,7 +50,12 @@
 
 package arlut.csd.ganymede.server;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
 
 /*------------------------------------------------------------------------------
                                                                   abstract class
@@ -89,6 +94,10 @@ import java.util.List;
  * complete their updates, but no new writer is queued until the dump
  * thread finishes dumping the locked bases.</p>
  *
+ * <p>Among writers, locks are granted in the order in which they
+ * queued up.  A writer will not be granted while an earlier writer is
+ * still waiting on any of the same bases.</p>
+ *
  * <p>All of this priority logic is implemented in the establish()
  * methods of the concrete DBLock subclasses.</p>
  *
@@ -102,12 +111,19 @@ import java.util.List;
  * release()} methods (as implemented in {@link
  * arlut.csd.ganymede.server.DBReadLock DBReadLock}, {@link
  * arlut.csd.ganymede.server.DBWriteLock DBWriteLock}, and {@link
- * arlut.csd.ganymede.server.DBDumpLock DBDumpLock}) are all
- * synchronized on the Ganymede server's {@link
+ * arlut.csd.ganymede.server.DBDumpLock DBDumpLock}) all hold the
+ * mutex of the Ganymede server's {@link
  * arlut.csd.ganymede.server.DBLockSync DBLockSync} singleton.  This
  * synchronization is critical for the proper functioning of the
  * DBLock system.</p>
  *
+ * <p>Each DBLock keeps its bases sorted by object type id, and
+ * examines them in that order when deciding whether it can be
+ * established.  A lock that has to wait queues itself on the first
+ * base that is keeping it out and sleeps until that base's lock state
+ * changes, rather than waking up to re-examine every base whenever
+ * any lock anywhere in the server is released.</p>
+ *
  * <p>There is currently no intrinsic support for handling timeouts
  * within the DBLock class hierarchy, and locks can persist
  * indefinitely.</p>
@@ -137,19 +153,198 @@ import java.util.List;
 public abstract class DBLock {
 
   /**
-   * All DBLock's establish() and release() methods synchronize their
-   * critical sections on a singleton DBLockSync object held in the
-   * Ganymede server's DBStore object in order to guarantee that all
-   * lock negotiations are thread-safe.
+   * All DBLock's establish() and release() methods hold the mutex of
+   * a singleton DBLockSync object held in the Ganymede server's
+   * DBStore object in order to guarantee that all lock negotiations
+   * are thread-safe.
    */
 
   final DBLockSync lockSync;
 
+  /**
+   * Condition that a thread waiting in establish() sleeps on.  It is
+   * signalled by the DBLockSync when the base this lock is queued on
+   * changes, or when the lock is aborted.
+   */
+
+  final Condition wakeup;
+
+  /**
+   * Condition that release() waits on when called from another
+   * thread while this lock is still in establish().  Signalled when
+   * establish() returns or throws.
+   */
+
+  final Condition settled;
+
+  /**
+   * The DBObjectBase whose wait queue this lock is currently in, or
+   * null if this lock is not waiting.  Managed by the DBLockSync
+   * while its mutex is held.
+   */
+
+  DBObjectBase queuedOn = null;
+
+  /**
+   * Identifies the holder of this lock in the admin console's lock
+   * report.  Set by {@link
+   * arlut.csd.ganymede.server.DBSessionLockManager
+   * DBSessionLockManager} to the owning session's identity, or else
+   * taken from the lock key when establish() is called.
+   */
+
+  private String owner = null;
+
+  /**
+   * Name of the thread that called establish().
+   */
+
+  private String ownerThread = null;
+
+  /**
+   * System.nanoTime() when establish() was called.
+   */
+
+  private long requestedAt = 0;
+
+  /**
+   * System.nanoTime() when this lock was granted.
+   */
+
+  private long grantedAt = 0;
+
   /* -- */
 
   DBLock(DBLockSync sync)
   {
     this.lockSync = sync;
+    this.wakeup = sync.newCondition();
+    this.settled = sync.newCondition();
+  }
+
+  /**
+   * Returns an immutable copy of bases, sorted by object type id.
+   * All DBLocks examine their bases in this order, so that any two
+   * locks contending for the same bases will always meet on the same
+   * base first.
+   */
+
+  static List<DBObjectBase> orderBases(Collection<DBObjectBase> bases)
+  {
+    List<DBObjectBase> result = new ArrayList<DBObjectBase>(bases);
+
+    Collections.sort(result, new Comparator<DBObjectBase>() {
+        public int compare(DBObjectBase a, DBObjectBase b)
+        {
+          return a.getTypeID() - b.getTypeID();
+        }
+      });
+
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Returns the {@link arlut.csd.ganymede.server.DBLockStats
+   * DBLockStats} kind of this lock.
+   */
+
+  abstract int getLockKind();
+
+  /**
+   * Sets the identity reported for the holder of this lock.
+   */
+
+  void setOwner(String owner)
+  {
+    this.owner = owner;
+  }
+
+  /**
+   * Returns the identity reported for the holder of this lock, along
+   * with the name of the thread that established it.
+   */
+
+  String getOwner()
+  {
+    if (ownerThread == null)
+      {
+        return owner;
+      }
+
+    return owner + " [" + ownerThread + "]";
+  }
+
+  /**
+   * Returns the number of milliseconds that this lock has been held,
+   * if it is locked, or has been waiting in establish(), if not.
+   */
+
+  long getAge()
+  {
+    long since = isLocked() ? grantedAt : requestedAt;
+
+    return (System.nanoTime() - since) / 1000000L;
+  }
+
+  /**
+   * Called by establish() once the lock key has been claimed.  The
+   * note methods must be called while holding the DBLockSync mutex.
+   */
+
+  void noteRequested(Object key)
+  {
+    if (this.owner == null)
+      {
+        this.owner = String.valueOf(key);
+      }
+
+    this.ownerThread = Thread.currentThread().getName();
+    this.requestedAt = System.nanoTime();
+  }
+
+  /**
+   * Called by establish() when the lock is granted, to record how
+   * long we waited on each of our bases.
+   */
+
+  void noteGranted()
+  {
+    this.grantedAt = System.nanoTime();
+
+    for (DBObjectBase base: getBases())
+      {
+        lockSync.getStats(base, getLockKind()).recordWait(grantedAt - requestedAt);
+      }
+  }
+
+  /**
+   * Called by establish() when it throws without granting the lock.
+   */
+
+  void noteFailed()
+  {
+    long waited = System.nanoTime() - requestedAt;
+
+    for (DBObjectBase base: getBases())
+      {
+        lockSync.getStats(base, getLockKind()).recordFailure(waited);
+      }
+  }
+
+  /**
+   * Called by release() before a granted lock is taken off of its
+   * bases, to record how long it was held.
+   */
+
+  void noteReleased()
+  {
+    long held = System.nanoTime() - grantedAt;
+    String holder = getOwner();
+
+    for (DBObjectBase base: getBases())
+      {
+        lockSync.getStats(base, getLockKind()).recordHold(held, holder);
+      }
   }
 
   /**
@@ -159,7 +354,9 @@ public abstract class DBLock {
 
   boolean isLocked(DBObjectBase candidateBase)
   {
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         if (!isLocked())
           {
@@ -174,6 +371,10 @@ public abstract class DBLock {
               }
           }
       }
+    finally
+      {
+        lockSync.unlock();
+      }
 
     return false;
   }
@@ -186,7 +387,9 @@ public abstract class DBLock {
 
   boolean isLocked(List<DBObjectBase> bases)
   {
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         if (!isLocked())
           {
@@ -195,6 +398,10 @@ public abstract class DBLock {
 
         return arlut.csd.Util.VectorUtils.difference(bases, getBases()).size() == 0;
       }
+    finally
+      {
+        lockSync.unlock();
+      }
   }
 
   /**
@@ -205,10 +412,16 @@ public abstract class DBLock {
 
   boolean overlaps(List<DBObjectBase> bases)
   {
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         return arlut.csd.Util.VectorUtils.overlaps(bases, getBases());
       }
+    finally
+      {
+        lockSync.unlock();
+      }
   }
 
   /**
@@ -245,8 +458,8 @@ public abstract class DBLock {
    * {@link arlut.csd.ganymede.server.DBDumpLock DBDumpLock}).</p>
    *
    * <p>A thread that calls establish() will be suspended (waiting on
-   * the server's {@link arlut.csd.ganymede.server.DBLockSync
-   * DBLockSync} until all DBObjectBases listed in the DBLock's
+   * a Condition of the server's {@link arlut.csd.ganymede.server.DBLockSync
+   * DBLockSync}) until all DBObjectBases listed in the DBLock's
    * constructor are available to be locked.  At that point, the
    * thread blocking on establish() will wake up possessing a lock on
    * the requested DBObjectBases.</p>
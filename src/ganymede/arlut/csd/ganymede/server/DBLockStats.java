@@ -0,0 +1,190 @@
+/*
+
+   DBLockStats.java
+
+   Wait and hold time statistics for one kind of DBLock on one base.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.server;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                     DBLockStats
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>Lock contention statistics for one kind of {@link
+ * arlut.csd.ganymede.server.DBLock DBLock} (read, write, dump or
+ * shared commit write) on
+ * one {@link arlut.csd.ganymede.server.DBObjectBase DBObjectBase}.</p>
+ *
+ * <p>DBLockStats records how long locks waited in establish() before
+ * they were granted, how long they were held once granted, and the
+ * identity of the holder of the longest lock seen.  Wait and hold
+ * times are also kept as histograms with power-of-two millisecond
+ * buckets.</p>
+ *
+ * <p>DBLockStats objects are kept by the server's {@link
+ * arlut.csd.ganymede.server.DBLockSync DBLockSync}, and are only
+ * touched while holding its mutex.</p>
+ */
+
+final class DBLockStats {
+
+  static final int READ = 0;
+  static final int WRITE = 1;
+  static final int DUMP = 2;
+  static final int COMMIT = 3;
+
+  static final int KINDS = 4;
+
+  /**
+   * <p>Number of histogram buckets.  Bucket 0 counts times under 1
+   * ms, bucket n counts times under 2^n ms, and the last bucket
+   * counts everything longer.</p>
+   */
+
+  static final int BUCKETS = 16;
+
+  /**
+   * <p>Returns the histogram bucket for a time in nanoseconds.</p>
+   */
+
+  static int bucket(long nanos)
+  {
+    long millis = nanos / 1000000L;
+
+    if (millis <= 0)
+      {
+        return 0;
+      }
+
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+  }
+
+  /**
+   * <p>Returns the upper bound in milliseconds of a histogram bucket,
+   * or -1 for the last, open-ended bucket.</p>
+   */
+
+  static long bucketLimit(int bucket)
+  {
+    if (bucket >= BUCKETS - 1)
+      {
+        return -1;
+      }
+
+    return 1L << bucket;
+  }
+
+  // ---
+
+  long granted = 0;
+  long failed = 0;
+
+  long totalWaitNanos = 0;
+  long maxWaitNanos = 0;
+  final long[] waitHistogram = new long[BUCKETS];
+
+  long released = 0;
+  long totalHoldNanos = 0;
+  long maxHoldNanos = 0;
+  String maxHoldOwner = null;
+  final long[] holdHistogram = new long[BUCKETS];
+
+  /* -- */
+
+  /**
+   * <p>Records a lock granted after waiting for nanos.</p>
+   */
+
+  void recordWait(long nanos)
+  {
+    granted++;
+    totalWaitNanos += nanos;
+
+    if (nanos > maxWaitNanos)
+      {
+        maxWaitNanos = nanos;
+      }
+
+    waitHistogram[bucket(nanos)]++;
+  }
+
+  /**
+   * <p>Records a lock that left establish() without being granted,
+   * after waiting for nanos.</p>
+   */
+
+  void recordFailure(long nanos)
+  {
+    failed++;
+    waitHistogram[bucket(nanos)]++;
+  }
+
+  /**
+   * <p>Records a lock released by owner after being held for
+   * nanos.</p>
+   */
+
+  void recordHold(long nanos, String owner)
+  {
+    released++;
+    totalHoldNanos += nanos;
+
+    if (nanos > maxHoldNanos)
+      {
+        maxHoldNanos = nanos;
+        maxHoldOwner = owner;
+      }
+
+    holdHistogram[bucket(nanos)]++;
+  }
+
+  boolean isEmpty()
+  {
+    return granted == 0 && failed == 0;
+  }
+}
@@ -50,9 +50,15 @@
 
 package arlut.csd.ganymede.server;
 
-import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import arlut.csd.Util.TranslationService;
 
 /*------------------------------------------------------------------------------
                                                                            class
@@ -65,17 +71,52 @@ import java.util.List;
  * coordination.  All global data required for coordinating DBLock
  * lock activity is stored in the singleton object.</p>
  *
- * <p>Note that much code in the various {@link
- * arlut.csd.ganymede.server.DBLock} subclasses, and in the rest of
- * the Ganymede server, establishes external synchronization on the
- * DBLockSync object referenced in {@link
- * arlut.csd.ganymede.server.DBStore#lockSync DBStore.lockSync}, so
- * certain methods in this class which do not appear synchronized may
- * in fact be dependent on external synchronization.</p>
+ * <p>All lock negotiation in the server is done while holding the
+ * DBLockSync's mutex, which is acquired with {@link #lock()} and
+ * released with {@link #unlock()}.  Note that much code in the
+ * various {@link arlut.csd.ganymede.server.DBLock} subclasses, and in
+ * the rest of the Ganymede server, holds the mutex of the DBLockSync
+ * object referenced in {@link
+ * arlut.csd.ganymede.server.DBStore#lockSync DBStore.lockSync} across
+ * several calls, so certain methods in this class which do not
+ * appear to lock may in fact be dependent on the caller holding the
+ * mutex.</p>
+ *
+ * <p>A DBLock that cannot be established waits on its own {@link
+ * java.util.concurrent.locks.Condition Condition}, after placing
+ * itself in the wait queue of the first {@link
+ * arlut.csd.ganymede.server.DBObjectBase DBObjectBase} that is keeping
+ * it out.  When a DBObjectBase's lock state changes in a way that
+ * might let a waiting lock in, the DBObjectBase calls {@link
+ * #signal(arlut.csd.ganymede.server.DBObjectBase)}, which wakes only
+ * the locks queued on that base.  Locks waiting on other bases are
+ * left undisturbed.</p>
+ *
+ * <p>DBLockSync also keeps {@link
+ * arlut.csd.ganymede.server.DBLockStats DBLockStats} wait and hold
+ * time statistics for each kind of lock on each DBObjectBase, and
+ * can produce a report of the locks currently held and waiting for
+ * the admin console with {@link #getLockReport(java.util.Collection)}.</p>
  */
 
 public final class DBLockSync {
 
+  /**
+   * TranslationService object for handling string localization in
+   * the Ganymede server.
+   */
+
+  static final TranslationService ts =
+    TranslationService.getTranslationService("arlut.csd.ganymede.server.DBLockSync");
+
+  /**
+   * <p>The mutex guarding all lock negotiation.  Used in place of
+   * this object's monitor so that each DBLock can wait on its own
+   * Condition.</p>
+   */
+
+  private final ReentrantLock mutex = new ReentrantLock();
+
   /**
    * <p>Identifier keys for current {@link arlut.csd.ganymede.server.DBLock
    * DBLocks}.</p>
@@ -91,6 +132,24 @@ public final class DBLockSync {
 
   private HashMap lockHash;
 
+  /**
+   * <p>Locks waiting in establish(), queued on the DBObjectBase
+   * that is currently keeping them out.  A waiting lock is queued on
+   * at most one base at a time.</p>
+   */
+
+  private HashMap<DBObjectBase, LinkedHashSet<DBLock>> waitQueues;
+
+  /**
+   * <p>Lock statistics for each DBObjectBase, keyed by object type
+   * id and indexed by {@link
+   * arlut.csd.ganymede.server.DBLockStats DBLockStats} lock kind.
+   * Keyed by type id rather than DBObjectBase so that statistics
+   * survive a schema edit.</p>
+   */
+
+  private final HashMap<Short, DBLockStats[]> stats = new HashMap<Short, DBLockStats[]>();
+
   /**
    * <p>A count of how many {@link arlut.csd.ganymede.server.DBLock
    * DBLocks} are established on {@link
@@ -98,7 +157,7 @@ public final class DBLockSync {
    * DBStore.</p>
    */
 
-  private int locksHeld = 0;
+  private volatile int locksHeld = 0;
 
   /**
    * <p>A count of how many {@link arlut.csd.ganymede.server.DBLock
@@ -107,7 +166,7 @@ public final class DBLockSync {
    * DBStore.</p>
    */
 
-  private int locksWaiting = 0;
+  private volatile int locksWaiting = 0;
 
   /* -- */
 
@@ -116,25 +175,67 @@ public final class DBLockSync {
     resetLockHash(0);
   }
 
+  /**
+   * <p>Acquires the lock negotiation mutex, blocking until it is
+   * available.  The mutex is reentrant.  Every call to lock() must be
+   * balanced by a call to {@link #unlock()} in a finally
+   * clause.</p>
+   */
+
+  public void lock()
+  {
+    mutex.lock();
+  }
+
+  /**
+   * <p>Releases the lock negotiation mutex.</p>
+   */
+
+  public void unlock()
+  {
+    mutex.unlock();
+  }
+
+  /**
+   * <p>Creates a new Condition bound to the lock negotiation
+   * mutex.</p>
+   */
+
+  Condition newCondition()
+  {
+    return mutex.newCondition();
+  }
+
   /**
    * <p>This method causes the DBLockSync object's lock owner HashMap
    * to be reset.  If count is not zero, that value will be used to
    * set the initial capacity for the HashMap.</p>
    */
 
-  public synchronized void resetLockHash(int count)
+  public void resetLockHash(int count)
   {
-    if (count <= 0)
+    mutex.lock();
+
+    try
       {
-        lockHash = new HashMap(20); // default value
+        if (count <= 0)
+          {
+            lockHash = new HashMap(20); // default value
+          }
+        else
+          {
+            lockHash = new HashMap(count);
+          }
+
+        waitQueues = new HashMap<DBObjectBase, LinkedHashSet<DBLock>>();
+
+        locksHeld = 0;
+        locksWaiting = 0;
       }
-    else
+    finally
       {
-        lockHash = new HashMap(count);
+        mutex.unlock();
       }
-
-    locksHeld = 0;
-    locksWaiting = 0;
   }
 
   /**
@@ -145,38 +246,47 @@ public final class DBLockSync {
    * there was a pre-existing conflicting association.
    */
 
-  public synchronized boolean claimLockKey(Object key, DBLock lock)
+  public boolean claimLockKey(Object key, DBLock lock)
   {
-    if (lock instanceof DBReadLock)
-      {
-        Object obj = lockHash.get(key);
+    mutex.lock();
 
-        if (obj != null && !(obj instanceof List))
+    try
+      {
+        if (lock instanceof DBReadLock)
           {
-            return false;
-          }
+            Object obj = lockHash.get(key);
+
+            if (obj != null && !(obj instanceof List))
+              {
+                return false;
+              }
 
-        List<DBLock> lockList = (List<DBLock>) obj;
+            List<DBLock> lockList = (List<DBLock>) obj;
 
-        if (lockList == null)
+            if (lockList == null)
+              {
+                lockList = new ArrayList<DBLock>();
+                lockHash.put(key, lockList);
+              }
+
+            lockList.add(lock);
+          }
+        else
           {
-            lockList = new ArrayList<DBLock>();
-            lockHash.put(key, lockList);
+            if (lockHash.containsKey(key))
+              {
+                return false;
+              }
+
+            lockHash.put(key, lock);
           }
 
-        lockList.add(lock);
+        return true;
       }
-    else
+    finally
       {
-        if (lockHash.containsKey(key))
-          {
-            return false;
-          }
-
-        lockHash.put(key, lock);
+        mutex.unlock();
       }
-
-    return true;
   }
 
   /**
@@ -186,47 +296,56 @@ public final class DBLockSync {
    * IllegalStateException will be thrown.</p>
    */
 
-  public synchronized void unclaimLockKey(Object key, DBLock lock)
+  public void unclaimLockKey(Object key, DBLock lock)
   {
-    Object obj = lockHash.get(key);
+    mutex.lock();
 
-    if (obj == null)
+    try
       {
-        throw new IllegalStateException("No such key");
-      }
+        Object obj = lockHash.get(key);
 
-    if (lock instanceof DBReadLock)
-      {
-        if (!(obj instanceof List))
+        if (obj == null)
           {
-            throw new IllegalStateException("Error, can't remove a read lock while there is a " +
-                                            obj +
-                                            " associated with key " + key +
-                                            ".. there are no readlocks here.");
+            throw new IllegalStateException("No such key");
           }
 
-        List<DBLock> lockList = (List<DBLock>) obj;
-
-        if (!lockList.contains(lock))
+        if (lock instanceof DBReadLock)
           {
-            throw new IllegalStateException("Mismatched lock claim");
+            if (!(obj instanceof List))
+              {
+                throw new IllegalStateException("Error, can't remove a read lock while there is a " +
+                                                obj +
+                                                " associated with key " + key +
+                                                ".. there are no readlocks here.");
+              }
+
+            List<DBLock> lockList = (List<DBLock>) obj;
+
+            if (!lockList.contains(lock))
+              {
+                throw new IllegalStateException("Mismatched lock claim");
+              }
+
+            lockList.remove(lock);
+
+            if (lockList.size() == 0)
+              {
+                lockHash.remove(key);   // that was the last read lock on this key
+              }
           }
-
-        lockList.remove(lock);
-
-        if (lockList.size() == 0)
+        else
           {
-            lockHash.remove(key);   // that was the last read lock on this key
+            if (obj != lock)
+              {
+                throw new IllegalStateException("Mismatched lock claim");
+              }
+
+            lockHash.remove(key);
           }
       }
-    else
+    finally
       {
-        if (obj != lock)
-          {
-            throw new IllegalStateException("Mismatched lock claim");
-          }
-
-        lockHash.remove(key);
+        mutex.unlock();
       }
   }
 
@@ -236,27 +355,36 @@ public final class DBLockSync {
    * with the key, an IllegalStateException will be thrown.</p>
    *
    * <p>The List returned is part of DBLockSync's internal data
-   * structures, and should only be browsed in a block synchronized on
-   * this DBLockSync object.</p>
+   * structures, and should only be browsed while holding this
+   * DBLockSync's mutex.</p>
    *
    * <p>The List returned should not be modified by external code.</p>
    */
 
-  public synchronized List<DBReadLock> getReadLockList(Object key)
+  public List<DBReadLock> getReadLockList(Object key)
   {
-    Object o = lockHash.get(key);
+    mutex.lock();
 
-    if (o == null)
+    try
       {
-        return null;
-      }
+        Object o = lockHash.get(key);
+
+        if (o == null)
+          {
+            return null;
+          }
 
-    if (o instanceof List)
+        if (o instanceof List)
+          {
+            return (List<DBReadLock>) o;
+          }
+
+        throw new IllegalStateException("DBLockSync does not contain a readlock list for key " + key);
+      }
+    finally
       {
-        return (List<DBReadLock>) o;
+        mutex.unlock();
       }
-
-    throw new IllegalStateException("DBLockSync does not contain a readlock list for key " + key);
   }
 
   /**
@@ -268,60 +396,478 @@ public final class DBLockSync {
    * null will be returned.</p>
    */
 
-  public synchronized DBLock getLockHeld(Object key)
+  public DBLock getLockHeld(Object key)
+  {
+    mutex.lock();
+
+    try
+      {
+        Object obj = lockHash.get(key);
+
+        if (obj == null || (obj instanceof DBLock))
+          {
+            return (DBLock) obj;
+          }
+
+        return null; // Can't return a single lock, this key has a readlock vector.
+      }
+    finally
+      {
+        mutex.unlock();
+      }
+  }
+
+  /**
+   * <p>Suspends the calling thread, which must hold this DBLockSync's
+   * mutex, until lock is signalled, either because base's lock state
+   * has changed or because lock is being aborted.</p>
+   *
+   * <p>lock is placed in base's wait queue, replacing any earlier
+   * queue position it held on another base.  The caller is expected
+   * to re-examine all of its bases on return.</p>
+   */
+
+  void await(DBLock lock, DBObjectBase base) throws InterruptedException
+  {
+    if (lock.queuedOn != base)
+      {
+        dequeue(lock);
+
+        LinkedHashSet<DBLock> queue = waitQueues.get(base);
+
+        if (queue == null)
+          {
+            queue = new LinkedHashSet<DBLock>();
+            waitQueues.put(base, queue);
+          }
+
+        queue.add(lock);
+        lock.queuedOn = base;
+      }
+
+    lock.wakeup.await();
+  }
+
+  /**
+   * <p>Removes lock from whatever wait queue it is in.  Called by
+   * the DBLock subclasses when leaving establish().</p>
+   */
+
+  void dequeue(DBLock lock)
+  {
+    if (lock.queuedOn == null)
+      {
+        return;
+      }
+
+    LinkedHashSet<DBLock> queue = waitQueues.get(lock.queuedOn);
+
+    if (queue != null)
+      {
+        queue.remove(lock);
+
+        if (queue.isEmpty())
+          {
+            waitQueues.remove(lock.queuedOn);
+          }
+      }
+
+    lock.queuedOn = null;
+  }
+
+  /**
+   * <p>Wakes all locks waiting on base.  Called by {@link
+   * arlut.csd.ganymede.server.DBObjectBase DBObjectBase} whenever a
+   * lock leaves one of its lock lists.  The caller must hold this
+   * DBLockSync's mutex.</p>
+   */
+
+  void signal(DBObjectBase base)
+  {
+    LinkedHashSet<DBLock> queue = waitQueues.remove(base);
+
+    if (queue == null)
+      {
+        return;
+      }
+
+    for (DBLock lock: queue)
+      {
+        lock.queuedOn = null;
+        lock.wakeup.signal();
+      }
+  }
+
+  /**
+   * <p>Wakes lock, if it is waiting in establish().  Used by abort()
+   * to get a waiting lock to notice that it has been aborted.  The
+   * caller must hold this DBLockSync's mutex.</p>
+   */
+
+  void signal(DBLock lock)
+  {
+    dequeue(lock);
+    lock.wakeup.signal();
+  }
+
+  /**
+   * <p>Returns the statistics for the given kind of lock on base.
+   * The caller must hold this DBLockSync's mutex.</p>
+   */
+
+  DBLockStats getStats(DBObjectBase base, int kind)
+  {
+    Short key = Short.valueOf(base.getTypeID());
+    DBLockStats[] baseStats = stats.get(key);
+
+    if (baseStats == null)
+      {
+        baseStats = new DBLockStats[DBLockStats.KINDS];
+
+        for (int i = 0; i < baseStats.length; i++)
+          {
+            baseStats[i] = new DBLockStats();
+          }
+
+        stats.put(key, baseStats);
+      }
+
+    return baseStats[kind];
+  }
+
+  /**
+   * <p>Returns a multi-line report describing every lock currently
+   * held or waiting to be established, which bases the waiting locks
+   * are blocked on and who holds those bases, followed by wait and
+   * hold time statistics for each of the given bases.</p>
+   */
+
+  public String getLockReport(Collection<DBObjectBase> bases)
+  {
+    StringBuilder buffer = new StringBuilder();
+    List<DBLock> held = new ArrayList<DBLock>();
+    List<DBLock> waiting = new ArrayList<DBLock>();
+
+    /* -- */
+
+    mutex.lock();
+
+    try
+      {
+        for (Object obj: lockHash.values())
+          {
+            if (obj instanceof List)
+              {
+                for (DBLock lock: (List<DBLock>) obj)
+                  {
+                    (lock.isLocked() ? held : waiting).add(lock);
+                  }
+              }
+            else
+              {
+                DBLock lock = (DBLock) obj;
+
+                (lock.isLocked() ? held : waiting).add(lock);
+              }
+          }
+
+        // "Lock status: {0,number,#} held, {1,number,#} waiting"
+        buffer.append(ts.l("getLockReport.header", Integer.valueOf(held.size()), Integer.valueOf(waiting.size())));
+        buffer.append("\n\n");
+
+        // "Held locks:"
+        buffer.append(ts.l("getLockReport.held_header"));
+        buffer.append("\n");
+
+        for (DBLock lock: held)
+          {
+            // "{0} lock held by {1} for {2,number,#} ms on {3}"
+            buffer.append("  ");
+            buffer.append(ts.l("getLockReport.held",
+                               kindName(lock.getLockKind()),
+                               lock.getOwner(),
+                               Long.valueOf(lock.getAge()),
+                               baseNames(lock.getBases())));
+            buffer.append("\n");
+          }
+
+        buffer.append("\n");
+
+        // "Waiting locks:"
+        buffer.append(ts.l("getLockReport.waiting_header"));
+        buffer.append("\n");
+
+        for (DBLock lock: waiting)
+          {
+            // "{0} lock for {1} waiting {2,number,#} ms on {3}"
+            buffer.append("  ");
+            buffer.append(ts.l("getLockReport.waiting",
+                               kindName(lock.getLockKind()),
+                               lock.getOwner(),
+                               Long.valueOf(lock.getAge()),
+                               baseNames(lock.getBases())));
+            buffer.append("\n");
+
+            if (lock.queuedOn != null)
+              {
+                List<String> blockers = new ArrayList<String>();
+
+                for (DBLock other: held)
+                  {
+                    if (other.getBases().contains(lock.queuedOn))
+                      {
+                        blockers.add(kindName(other.getLockKind()) + " " + other.getOwner());
+                      }
+                  }
+
+                for (DBLock other: waiting)
+                  {
+                    if (other != lock && other instanceof DBWriteLock &&
+                        lock.queuedOn.isFirstWaitingWriter((DBWriteLock) other))
+                      {
+                        blockers.add(kindName(other.getLockKind()) + " " + other.getOwner());
+                      }
+                  }
+
+                // "blocked on {0} by {1}"
+                buffer.append("    ");
+                buffer.append(ts.l("getLockReport.blocked", lock.queuedOn.getName(), blockers.toString()));
+                buffer.append("\n");
+              }
+          }
+
+        buffer.append("\n");
+
+        // "Lock statistics since server start:"
+        buffer.append(ts.l("getLockReport.stats_header"));
+        buffer.append("\n");
+
+        for (DBObjectBase base: bases)
+          {
+            DBLockStats[] baseStats = stats.get(Short.valueOf(base.getTypeID()));
+
+            if (baseStats == null)
+              {
+                continue;
+              }
+
+            buffer.append("  ");
+            buffer.append(base.getName());
+            buffer.append("\n");
+
+            for (int kind = 0; kind < baseStats.length; kind++)
+              {
+                DBLockStats stat = baseStats[kind];
+
+                if (stat.isEmpty())
+                  {
+                    continue;
+                  }
+
+                // "{0}: {1,number,#} granted, {2,number,#} failed, wait avg {3,number,#.##} ms, max {4,number,#} ms, hold avg {5,number,#.##} ms, max {6,number,#} ms"
+                buffer.append("    ");
+                buffer.append(ts.l("getLockReport.stats",
+                                   kindName(kind),
+                                   Long.valueOf(stat.granted),
+                                   Long.valueOf(stat.failed),
+                                   Double.valueOf(average(stat.totalWaitNanos, stat.granted)),
+                                   Long.valueOf(stat.maxWaitNanos / 1000000L),
+                                   Double.valueOf(average(stat.totalHoldNanos, stat.released)),
+                                   Long.valueOf(stat.maxHoldNanos / 1000000L)));
+                buffer.append("\n");
+
+                if (stat.maxHoldOwner != null)
+                  {
+                    // "longest hold by {0}"
+                    buffer.append("      ");
+                    buffer.append(ts.l("getLockReport.longest", stat.maxHoldOwner));
+                    buffer.append("\n");
+                  }
+
+                // "wait: {0}"
+                buffer.append("      ");
+                buffer.append(ts.l("getLockReport.wait_histogram", histogram(stat.waitHistogram)));
+                buffer.append("\n");
+
+                // "hold: {0}"
+                buffer.append("      ");
+                buffer.append(ts.l("getLockReport.hold_histogram", histogram(stat.holdHistogram)));
+                buffer.append("\n");
+              }
+          }
+      }
+    finally
+      {
+        mutex.unlock();
+      }
+
+    return buffer.toString();
+  }
+
+  private String kindName(int kind)
+  {
+    switch (kind)
+      {
+      case DBLockStats.READ:
+        return ts.l("getLockReport.read");   // "read"
+
+      case DBLockStats.WRITE:
+        return ts.l("getLockReport.write");  // "write"
+
+      case DBLockStats.COMMIT:
+        return ts.l("getLockReport.commit"); // "commit"
+
+      default:
+        return ts.l("getLockReport.dump");   // "dump"
+      }
+  }
+
+  private String baseNames(List<DBObjectBase> bases)
+  {
+    StringBuilder buffer = new StringBuilder();
+
+    for (DBObjectBase base: bases)
+      {
+        if (buffer.length() > 0)
+          {
+            buffer.append(", ");
+          }
+
+        buffer.append(base.getName());
+      }
+
+    return buffer.toString();
+  }
+
+  private double average(long totalNanos, long count)
+  {
+    if (count == 0)
+      {
+        return 0.0;
+      }
+
+    return totalNanos / (count * 1000000.0);
+  }
+
+  /**
+   * <p>Formats a DBLockStats histogram as a list of bucket limits and
+   * counts, skipping empty buckets.</p>
+   */
+
+  private String histogram(long[] counts)
   {
-    Object obj = lockHash.get(key);
+    StringBuilder buffer = new StringBuilder();
 
-    if (obj == null || (obj instanceof DBLock))
+    for (int i = 0; i < counts.length; i++)
       {
-        return (DBLock) obj;
+        if (counts[i] == 0)
+          {
+            continue;
+          }
+
+        if (buffer.length() > 0)
+          {
+            buffer.append(" ");
+          }
+
+        long limit = DBLockStats.bucketLimit(i);
+
+        if (limit < 0)
+          {
+            buffer.append(">=");
+            buffer.append(DBLockStats.bucketLimit(i - 1));
+          }
+        else
+          {
+            buffer.append("<");
+            buffer.append(limit);
+          }
+
+        buffer.append("ms:");
+        buffer.append(counts[i]);
       }
 
-    return null; // Can't return a single lock, this key has a readlock vector.
+    return buffer.toString();
   }
 
   /**
    * <p>Increments the count of locks waiting to be established.</p>
    */
 
-  public synchronized void incLocksWaitingCount()
+  public void incLocksWaitingCount()
   {
-    locksWaiting++;
-    GanymedeAdmin.updateLocksHeld();
+    mutex.lock();
+
+    try
+      {
+        locksWaiting++;
+        GanymedeAdmin.updateLocksHeld();
+      }
+    finally
+      {
+        mutex.unlock();
+      }
   }
 
   /**
    * <p>Decrements the count of locks waiting to be established.</p>
    */
 
-  public synchronized void decLocksWaitingCount()
+  public void decLocksWaitingCount()
   {
-    locksWaiting--;
-    GanymedeAdmin.updateLocksHeld();
+    mutex.lock();
+
+    try
+      {
+        locksWaiting--;
+        GanymedeAdmin.updateLocksHeld();
+      }
+    finally
+      {
+        mutex.unlock();
+      }
   }
 
   /**
    * <p>Increments the count of held locks for the admin consoles.</p>
    */
 
-  public synchronized void incLockCount()
+  public void incLockCount()
   {
-    locksHeld++;
-    GanymedeAdmin.updateLocksHeld();
+    mutex.lock();
+
+    try
+      {
+        locksHeld++;
+        GanymedeAdmin.updateLocksHeld();
+      }
+    finally
+      {
+        mutex.unlock();
+      }
   }
 
   /**
    * <p>Decrements the count of held locks for the admin consoles.</p>
    */
 
-  public synchronized void decLockCount()
+  public void decLockCount()
   {
-    locksHeld--;
-    GanymedeAdmin.updateLocksHeld();
+    mutex.lock();
+
+    try
+      {
+        locksHeld--;
+        GanymedeAdmin.updateLocksHeld();
 
-    if (locksHeld < 0)
+        if (locksHeld < 0)
+          {
+            throw new RuntimeException("Locks held has gone negative");
+          }
+      }
+    finally
       {
-        throw new RuntimeException("Locks held has gone negative");
+        mutex.unlock();
       }
   }
 
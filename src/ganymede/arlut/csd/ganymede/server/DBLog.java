@@ -298,6 +298,13 @@ final public class DBLog implements java.io.Closeable {
 
   private systemEventType transactionControl;
 
+  /**
+   * <p>If the ganymede.asynclog property is set, committed
+   * transactions are logged through this pipeline.</p>
+   */
+
+  private DBLogPipeline pipeline = null;
+
   /* -- */
 
   /**
@@ -339,41 +346,69 @@ final public class DBLog implements java.io.Closeable {
 
         mailer.goThreaded();
       }
+
+    if (Ganymede.asyncLogProperty)
+      {
+        pipeline = new DBLogPipeline(Ganymede.logQueueSizeProperty);
+      }
+  }
+
+  /**
+   * <p>Returns the DBLogPipeline used to log committed transactions in
+   * the background, or null if transactions are logged by their
+   * committing threads.</p>
+   */
+
+  DBLogPipeline getPipeline()
+  {
+    return pipeline;
   }
 
   /**
    * This method closes out the log file.
    */
 
-  public synchronized void close() throws IOException
+  public void close() throws IOException
   {
-    try
+    // let the pipeline finish logging any committed transactions
+    // first.  we can't hold our monitor while we wait, since the
+    // pipeline thread needs it.
+
+    if (pipeline != null)
+      {
+        pipeline.close();
+      }
+
+    synchronized (this)
       {
         try
-          {
-            logController.close();
-          }
-        finally
           {
             try
               {
-                if (mailController != null)
-                  {
-                    mailController.close();
-                  }
+                logController.close();
               }
             finally
               {
-                if (mailer != null)
+                try
                   {
-                    mailer.close(); // we'll block here while the mailer's email thread drains
+                    if (mailController != null)
+                      {
+                        mailController.close();
+                      }
+                  }
+                finally
+                  {
+                    if (mailer != null)
+                      {
+                        mailer.close(); // we'll block here while the mailer's email thread drains
+                      }
                   }
               }
           }
-      }
-    finally
-      {
-        closed = true;
+        finally
+          {
+            closed = true;
+          }
       }
   }
 
@@ -651,6 +686,26 @@ final public class DBLog implements java.io.Closeable {
    */
 
   public synchronized void startTransactionLog(List<Invid> invids, String adminName, Invid admin, String comment, DBEditSet transaction)
+  {
+    startTransactionLog(invids, adminName, admin, comment, transaction, new Date(System.currentTimeMillis()));
+  }
+
+  /**
+   * <p>This method is used to start logging events for a transaction
+   * that committed at the given time, which may be earlier than now
+   * if the transaction is being logged by the {@link
+   * arlut.csd.ganymede.server.DBLogPipeline DBLogPipeline}.</p>
+   *
+   * @param invids a List of Invid objects modified by this transaction
+   * @param adminName Human readable string identifying the admin responsible for this transaction
+   * @param admin Invid representing the user or admin responsible for this transaction
+   * @param comment If not null, a comment to attach to logging and email generated in response to this transaction.
+   * @param transaction The {@link arlut.csd.ganymede.server.DBEditSet} representing the transaction to be logged
+   * @param timeStamp The time at which the transaction committed
+   */
+
+  public synchronized void startTransactionLog(List<Invid> invids, String adminName, Invid admin, String comment,
+                                               DBEditSet transaction, Date timeStamp)
   {
     if (closed)
       {
@@ -665,7 +720,7 @@ final public class DBLog implements java.io.Closeable {
     updateSysEventCodeHash();
     updateObjEventCodeHash();
 
-    this.transactionTimeStamp = new Date(System.currentTimeMillis());
+    this.transactionTimeStamp = timeStamp;
     this.transactionID = adminName + ":" + this.transactionTimeStamp.getTime();
 
     if (comment != null && !"".equals(comment.trim()))
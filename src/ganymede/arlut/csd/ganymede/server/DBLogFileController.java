@@ -52,16 +52,23 @@
 package arlut.csd.ganymede.server;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -91,6 +98,12 @@ import arlut.csd.ganymede.common.SchemaConstants;
  * the server doc directory at doc/logDesign.html, or on the web at
  * http://www.arlut.utexas.edu/gash2/design/logDesign.html
  *
+ * If a batch size is given to the constructor, events are formatted
+ * into an in-memory batch which is written to the log file whenever
+ * it reaches the batch size, whenever its oldest event has been held
+ * for the batch interval, and whenever {@link #flushAndSync()} is
+ * called at the end of a transaction.
+ *
  * @author Jonathan Abbey, jonabbey@arlut.utexas.edu, ARL:UT
  */
 
@@ -105,11 +118,75 @@ public class DBLogFileController implements DBLogController {
 
   // ---
 
+  static final String lineSeparator = System.getProperty("line.separator");
+
+  // ---
+
   String logFileName = null;
   PrintWriter logWriter = null;
 
   private FileOutputStream logStream = null;
 
+  /**
+   * If greater than zero, the number of characters of formatted
+   * events we will hold in batch before writing them to logWriter.
+   */
+
+  private final int batchSize;
+
+  /**
+   * The longest time, in milliseconds, that we will hold an event in
+   * batch before writing it to logWriter.
+   */
+
+  private final int batchMillis;
+
+  /**
+   * Formatted events waiting to be written to logWriter, if we are
+   * batching.  Otherwise, used to format each event before it is
+   * written.  Reused from event to event, to spare us allocating new
+   * buffers for each.
+   */
+
+  private final StringBuilder batch = new StringBuilder();
+
+  /**
+   * Encoder and reusable byte buffer that we use to write batch
+   * straight to logStream in a single write.
+   */
+
+  private CharsetEncoder batchEncoder = null;
+  private char[] batchChars = null;
+  private ByteBuffer batchBytes = null;
+
+  /**
+   * The time at which the oldest event in batch was formatted.
+   */
+
+  private long batchStarted = 0;
+
+  /**
+   * The time code and formatted date of the last event we wrote.
+   * All of the events in a transaction carry the same time, and
+   * Date.toString() is not cheap.
+   */
+
+  private long lastTime = -1;
+  private String lastTimeString = null;
+
+  /**
+   * Our index of the log file, or null if the log file has no index.
+   */
+
+  private DBLogIndex index = null;
+
+  /**
+   * The byte offset in the log file at which the next event will be
+   * written, kept so that we can index it.
+   */
+
+  private long logOffset = 0;
+
   /* -- */
 
   /**
@@ -118,12 +195,69 @@ public class DBLogFileController implements DBLogController {
    */
 
   public DBLogFileController(String filename) throws IOException
+  {
+    this(filename, 0, 0);
+  }
+
+  /**
+   * This constructor opens the named log file for appending, and
+   * batches up events before writing them if batchSize is greater
+   * than zero.
+   *
+   * @param batchSize If greater than zero, the number of characters
+   * of formatted events to gather up before writing them to the log
+   * file.
+   * @param batchMillis The longest time, in milliseconds, that a
+   * batched event may be held before it is written to the log file.
+   */
+
+  public DBLogFileController(String filename, int batchSize, int batchMillis) throws IOException
   {
     logFileName = filename;
+
+    try
+      {
+        index = DBLogIndex.open(logFileName, this);
+
+        if (index == null)
+          {
+            // "DBLogFileController: log file {0} has no index file.  Run rebuildLogIndex to create {1} for faster history retrieval."
+            System.err.println(ts.l("init.no_index", logFileName, DBLogIndex.getIndexFile(logFileName)));
+          }
+      }
+    catch (IOException ex)
+      {
+        // "DBLogFileController: couldn''t open log index {0}, history retrieval will not be indexed.\n{1}"
+        System.err.println(ts.l("init.index_error", DBLogIndex.getIndexFile(logFileName), Ganymede.stackTrace(ex)));
+      }
+
+    logOffset = new File(logFileName).length() + lineSeparator.length();
     logStream = new FileOutputStream(logFileName, true); // append
-    logWriter = new PrintWriter(new PrintStream(logStream, true, "UTF-8")); // auto-flush on newline
+
+    // we have to give the OutputStreamWriter the encoding, or else
+    // PrintWriter will use the platform's default encoding, whatever
+    // the PrintStream was told.  retrieveHistory() and our index both
+    // depend on the log being UTF-8.
+
+    logWriter = new PrintWriter(new OutputStreamWriter(new PrintStream(logStream, true, "UTF-8"), "UTF-8"));
 
     logWriter.println();        // emit newline to terminate any incomplete entry
+
+    this.batchSize = batchSize;
+    this.batchMillis = Math.max(1, batchMillis);
+
+    if (this.batchSize > 0)
+      {
+        Thread flusher = new Thread(new Runnable() {
+            public void run()
+            {
+              flushBatches();
+            }
+          }, "Ganymede Log Batch Writer: " + logFileName);
+
+        flusher.setDaemon(true);
+        flusher.start();
+      }
   }
 
   /**
@@ -141,6 +275,8 @@ public class DBLogFileController implements DBLogController {
   {
     this.logFileName = null;
     this.logWriter = logWriter;
+    this.batchSize = 0;
+    this.batchMillis = 0;
   }
 
   /**
@@ -152,33 +288,75 @@ public class DBLogFileController implements DBLogController {
 
   public synchronized void writeEvent(DBLogEvent event)
   {
-    logWriter.print(event.time.getTime());
-    writeSep(logWriter);
-    writeStr(logWriter, event.time.toString());
-    writeSep(logWriter);
-    writeStr(logWriter, event.eventClassToken);
-    writeSep(logWriter);
+    if (batchSize <= 0)
+      {
+        formatEvent(batch, event);
+        indexEvent(event, 0);
+        logWriter.print(batch);
+        batch.setLength(0);
+
+        return;
+      }
+
+    if (batch.length() == 0)
+      {
+        batchStarted = System.currentTimeMillis();
+      }
+
+    int start = batch.length();
+
+    formatEvent(batch, event);
+    indexEvent(event, start);
+
+    if (batch.length() >= batchSize ||
+        System.currentTimeMillis() - batchStarted >= batchMillis)
+      {
+        writeBatch();
+      }
+  }
+
+  /**
+   * This method formats event as a line of the log file, appending
+   * it to buffer.
+   */
+
+  private void formatEvent(StringBuilder buffer, DBLogEvent event)
+  {
+    long time = event.time.getTime();
+
+    if (time != lastTime || lastTimeString == null)
+      {
+        lastTime = time;
+        lastTimeString = event.time.toString();
+      }
+
+    buffer.append(time);
+    buffer.append('|');
+    appendStr(buffer, lastTimeString);
+    buffer.append('|');
+    appendStr(buffer, event.eventClassToken);
+    buffer.append('|');
 
     if (event.admin != null)
       {
-        writeStr(logWriter, event.admin.toString());
+        appendStr(buffer, event.admin.toString());
       }
 
-    writeSep(logWriter);
+    buffer.append('|');
 
     if (event.adminName != null)
       {
-        writeStr(logWriter, event.adminName);
+        appendStr(buffer, event.adminName);
       }
 
-    writeSep(logWriter);
+    buffer.append('|');
 
     if (event.transactionID != null)
       {
-        writeStr(logWriter, event.transactionID);
+        appendStr(buffer, event.transactionID);
       }
 
-    writeSep(logWriter);
+    buffer.append('|');
 
     if (event.getInvids() != null)
       {
@@ -186,23 +364,204 @@ public class DBLogFileController implements DBLogController {
           {
             if (i > 0)
               {
-                logWriter.print(',');
+                buffer.append(',');
               }
 
-            writeStr(logWriter, event.getInvids().get(i).toString());
+            appendStr(buffer, event.getInvids().get(i).toString());
           }
       }
 
-    writeSep(logWriter);
+    buffer.append('|');
 
     if (event.description != null)
       {
-        writeStr(logWriter, event.description);
+        appendStr(buffer, event.description);
+      }
+
+    buffer.append('|');
+    buffer.append(event.getToString());
+    buffer.append(lineSeparator);
+  }
+
+  /**
+   * This method records event, which has been formatted into batch
+   * from start, in our index, and advances logOffset past it.
+   */
+
+  private void indexEvent(DBLogEvent event, int start)
+  {
+    long offset = logOffset;
+
+    /* -- */
+
+    if (logFileName == null)
+      {
+        return;
+      }
+
+    logOffset += utf8Length(batch, start, batch.length());
+
+    if (index != null)
+      {
+        try
+          {
+            index.add(offset, event);
+          }
+        catch (IOException ex)
+          {
+            indexFailed(ex);
+          }
       }
+  }
 
-    writeSep(logWriter);
+  /**
+   * Returns the number of bytes that the chars from start to end in
+   * buffer will take up when written to the log file in UTF-8.
+   */
+
+  private static long utf8Length(CharSequence buffer, int start, int end)
+  {
+    long length = 0;
+
+    /* -- */
 
-    logWriter.println(event.getToString());
+    for (int i = start; i < end; i++)
+      {
+        char c = buffer.charAt(i);
+
+        if (c < 0x80)
+          {
+            length++;
+          }
+        else if (c < 0x800)
+          {
+            length += 2;
+          }
+        else if (Character.isHighSurrogate(c) && i + 1 < end &&
+                 Character.isLowSurrogate(buffer.charAt(i + 1)))
+          {
+            length += 4;
+            i++;
+          }
+        else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)
+          {
+            length++;           // unpaired surrogates are written as '?'
+          }
+        else
+          {
+            length += 3;
+          }
+      }
+
+    return length;
+  }
+
+  /**
+   * This method writes out any batched events to logWriter, and
+   * flushes logWriter so that they reach the log file.
+   */
+
+  private void writeBatch()
+  {
+    int length = batch.length();
+
+    if (length == 0 || logWriter == null)
+      {
+        return;
+      }
+
+    if (logStream == null)
+      {
+        logWriter.print(batch);
+        logWriter.flush();
+        batch.setLength(0);
+
+        return;
+      }
+
+    // we encode the batch ourselves and hand it to the log file in a
+    // single write, rather than having logWriter's encoder dribble
+    // it out a few kilobytes at a time
+
+    if (batchEncoder == null)
+      {
+        batchEncoder = Charset.forName("UTF-8").newEncoder();
+        batchEncoder.onMalformedInput(CodingErrorAction.REPLACE);
+        batchEncoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+      }
+
+    int maxBytes = (int) Math.ceil(length * (double) batchEncoder.maxBytesPerChar());
+
+    if (batchBytes == null || batchBytes.capacity() < maxBytes)
+      {
+        batchChars = new char[length];
+        batchBytes = ByteBuffer.allocate(maxBytes);
+      }
+
+    batch.getChars(0, length, batchChars, 0);
+
+    batchBytes.clear();
+    batchEncoder.reset();
+    batchEncoder.encode(CharBuffer.wrap(batchChars, 0, length), batchBytes, true);
+    batchEncoder.flush(batchBytes);
+
+    try
+      {
+        logWriter.flush();      // anything written before we started batching
+        logStream.write(batchBytes.array(), 0, batchBytes.position());
+      }
+    catch (IOException ex)
+      {
+        ex.printStackTrace();
+      }
+
+    batch.setLength(0);
+
+    // if an event made the batch grow well beyond its usual size,
+    // don't hold on to all that memory
+
+    if (batch.capacity() > 4 * batchSize)
+      {
+        batch.trimToSize();
+        batchChars = null;
+        batchBytes = null;
+      }
+  }
+
+  /**
+   * This method is run by our batch writer thread, which writes out
+   * any batched events that have been held for batchMillis until
+   * this controller is closed.
+   */
+
+  private synchronized void flushBatches()
+  {
+    while (logWriter != null)
+      {
+        long wait = batchMillis;
+
+        if (batch.length() > 0)
+          {
+            long held = System.currentTimeMillis() - batchStarted;
+
+            if (held >= batchMillis)
+              {
+                writeBatch();
+              }
+            else
+              {
+                wait = batchMillis - held;
+              }
+          }
+
+        try
+          {
+            wait(wait);
+          }
+        catch (InterruptedException ex)
+          {
+          }
+      }
   }
 
   /**
@@ -249,28 +608,30 @@ public class DBLogFileController implements DBLogController {
         throw new IllegalArgumentException("DBLogFileController: no filename specified");
       }
 
-    StringBuffer buffer = new StringBuffer();
-    DBLogEvent event = null;
-    String line;
-    String transactionID = null;
+    // make sure we read any events we're still holding in batch
 
-    boolean afterSinceTime = false;
-    String dateString;
-    long sinceLong = 0;
-    long beforeLong = 0;
-    long timeCode;
+    writeBatch();
+    logWriter.flush();
+
+    HistoryScan scan = new HistoryScan(invid, sinceTime, beforeTime, keyOnAdmin,
+                                       fullTransactions, getLoginEvents);
+    String line;
+    long sinceLong = scan.sinceLong;
+    long beforeLong = scan.beforeLong;
 
     BufferedReader in = null;
     Reader reader = null;
 
-    if (sinceTime != null)
-      {
-        sinceLong = sinceTime.getTime();
-      }
+    // if we have an index, we can seek straight to the events we want
 
-    if (beforeTime != null)
+    if (index != null)
       {
-        beforeLong = beforeTime.getTime();
+        StringBuffer result = retrieveIndexedHistory(scan);
+
+        if (result != null)
+          {
+            return result;
+          }
       }
 
     // Java can be pretty slow at doing String operations.  String is
@@ -396,149 +757,367 @@ public class DBLogFileController implements DBLogController {
                 continue;
               }
 
-            // check to see if we've gotten to the requested start point
+            if (!scan.scan(line))
+              {
+                break;
+              }
+          }
+      }
+    catch (IOException ex)
+      {
+        // eof
+      }
+    finally
+      {
+        try
+          {
+            in.close();
+          }
+        catch (IOException ex)
+          {
+            // shrug
+          }
 
-            if ((sinceTime != null && !afterSinceTime) || beforeTime != null)
+        try
+          {
+            if (reader != null)
               {
-                dateString = line.substring(0, line.indexOf('|'));
+                reader.close();
+              }
+          }
+        catch (IOException ex)
+          {
+            // shrug
+          }
+      }
 
-                try
-                  {
-                    timeCode = Long.parseLong(dateString);
-                  }
-                catch (NumberFormatException ex)
-                  {
-                    throw new IOException("couldn't parse time code");
-                  }
+    return scan.buffer;
+  }
 
-                if (sinceTime != null && timeCode < sinceLong)
-                  {
-                    afterSinceTime = true;
-                    continue; // don't even bother parsing the rest of the line
-                  }
+  /**
+   * This method looks up the events matching scan in our index, and
+   * reads just those events from the log, along with the rest of any
+   * transactions that they start.
+   *
+   * @return The history buffer, or null if the index failed us, in
+   * which case retrieveHistory() will have to scan the log instead.
+   */
 
-                if (beforeTime != null && timeCode > beforeLong)
-                  {
-                    break;
-                  }
-              }
+  private StringBuffer retrieveIndexedHistory(HistoryScan scan)
+  {
+    long[] offsets;
+    long covered = 0;           // we've scanned the log up to here
+    DBLogIndex.LogReader reader = null;
 
-            event = parseEvent(line);
+    /* -- */
 
-            if (invid.getType() == SchemaConstants.UserBase)
+    try
+      {
+        offsets = index.lookup(scan.invid, scan.keyOnAdmin);
+        reader = new DBLogIndex.LogReader(new File(logFileName));
+      }
+    catch (IOException ex)
+      {
+        indexFailed(ex);
+
+        return null;
+      }
+
+    try
+      {
+        scanning: for (long offset: offsets)
+          {
+            if (offset < covered)
               {
-                if (event.eventClassToken.equals("normallogin") ||
-                    event.eventClassToken.equals("normallogout") ||
-                    event.eventClassToken.equals("abnormallogout"))
-                  {
-                    if (!getLoginEvents)
-                      {
-                        continue;       // we don't want to show login/logout activity here
-                      }
-                  }
-                else if (getLoginEvents)
-                  {
-                    continue;   // we don't want to show non-login/logout activity here
-                  }
+                continue;       // part of a transaction we've already read
               }
 
-            boolean found = false;
+            reader.seek(offset);
+
+            String line = reader.readLine();
 
-            if (keyOnAdmin)
+            if (line == null || !scan.scan(line))
               {
-                if (event.admin != null)
-                  {
-                    found = invid.equals(event.admin);
-                  }
+                break;
               }
-            else
-              {
-                for (int i = 0; !found && i < event.getInvids().size(); i++)
-                  {
-                    if (invid.equals(event.getInvids().get(i)))
-                      {
-                        found = true;
-                      }
-                  }
 
-                if (transactionID != null)
-                  {
-                    if (transactionID.equals(event.transactionID))
-                      {
-                        if (fullTransactions || event.eventClassToken.equals("finishtransaction"))
-                          {
-                            found = true;
-                          }
-                      }
-                  }
-              }
+            // if that event started a transaction that we're showing,
+            // read on through the rest of the transaction, just as if
+            // we were scanning the whole log
 
-            if (found)
+            while (scan.transactionID != null)
               {
-                if (event.eventClassToken.equals("starttransaction"))
-                  {
-                    transactionID = event.transactionID;
+                long next = reader.getOffset();
 
-                    // "---------- Transaction {0}: {1} ----------\n\n"
-                    buffer.append(ts.l("retrieveHistory.start_trans", event.time, event.adminName));
-                  }
-                else if (event.eventClassToken.equals("finishtransaction"))
-                  {
-                    transactionID = null;
+                line = reader.readLine();
 
-                    // "---------- End Transaction {0}: {1} ----------\n\n"
-                    buffer.append(ts.l("retrieveHistory.end_trans", event.time, event.adminName));
+                if (line == null)
+                  {
+                    break scanning;
                   }
-                else if (event.eventClassToken.equals("comment"))
+
+                if (line.trim().equals(""))
                   {
-                    // "\n{0}\n\n"
-                    buffer.append(ts.l("retrieveHistory.comment",
-                                       WordWrap.wrap(event.description, 78)));
+                    continue;
                   }
-                else if (transactionID != null)
+
+                if (!scan.transactionID.equals(parseEvent(line).transactionID))
                   {
-                    // "{0}\n{1}\n"
-                    buffer.append(ts.l("retrieveHistory.entry",
-                                       event.eventClassToken, WordWrap.wrap(event.description, 78, "\t")));
+                    reader.seek(next);  // unterminated transaction
+                    break;
                   }
-                else
+
+                if (!scan.scan(line))
                   {
-                    // "{0,date}: {1} {2}{3}\n"
-                    buffer.append(ts.l("retrieveHistory.standalone_entry",
-                                       event.time, event.adminName, event.eventClassToken, WordWrap.wrap(event.description,78, "\t")));
+                    break scanning;
                   }
               }
+
+            covered = reader.getOffset();
           }
       }
     catch (IOException ex)
       {
-        // eof
+        // unparseable line, treat as end of log, as retrieveHistory() does
       }
     finally
       {
         try
           {
-            in.close();
+            reader.close();
           }
         catch (IOException ex)
           {
             // shrug
           }
+      }
 
-        try
-          {
-            if (reader != null)
-              {
-                reader.close();
-              }
-          }
-        catch (IOException ex)
-          {
-            // shrug
-          }
+    return scan.buffer;
+  }
+
+  /**
+   * This method creates a new index file for the named log file, for
+   * the {@link arlut.csd.ganymede.server.rebuildLogIndex
+   * rebuildLogIndex} tool.
+   *
+   * @return The number of log events indexed
+   */
+
+  static int rebuildIndex(String logFileName) throws IOException
+  {
+    // we only need a controller to parse the log with
+
+    return DBLogIndex.rebuild(logFileName, new DBLogFileController((PrintWriter) null));
+  }
+
+  /**
+   * This method is called if we get an IOException reading or
+   * writing our index.  We stop using the index, and catch it up
+   * when we're next started.
+   */
+
+  private void indexFailed(IOException ex)
+  {
+    // "DBLogFileController: error using log index {0}, reverting to unindexed history retrieval.\n{1}"
+    System.err.println(ts.l("indexFailed.error", DBLogIndex.getIndexFile(logFileName), Ganymede.stackTrace(ex)));
+
+    try
+      {
+        index.close();
       }
+    catch (IOException inex)
+      {
+        // shrug
+      }
+
+    index = null;
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                    HistoryScan
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * HistoryScan picks out the log events that retrieveHistory() is
+   * looking for from the log lines fed to it in log order,
+   * describing them in its buffer.
+   */
+
+  private class HistoryScan {
+
+    final Invid invid;
+    final Date sinceTime;
+    final Date beforeTime;
+    final long sinceLong;
+    final long beforeLong;
+    final boolean keyOnAdmin;
+    final boolean fullTransactions;
+    final boolean getLoginEvents;
+
+    final StringBuffer buffer = new StringBuffer();
+
+    /**
+     * The ID of the transaction whose events we're showing, if any.
+     */
+
+    String transactionID = null;
 
-    return buffer;
+    boolean afterSinceTime = false;
+
+    /* -- */
+
+    HistoryScan(Invid invid, Date sinceTime, Date beforeTime, boolean keyOnAdmin,
+                boolean fullTransactions, boolean getLoginEvents)
+    {
+      this.invid = invid;
+      this.sinceTime = sinceTime;
+      this.beforeTime = beforeTime;
+      this.sinceLong = (sinceTime != null) ? sinceTime.getTime() : 0;
+      this.beforeLong = (beforeTime != null) ? beforeTime.getTime() : 0;
+      this.keyOnAdmin = keyOnAdmin;
+      this.fullTransactions = fullTransactions;
+      this.getLoginEvents = getLoginEvents;
+    }
+
+    /**
+     * Checks the next line of the log, adding a description of it
+     * to buffer if it's one we want.
+     *
+     * @return false if the line is past beforeTime, and we should
+     * stop scanning.
+     */
+
+    boolean scan(String line) throws IOException
+    {
+      if (line.trim().equals(""))
+        {
+          return true;
+        }
+
+      // check to see if we've gotten to the requested start point
+
+      if ((sinceTime != null && !afterSinceTime) || beforeTime != null)
+        {
+          String dateString = line.substring(0, line.indexOf('|'));
+          long timeCode;
+
+          try
+            {
+              timeCode = Long.parseLong(dateString);
+            }
+          catch (NumberFormatException ex)
+            {
+              throw new IOException("couldn't parse time code");
+            }
+
+          // the log is in time order, so once we've found an event
+          // at or after sinceTime, we can stop checking
+
+          if (sinceTime != null && !afterSinceTime)
+            {
+              if (timeCode < sinceLong)
+                {
+                  return true; // don't even bother parsing the rest of the line
+                }
+
+              afterSinceTime = true;
+            }
+
+          if (beforeTime != null && timeCode > beforeLong)
+            {
+              return false;
+            }
+        }
+
+      DBLogEvent event = parseEvent(line);
+
+      if (invid.getType() == SchemaConstants.UserBase)
+        {
+          if (event.eventClassToken.equals("normallogin") ||
+              event.eventClassToken.equals("normallogout") ||
+              event.eventClassToken.equals("abnormallogout"))
+            {
+              if (!getLoginEvents)
+                {
+                  return true;    // we don't want to show login/logout activity here
+                }
+            }
+          else if (getLoginEvents)
+            {
+              return true;    // we don't want to show non-login/logout activity here
+            }
+        }
+
+      boolean found = false;
+
+      if (keyOnAdmin)
+        {
+          if (event.admin != null)
+            {
+              found = invid.equals(event.admin);
+            }
+        }
+      else
+        {
+          for (int i = 0; !found && i < event.getInvids().size(); i++)
+            {
+              if (invid.equals(event.getInvids().get(i)))
+                {
+                  found = true;
+                }
+            }
+
+          if (transactionID != null)
+            {
+              if (transactionID.equals(event.transactionID))
+                {
+                  if (fullTransactions || event.eventClassToken.equals("finishtransaction"))
+                    {
+                      found = true;
+                    }
+                }
+            }
+        }
+
+      if (found)
+        {
+          if (event.eventClassToken.equals("starttransaction"))
+            {
+              transactionID = event.transactionID;
+
+              // "---------- Transaction {0}: {1} ----------\n\n"
+              buffer.append(ts.l("retrieveHistory.start_trans", event.time, event.adminName));
+            }
+          else if (event.eventClassToken.equals("finishtransaction"))
+            {
+              transactionID = null;
+
+              // "---------- End Transaction {0}: {1} ----------\n\n"
+              buffer.append(ts.l("retrieveHistory.end_trans", event.time, event.adminName));
+            }
+          else if (event.eventClassToken.equals("comment"))
+            {
+              // "\n{0}\n\n"
+              buffer.append(ts.l("retrieveHistory.comment",
+                                 WordWrap.wrap(event.description, 78)));
+            }
+          else if (transactionID != null)
+            {
+              // "{0}\n{1}\n"
+              buffer.append(ts.l("retrieveHistory.entry",
+                                 event.eventClassToken, WordWrap.wrap(event.description, 78, "\t")));
+            }
+          else
+            {
+              // "{0,date}: {1} {2}{3}\n"
+              buffer.append(ts.l("retrieveHistory.standalone_entry",
+                                 event.time, event.adminName, event.eventClassToken, WordWrap.wrap(event.description,78, "\t")));
+            }
+        }
+
+      return true;
+    }
   }
 
   /**
@@ -647,60 +1226,34 @@ public class DBLogFileController implements DBLogController {
 
   /**
    *
-   * Write a field separator to the log file
+   * This method appends the provided String to buf, escaping it
+   * for safe inclusion in the log file.
    *
    */
 
-  private final void writeSep(PrintWriter logWriter)
+  private final void appendStr(StringBuilder buf, String in)
   {
-    logWriter.print('|');
-  }
-
-  /**
-   *
-   * Write a field to the log file, escaping it for safety
-   *
-   */
-
-  private final void writeStr(PrintWriter logWriter, String in)
-  {
-    logWriter.write(escapeStr(in));
-  }
-
-  /**
-   *
-   * This method makes the provided String safe for inclusion
-   * in the log file.
-   *
-   */
-
-  private final String escapeStr(String in)
-  {
-    char[] ary = in.toCharArray();
+    int length = in.length();
 
     /* -- */
 
-    StringBuilder buf = new StringBuilder(ary.length);
-
-    // do it
-
-    for (int i = 0; i < ary.length; i++)
+    for (int i = 0; i < length; i++)
       {
-        if (ary[i] == '\n')
+        char c = in.charAt(i);
+
+        if (c == '\n')
           {
             buf.append("\\n");
           }
-        else if (ary[i] == '\\')
+        else if (c == '\\')
           {
             buf.append("\\\\");
           }
         else
           {
-            buf.append(ary[i]);
+            buf.append(c);
           }
       }
-
-    return buf.toString();
   }
 
   /**
@@ -869,6 +1422,7 @@ public class DBLogFileController implements DBLogController {
 
   public synchronized void flushAndSync()
   {
+    writeBatch();
     logWriter.flush();
 
     try
@@ -879,6 +1433,21 @@ public class DBLogFileController implements DBLogController {
       {
         ex.printStackTrace();
       }
+
+    // we write out our index after the log is safe on disk, so that
+    // the index never points past the end of the log
+
+    if (index != null)
+      {
+        try
+          {
+            index.flush();
+          }
+        catch (IOException ex)
+          {
+            indexFailed(ex);
+          }
+      }
   }
 
   /**
@@ -890,10 +1459,27 @@ public class DBLogFileController implements DBLogController {
   {
     if (logWriter != null)
       {
+        writeBatch();
         logWriter.close();
       }
 
+    if (index != null)
+      {
+        try
+          {
+            index.close();
+          }
+        catch (IOException ex)
+          {
+            ex.printStackTrace();
+          }
+
+        index = null;
+      }
+
     logWriter = null;
+    notifyAll();                // let our batch writer thread exit
+
     logFileName = null;
     logStream = null;
   }
@@ -0,0 +1,674 @@
+/*
+
+   DBLogIndex.java
+
+   Sidecar index of object and admin Invids in the Ganymede log file.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+
+package arlut.csd.ganymede.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import arlut.csd.Util.TranslationService;
+import arlut.csd.ganymede.common.Invid;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                      DBLogIndex
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>DBLogIndex maintains an index file alongside the log file
+ * written by a {@link arlut.csd.ganymede.server.DBLogFileController
+ * DBLogFileController}, recording the byte offset in the log of each
+ * event under the Invids of the objects it involves and the Invid of
+ * the admin responsible for it.  With it, retrieveHistory() can seek
+ * directly to the events it needs, rather than reading through the
+ * whole log.</p>
+ *
+ * <p>The index file is named after the log file, with ".idx"
+ * appended.  It starts with a magic number and a format version,
+ * followed by fixed size records, each holding a log offset, a byte
+ * saying whether the record is for an object or an admin, and the
+ * Invid's type and number.  Records are appended in log order as
+ * events are written, so an index file that has fallen behind its
+ * log can always be caught up by indexing whatever the log holds
+ * past the last offset recorded.  The {@link
+ * arlut.csd.ganymede.server.rebuildLogIndex rebuildLogIndex} tool
+ * creates the index file for a log that doesn't have one.</p>
+ *
+ * <p>The records are read into memory the first time the index is
+ * needed for a history lookup.  DBLogIndex is not synchronized, and
+ * relies on its DBLogFileController for that.</p>
+ */
+
+final class DBLogIndex {
+
+  /**
+   * <p>TranslationService object for handling string localization in
+   * the Ganymede server.</p>
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBLogIndex");
+
+  static final int MAGIC = 0x474c4958; // "GLIX"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 8;
+  static final int RECORD_SIZE = 15;
+
+  static final byte OBJECT = 0;
+  static final byte ADMIN = 1;
+
+  /**
+   * <p>Returns the index file for the named log file.</p>
+   */
+
+  static File getIndexFile(String logFileName)
+  {
+    return new File(logFileName + ".idx");
+  }
+
+  /**
+   * <p>Opens the index file for the named log file for appending,
+   * after dropping any records that point past the end of the log
+   * and indexing any events in the log from the last one
+   * recorded.</p>
+   *
+   * <p>If there is no index file, one is created if the log is empty
+   * or doesn't exist yet.  Otherwise, this method returns null, and
+   * the rebuildLogIndex tool will need to be run to index the
+   * existing log.</p>
+   *
+   * @param parser A DBLogFileController to parse log lines with
+   */
+
+  static DBLogIndex open(String logFileName, DBLogFileController parser) throws IOException
+  {
+    File logFile = new File(logFileName);
+    File indexFile = getIndexFile(logFileName);
+
+    /* -- */
+
+    if (!indexFile.exists())
+      {
+        if (logFile.length() > 0)
+          {
+            return null;
+          }
+
+        return new DBLogIndex(indexFile, true);
+      }
+
+    long resumeOffset = trim(indexFile, logFile.length());
+
+    DBLogIndex index = new DBLogIndex(indexFile, false);
+
+    try
+      {
+        index.catchUp(logFile, resumeOffset, parser);
+      }
+    catch (IOException ex)
+      {
+        index.close();
+
+        throw ex;
+      }
+
+    return index;
+  }
+
+  /**
+   * <p>Creates a new index file for the named log file, replacing any
+   * existing index file.  The log file should not be written to while
+   * this is going on.</p>
+   *
+   * @param parser A DBLogFileController to parse log lines with
+   *
+   * @return The number of log events indexed
+   */
+
+  static int rebuild(String logFileName, DBLogFileController parser) throws IOException
+  {
+    File indexFile = getIndexFile(logFileName);
+    File newFile = new File(indexFile.getPath() + ".new");
+    int count;
+
+    /* -- */
+
+    newFile.delete();
+
+    DBLogIndex index = new DBLogIndex(newFile, true);
+
+    try
+      {
+        count = index.catchUp(new File(logFileName), 0, parser);
+      }
+    finally
+      {
+        index.close();
+      }
+
+    if (!newFile.renameTo(indexFile))
+      {
+        indexFile.delete();
+
+        if (!newFile.renameTo(indexFile))
+          {
+            // "Couldn''t rename {0} to {1}."
+            throw new IOException(ts.l("rebuild.rename", newFile, indexFile));
+          }
+      }
+
+    return count;
+  }
+
+  /**
+   * <p>Checks the header of indexFile, and truncates it before the
+   * records for the last event it indexed within a log of logLength
+   * bytes, as we may have crashed before writing all of that event's
+   * records.</p>
+   *
+   * @return The log offset to resume indexing from
+   */
+
+  private static long trim(File indexFile, long logLength) throws IOException
+  {
+    RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+
+    try
+      {
+        if (file.length() < HEADER_SIZE || file.readInt() != MAGIC || file.readInt() != VERSION)
+          {
+            // "{0} is not a Ganymede log index file, or was written by a different version of Ganymede."
+            throw new IOException(ts.l("trim.bad_header", indexFile));
+          }
+
+        long records = (file.length() - HEADER_SIZE) / RECORD_SIZE;
+        long resumeOffset = -1;
+
+        // records are in log order, so we only have to look back from
+        // the end.  we drop any records pointing past the end of the
+        // log, as might happen if we crashed after writing the index
+        // but before the log made it to disk, and then the records
+        // for the last event still in the log
+
+        while (records > 0)
+          {
+            file.seek(HEADER_SIZE + (records - 1) * RECORD_SIZE);
+
+            long offset = file.readLong();
+
+            if (offset < logLength && resumeOffset == -1)
+              {
+                resumeOffset = offset;
+              }
+            else if (offset < resumeOffset)
+              {
+                break;
+              }
+
+            records--;
+          }
+
+        file.setLength(HEADER_SIZE + records * RECORD_SIZE);
+
+        return Math.max(0, resumeOffset);
+      }
+    finally
+      {
+        file.close();
+      }
+  }
+
+  // ---
+
+  private final File indexFile;
+
+  private DataOutputStream out;
+
+  /**
+   * <p>Log offsets by object Invid, or null if we haven't loaded the
+   * index into memory yet.</p>
+   */
+
+  private Map<Invid, Postings> objectPostings = null;
+
+  /**
+   * <p>Log offsets by admin Invid, or null if we haven't loaded the
+   * index into memory yet.</p>
+   */
+
+  private Map<Invid, Postings> adminPostings = null;
+
+  /* -- */
+
+  private DBLogIndex(File indexFile, boolean create) throws IOException
+  {
+    this.indexFile = indexFile;
+    this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, !create)));
+
+    if (create)
+      {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+      }
+  }
+
+  /**
+   * <p>Indexes the events in logFile from resumeOffset on.</p>
+   *
+   * @return The number of events indexed
+   */
+
+  private int catchUp(File logFile, long resumeOffset, DBLogFileController parser) throws IOException
+  {
+    int count = 0;
+
+    /* -- */
+
+    if (!logFile.exists())
+      {
+        return 0;
+      }
+
+    LogReader reader = new LogReader(logFile);
+
+    try
+      {
+        reader.seek(resumeOffset);
+
+        while (true)
+          {
+            long offset = reader.getOffset();
+            String line = reader.readLine();
+
+            if (line == null)
+              {
+                break;
+              }
+
+            if (line.trim().equals(""))
+              {
+                continue;
+              }
+
+            DBLogEvent event;
+
+            try
+              {
+                event = parser.parseEvent(line);
+              }
+            catch (IOException ex)
+              {
+                continue;       // skip damaged lines
+              }
+
+            add(offset, event);
+            count++;
+          }
+      }
+    finally
+      {
+        reader.close();
+      }
+
+    out.flush();
+
+    return count;
+  }
+
+  /**
+   * <p>Indexes event, which starts at offset in the log.</p>
+   */
+
+  void add(long offset, DBLogEvent event) throws IOException
+  {
+    if (event.admin != null)
+      {
+        addRecord(offset, ADMIN, event.admin);
+      }
+
+    List<Invid> invids = event.getInvids();
+
+    if (invids != null)
+      {
+        for (Invid invid: invids)
+          {
+            addRecord(offset, OBJECT, invid);
+          }
+      }
+  }
+
+  private void addRecord(long offset, byte kind, Invid invid) throws IOException
+  {
+    out.writeLong(offset);
+    out.writeByte(kind);
+    out.writeShort(invid.getType());
+    out.writeInt(invid.getNum());
+
+    if (objectPostings != null)
+      {
+        post(kind == ADMIN ? adminPostings : objectPostings, invid, offset);
+      }
+  }
+
+  /**
+   * <p>Returns the log offsets of the events involving invid, or of
+   * the events performed by the admin with invid if keyOnAdmin is
+   * true, in log order.</p>
+   */
+
+  long[] lookup(Invid invid, boolean keyOnAdmin) throws IOException
+  {
+    if (objectPostings == null)
+      {
+        load();
+      }
+
+    Postings postings = (keyOnAdmin ? adminPostings : objectPostings).get(invid);
+
+    if (postings == null)
+      {
+        return new long[0];
+      }
+
+    return postings.toArray();
+  }
+
+  /**
+   * <p>Reads the index file into memory.</p>
+   */
+
+  private void load() throws IOException
+  {
+    Map<Invid, Postings> objects = new HashMap<Invid, Postings>();
+    Map<Invid, Postings> admins = new HashMap<Invid, Postings>();
+
+    /* -- */
+
+    out.flush();
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 65536));
+
+    try
+      {
+        in.readInt();           // magic and version, checked by trim()
+        in.readInt();
+
+        long records = (indexFile.length() - HEADER_SIZE) / RECORD_SIZE;
+
+        for (long i = 0; i < records; i++)
+          {
+            long offset = in.readLong();
+            byte kind = in.readByte();
+            short type = in.readShort();
+            int num = in.readInt();
+
+            post(kind == ADMIN ? admins : objects, Invid.createInvid(type, num), offset);
+          }
+      }
+    finally
+      {
+        in.close();
+      }
+
+    objectPostings = objects;
+    adminPostings = admins;
+  }
+
+  private void post(Map<Invid, Postings> map, Invid invid, long offset)
+  {
+    Postings postings = map.get(invid);
+
+    if (postings == null)
+      {
+        postings = new Postings();
+        map.put(invid, postings);
+      }
+
+    postings.add(offset);
+  }
+
+  /**
+   * <p>Writes any buffered records out to the index file.</p>
+   */
+
+  void flush() throws IOException
+  {
+    out.flush();
+  }
+
+  void close() throws IOException
+  {
+    objectPostings = null;
+    adminPostings = null;
+
+    out.close();
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                       Postings
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>A growable, ascending list of log offsets.</p>
+   */
+
+  static final class Postings {
+
+    private long[] offsets = new long[2];
+    private int count = 0;
+
+    /* -- */
+
+    void add(long offset)
+    {
+      // an event may list the same Invid more than once, and a crash
+      // may leave records that catchUp() writes again
+
+      if (count > 0 && offsets[count - 1] >= offset)
+        {
+          return;
+        }
+
+      if (count == offsets.length)
+        {
+          long[] larger = new long[count * 2];
+          System.arraycopy(offsets, 0, larger, 0, count);
+          offsets = larger;
+        }
+
+      offsets[count++] = offset;
+    }
+
+    long[] toArray()
+    {
+      long[] result = new long[count];
+      System.arraycopy(offsets, 0, result, 0, count);
+
+      return result;
+    }
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                      LogReader
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>Reads UTF-8 lines from a log file, keeping track of the byte
+   * offset of each, and allowing us to seek to any line by its
+   * offset.</p>
+   */
+
+  static final class LogReader {
+
+    private final RandomAccessFile file;
+    private final byte[] buffer = new byte[65536];
+
+    /**
+     * <p>The file offset of buffer[0].</p>
+     */
+
+    private long bufferStart = 0;
+    private int position = 0;
+    private int limit = 0;
+
+    private byte[] line = new byte[1024];
+
+    /* -- */
+
+    LogReader(File logFile) throws IOException
+    {
+      this.file = new RandomAccessFile(logFile, "r");
+    }
+
+    /**
+     * <p>Positions us to read the line starting at offset.</p>
+     */
+
+    void seek(long offset) throws IOException
+    {
+      if (offset >= bufferStart && offset <= bufferStart + limit)
+        {
+          position = (int) (offset - bufferStart);
+
+          return;
+        }
+
+      file.seek(offset);
+
+      bufferStart = offset;
+      position = 0;
+      limit = 0;
+    }
+
+    /**
+     * <p>Returns the offset of the line that readLine() will return
+     * next.</p>
+     */
+
+    long getOffset()
+    {
+      return bufferStart + position;
+    }
+
+    /**
+     * <p>Returns the next line, without its line terminator, or null
+     * if there are no more complete lines in the file.</p>
+     */
+
+    String readLine() throws IOException
+    {
+      int length = 0;
+
+      /* -- */
+
+      while (true)
+        {
+          if (position == limit)
+            {
+              bufferStart += limit;
+              position = 0;
+              limit = Math.max(0, file.read(buffer, 0, buffer.length));
+
+              if (limit == 0)
+                {
+                  return null;
+                }
+            }
+
+          int start = position;
+
+          while (position < limit && buffer[position] != '\n')
+            {
+              position++;
+            }
+
+          int count = position - start;
+
+          if (length + count > line.length)
+            {
+              byte[] larger = new byte[Math.max(line.length * 2, length + count)];
+              System.arraycopy(line, 0, larger, 0, length);
+              line = larger;
+            }
+
+          System.arraycopy(buffer, start, line, length, count);
+          length += count;
+
+          if (position < limit)
+            {
+              position++;       // skip the newline
+
+              if (length > 0 && line[length - 1] == '\r')
+                {
+                  length--;
+                }
+
+              return new String(line, 0, length, "UTF-8");
+            }
+        }
+    }
+
+    void close() throws IOException
+    {
+      file.close();
+    }
+  }
+}
@@ -0,0 +1,306 @@
+/*
+
+   DBLogPipeline.java
+
+   Background thread that writes committed transactions to the log.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.LinkedList;
+
+import arlut.csd.Util.TranslationService;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                   DBLogPipeline
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>DBLogPipeline runs the logging and mail notification for
+ * committed transactions on a single background thread, so that a
+ * transaction's commit can return to the client as soon as the
+ * transaction is durable in the journal, rather than after the
+ * {@link arlut.csd.ganymede.server.DBLog DBLog} has worked out who
+ * to mail and written the log.</p>
+ *
+ * <p>Each committing transaction reserves a {@link
+ * arlut.csd.ganymede.server.DBLogPipeline.Ticket Ticket} while it
+ * holds the journal's monitor, so tickets are reserved in
+ * transaction number order.  The transaction later fills in its
+ * ticket with the job that logs it, or cancels it if the commit
+ * fails.  Jobs are always run in ticket order, so the log records
+ * transactions in the same order as the journal, no matter which of
+ * several concurrently committing transactions finishes first.</p>
+ *
+ * <p>At most capacity jobs may be waiting to run.  A transaction
+ * submitting a job to a full pipeline blocks until there is room,
+ * unless its ticket is the next to run, so a slow mail host or log
+ * disk pushes back on committing transactions rather than letting
+ * log work pile up without bound.</p>
+ */
+
+final class DBLogPipeline implements Runnable {
+
+  /**
+   * <p>TranslationService object for handling string localization in
+   * the Ganymede server.</p>
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBLogPipeline");
+
+  // ---
+
+  /**
+   * <p>The maximum number of submitted jobs that may be waiting to
+   * run.</p>
+   */
+
+  private final int capacity;
+
+  /**
+   * <p>Reserved tickets, in transaction order.</p>
+   */
+
+  private final LinkedList<Ticket> tickets = new LinkedList<Ticket>();
+
+  /**
+   * <p>The number of tickets in the tickets list that have had their
+   * jobs submitted.</p>
+   */
+
+  private int submitted = 0;
+
+  private boolean closing = false;
+
+  private final Thread thread;
+
+  /* -- */
+
+  DBLogPipeline(int capacity)
+  {
+    this.capacity = Math.max(1, capacity);
+    this.thread = new Thread(this, "Ganymede Log Pipeline Thread");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * <p>Reserves the next place in the pipeline for the transaction
+   * with the given number.  Must be called in transaction order,
+   * which DBEditSet ensures by calling it while holding the
+   * DBJournal's monitor.  Never blocks.</p>
+   */
+
+  synchronized Ticket reserve(int transactionNumber)
+  {
+    Ticket ticket = new Ticket(transactionNumber);
+
+    tickets.add(ticket);
+
+    return ticket;
+  }
+
+  /**
+   * <p>Submits the job to be run in ticket's place in the pipeline,
+   * blocking first while the pipeline is full, unless ticket is next
+   * in line.</p>
+   */
+
+  synchronized void submit(Ticket ticket, Runnable job)
+  {
+    while (submitted >= capacity && tickets.peek() != ticket && !closing)
+      {
+        try
+          {
+            wait();
+          }
+        catch (InterruptedException ex)
+          {
+            // we have to submit our job regardless
+          }
+      }
+
+    ticket.job = job;
+    submitted++;
+
+    notifyAll();
+  }
+
+  /**
+   * <p>Gives up ticket's place in the pipeline without submitting a
+   * job for it, as when a transaction fails to commit after it
+   * reserved its ticket.  Does nothing if a job has already been
+   * submitted for ticket.</p>
+   */
+
+  synchronized void cancel(Ticket ticket)
+  {
+    if (ticket.job != null)
+      {
+        return;
+      }
+
+    ticket.cancelled = true;
+
+    notifyAll();
+  }
+
+  /**
+   * <p>Returns the number of transactions reserved in the pipeline
+   * that have not yet been logged.</p>
+   */
+
+  synchronized int size()
+  {
+    return tickets.size();
+  }
+
+  /**
+   * <p>Waits for every transaction reserved in the pipeline to be
+   * logged or cancelled, and then stops the pipeline thread.</p>
+   */
+
+  void close()
+  {
+    synchronized (this)
+      {
+        closing = true;
+
+        notifyAll();
+      }
+
+    try
+      {
+        thread.join();
+      }
+    catch (InterruptedException ex)
+      {
+      }
+  }
+
+  public void run()
+  {
+    while (true)
+      {
+        Ticket ticket;
+
+        synchronized (this)
+          {
+            while (true)
+              {
+                ticket = tickets.peek();
+
+                if (ticket == null && closing)
+                  {
+                    return;
+                  }
+
+                if (ticket != null && (ticket.cancelled || ticket.job != null))
+                  {
+                    break;
+                  }
+
+                try
+                  {
+                    wait();
+                  }
+                catch (InterruptedException ex)
+                  {
+                  }
+              }
+
+            tickets.removeFirst();
+
+            if (ticket.job != null)
+              {
+                submitted--;
+              }
+
+            notifyAll();
+          }
+
+        if (ticket.cancelled)
+          {
+            continue;
+          }
+
+        try
+          {
+            ticket.job.run();
+          }
+        catch (Throwable ex)
+          {
+            // "DBLogPipeline: exception thrown while logging transaction {0}:\n{1}"
+            Ganymede.debug(ts.l("run.exception", Integer.valueOf(ticket.transactionNumber), Ganymede.stackTrace(ex)));
+          }
+      }
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                         Ticket
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>A transaction's place in the DBLogPipeline.</p>
+   */
+
+  static final class Ticket {
+
+    final int transactionNumber;
+
+    Runnable job = null;
+
+    boolean cancelled = false;
+
+    /* -- */
+
+    Ticket(int transactionNumber)
+    {
+      this.transactionNumber = transactionNumber;
+    }
+  }
+}
@@ -258,10 +258,33 @@ public final class DBNameSpace implements NameSpace {
    */
 
   public synchronized void emit(DataOutput out) throws IOException
+  {
+    emit(out, this.uniqueHash.size());
+  }
+
+  /**
+   * Write out a namespace definition to a DataOutput stream, using
+   * a value count captured earlier in a {@link
+   * arlut.csd.ganymede.server.DBStoreSnapshot DBStoreSnapshot}.  The
+   * value count is only used to size the namespace's hash when it is
+   * loaded.
+   */
+
+  public synchronized void emit(DataOutput out, int valueCount) throws IOException
   {
     out.writeUTF(this.name);
     out.writeBoolean(this.caseInsensitive);
-    out.writeInt(this.uniqueHash.size()); // added at DBStore version 2.14
+    out.writeInt(valueCount); // added at DBStore version 2.14
+  }
+
+  /**
+   * Returns the number of values currently registered in this
+   * namespace.
+   */
+
+  public synchronized int getValueCount()
+  {
+    return this.uniqueHash.size();
   }
 
   /**
@@ -355,6 +378,8 @@ public final class DBNameSpace implements NameSpace {
 
   public synchronized boolean containsKey(Object value)
   {
+    noteLookup(value, (DBNameSpaceHandle) this.uniqueHash.get(value));
+
     return this.uniqueHash.containsKey(value);
   }
 
@@ -411,6 +436,8 @@ public final class DBNameSpace implements NameSpace {
   {
     DBNameSpaceHandle handle = (DBNameSpaceHandle) this.uniqueHash.get(value);
 
+    noteLookup(value, handle);
+
     if (handle == null)
       {
         return null;
@@ -419,6 +446,31 @@ public final class DBNameSpace implements NameSpace {
     return handle.getPersistentField();
   }
 
+  /**
+   * <p>Returns the Invid of the committed object whose field
+   * fieldId holds value, or null if value is not held by a field
+   * fieldId in a committed object of type objectType.</p>
+   *
+   * <p>Unlike lookupPersistent(), this method doesn't look up the
+   * object, and so doesn't depend on the calling thread's read view.
+   * Used by {@link arlut.csd.ganymede.server.DBQueryPlan DBQueryPlan}
+   * to find the object holding a value.</p>
+   */
+
+  synchronized Invid lookupPersistentInvid(Object value, short objectType, short fieldId)
+  {
+    DBNameSpaceHandle handle = (DBNameSpaceHandle) this.uniqueHash.get(value);
+
+    noteLookup(value, handle);
+
+    if (handle == null || !handle.isPersisted() || !handle.matchesFieldType(objectType, fieldId))
+      {
+        return null;
+      }
+
+    return handle.getPersistentFieldInvid();
+  }
+
   /**
    * <p>If the value is attached to an object that is being created or
    * edited in a transaction, this method will return the editable
@@ -440,6 +492,8 @@ public final class DBNameSpace implements NameSpace {
   {
     DBNameSpaceHandle handle = (DBNameSpaceHandle) this.uniqueHash.get(value);
 
+    noteLookup(value, handle);
+
     if (handle == null)
       {
         return null;
@@ -477,6 +531,8 @@ public final class DBNameSpace implements NameSpace {
   {
     DBNameSpaceHandle handle = (DBNameSpaceHandle) this.uniqueHash.get(value);
 
+    noteLookup(value, handle);
+
     if (handle == null)
       {
         return null;
@@ -490,6 +546,37 @@ public final class DBNameSpace implements NameSpace {
     return handle.getPersistentField(session);
   }
 
+  /**
+   * <p>Returns the Invid of the committed object holding value, or
+   * null if there is none.  Used by {@link
+   * arlut.csd.ganymede.server.DBEditSet DBEditSet} to check whether a
+   * value looked up during an optimistic commit's validation has
+   * since been claimed or released by another commit.</p>
+   */
+
+  synchronized Invid lookupCommittedInvid(Object value)
+  {
+    DBNameSpaceHandle handle = (DBNameSpaceHandle) this.uniqueHash.get(value);
+
+    return (handle == null) ? null : handle.getPersistentFieldInvid();
+  }
+
+  /**
+   * <p>If the current thread is validating a transaction for an
+   * optimistic commit, records which committed object, if any, held
+   * value when it was looked up.</p>
+   */
+
+  private void noteLookup(Object value, DBNameSpaceHandle handle)
+  {
+    DBEditSet validating = DBEditSet.getValidatingTransaction();
+
+    if (validating != null && value != null)
+      {
+        validating.noteValueRead(this, value, (handle == null) ? null : handle.getPersistentFieldInvid());
+      }
+  }
+
   /**
    * <p>This method reserves a value so that the given editSet is
    * assured of being able to use this value at some point before the
@@ -1865,6 +1952,17 @@ class DBNameSpaceHandle implements Cloneable {
       }
   }
 
+  /**
+   * Returns the Invid of the object holding this handle's value in
+   * the committed data store, or null if the value has not been
+   * committed.
+   */
+
+  public Invid getPersistentFieldInvid()
+  {
+    return persistentFieldInvid;
+  }
+
   /**
    * If the value that this handle is associated with is stored in
    * the Ganymede server's persistent data store (i.e., that this
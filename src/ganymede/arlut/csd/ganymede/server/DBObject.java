@@ -230,12 +230,27 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
    *
    * <p>This reference will be null in the case where we are
    * constructed as a DBEditObject subclass for use as a pseudo-static
-   * objectHook.</p>
+   * objectHook, or if our fields are held in packed form in columns
+   * and have not yet been materialized.  Code outside of the
+   * constructors and the loading methods should get our fields
+   * through {@link #fields()}.</p>
    *
    * @see arlut.csd.ganymede.server.DBField
    */
 
-  private final DBField[] fieldAry;
+  private volatile DBField[] fieldAry;
+
+  /**
+   * <p>If this object was loaded from ganymede.db while the
+   * ganymede.compactobjects property was set, this points to the
+   * packed columns holding our field values, and row is our row in
+   * them.  Once our fields have been materialized into fieldAry, we
+   * no longer need the columns, and this will be null.</p>
+   */
+
+  private volatile DBFieldColumns columns = null;
+
+  private int row;
 
   /**
    * <p>Permission cache for our fields, in ascending field id order
@@ -453,7 +468,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
     this.gSession = null;
     this.permCacheAry = null;
 
-    DBField oldAry[] = original.fieldAry;
+    DBField oldAry[] = original.fields();
     int count = 0;
 
     synchronized (oldAry)
@@ -505,7 +520,9 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public DBObject(DBObject original, GanymedeSession gSession)
   {
-    if (original == null || original.fieldAry == null)
+    DBField[] originalAry = (original == null) ? null : original.fields();
+
+    if (originalAry == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic_constructor"));
       }
@@ -513,15 +530,15 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
     this.gSession = gSession;
     this.myInvid = original.myInvid;
     this.objectBase = original.objectBase;
-    this.permCacheAry = new PermEntry[original.fieldAry.length];
+    this.permCacheAry = new PermEntry[originalAry.length];
 
-    synchronized (original.fieldAry)
+    synchronized (originalAry)
       {
-        this.fieldAry = new DBField[original.fieldAry.length];
+        this.fieldAry = new DBField[originalAry.length];
 
-        for (int i = 0; i < original.fieldAry.length; i++)
+        for (int i = 0; i < originalAry.length; i++)
           {
-            fieldAry[i] = original.fieldAry[i].getCopy(this);
+            fieldAry[i] = originalAry[i].getCopy(this);
           }
       }
   }
@@ -651,10 +668,123 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
       {
         DBField field = fieldMap.get(fieldDef.getID());
 
-        fieldAry[i++] = field;
+        // fieldAry only holds the fields defined in this object
+
+        if (field != null)
+          {
+            fieldAry[i++] = field;
+          }
       }
   }
 
+  /**
+   * <p>Returns our fields, ordered by ascending field id,
+   * materializing them from our packed columns if need be.  Returns
+   * null if we are a pseudo-static objectHook.</p>
+   */
+
+  private DBField[] fields()
+  {
+    DBField[] result = fieldAry;
+
+    if (result == null && columns != null)
+      {
+        result = materializeFields();
+      }
+
+    return result;
+  }
+
+  private synchronized DBField[] materializeFields()
+  {
+    if (fieldAry == null)
+      {
+        fieldAry = columns.materialize(this, row);
+        columns = null;
+      }
+
+    return fieldAry;
+  }
+
+  /**
+   * <p>Returns our fields for a one-time, read-only pass, as when
+   * we are being written to disk.  If our fields have not been
+   * materialized from our packed columns, this method returns a
+   * temporary copy of them without keeping it, so that dumping the
+   * database doesn't materialize every object in it.</p>
+   */
+
+  private DBField[] peekFields()
+  {
+    DBFieldColumns compact = columns;
+    DBField[] result = fieldAry;
+
+    if (result == null && compact != null)
+      {
+        result = compact.materialize(this, row);
+      }
+
+    return result;
+  }
+
+  /**
+   * <p>Returns the field with the given id for a one-time, read-only
+   * look, or null if we have no such field.</p>
+   *
+   * <p>If our fields are held in packed columns and have not been
+   * materialized, the field returned may be a temporary copy built
+   * from the columns, which we don't keep, so that matching a query
+   * against us, sorting on one of our fields, or indexing one of our
+   * fields doesn't materialize all of our fields for good.  The
+   * field returned must not be modified, exported, or held on
+   * to.</p>
+   */
+
+  final DBField peekField(short id)
+  {
+    DBFieldColumns compact = packed();
+
+    if (compact != null)
+      {
+        return compact.getField(this, id, row);
+      }
+
+    return getField(id);
+  }
+
+  /**
+   * <p>Returns our packed columns if our fields are held in packed
+   * form and have not been materialized, or null otherwise.  Used to
+   * answer simple value lookups without materializing our
+   * fields.</p>
+   */
+
+  private DBFieldColumns packed()
+  {
+    DBFieldColumns compact = columns;
+
+    if (compact != null && fieldAry == null)
+      {
+        return compact;
+      }
+
+    return null;
+  }
+
+  /**
+   * <p>Called by {@link
+   * arlut.csd.ganymede.server.DBFieldColumns#compact(java.util.List)}
+   * once it has copied our field values into packed columns, so that
+   * we can let go of our DBFields.</p>
+   */
+
+  final void setColumns(DBFieldColumns columns, int row)
+  {
+    this.row = row;
+    this.columns = columns;
+    this.fieldAry = null;
+  }
+
   /**
    * Returns the non-editing DBEditObject singleton that provides
    * management oversight to Objects of this type.
@@ -673,14 +803,16 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final void exportFields()
   {
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             // export can fail if the object has already
             // been exported.. don't worry about it if
@@ -702,14 +834,16 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final void unexportFields()
   {
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             // unexport can fail (return false) if the object has
             // already been unexported, or if it was never exported,
@@ -849,7 +983,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
     /* -- */
 
-    if (fieldAry == null)
+    if (fieldAry == null && columns == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
@@ -977,7 +1111,23 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public String getLabel()
   {
-    DBField f = getField(objectBase.getLabelField());
+    DBFieldColumns compact = packed();
+    short labelField = objectBase.getLabelField();
+
+    if (compact != null && compact.isPackedString(labelField))
+      {
+        String result = (String) compact.getValue(labelField, row);
+
+        if (result == null || result.length() == 0)
+          {
+            // "New {0}: {1,number,#}"
+            result = ts.l("getLabel.null_label", getTypeName(), Integer.valueOf(getID()));
+          }
+
+        return result;
+      }
+
+    DBField f = peekField(labelField);
 
     if (f != null && f.isDefined())
       {
@@ -1092,18 +1242,20 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
   {
     //    System.err.println("Emitting " + objectBase.getName() + " <" + id + ">");
 
-    if (fieldAry == null)
+    DBField[] ary = peekFields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
     out.writeInt(getID());      // write out our object id
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
         short count = 0;
 
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             if (field != null && field.isDefined())
               {
@@ -1120,7 +1272,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
         out.writeShort(count);
 
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             if (field != null && field.isDefined())
               {
@@ -1280,7 +1432,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
             // starting at DBStore 2.15, we know that the fields are
             // coming from the db file ordered by ascending field code
 
-            fieldAry[i] = tmp;
+            this.fieldAry[i] = tmp;
           }
         else
           {
@@ -1466,12 +1618,14 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
     /* -- */
 
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
         for (DBObjectBaseField fieldDef: objectBase.getCustomFields())
           {
@@ -1505,16 +1659,18 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final Vector<DBField> getFieldVect()
   {
-    if (this.fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         return null;
       }
 
-    Vector<DBField> fieldVect = new Vector<DBField>(fieldAry.length);
+    Vector<DBField> fieldVect = new Vector<DBField>(ary.length);
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             fieldVect.add(field);
           }
@@ -1533,7 +1689,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
   {
     for (int i = 0; i < newFields.length; i++)
       {
-        this.fieldAry[i] = newFields[i];
+        fieldAry[i] = newFields[i];
       }
   }
 
@@ -1611,6 +1767,13 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final boolean hasField(short id)
   {
+    DBFieldColumns compact = packed();
+
+    if (compact != null)
+      {
+        return compact.isDefined(id, row);
+      }
+
     return (getField(id) != null);
   }
 
@@ -1641,21 +1804,23 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final DBField getField(short id)
   {
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        int index = java.util.Arrays.binarySearch(fieldAry, id);
+        int index = java.util.Arrays.binarySearch(ary, id);
 
         if (index < 0)
           {
             return null;
           }
 
-        return fieldAry[index];
+        return ary[index];
       }
   }
 
@@ -1675,14 +1840,16 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final DBField getField(String fieldName)
   {
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             if (field != null && field.getName().equalsIgnoreCase(fieldName))
               {
@@ -1703,14 +1870,16 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   private final short findField(short id)
   {
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        return (short) java.util.Arrays.binarySearch(fieldAry, id);
+        return (short) java.util.Arrays.binarySearch(ary, id);
       }
   }
 
@@ -1727,14 +1896,16 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final void clearFieldPerm(short id)
   {
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        int index = java.util.Arrays.binarySearch(fieldAry, id);
+        int index = java.util.Arrays.binarySearch(ary, id);
 
         if (index < 0)
           {
@@ -1782,16 +1953,18 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
     /* -- */
 
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        for (int i = 0; i < fieldAry.length; i++)
+        for (int i = 0; i < ary.length; i++)
           {
-            field = fieldAry[i];
+            field = ary[i];
 
             if (field != null && field.getName().equalsIgnoreCase(fieldname))
               {
@@ -1825,14 +1998,16 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
     DBField result[];
     short count = 0;
 
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             if (field != null)
               {
@@ -1844,7 +2019,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
         count = 0;
 
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             if (field != null)
               {
@@ -1899,7 +2074,9 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
     /* -- */
 
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
@@ -1908,7 +2085,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
     // getField itself sync's on fieldAry.  if we sync up front we may
     // reduce our lock acquisition time marginally
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
         // loop over the fields in display order (rather than the hash
         // order in the fieldAry)
@@ -1989,12 +2166,14 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
     // sync on fieldAry since we are looping over our fields and since
     // getField itself sync's on fieldAry
 
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
         // assume that the object type's fields will not be changed at a
         // time when this method is called.  A reasonable assumption,
@@ -2242,7 +2421,22 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final Object getFieldValueLocal(short fieldID)
   {
-    return this.getFieldValueLocal(getField(fieldID));
+    DBFieldColumns compact = packed();
+
+    if (compact != null)
+      {
+        if (!compact.hasColumn(fieldID))
+          {
+            return null;
+          }
+
+        if (compact.isPacked(fieldID))
+          {
+            return compact.getValue(fieldID, row);
+          }
+      }
+
+    return this.getFieldValueLocal(peekField(fieldID));
   }
 
   private Object getFieldValueLocal(DBField f)
@@ -2496,7 +2690,14 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final boolean isDefined(short fieldID)
   {
-    return this.isDefined(getField(fieldID));
+    DBFieldColumns compact = packed();
+
+    if (compact != null && (!compact.hasColumn(fieldID) || compact.isPacked(fieldID)))
+      {
+        return compact.isDefined(fieldID, row);
+      }
+
+    return this.isDefined(peekField(fieldID));
   }
 
   /**
@@ -2762,7 +2963,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final Vector getFieldValuesLocal(short fieldID)
   {
-    DBField field = this.getField(fieldID);
+    DBField field = this.peekField(fieldID);
     String fieldName = null;
 
     if (field == null)
@@ -2806,14 +3007,16 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final Vector<DBField> getFieldVector(boolean customOnly)
   {
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
     Vector<DBField> results = new Vector<DBField>();
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
         // use objectBase.getCustomFields so that we're in display
         // order
@@ -2830,7 +3033,7 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
         if (!customOnly)
           {
-            for (DBField field: fieldAry)
+            for (DBField field: ary)
               {
                 if (field != null && field.isBuiltIn())
                   {
@@ -3449,16 +3652,18 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
 
   public final Set<Invid> getASymmetricTargets()
   {
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
     HashSet<Invid> results = new HashSet<Invid>();
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             if (field == null)
               {
@@ -3733,17 +3938,19 @@ public class DBObject implements db_object, FieldType, Remote, JythonMap {
           }
       }
 
-    if (fieldAry == null)
+    DBField[] ary = fields();
+
+    if (ary == null)
       {
         throw new NullPointerException(ts.l("global.pseudostatic"));
       }
 
-    synchronized (fieldAry)
+    synchronized (ary)
       {
         // okay, got all the custom fields.. now we need to summarize all the
         // built-in fields that were not listed in customFields.
 
-        for (DBField field: fieldAry)
+        for (DBField field: ary)
           {
             if (field == null || !field.isBuiltIn() || !field.isDefined())
               {
@@ -452,19 +452,36 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
    * of writerList, writeInProgress is set to true, and currentLock is
    * set to point to the DBWriteLock that has exclusive access.</p>
    *
-   * <p>Note that there is no guarantee that DBWriteLocks will be
-   * granted access to any given DBObjectBase in the order that their
-   * threads entered the establish() method, as different DBWriteLocks
-   * may be attempting to establish() on differing sets of
-   * DBObjectBases.  There is not in fact any attempt in the
-   * DBWriteLock establish() method to ensure that writers are given
-   * the lock on a DBObjectBase in their writerList ordering.  The
-   * establish() methods may establish() any writer in any order,
-   * depending on the server's threading behavior.</p>
+   * <p>DBWriteLocks are granted in writerList order.  A DBWriteLock
+   * will not lock this DBObjectBase until it has reached the head of
+   * the writerList.  Since a DBWriteLock adds itself to the
+   * writerList of all of its bases at once, the writerLists of any
+   * two DBObjectBases always agree on the relative order of the
+   * writers they share, and the oldest waiting writer can always
+   * proceed once the readers and dumpers ahead of it drain away.</p>
+   *
+   * <p>Shared (commit) DBWriteLocks are the exception.  A shared
+   * DBWriteLock may lock this DBObjectBase alongside other shared
+   * DBWriteLocks, and need only wait for exclusive writers queued
+   * ahead of it, not for the shared writers ahead of it.</p>
    */
 
   private Vector<DBWriteLock> writerList;
 
+  /**
+   * <p>Collection of shared {@link
+   * arlut.csd.ganymede.server.DBWriteLock DBWriteLock}s that are
+   * locked on this DBObjectBase.  Shared write locks are used by
+   * {@link arlut.csd.ganymede.server.DBEditSet DBEditSet} to commit
+   * transactions when the ganymede.concurrentcommits property is
+   * set, and allow transactions that change different objects in
+   * this DBObjectBase to commit at the same time.  They exclude
+   * readers, dumpers, and exclusive writers just as an exclusive
+   * DBWriteLock does.</p>
+   */
+
+  private Vector<DBWriteLock> sharedWriterList;
+
   /**
    * <p>Collection of {@link arlut.csd.ganymede.server.DBReadLock
    * DBReadLock}s that are locked on this DBObjectBase.</p>
@@ -518,7 +535,7 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
   private DBSchemaEdit editor;
 
   /**
-   * <p>This unmodifiable List holds the current collection of {@link
+   * <p>This immutable List holds the current collection of {@link
    * arlut.csd.ganymede.server.DBObject DBObject} objects in this
    * DBObjectBase, for enumeration access.  The GanymedeSession query
    * logic iterates over this List so that querying on single bases
@@ -526,13 +543,20 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
    *
    * <p>This is practicable because assignment to this variable is an
    * inherently atomic event in the Java spec, so we just wait to
-   * assign a new Vector here until we have a new one composed.  We
-   * just have to depend on all code that accesses this vector to grab
-   * its own reference to this vector and then not modify it, and to
-   * drop reference to it when the iteration is complete.</p>
+   * assign a new DBIterationSet here until we have a new one
+   * composed.  Since a DBIterationSet can never be modified, code
+   * that grabs a reference to it can iterate over it at leisure.</p>
    */
 
-  private List<DBObject> iterationList;
+  private DBIterationSet iterationList;
+
+  /**
+   * <p>The ids of objects that have been put into or removed from
+   * objectTable since iterationList was last brought up to date by
+   * {@link #updateIterationSet()}.</p>
+   */
+
+  private final Set<Integer> changedIDs = new HashSet<Integer>();
 
   // Customization Management Object
 
@@ -718,10 +742,11 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
     this.editor = editor;
 
     writerList = new Vector<DBWriteLock>();
+    sharedWriterList = new Vector<DBWriteLock>();
     readerList = new Vector<DBReadLock>();
     dumperList = new Vector<DBDumpLock>();
     dumpLockList = new Vector<DBDumpLock>();
-    iterationList = Collections.unmodifiableList(new ArrayList<DBObject>());
+    iterationList = DBIterationSet.EMPTY;
 
     object_name = "";
     classname = "";
@@ -792,10 +817,7 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
         out.writeInt(objectTable.size());
 
-        for (DBObject object: objectTable)
-          {
-            object.emit(out);
-          }
+        emitObjects(out);
       }
     else
       {
@@ -805,11 +827,42 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
       }
   }
 
+  /**
+   * <p>Writes out all of the objects in this DBObjectBase, in
+   * ganymede.db form, returning the number of objects written.</p>
+   *
+   * <p>Starting at DBStore 2.24, the objects for each base are
+   * written by this method in a separate section of the ganymede.db
+   * file, so that they can be loaded independently of the other
+   * bases.</p>
+   */
+
+  synchronized int emitObjects(DataOutput out) throws IOException
+  {
+    int count = 0;
+
+    for (DBObject object: objectTable)
+      {
+        object.emit(out);
+        count++;
+      }
+
+    return count;
+  }
+
+  /**
+   * <p>Returns the highest object id allocated in this base, for
+   * recording in the ganymede.db section table.</p>
+   */
+
+  synchronized int getMaxID()
+  {
+    return maxid;
+  }
+
   synchronized void receive(DataInput in) throws IOException
   {
     int size;
-    DBObject tempObject;
-    int temp_val;
     int object_count;
     DBObjectBaseField field;
 
@@ -945,10 +998,42 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
         maxid = in.readInt(); // added at file version 1.12
       }
 
-    // read in the objects belonging to this ObjectBase
+    // read in the objects belonging to this ObjectBase.  starting at
+    // DBStore 2.24, object_count will be zero here, and the objects
+    // will be read in later from this base's own section of the
+    // ganymede.db file by receiveObjects().
 
     object_count = in.readInt();
 
+    receiveObjects(in, object_count, maxid);
+  }
+
+  /**
+   * <p>Reads in object_count objects belonging to this DBObjectBase
+   * from in, replacing any objects previously loaded.</p>
+   *
+   * <p>Starting at DBStore 2.24, {@link
+   * arlut.csd.ganymede.server.DBStore#load(java.lang.String)
+   * DBStore.load()} calls this method for many bases concurrently,
+   * each on its own thread reading its own section of the ganymede.db
+   * file.  All of the shared structures touched while loading objects
+   * (the namespaces, the DBStore's aSymLinkTracker, and the Invid
+   * allocator) are synchronized.</p>
+   *
+   * @param maxid The highest object id recorded for this base
+   */
+
+  synchronized void receiveObjects(DataInput in, int object_count, int maxid) throws IOException
+  {
+    DBObject tempObject;
+    int temp_val;
+
+    /* -- */
+
+    this.maxid = maxid;
+
+    store.invidTable.reserve(getTypeID(), maxid);
+
     if (debug)
       {
         // "DBObjectBase.receive(): Loading {0,number,#} {1} objects"
@@ -972,9 +1057,10 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
       {
         tempObject = new DBObject(this, in, false);
 
-        if (tempObject.getID() > maxid)
+        if (tempObject.getID() > this.maxid)
           {
-            maxid = tempObject.getID();
+            this.maxid = tempObject.getID();
+            store.invidTable.reserve(getTypeID(), maxid);
           }
 
         tmpIterationList.add(tempObject);
@@ -982,9 +1068,20 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
         tempObject.registerAsymmetricLinks(); // register anonymous invid fields
       }
 
+    // if we're running with compact objects, pack the fields of the
+    // objects we've loaded into columns, and let the objects drop
+    // their individual DBFields until someone asks for them
+
+    if (Ganymede.compactObjectsProperty)
+      {
+        DBFieldColumns.compact(tmpIterationList);
+      }
+
     // lock and load
 
-    this.iterationList = Collections.unmodifiableList(tmpIterationList);
+    this.iterationList = DBIterationSet.build(tmpIterationList);
+
+    syncFieldIndexes();
   }
 
   /**
@@ -1936,6 +2033,7 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
         if (maxid < invid.getNum())
           {
             maxid = invid.getNum();
+            store.invidTable.reserve(getTypeID(), maxid);
           }
       }
 
@@ -2139,6 +2237,8 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   synchronized int getNextID()
   {
+    store.invidTable.reserve(getTypeID(), maxid + 1);
+
     return ++maxid;
   }
 
@@ -3114,7 +3214,15 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
         throw new IllegalArgumentException(ts.l("getObject.badtype"));
       }
 
-    return objectTable.get(invid.getNum());
+    DBObject obj = objectTable.get(invid.getNum());
+    DBEditSet validating = DBEditSet.getValidatingTransaction();
+
+    if (validating != null)
+      {
+        validating.noteRead(invid, obj);
+      }
+
+    return obj;
   }
 
   /**
@@ -3124,7 +3232,15 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   public final DBObject getObject(int objectID)
   {
-    return objectTable.get(objectID);
+    DBObject obj = objectTable.get(objectID);
+    DBEditSet validating = DBEditSet.getValidatingTransaction();
+
+    if (validating != null)
+      {
+        validating.noteRead(Invid.createInvid(getTypeID(), objectID), obj);
+      }
+
+    return obj;
   }
 
   public final boolean containsKey(int id)
@@ -3135,16 +3251,32 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
   public synchronized final void put(DBObject newObject)
   {
     objectTable.put(newObject);
+    noteChanged(newObject.getID());
 
     if (newObject.getID() > maxid)
       {
         maxid = newObject.getID();
+        store.invidTable.reserve(getTypeID(), maxid);
       }
   }
 
   public final void remove(int id)
   {
     objectTable.remove(id);
+    noteChanged(id);
+  }
+
+  /**
+   * <p>Records that the object with the given id has been put into or
+   * removed from objectTable, for the next updateIterationSet().</p>
+   */
+
+  private void noteChanged(int id)
+  {
+    synchronized (changedIDs)
+      {
+        changedIDs.add(Integer.valueOf(id));
+      }
   }
 
   /**
@@ -3154,6 +3286,8 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   public final Enumeration<DBObject> getObjectsEnum()
   {
+    noteScan();
+
     return objectTable.elements();
   }
 
@@ -3164,6 +3298,8 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   public Iterable<DBObject> getObjects()
   {
+    noteScan();
+
     return new Iterable<DBObject>() {
       public Iterator<DBObject> iterator()
       {
@@ -3368,23 +3504,61 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   /**
    * <p>This method is used by the DBEditSet commit logic to replace
-   * this DBObjectBase's iterationSet with a new List&lt;DBObject&gt;
-   * with the current objectTable's values.  This method should only
-   * be called within the context of a DBWriteLock being established
-   * on this DBObjectBase, in the DBEditSet.commitTransaction()
-   * logic.</p>
+   * this DBObjectBase's iterationSet with a new DBIterationSet
+   * reflecting the current objectTable's values.  This method should
+   * only be called within the context of a DBWriteLock being
+   * established on this DBObjectBase, in the
+   * DBEditSet.commitTransaction() logic.</p>
+   *
+   * <p>Only the objects put or removed since the last update are
+   * applied, sharing the rest of the previous iteration set's
+   * structure.  If most of the base has changed, we rebuild from
+   * scratch instead.</p>
+   *
+   * <p>Any field indexes are brought forward along with the
+   * iteration set, so that they always reflect the iteration set
+   * that is current for this base.</p>
    */
 
   void updateIterationSet()
   {
-    List<DBObject> newIterationList;
+    DBIterationSet oldIterationList = this.iterationList;
+    DBIterationSet newIterationList = this.iterationList;
 
     synchronized (objectTable)
       {
-        newIterationList = new ArrayList<DBObject>(objectTable.values());
+        synchronized (changedIDs)
+          {
+            if (changedIDs.size() > objectTable.size() / 4)
+              {
+                newIterationList = DBIterationSet.build(objectTable.values());
+
+                updateFieldIndexes(oldIterationList, newIterationList, null);
+              }
+            else
+              {
+                for (Integer id: changedIDs)
+                  {
+                    DBObject obj = objectTable.get(id.intValue());
+
+                    if (obj == null)
+                      {
+                        newIterationList = newIterationList.without(id.intValue());
+                      }
+                    else
+                      {
+                        newIterationList = newIterationList.with(obj);
+                      }
+                  }
+
+                updateFieldIndexes(oldIterationList, newIterationList, changedIDs);
+              }
+
+            changedIDs.clear();
+          }
       }
 
-    this.iterationList = Collections.unmodifiableList(newIterationList);
+    this.iterationList = newIterationList;
   }
 
   /**
@@ -3395,9 +3569,83 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   public List<DBObject> getIterationSet()
   {
+    noteScan();
+
     return iterationList;
   }
 
+  /**
+   * <p>If the current thread is validating a transaction for an
+   * optimistic commit, records the iteration set it is about to look
+   * at.</p>
+   */
+
+  private void noteScan()
+  {
+    DBEditSet validating = DBEditSet.getValidatingTransaction();
+
+    if (validating != null)
+      {
+        validating.noteScan(this, iterationList);
+      }
+  }
+
+  /**
+   * <p>Returns the current iteration set as a DBIterationSet, for
+   * {@link arlut.csd.ganymede.server.DBStoreView DBStoreView}.</p>
+   */
+
+  DBIterationSet getIterationSnapshot()
+  {
+    return iterationList;
+  }
+
+  /**
+   * <p>Builds an index for each indexed field in this base that
+   * doesn't already have one reflecting the current iteration set,
+   * and drops the index from any field that is no longer indexed.
+   * Called when the database is loaded and when a schema edit is
+   * committed.</p>
+   */
+
+  void syncFieldIndexes()
+  {
+    updateFieldIndexes(null, this.iterationList, null);
+  }
+
+  /**
+   * <p>Brings the index on each indexed field in this base forward
+   * from oldList to newList.  If changedIDs is not null, only the
+   * objects with those ids are reindexed.  Otherwise, any index not
+   * already reflecting newList is rebuilt from scratch.</p>
+   */
+
+  private void updateFieldIndexes(DBIterationSet oldList, DBIterationSet newList,
+                                  Collection<Integer> changedIDs)
+  {
+    synchronized (fieldTable)
+      {
+        for (DBObjectBaseField fieldDef: fieldTable)
+          {
+            if (!fieldDef.isIndexed())
+              {
+                fieldDef.setFieldIndex(null);
+                continue;
+              }
+
+            DBFieldIndex index = fieldDef.getFieldIndex();
+
+            if (index == null)
+              {
+                index = new DBFieldIndex(fieldDef);
+                fieldDef.setFieldIndex(index);
+              }
+
+            index.update(oldList, newList, changedIDs);
+          }
+      }
+  }
+
   /**
    * <p>This method is used to update base references and remove
    * deleted field types in objects after this base has replaced an
@@ -3418,6 +3666,11 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
             objectTable.replaceNoSync(new DBObject(obj, this));
           }
+
+        // every object has been replaced, so rebuild the iteration
+        // set wholesale
+
+        this.iterationList = DBIterationSet.build(objectTable.values());
       }
   }
 
@@ -3460,7 +3713,9 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
   //
   // the following methods are used to manage locks on this base
   // All methods that modify writerList, readerList, or dumperList
-  // must be synchronized on store.lockSync
+  // must hold the store.lockSync mutex.  Any method that takes a
+  // lock off of one of these lists signals store.lockSync so that
+  // the locks waiting on this base can take another look.
   //
 
   /**
@@ -3470,9 +3725,16 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   boolean isLocked()
   {
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
-        return (!isReaderEmpty() || writeInProgress.isSet() || !isDumpLockListEmpty());
+        return (!isReaderEmpty() || writeInProgress.isSet() || !isDumpLockListEmpty() ||
+                !isSharedWriterListEmpty());
+      }
+    finally
+      {
+        store.lockSync.unlock();
       }
   }
 
@@ -3529,6 +3791,86 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
     this.setWriteInProgress(false);
     this.currentLock = null;
+
+    store.lockSync.signal(this);
+  }
+
+  /**
+   * <p>Add a shared DBWriteLock to this base's shared writer
+   * list.</p>
+   */
+
+  boolean addSharedWriter(DBWriteLock writer)
+  {
+    store.lockSync.lock();
+
+    try
+      {
+        sharedWriterList.add(writer);
+      }
+    finally
+      {
+        store.lockSync.unlock();
+      }
+
+    return true;
+  }
+
+  /**
+   * <p>Remove a shared DBWriteLock from this base's shared writer
+   * list.</p>
+   */
+
+  boolean removeSharedWriter(DBWriteLock writer)
+  {
+    boolean result;
+
+    store.lockSync.lock();
+
+    try
+      {
+        result = sharedWriterList.remove(writer);
+        store.lockSync.signal(this);
+
+        return result;
+      }
+    finally
+      {
+        store.lockSync.unlock();
+      }
+  }
+
+  /**
+   * <p>Returns true if no shared DBWriteLocks are locked on this
+   * base.</p>
+   */
+
+  boolean isSharedWriterListEmpty()
+  {
+    return sharedWriterList.isEmpty();
+  }
+
+  /**
+   * <p>Returns true if an exclusive DBWriteLock is waiting on this
+   * base ahead of writer.</p>
+   */
+
+  boolean hasExclusiveWriterAhead(DBWriteLock writer)
+  {
+    for (DBWriteLock other: writerList)
+      {
+        if (other == writer)
+          {
+            return false;
+          }
+
+        if (!other.isShared())
+          {
+            return true;
+          }
+      }
+
+    return false;
   }
 
   /**
@@ -3537,10 +3879,16 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   boolean addWaitingWriter(DBWriteLock writer)
   {
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
         writerList.add(writer);
       }
+    finally
+      {
+        store.lockSync.unlock();
+      }
 
     return true;
   }
@@ -3553,23 +3901,40 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
   {
     boolean result;
 
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
         result = writerList.remove(writer);
-        store.lockSync.notifyAll();
+        store.lockSync.signal(this);
 
         return result;
       }
+    finally
+      {
+        store.lockSync.unlock();
+      }
+  }
+
+  /**
+   * <p>Returns true if writer is the oldest DBWriteLock waiting on
+   * this base.</p>
+   */
+
+  boolean isFirstWaitingWriter(DBWriteLock writer)
+  {
+    return !writerList.isEmpty() && writerList.get(0) == writer;
   }
 
   /**
    * <p>Returns true if this base has a non-empty writer waiting list
-   * or actually has a write lock established.</p>
+   * or actually has an exclusive or shared write lock
+   * established.</p>
    */
 
   boolean hasWriter()
   {
-    return !isWaitingWriterListEmpty() || isWriteInProgress();
+    return !isWaitingWriterListEmpty() || isWriteInProgress() || !isSharedWriterListEmpty();
   }
 
   /**
@@ -3596,10 +3961,16 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   boolean addReader(DBReadLock reader)
   {
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
         readerList.add(reader);
       }
+    finally
+      {
+        store.lockSync.unlock();
+      }
 
     return true;
   }
@@ -3612,13 +3983,19 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
   {
     boolean result;
 
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
         result = readerList.remove(reader);
 
-        store.lockSync.notifyAll();
+        store.lockSync.signal(this);
         return result;
       }
+    finally
+      {
+        store.lockSync.unlock();
+      }
   }
 
   /**
@@ -3646,10 +4023,16 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   boolean addWaitingDumper(DBDumpLock dumper)
   {
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
         dumperList.add(dumper);
       }
+    finally
+      {
+        store.lockSync.unlock();
+      }
 
     return true;
   }
@@ -3664,13 +4047,19 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
     /* -- */
 
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
         result = dumperList.remove(dumper);
 
-        store.lockSync.notifyAll();
+        store.lockSync.signal(this);
         return result;
       }
+    finally
+      {
+        store.lockSync.unlock();
+      }
   }
 
   /**
@@ -3697,10 +4086,16 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
 
   boolean addDumpLock(DBDumpLock dumper)
   {
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
         dumpLockList.add(dumper);
       }
+    finally
+      {
+        store.lockSync.unlock();
+      }
 
     return true;
   }
@@ -3713,13 +4108,19 @@ public final class DBObjectBase implements Base, CategoryNode, JythonMap {
   {
     boolean result;
 
-    synchronized (store.lockSync)
+    store.lockSync.lock();
+
+    try
       {
         result = dumpLockList.remove(dumper);
 
-        store.lockSync.notifyAll();
+        store.lockSync.signal(this);
         return result;
       }
+    finally
+      {
+        store.lockSync.unlock();
+      }
   }
 
   /**
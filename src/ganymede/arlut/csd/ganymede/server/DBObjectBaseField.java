@@ -159,6 +159,15 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
 
   private boolean visibility = true;
 
+  /**
+   * Should the values held in this field be indexed, so that queries
+   * testing them can be answered without scanning every object in
+   * the base?  Only string, invid, numeric, float and date fields may
+   * be indexed.
+   */
+
+  private boolean indexed = false;
+
   /**
    * string to be displayed in the client as a tooltip explaining this field
    */
@@ -356,6 +365,16 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
 
   private Date lastChange;
 
+  /**
+   * <p>The secondary index on the values of this field, if this field
+   * is indexed.  Built and maintained by our DBObjectBase.  Not
+   * shared with the copies of this field definition made during
+   * schema editing, which get their own index when the schema edit
+   * is committed.</p>
+   */
+
+  private volatile DBFieldIndex fieldIndex = null;
+
   /**
    * This field is used to handle field order sorting when
    * we read an old (pre-2.0) ganymede.db file.
@@ -424,6 +443,7 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
     field_type = original.field_type; // data type contained herein
 
     visibility = original.visibility;
+    indexed = original.indexed;
 
     comment = original.comment;
     array = original.array;     // true if this field is an array type
@@ -499,6 +519,27 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
     return new Date(lastChange.getTime());
   }
 
+  /**
+   * <p>Returns the secondary index on the values of this field, or
+   * null if this field is not indexed or its index has not yet been
+   * built.</p>
+   */
+
+  DBFieldIndex getFieldIndex()
+  {
+    return fieldIndex;
+  }
+
+  /**
+   * <p>Sets the secondary index on the values of this field.  Called
+   * by our DBObjectBase.</p>
+   */
+
+  void setFieldIndex(DBFieldIndex fieldIndex)
+  {
+    this.fieldIndex = fieldIndex;
+  }
+
   /**
    * Returns true if any commits have been made to this DBObjectBase
    * more recently than the comparison date.
@@ -552,6 +593,7 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
       }
 
     out.writeBoolean(visibility); // added at file version 1.6
+    out.writeBoolean(indexed); // added at file version 2.26
 
     out.writeBoolean(array);
 
@@ -765,6 +807,17 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
         visibility = true;
       }
 
+    // at file version 2.26, we introduced indexed fields
+
+    if (base.getStore().isAtLeast(2,26))
+      {
+        indexed = in.readBoolean();
+      }
+    else
+      {
+        indexed = false;
+      }
+
     // at file version 1.7, we introduced an explicit built-in flag
     // we took it out at 2.0
 
@@ -1090,6 +1143,12 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
         xmlOut.endElement("invisible");
       }
 
+    if (indexed)
+      {
+        xmlOut.startElementIndent("indexed");
+        xmlOut.endElement("indexed");
+      }
+
     xmlOut.startElementIndent("typedef");
 
     switch (field_type)
@@ -1444,6 +1503,7 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
     Integer field_codeInt;
     boolean typeRead = false;
     boolean _visibility = true;
+    boolean _indexed = false;
     String _comment = null;
     ReturnVal retVal = null;
 
@@ -1544,6 +1604,10 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
           {
             _visibility = false;        // need a setter?
           }
+        else if (item.matches("indexed"))
+          {
+            _indexed = true;
+          }
         else if (item.matches("typedef"))
           {
             if (typeRead)
@@ -1697,6 +1761,16 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
 
     visibility = _visibility;
 
+    retVal = setIndexed(_indexed);
+
+    if (!ReturnVal.didSucceed(retVal))
+      {
+        // "XML"
+        // "fielddef could not set indexing:\n{0}\n{1}"
+        return Ganymede.createErrorDialog(ts.l("global.xmlErrorTitle"),
+                                          ts.l("setXML.failed_field_indexed", root.getTreeString(), retVal.getDialogText()));
+      }
+
     return null;
   }
 
@@ -2954,6 +3028,44 @@ public final class DBObjectBaseField implements BaseField, FieldType, Comparable
     this.visibility = visibility;
   }
 
+  /**
+   * <p>Returns true if the values held in this field are indexed for
+   * querying.</p>
+   */
+
+  public synchronized boolean isIndexed()
+  {
+    return indexed;
+  }
+
+  /**
+   * <p>Marks this field as indexed or not.  An indexed field has a
+   * {@link arlut.csd.ganymede.server.DBFieldIndex DBFieldIndex} built
+   * on its values, which the {@link
+   * arlut.csd.ganymede.server.DBQueryEngine DBQueryEngine} uses to
+   * answer queries testing the field without scanning every object
+   * in the base.</p>
+   *
+   * <p>Only string, invid, numeric, float and date fields may be
+   * indexed.</p>
+   */
+
+  public synchronized ReturnVal setIndexed(boolean b)
+  {
+    securityCheck();
+
+    if (b && !DBFieldIndex.isIndexable(this))
+      {
+        // "Can''t index this field type ({0}): {1}"
+        return Ganymede.createErrorDialog(ts.l("global.schema_editing_error"),
+                                          ts.l("setIndexed.bad_type", this.getTypeDesc(), this.toString()));
+      }
+
+    indexed = b;
+
+    return null;
+  }
+
   /**
    * Server-side method used to set the status of this field's
    * isInUseCache.
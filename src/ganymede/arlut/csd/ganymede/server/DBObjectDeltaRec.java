@@ -184,6 +184,19 @@ public final class DBObjectDeltaRec implements FieldType, Iterable<fieldDeltaRec
    */
 
   public DBObjectDeltaRec(DataInput in) throws IOException
+  {
+    this(in, null);
+  }
+
+  /**
+   * This DBObjectDeltaRec constructor is used to load a delta record
+   * from a Journal stream during a bulk journal replay, in which the
+   * object being changed may not yet have been put into the
+   * DBStore.  The object's current version will be looked up in
+   * replay, if replay is not null.
+   */
+
+  DBObjectDeltaRec(DataInput in, DBJournalReplay replay) throws IOException
   {
     try
       {
@@ -196,7 +209,16 @@ public final class DBObjectDeltaRec implements FieldType, Iterable<fieldDeltaRec
                                        this.invid.getType());
           }
 
-        DBObject obj = Ganymede.db.viewDBObject(this.invid);
+        DBObject obj;
+
+        if (replay != null)
+          {
+            obj = replay.viewDBObject(this.invid);
+          }
+        else
+          {
+            obj = Ganymede.db.viewDBObject(this.invid);
+          }
 
         int fieldcount = in.readInt();
 
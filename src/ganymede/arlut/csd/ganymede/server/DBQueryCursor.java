@@ -0,0 +1,246 @@
+/*
+
+   DBQueryCursor.java
+
+   Server-side cursor over the results of a query.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+
+package arlut.csd.ganymede.server;
+
+import java.rmi.server.Unreferenced;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+import arlut.csd.ganymede.common.DumpResult;
+import arlut.csd.ganymede.common.Invid;
+import arlut.csd.ganymede.common.NotLoggedInException;
+import arlut.csd.ganymede.common.ObjectHandle;
+import arlut.csd.ganymede.common.Query;
+import arlut.csd.ganymede.common.QueryResult;
+import arlut.csd.ganymede.rmi.QueryCursor;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                   DBQueryCursor
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>Server-side implementation of the {@link
+ * arlut.csd.ganymede.rmi.QueryCursor QueryCursor} interface, which
+ * lets a client pull down the results of a query a page at a
+ * time.</p>
+ *
+ * <p>The query is run once, when the cursor is opened by {@link
+ * arlut.csd.ganymede.server.DBQueryEngine#openCursor(arlut.csd.ganymede.common.Query,int)
+ * DBQueryEngine.openCursor()}, and the cursor keeps the sorted list
+ * of matching objects.  Pages of that list are handed out as the
+ * client asks for them, so that a client working through a large
+ * result doesn't have to hold all of it at once, and the server
+ * doesn't have to serialize all of it in one call.  Dump pages are
+ * built from the objects as they stand when each page is asked
+ * for.</p>
+ *
+ * <p>A cursor belongs to the GanymedeSession that opened it, which
+ * closes it at logout if the client hasn't already, and it will
+ * refuse to return pages once that session has logged out.</p>
+ */
+
+public final class DBQueryCursor implements QueryCursor, Unreferenced {
+
+  private final GanymedeSession gSession;
+  private final DBQueryEngine engine;
+  private final Query query;
+  private final DBObjectBase base;
+  private final int pageSize;
+  private Vector<ObjectHandle> handles;
+  private int position = 0;
+
+  /* -- */
+
+  DBQueryCursor(GanymedeSession gSession, DBQueryEngine engine, Query query,
+                DBObjectBase base, QueryResult result, int pageSize)
+  {
+    this.gSession = gSession;
+    this.engine = engine;
+    this.query = query;
+    this.base = base;
+    this.handles = result.getHandles();
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * <p>Returns the number of rows in the whole result.</p>
+   *
+   * @see arlut.csd.ganymede.rmi.QueryCursor
+   */
+
+  public synchronized int getSize()
+  {
+    return (handles == null) ? 0 : handles.size();
+  }
+
+  /**
+   * <p>Returns the next page of the result, or null once every row
+   * has been returned.</p>
+   *
+   * @see arlut.csd.ganymede.rmi.QueryCursor
+   */
+
+  public QueryResult getNextPage() throws NotLoggedInException
+  {
+    synchronized (gSession)
+      {
+        gSession.checklogin();
+
+        List<ObjectHandle> page = nextPage();
+
+        if (page == null)
+          {
+            return null;
+          }
+
+        QueryResult result = new QueryResult();
+
+        for (ObjectHandle handle: page)
+          {
+            result.addRow(handle);
+          }
+
+        result.setOrdered();
+        result.setTotalSize(getSize());
+
+        return result;
+      }
+  }
+
+  /**
+   * <p>Returns the fields asked for by the Query from the objects in
+   * the next page of the result, or null once every row has been
+   * returned.</p>
+   *
+   * @see arlut.csd.ganymede.rmi.QueryCursor
+   */
+
+  public DumpResult getNextDumpPage() throws NotLoggedInException
+  {
+    synchronized (gSession)
+      {
+        gSession.checklogin();
+
+        List<ObjectHandle> page = nextPage();
+
+        if (page == null)
+          {
+            return null;
+          }
+
+        List<Invid> invids = new ArrayList<Invid>(page.size());
+
+        for (ObjectHandle handle: page)
+          {
+            invids.add(handle.getInvid());
+          }
+
+        return engine.buildDump(query, base, invids);
+      }
+  }
+
+  /**
+   * <p>Releases the result held by this cursor, unexports it from
+   * RMI, and drops it from its session's list of open cursors.</p>
+   *
+   * @see arlut.csd.ganymede.rmi.QueryCursor
+   */
+
+  public void close()
+  {
+    synchronized (this)
+      {
+        if (handles == null)
+          {
+            return;
+          }
+
+        handles = null;
+      }
+
+    gSession.forgetCursor(this);
+    Ganymede.rmi.unpublishObject(this, true);
+  }
+
+  /**
+   * <p>Called by RMI when the client has dropped its last reference
+   * to this cursor without closing it.</p>
+   *
+   * @see java.rmi.server.Unreferenced
+   */
+
+  public void unreferenced()
+  {
+    close();
+  }
+
+  /**
+   * <p>Returns the handles in the next page of the result, and moves
+   * past them, or returns null if there are none left.</p>
+   */
+
+  private synchronized List<ObjectHandle> nextPage()
+  {
+    if (handles == null || position >= handles.size())
+      {
+        return null;
+      }
+
+    int end = Math.min(position + pageSize, handles.size());
+    List<ObjectHandle> page = new ArrayList<ObjectHandle>(handles.subList(position, end));
+
+    position = end;
+
+    return page;
+  }
+}
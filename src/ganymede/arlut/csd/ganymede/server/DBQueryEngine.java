@@ -65,9 +65,16 @@ import arlut.csd.ganymede.common.QueryResult;
 import arlut.csd.ganymede.common.Result;
 import arlut.csd.ganymede.common.SchemaConstants;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*------------------------------------------------------------------------------
                                                                            class
@@ -101,6 +108,22 @@ public final class DBQueryEngine {
 
   static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBQueryEngine");
 
+  /**
+   * <p>The number of objects handed to a thread at a time when a
+   * query is scanned in parallel.</p>
+   */
+
+  static final int SCAN_CHUNK_SIZE = 1024;
+
+  /**
+   * <p>Worker threads shared by all sessions for scanning large bases
+   * in parallel.  Created on first use by {@link
+   * arlut.csd.ganymede.server.DBQueryEngine#getScanPool()
+   * getScanPool()}.</p>
+   */
+
+  private static ExecutorService scanPool = null;
+
   // ---
 
   /**
@@ -392,7 +415,6 @@ public final class DBQueryEngine {
 
   public DumpResult dump(Query query)
   {
-    DumpResultBuilder resultBuilder;
     DBObjectBase base = null;
     boolean embedded;
 
@@ -453,6 +475,27 @@ public final class DBQueryEngine {
         System.err.println("dump(): processed queryDispatch, building dumpResult buffer");
       }
 
+    if (temp_result == null)
+      {
+        return buildDump(query, base, new ArrayList<Invid>());
+      }
+
+    return buildDump(query, base, temp_result.getInvids());
+  }
+
+  /**
+   * <p>Builds a {@link arlut.csd.ganymede.common.DumpResult
+   * DumpResult} holding the fields that query asks for from the
+   * objects in invids, in order.  Objects that can't be found are
+   * skipped.</p>
+   *
+   * <p>This is the second half of dump(), and is also used by {@link
+   * arlut.csd.ganymede.server.DBQueryCursor DBQueryCursor} to build
+   * pages of a dump.</p>
+   */
+
+  DumpResult buildDump(Query query, DBObjectBase base, List<Invid> invids)
+  {
     // Figure out which fields we want to include in our result buffer
 
     Vector<DBObjectBaseField> fieldDefs = new Vector<DBObjectBaseField>();
@@ -469,28 +512,30 @@ public final class DBQueryEngine {
 
     // prepare the result buffer, given the requested fields
 
-    resultBuilder = new DumpResultBuilder(fieldDefs);
+    DumpResultBuilder resultBuilder = new DumpResultBuilder(fieldDefs);
 
     // and encode the desired fields into the result
 
-    if (temp_result != null)
+    for (Invid invid: invids)
       {
-        for (Invid invid: temp_result.getInvids())
+        if (debug)
           {
-            if (debug)
-              {
-                System.err.print(".");
-              }
+            System.err.print(".");
+          }
+
+        // it's okay to use session.viewDBObject() because
+        // DumpResult.addRow() uses the GanymedeSession reference
+        // we pass in to handle per-field permissions
 
-            // it's okay to use session.viewDBObject() because
-            // DumpResult.addRow() uses the GanymedeSession reference
-            // we pass in to handle per-field permissions
+        // using view_db_object() here would be disastrous,
+        // because it would entail making exported duplicates of
+        // all objects matching our query
 
-            // using view_db_object() here would be disastrous,
-            // because it would entail making exported duplicates of
-            // all objects matching our query
+        DBObject obj = dbSession.viewDBObject(invid);
 
-            resultBuilder.addRow(dbSession.viewDBObject(invid), gSession);
+        if (obj != null)
+          {
+            resultBuilder.addRow(obj, gSession);
           }
       }
 
@@ -502,6 +547,61 @@ public final class DBQueryEngine {
     return resultBuilder.getDumpResult();
   }
 
+  /**
+   * <p>Runs query and returns a {@link
+   * arlut.csd.ganymede.server.DBQueryCursor DBQueryCursor} that hands
+   * out its results pageSize rows at a time, in the order asked for
+   * by query's sort settings, or by label if it has none.</p>
+   *
+   * <p>query's offset, limit and setAfter() settings are applied
+   * before the cursor is opened, so a cursor can be used to page
+   * through part of a result.</p>
+   *
+   * <p>NB: GanymedeSession methods which call openCursor() should
+   * synchronize on GanymedeSession.</p>
+   */
+
+  public DBQueryCursor openCursor(Query query, int pageSize)
+  {
+    DBObjectBase base = null;
+
+    /* -- */
+
+    if (query == null)
+      {
+        throw new IllegalArgumentException(ts.l("queryDispatch.null_query"));
+      }
+
+    if (query.objectType != -1)
+      {
+        base = Ganymede.db.getObjectBase(query.objectType);
+      }
+    else if (query.objectName != null)
+      {
+        base = Ganymede.db.getObjectBase(query.objectName);
+      }
+
+    if (base == null)
+      {
+        gSession.setLastError("No such base");
+        return null;
+      }
+
+    QueryResult result = queryDispatch(query, false, true, null, null);
+
+    if (result == null)
+      {
+        return null;
+      }
+
+    if (!result.isOrdered())
+      {
+        result = pageResult(query, base, result, null);
+      }
+
+    return new DBQueryCursor(gSession, this, query, base, result, pageSize);
+  }
+
   /**
    * <p>This method provides the hook for doing all manner of simple
    * object listing for the Ganymede database.</p>
@@ -541,6 +641,96 @@ public final class DBQueryEngine {
     return queryDispatch(query, false, true, null, null);
   }
 
+  /**
+   * <p>Returns a description of the plan that queryDispatch() would
+   * follow to answer a query given in string form, based on Deepak's
+   * ANTLR-specified Ganymede query grammar.</p>
+   *
+   * <p>NB: GanymedeSession methods which call explain() should
+   * synchronize on GanymedeSession.</p>
+   */
+
+  public String explain(String queryString) throws GanyParseException
+  {
+    GanyQueryTransmuter transmuter = new GanyQueryTransmuter();
+    Query query = transmuter.transmuteQueryString(queryString);
+
+    return explain(query);
+  }
+
+  /**
+   * <p>Returns a description of the plan that queryDispatch() would
+   * follow to answer query against the current read view, one step
+   * to a line.</p>
+   *
+   * <p>NB: GanymedeSession methods which call explain() should
+   * synchronize on GanymedeSession.</p>
+   */
+
+  public String explain(Query query)
+  {
+    DBObjectBase base = null;
+
+    /* -- */
+
+    if (query == null)
+      {
+        throw new IllegalArgumentException(ts.l("queryDispatch.null_query"));
+      }
+
+    if (query.objectType != -1)
+      {
+        base = Ganymede.db.getObjectBase(query.objectType);
+      }
+    else if (query.objectName != null)
+      {
+        base = Ganymede.db.getObjectBase(query.objectName); // *sync* DBStore
+      }
+
+    if (base == null)
+      {
+        gSession.setLastError("No such base");
+        return null;
+      }
+
+    DBIterationSet set = Ganymede.db.getView().getIterationSet(base.getTypeID());
+    StringBuilder buffer = new StringBuilder();
+
+    // "Query plan for {0} ({1,number,#} objects):"
+    buffer.append(ts.l("explain.header", base.getName(), Integer.valueOf(set.size())));
+    buffer.append("\n");
+
+    if (isDirectLookup(query, base))
+      {
+        // "Direct lookup: {0}"
+        buffer.append(ts.l("explain.direct", query.root.toString(query)));
+        buffer.append("\n");
+      }
+    else
+      {
+        DBQueryPlan plan = DBQueryPlan.plan(query, base, set);
+        int threads = getScanThreads(plan.getEstimate());
+
+        buffer.append(plan.explain(query));
+
+        if (threads > 1)
+          {
+            // "Match objects in parallel on up to {0,number,#} threads"
+            buffer.append(ts.l("explain.parallel", Integer.valueOf(threads)));
+            buffer.append("\n");
+          }
+      }
+
+    if (dbSession.isTransactionOpen())
+      {
+        // "Then check objects created or edited in this session''s transaction"
+        buffer.append(ts.l("explain.transaction"));
+        buffer.append("\n");
+      }
+
+    return buffer.toString();
+  }
+
   /**
    * <p>Server-side method for doing object listing with support for DBObject's
    * {@link arlut.csd.ganymede.server.DBObject#lookupLabel(arlut.csd.ganymede.server.DBObject) lookupLabel}
@@ -629,6 +819,8 @@ public final class DBQueryEngine {
     Iterator<DBObject> it;
     DBObject obj;
     DBLock rLock = null;
+    DBStoreView view = null;
+    List<DBObject> scanList = null;
 
     /* -- */
 
@@ -659,7 +851,7 @@ public final class DBQueryEngine {
 
     if (directLookup(query, result, base, internal, forTransport, extantLock, perspectiveObject))
       {
-        return result;
+        return query.isPaged() ? pageResult(query, base, result, null) : result;
       }
 
     // nope.
@@ -693,13 +885,14 @@ public final class DBQueryEngine {
 
     try
       {
-        // with the new DBObjectBase.iterationSet support, we no
-        // longer need to use a DBReadLock to lock the database unless
-        // we are needing to do a query involving invid field
-        // dereferencing as when doing a query that includes embedded
-        // types.  If our baseLock vector only has one base, we can
-        // just do a direct iteration over the base's iterationSet
-        // snapshot, and avoid doing locking entirely.
+        // with DBStoreView read views, we no longer need to use a
+        // DBReadLock to lock the database at all, even for queries
+        // involving invid field dereferencing as when doing a query
+        // that includes embedded types.  We iterate over our base's
+        // iteration set as of the current view, and resolve any
+        // dereferenced invids against the same view, so the query
+        // sees a single consistent commit across all the bases it
+        // touches.
 
         if (extantLock != null)
           {
@@ -713,18 +906,6 @@ public final class DBQueryEngine {
 
             rLock = extantLock;
           }
-        else if (baseLock.size() > 1)
-          {
-            try
-              {
-                rLock = dbSession.openReadLock(baseLock); // *sync* DBSession DBStore
-              }
-            catch (InterruptedException ex)
-              {
-                gSession.setLastError("lock interrupted");
-                return null;            // we're probably being booted off
-              }
-          }
 
         if (rLock != null)
           {
@@ -742,10 +923,56 @@ public final class DBQueryEngine {
               {
                 System.err.println("Query: " +
                                    gSession.getPermManager().getIdentity() +
-                                   " : skipping read lock, iterating over iterationSet snapshot");
+                                   " : skipping read lock, iterating over read view");
               }
 
-            it = base.getIterationSet().iterator();
+            view = Ganymede.db.getView();
+
+            DBIterationSet set = view.getIterationSet(base.getTypeID());
+            DBEditSet eSet = dbSession.getEditSet();
+
+            if (eSet != null)
+              {
+                eSet.noteScan(base, set);
+              }
+
+            // plan the query.  if it can be answered from Invids,
+            // namespaces or the indexes on the base's fields, we only
+            // need to iterate over the candidate objects they give us
+
+            DBQueryPlan plan = DBQueryPlan.plan(query, base, set);
+
+            if (debug)
+              {
+                System.err.println("Query: " +
+                                   gSession.getPermManager().getIdentity() +
+                                   " : plan\n" + plan.explain(query));
+              }
+
+            int[] ids = plan.getCandidates(base, set);
+
+            if (ids != null)
+              {
+                List<DBObject> candidates = new ArrayList<DBObject>(ids.length);
+
+                for (int i = 0; i < ids.length; i++)
+                  {
+                    DBObject candidate = set.getByID(ids[i]);
+
+                    if (candidate != null)
+                      {
+                        candidates.add(candidate);
+                      }
+                  }
+
+                scanList = candidates;
+              }
+            else
+              {
+                scanList = set;
+              }
+
+            it = scanList.iterator();
           }
 
         // iterate over the objects in the base we're searching on,
@@ -757,23 +984,42 @@ public final class DBQueryEngine {
         // could well have our lock revoked during execution
         // of a query, so we'll check that as well.
 
-        while (gSession.isLoggedIn() &&
-               (rLock == null || dbSession.isLocked(rLock)) && it.hasNext())
-          {
-            obj = it.next();
+        int threads = (scanList == null) ? 1 : getScanThreads(scanList.size());
 
-            // if we're editing it, let's look at our version of it
-
-            DBEditObject shadowObject = obj.getShadow();
+        if (threads > 1 && canScanInParallel())
+          {
+            // the matching objects come back in iteration order, so
+            // the result is the same as if we had scanned them
+            // ourselves
 
-            if (shadowObject != null && shadowObject.getDBSession() == dbSession)
+            for (DBObject match: scanInParallel(query, scanList, view, threads))
               {
-                obj = shadowObject;
+                if (match != null)
+                  {
+                    addResultRow(match, query, result, internal, perspectiveObject);
+                  }
               }
-
-            if (DBQueryHandler.matches(gSession, query, obj))
+          }
+        else
+          {
+            while (gSession.isLoggedIn() &&
+                   (rLock == null || dbSession.isLocked(rLock)) && it.hasNext())
               {
-                addResultRow(obj, query, result, internal, perspectiveObject);
+                obj = it.next();
+
+                // if we're editing it, let's look at our version of it
+
+                DBEditObject shadowObject = obj.getShadow();
+
+                if (shadowObject != null && shadowObject.getDBSession() == dbSession)
+                  {
+                    obj = shadowObject;
+                  }
+
+                if (DBQueryHandler.matches(gSession, query, obj, view))
+                  {
+                    addResultRow(obj, query, result, internal, perspectiveObject);
+                  }
               }
           }
 
@@ -846,7 +1092,7 @@ public final class DBQueryEngine {
                     continue;
                   }
 
-                if (DBQueryHandler.matches(gSession, query, transaction_object))
+                if (DBQueryHandler.matches(gSession, query, transaction_object, view))
                   {
                     addResultRow(transaction_object, query, result, internal, perspectiveObject);
                   }
@@ -867,7 +1113,13 @@ public final class DBQueryEngine {
                            base.getName() + " completed");
           }
 
-        return result;
+        // sort and page against the same view we matched against, if
+        // we used one, so that the sort keys come from the same
+        // commit as the matches.  If we are working under
+        // extantLock, view is null and we sort on the objects that
+        // it keeps from changing.
+
+        return query.isPaged() ? pageResult(query, base, result, view) : result;
       }
     finally
       {
@@ -881,6 +1133,213 @@ public final class DBQueryEngine {
       }
   }
 
+  /**
+   * <p>Returns the page of result that query asks for, sorted by
+   * query's sort field, or by label if query doesn't name one.</p>
+   *
+   * @param view The DBStoreView that result's objects were matched
+   * in, or null if they were found in the live database
+   *
+   * @throws IllegalArgumentException if query's sort field is not
+   * defined in base, or if its offset or limit is negative
+   */
+
+  QueryResult pageResult(Query query, DBObjectBase base, QueryResult result, DBStoreView view)
+  {
+    DBObjectBaseField fieldDef = null;
+
+    // Query.setPage() won't take a negative offset or limit, but a
+    // client could still send us a Query with one
+
+    if (query.getOffset() < 0 || query.getLimit() < 0)
+      {
+        // "Invalid query page: offset {0,number,#}, limit {1,number,#}"
+        throw new IllegalArgumentException(ts.l("queryDispatch.bad_page",
+                                                Integer.valueOf(query.getOffset()),
+                                                Integer.valueOf(query.getLimit())));
+      }
+
+    if (query.getSortField() != QueryDataNode.UNUSEDVAL &&
+        query.getSortField() != QueryDataNode.LABELVAL)
+      {
+        fieldDef = base.getField(query.getSortField());
+
+        if (fieldDef == null)
+          {
+            // "Invalid field identifier"
+            throw new IllegalArgumentException(ts.l("queryDispatch.bad_field"));
+          }
+      }
+
+    return DBQueryPager.page(query, result, fieldDef, gSession, view);
+  }
+
+  /**
+   * <p>Returns the number of threads, counting the calling thread,
+   * that queryDispatch() should use to match a query against count
+   * objects, or 1 if it should match them itself.</p>
+   */
+
+  private int getScanThreads(int count)
+  {
+    if (Ganymede.queryThreadsProperty <= 0 || count < Ganymede.queryParallelSizeProperty)
+      {
+        return 1;
+      }
+
+    int workers = Math.min(Ganymede.queryThreadsProperty, Ganymede.querySessionThreadsProperty);
+    int chunks = (count + SCAN_CHUNK_SIZE - 1) / SCAN_CHUNK_SIZE;
+
+    return 1 + Math.max(0, Math.min(workers, chunks - 1));
+  }
+
+  /**
+   * <p>Returns true if the calling thread may hand the matching of
+   * objects against a query to other threads.</p>
+   *
+   * <p>Matching looks up objects through our DBSession and checks
+   * permissions through our DBPermissionManager, so the worker
+   * threads would deadlock if the calling thread held either's
+   * monitor.  A DBLogPipeline thread logging a transaction, or a
+   * thread validating a transaction for an optimistic commit, sees
+   * objects in a way that is particular to that thread, and so must
+   * do all of its own matching.</p>
+   */
+
+  private boolean canScanInParallel()
+  {
+    if (Thread.holdsLock(dbSession) || Thread.holdsLock(gSession.getPermManager()))
+      {
+        return false;
+      }
+
+    if (DBEditSet.getLoggingTransaction() != null)
+      {
+        return false;
+      }
+
+    DBEditSet eSet = dbSession.getEditSet();
+
+    return eSet == null || !eSet.isTrackingReads();
+  }
+
+  /**
+   * <p>Matches query against objects on the calling thread and up to
+   * threads - 1 threads from the shared scan pool, handing out
+   * SCAN_CHUNK_SIZE objects at a time.  Returns an array parallel to
+   * objects, holding the version of each object that matched (our
+   * transaction's version, if we are editing it), and null for those
+   * that didn't.</p>
+   *
+   * <p>Every thread stops taking chunks if our session is logged
+   * out, in which case queryDispatch() will throw when we return.
+   * If matching throws on any thread, the other threads stop taking
+   * chunks, and the exception is rethrown on the calling thread.</p>
+   */
+
+  private DBObject[] scanInParallel(Query query, List<DBObject> objects, DBStoreView view, int threads)
+  {
+    ScanWorker worker = new ScanWorker(query, objects.toArray(new DBObject[objects.size()]), view);
+    ExecutorService pool = getScanPool();
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(threads - 1);
+
+    for (int i = 1; i < threads; i++)
+      {
+        futures.add(pool.submit(worker));
+      }
+
+    worker.call();
+
+    // once we're out of chunks, the workers that haven't started yet
+    // have nothing to do, and we don't want to wait on them if the
+    // pool is busy with other sessions' scans
+
+    worker.stop();
+
+    for (Future<Object> future: futures)
+      {
+        future.cancel(false);
+      }
+
+    worker.waitForThreads();
+
+    Throwable failure = worker.getFailure();
+
+    if (failure instanceof RuntimeException)
+      {
+        throw (RuntimeException) failure;
+      }
+    else if (failure instanceof Error)
+      {
+        throw (Error) failure;
+      }
+
+    return worker.matches;
+  }
+
+  /**
+   * <p>Returns the worker pool shared by all sessions for scanning
+   * large bases in parallel.</p>
+   */
+
+  private static synchronized ExecutorService getScanPool()
+  {
+    if (scanPool == null)
+      {
+        scanPool = Executors.newFixedThreadPool(Ganymede.queryThreadsProperty, new ThreadFactory() {
+            private int count = 0;
+
+            public synchronized Thread newThread(Runnable r)
+            {
+              Thread thread = new Thread(r, "Ganymede Query Scan Thread " + (++count));
+              thread.setDaemon(true);
+
+              return thread;
+            }
+          });
+      }
+
+    return scanPool;
+  }
+
+  /**
+   * <p>Returns true if directLookup() will answer query, because it
+   * is a direct equality test on the Invid or on a namespace
+   * controlled field.</p>
+   */
+
+  private boolean isDirectLookup(Query query, DBObjectBase base)
+  {
+    if (!(query.root instanceof QueryDataNode) ||
+        ((QueryDataNode) query.root).comparator != QueryDataNode.EQUALS)
+      {
+        return false;
+      }
+
+    QueryDataNode node = (QueryDataNode) query.root;
+    DBObjectBaseField fieldDef = null;
+
+    if (node.fieldId == -2)
+      {
+        return true;
+      }
+
+    if (node.fieldId >= 0)
+      {
+        fieldDef = base.getField(node.fieldId);
+      }
+    else if (node.fieldname != null)
+      {
+        fieldDef = base.getField(node.fieldname); // *sync* DBObjectBase
+      }
+    else if (node.fieldId == -1)
+      {
+        fieldDef = base.getField(base.getLabelField()); // *sync* DBObjectBase
+      }
+
+    return fieldDef != null && fieldDef.getNameSpace() != null;
+  }
+
   /**
    * <p>If we can do a direct lookup, either because query is asking
    * for an Invid, or because we're doing a direct equality test on a
@@ -1185,4 +1644,170 @@ public final class DBQueryEngine {
           }
       }
   }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                     ScanWorker
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>Matches a query against the objects in an array, a chunk at a
+   * time, for scanInParallel().  The same ScanWorker is run by every
+   * thread taking part in the scan, and each chunk is taken by only
+   * one of them.</p>
+   */
+
+  private final class ScanWorker implements Callable<Object> {
+
+    private final Query query;
+    private final DBObject[] objects;
+    private final DBStoreView view;
+    private final int chunks;
+    private final AtomicInteger nextChunk = new AtomicInteger(0);
+
+    /**
+     * <p>The number of threads currently matching objects for this
+     * scan.</p>
+     */
+
+    private int running = 0;
+    private boolean stopped = false;
+    private Throwable failure = null;
+
+    /**
+     * <p>The version of each object in objects that matched the
+     * query, or null.  Each thread writes only to the elements of
+     * the chunks it takes, and the calling thread reads them after
+     * the others have finished.</p>
+     */
+
+    final DBObject[] matches;
+
+    ScanWorker(Query query, DBObject[] objects, DBStoreView view)
+    {
+      this.query = query;
+      this.objects = objects;
+      this.view = view;
+      this.chunks = (objects.length + SCAN_CHUNK_SIZE - 1) / SCAN_CHUNK_SIZE;
+      this.matches = new DBObject[objects.length];
+    }
+
+    public Object call()
+    {
+      synchronized (this)
+        {
+          if (stopped)
+            {
+              return null;
+            }
+
+          running++;
+        }
+
+      try
+        {
+          int chunk;
+
+          while (gSession.isLoggedIn() && (chunk = nextChunk.getAndIncrement()) < chunks)
+            {
+              int end = Math.min(objects.length, (chunk + 1) * SCAN_CHUNK_SIZE);
+
+              for (int i = chunk * SCAN_CHUNK_SIZE; i < end; i++)
+                {
+                  DBObject obj = objects[i];
+
+                  // if we're editing it, let's look at our version of it
+
+                  DBEditObject shadowObject = obj.getShadow();
+
+                  if (shadowObject != null && shadowObject.getDBSession() == dbSession)
+                    {
+                      obj = shadowObject;
+                    }
+
+                  if (DBQueryHandler.matches(gSession, query, obj, view))
+                    {
+                      matches[i] = obj;
+                    }
+                }
+            }
+        }
+      catch (RuntimeException ex)
+        {
+          fail(ex);
+        }
+      catch (Error ex)
+        {
+          fail(ex);
+        }
+      finally
+        {
+          synchronized (this)
+            {
+              running--;
+              this.notifyAll();
+            }
+        }
+
+      return null;
+    }
+
+    /**
+     * <p>Keeps any thread from taking another chunk, or from starting
+     * on this scan at all.</p>
+     */
+
+    synchronized void stop()
+    {
+      stopped = true;
+      nextChunk.set(chunks);
+    }
+
+    /**
+     * <p>Waits for every thread that has started on this scan to
+     * finish.  Must only be called after stop().</p>
+     */
+
+    synchronized void waitForThreads()
+    {
+      boolean interrupted = false;
+
+      while (running > 0)
+        {
+          try
+            {
+              this.wait();
+            }
+          catch (InterruptedException ex)
+            {
+              interrupted = true;
+            }
+        }
+
+      if (interrupted)
+        {
+          Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * <p>Returns the first exception or error thrown by any thread
+     * matching objects, or null.</p>
+     */
+
+    synchronized Throwable getFailure()
+    {
+      return failure;
+    }
+
+    private synchronized void fail(Throwable ex)
+    {
+      if (failure == null)
+        {
+          failure = ex;
+        }
+
+      stop();
+    }
+  }
 }
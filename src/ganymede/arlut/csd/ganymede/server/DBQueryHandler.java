@@ -114,6 +114,28 @@ public class DBQueryHandler {
    */
 
   public static final boolean matches(GanymedeSession session, Query q, DBObject obj)
+  {
+    return matches(session, q, obj, null);
+  }
+
+  /**
+   * This method compares an object with a submitted query, returning true if
+   * the object matches the query.
+   *
+   * The query is compiled into a {@link
+   * arlut.csd.ganymede.server.DBQueryPredicate DBQueryPredicate} for
+   * obj's base the first time it is matched, and the compiled form is
+   * cached in the query for matching against later objects.
+   *
+   * @param session The GanymedeSession performing the query.
+   * @param q The Query being compared to this object.
+   * @param obj The object being tested.
+   * @param view The DBStoreView that Invids in any dereferencing
+   * clauses should be resolved against, or null to resolve them
+   * against the current state of the DBStore.
+   */
+
+  static final boolean matches(GanymedeSession session, Query q, DBObject obj, DBStoreView view)
   {
     if ((q == null) || (obj == null))
       {
@@ -126,7 +148,7 @@ public class DBQueryHandler {
       }
     else
       {
-        return nodeMatch(session, q.root, obj);
+        return DBQueryPredicate.forQuery(q, obj.getBase()).matches(session, obj, view);
       }
   }
 
@@ -141,6 +163,17 @@ public class DBQueryHandler {
    */
 
   public static final boolean nodeMatch(GanymedeSession session, QueryNode qN, DBObject obj)
+  {
+    return nodeMatch(session, qN, obj, null);
+  }
+
+  /**
+   * Recursive static method to compare a Query tree against an object
+   * in the database, resolving dereferenced Invids against view if it
+   * is not null.
+   */
+
+  static final boolean nodeMatch(GanymedeSession session, QueryNode qN, DBObject obj, DBStoreView view)
   {
     Object value = null;
     Vector values = null;
@@ -157,19 +190,19 @@ public class DBQueryHandler {
 
         if (qN instanceof QueryNotNode)
           {
-            return (!nodeMatch(session, ((QueryNotNode)qN).child, obj));
+            return (!nodeMatch(session, ((QueryNotNode)qN).child, obj, view));
           }
 
         if (qN instanceof QueryAndNode)
           {
-            return (nodeMatch(session, ((QueryAndNode)qN).child1, obj) &&
-                    nodeMatch(session, ((QueryAndNode)qN).child2, obj));
+            return (nodeMatch(session, ((QueryAndNode)qN).child1, obj, view) &&
+                    nodeMatch(session, ((QueryAndNode)qN).child2, obj, view));
           }
 
         if (qN instanceof QueryOrNode)
           {
-            return (nodeMatch(session, ((QueryOrNode)qN).child1, obj) ||
-                    nodeMatch(session, ((QueryOrNode)qN).child2, obj));
+            return (nodeMatch(session, ((QueryOrNode)qN).child1, obj, view) ||
+                    nodeMatch(session, ((QueryOrNode)qN).child2, obj, view));
           }
 
         if (qN instanceof QueryDeRefNode)
@@ -215,7 +248,8 @@ public class DBQueryHandler {
                   {
                     Invid invid = (Invid) values.get(i);
 
-                    DBObject derefObj = session.getDBSession().viewDBObject(invid);
+                    DBObject derefObj = (view == null) ? session.getDBSession().viewDBObject(invid) :
+                      session.getDBSession().viewDBObject(invid, view);
 
                     // *race*
                     //
@@ -242,7 +276,7 @@ public class DBQueryHandler {
                         continue;
                       }
 
-                    if (nodeMatch(session, n.queryTree, derefObj))
+                    if (nodeMatch(session, n.queryTree, derefObj, view))
                       {
                         return true;
                       }
@@ -254,7 +288,8 @@ public class DBQueryHandler {
               {
                 Invid invid = (Invid) invidField.getValueLocal();
 
-                DBObject derefObj = session.getDBSession().viewDBObject(invid);
+                DBObject derefObj = (view == null) ? session.getDBSession().viewDBObject(invid) :
+                  session.getDBSession().viewDBObject(invid, view);
 
                 // *race*
                 //
@@ -265,7 +300,7 @@ public class DBQueryHandler {
                     return false;
                   }
 
-                return nodeMatch(session, n.queryTree, derefObj);
+                return nodeMatch(session, n.queryTree, derefObj, view);
               }
           }
 
@@ -307,11 +342,13 @@ public class DBQueryHandler {
 
                 if (n.fieldname != null)
                   {
-                    field = obj.getField(n.fieldname);
+                    DBObjectBaseField fieldDef = obj.getBase().getField(n.fieldname);
+
+                    field = (fieldDef == null) ? null : obj.peekField(fieldDef.getID());
                   }
                 else
                   {
-                    field = obj.getField(n.fieldId);
+                    field = obj.peekField(n.fieldId);
                   }
 
                 if ((field != null) && (field.isDefined()))
@@ -1077,7 +1114,7 @@ public class DBQueryHandler {
    * method is used to compare two IP address values for equality.
    */
 
-  private static boolean compareIPs(byte[] param1, byte[] param2)
+  static boolean compareIPs(byte[] param1, byte[] param2)
   {
     if (param1.length != param2.length)
       {
@@ -1104,7 +1141,7 @@ public class DBQueryHandler {
    * @return Returns true if param1 begins with param2.
    */
 
-  private static boolean ipBeginsWith(byte[] param1, byte[] param2)
+  static boolean ipBeginsWith(byte[] param1, byte[] param2)
   {
     byte[] prefix = ipAddrNoPad(param2);
 
@@ -1135,7 +1172,7 @@ public class DBQueryHandler {
    * @return Returns true if param1 ends with param2.
    */
 
-  private static boolean ipEndsWith(byte[] param1, byte[] param2)
+  static boolean ipEndsWith(byte[] param1, byte[] param2)
   {
     byte[] suffix = ipAddrNoPad(param2);
 
@@ -0,0 +1,383 @@
+/*
+
+   DBQueryPager.java
+
+   Server-side sorting and paging of query results.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Vector;
+
+import arlut.csd.ganymede.common.Invid;
+import arlut.csd.ganymede.common.ObjectHandle;
+import arlut.csd.ganymede.common.Query;
+import arlut.csd.ganymede.common.QueryResult;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                    DBQueryPager
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>Sorts the results of a {@link arlut.csd.ganymede.common.Query
+ * Query} on the server and cuts out the page of them that the Query
+ * asks for, on behalf of the {@link
+ * arlut.csd.ganymede.server.DBQueryEngine DBQueryEngine}.</p>
+ *
+ * <p>Results are sorted by label, or by the value of a field, with
+ * ties broken by Invid so that the order is total.  That lets a
+ * client page through a result with {@link
+ * arlut.csd.ganymede.common.Query#setAfter(java.lang.Object,
+ * arlut.csd.ganymede.common.Invid) Query.setAfter()}, giving the sort
+ * key and Invid of the last row it has seen, as well as with an
+ * offset.</p>
+ *
+ * <p>When a Query has a limit, we only keep the best offset + limit
+ * rows as we go, in a bounded heap, rather than sorting the whole
+ * result.</p>
+ */
+
+final class DBQueryPager {
+
+  private DBQueryPager()
+  {
+  }
+
+  /**
+   * <p>Returns the rows of result, which holds the objects matching
+   * query, in the order query asks for, cut down to the page it asks
+   * for.  The QueryResult returned is marked as ordered, so that the
+   * client will keep our order, and records the number of rows in
+   * result as its total size.</p>
+   *
+   * @param fieldDef The field to sort by, or null to sort by label
+   * @param session The session the query is being run for, used to
+   * look up the objects in result and check that their sort fields
+   * are visible
+   * @param view The DBStoreView that the objects in result were
+   * matched in, so that we sort them on the same versions of the
+   * objects that the query saw, or null to use the live database
+   */
+
+  static QueryResult page(Query query, QueryResult result, DBObjectBaseField fieldDef,
+                          GanymedeSession session, DBStoreView view)
+  {
+    Vector<ObjectHandle> handles = result.getHandles();
+    RowComparator comparator = new RowComparator(query.isSortDescending());
+    Row after = null;
+    List<Row> rows = new ArrayList<Row>(handles.size());
+
+    if (query.getAfterInvid() != null)
+      {
+        after = new Row(null, query.getAfterInvid(), query.getAfterKey());
+      }
+
+    for (ObjectHandle handle: handles)
+      {
+        Object key = (fieldDef == null) ? handle.getLabel() : getSortKey(handle.getInvid(), fieldDef, session, view);
+        Row row = new Row(handle, handle.getInvid(), key);
+
+        if (after == null || comparator.compare(row, after) > 0)
+          {
+            rows.add(row);
+          }
+      }
+
+    long end = (query.getLimit() > 0) ? (long) query.getOffset() + query.getLimit() : rows.size();
+
+    if (end < rows.size())
+      {
+        rows = best(rows, (int) end, comparator);
+      }
+    else
+      {
+        Collections.sort(rows, comparator);
+      }
+
+    QueryResult page = new QueryResult();
+
+    for (int i = query.getOffset(); i < end && i < rows.size(); i++)
+      {
+        page.addRow(rows.get(i).handle);
+      }
+
+    page.setOrdered();
+    page.setTotalSize(handles.size());
+
+    return page;
+  }
+
+  /**
+   * <p>Returns the first count rows, in order, without sorting all of
+   * them.</p>
+   */
+
+  private static List<Row> best(List<Row> rows, int count, RowComparator comparator)
+  {
+    List<Row> result;
+
+    if (count == 0)
+      {
+        return new ArrayList<Row>();
+      }
+
+    // a max-heap of the best count rows seen so far, with the worst
+    // of them on top
+
+    PriorityQueue<Row> heap = new PriorityQueue<Row>(count, Collections.reverseOrder(comparator));
+
+    for (Row row: rows)
+      {
+        if (heap.size() < count)
+          {
+            heap.add(row);
+          }
+        else if (comparator.compare(row, heap.peek()) < 0)
+          {
+            heap.poll();
+            heap.add(row);
+          }
+      }
+
+    result = new ArrayList<Row>(heap);
+    Collections.sort(result, comparator);
+
+    return result;
+  }
+
+  /**
+   * <p>Returns the value to sort the object with the given Invid by,
+   * or null if it has no value in fieldDef that session can see.</p>
+   *
+   * <p>The object, and any object an invid field points to, are
+   * looked up in view if it is not null, and through session's
+   * transaction in either case.</p>
+   *
+   * <p>We use the first value of a vector field, and the label of the
+   * object an invid field points to.  Values that aren't Strings,
+   * Numbers, Dates or Booleans are sorted by their String form.</p>
+   */
+
+  private static Object getSortKey(Invid invid, DBObjectBaseField fieldDef,
+                                   GanymedeSession session, DBStoreView view)
+  {
+    if (invid == null)
+      {
+        return null;
+      }
+
+    DBObject obj = lookup(invid, session, view);
+
+    if (obj == null)
+      {
+        return null;
+      }
+
+    DBField field = obj.peekField(fieldDef.getID());
+
+    if (field == null || !field.isDefined() || !field.verifyReadPermission(session))
+      {
+        return null;
+      }
+
+    Object value;
+
+    if (field.isVector())
+      {
+        Vector values = field.getValuesLocal();
+
+        if (values.size() == 0)
+          {
+            return null;
+          }
+
+        value = values.get(0);
+      }
+    else
+      {
+        value = field.getValueLocal();
+      }
+
+    if (value == null)
+      {
+        return null;
+      }
+
+    if (value instanceof Invid)
+      {
+        DBObject target = lookup((Invid) value, session, view);
+
+        return (target == null) ? null : target.getLabel();
+      }
+
+    if (value instanceof String || value instanceof Number ||
+        value instanceof Date || value instanceof Boolean)
+      {
+        return value;
+      }
+
+    return value.toString();
+  }
+
+  private static DBObject lookup(Invid invid, GanymedeSession session, DBStoreView view)
+  {
+    return (view == null) ? session.getDBSession().viewDBObject(invid) :
+      session.getDBSession().viewDBObject(invid, view);
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                            Row
+  ----------------------------------------------------------------------------*/
+
+  private static final class Row {
+
+    final ObjectHandle handle;
+    final Invid invid;
+    final Object key;
+
+    Row(ObjectHandle handle, Invid invid, Object key)
+    {
+      this.handle = handle;
+      this.invid = invid;
+      this.key = key;
+    }
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                                  RowComparator
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>Orders Rows by sort key, ascending or descending, with rows
+   * that have no key last, and then by Invid.</p>
+   */
+
+  private static final class RowComparator implements Comparator<Row> {
+
+    private final boolean descending;
+
+    RowComparator(boolean descending)
+    {
+      this.descending = descending;
+    }
+
+    public int compare(Row a, Row b)
+    {
+      if (a.key == null || b.key == null)
+        {
+          if (a.key != b.key)
+            {
+              return (a.key == null) ? 1 : -1;
+            }
+        }
+      else
+        {
+          int result = compareKeys(a.key, b.key);
+
+          if (result != 0)
+            {
+              return descending ? -result : result;
+            }
+        }
+
+      return compareInvids(a.invid, b.invid);
+    }
+
+    private static int compareKeys(Object a, Object b)
+    {
+      if (a instanceof String && b instanceof String)
+        {
+          int result = ((String) a).compareToIgnoreCase((String) b);
+
+          return (result != 0) ? result : ((String) a).compareTo((String) b);
+        }
+
+      if (a instanceof Number && b instanceof Number)
+        {
+          return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+
+      if (a instanceof Date && b instanceof Date)
+        {
+          return ((Date) a).compareTo((Date) b);
+        }
+
+      if (a instanceof Boolean && b instanceof Boolean)
+        {
+          return ((Boolean) a).compareTo((Boolean) b);
+        }
+
+      // a key given to Query.setAfter() that doesn't match the type
+      // of the field
+
+      return a.toString().compareTo(b.toString());
+    }
+
+    private static int compareInvids(Invid a, Invid b)
+    {
+      if (a == null || b == null)
+        {
+          return (a == b) ? 0 : ((a == null) ? -1 : 1);
+        }
+
+      if (a.getType() != b.getType())
+        {
+          return (a.getType() < b.getType()) ? -1 : 1;
+        }
+
+      return (a.getNum() < b.getNum()) ? -1 : ((a.getNum() == b.getNum()) ? 0 : 1);
+    }
+  }
+}
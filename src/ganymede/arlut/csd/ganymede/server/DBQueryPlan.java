@@ -0,0 +1,721 @@
+/*
+
+   DBQueryPlan.java
+
+   Cost-based access plans for DBQueryEngine queries.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import arlut.csd.Util.TranslationService;
+import arlut.csd.ganymede.common.Invid;
+import arlut.csd.ganymede.common.IPAddress;
+import arlut.csd.ganymede.common.Query;
+import arlut.csd.ganymede.common.QueryAndNode;
+import arlut.csd.ganymede.common.QueryDataNode;
+import arlut.csd.ganymede.common.QueryNode;
+import arlut.csd.ganymede.common.QueryNotNode;
+import arlut.csd.ganymede.common.QueryOrNode;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                     DBQueryPlan
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>An access plan for a {@link arlut.csd.ganymede.common.Query
+ * Query}, chosen by the {@link
+ * arlut.csd.ganymede.server.DBQueryEngine DBQueryEngine} before it
+ * iterates over a base.  A plan either calls for a full scan of the
+ * base's iteration set, or names the candidate objects that need to
+ * be examined, by way of Invid lookups, {@link
+ * arlut.csd.ganymede.server.DBNameSpace DBNameSpace} lookups, and
+ * {@link arlut.csd.ganymede.server.DBFieldIndex DBFieldIndex}
+ * lookups.</p>
+ *
+ * <p>Planning starts by rewriting the query tree, pushing
+ * QueryNotNodes down to the leaves with De Morgan's laws and
+ * flattening nested QueryAndNodes and QueryOrNodes.  Each comparison
+ * is then given the cheapest access path available for it, with an
+ * estimate of the number of candidates it will produce, taken from
+ * the index statistics, or as a single candidate for an Invid or
+ * namespace lookup.  A conjunction is driven from its most selective
+ * indexable conjunct, with the others left to filter the candidates.
+ * A disjunction is the union of its disjuncts' candidates, and so is
+ * only indexable if all of its disjuncts are.  If nothing is
+ * indexable, or the best plan's candidates would cost more to fetch
+ * than scanning the whole base, we fall back to a full scan.</p>
+ *
+ * <p>The query tree itself is not changed, and whatever the plan,
+ * every object examined is still matched against the original query
+ * by {@link arlut.csd.ganymede.server.DBQueryHandler
+ * DBQueryHandler}.</p>
+ *
+ * <p>{@link #explain(Query) explain()} describes the chosen plan, for
+ * GanymedeSession.explainQuery().</p>
+ */
+
+final class DBQueryPlan {
+
+  /**
+   * <p>TranslationService object for handling string localization in
+   * the Ganymede server.</p>
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBQueryPlan");
+
+  /**
+   * <p>The cost of fetching a candidate object by id, relative to
+   * examining the next object in a full scan.</p>
+   */
+
+  static final int FETCH_COST = 2;
+
+  static final byte SCAN = 0;
+  static final byte INVID = 1;
+  static final byte NAMESPACE = 2;
+  static final byte INDEX = 3;
+  static final byte AND = 4;
+  static final byte OR = 5;
+
+  // ---
+
+  /**
+   * <p>The access path for this plan.</p>
+   */
+
+  private final byte kind;
+
+  /**
+   * <p>The (rewritten) query node that this plan answers.</p>
+   */
+
+  private final QueryNode node;
+
+  /**
+   * <p>The estimated number of objects this plan will have us
+   * examine.</p>
+   */
+
+  private int estimate;
+
+  /**
+   * <p>The field definition looked up in, for NAMESPACE and INDEX
+   * plans.</p>
+   */
+
+  private DBObjectBaseField fieldDef = null;
+
+  /**
+   * <p>The key looked up in the namespace, for NAMESPACE plans.</p>
+   */
+
+  private Object key = null;
+
+  /**
+   * <p>The plans for the conjuncts or disjuncts of an AND or OR plan.
+   * For a SCAN plan, the index plan that was rejected as costlier
+   * than a scan, if any.</p>
+   */
+
+  private List<DBQueryPlan> children = null;
+
+  /**
+   * <p>The index into children of the conjunct driving an AND
+   * plan.</p>
+   */
+
+  private int driver = -1;
+
+  /* -- */
+
+  private DBQueryPlan(byte kind, QueryNode node, int estimate)
+  {
+    this.kind = kind;
+    this.node = node;
+    this.estimate = estimate;
+  }
+
+  /**
+   * <p>Chooses a plan for query against set, the iteration set of
+   * base that the query will be run against.</p>
+   */
+
+  static DBQueryPlan plan(Query query, DBObjectBase base, DBIterationSet set)
+  {
+    int total = set.size();
+
+    if (query.root == null)
+      {
+        return new DBQueryPlan(SCAN, null, total);
+      }
+
+    QueryNode root = rewrite(query.root, false);
+    DBQueryPlan plan = plan(root, base, total);
+
+    if (plan.kind != SCAN && (long) plan.estimate * FETCH_COST >= total)
+      {
+        DBQueryPlan scan = new DBQueryPlan(SCAN, root, total);
+
+        scan.children = new ArrayList<DBQueryPlan>();
+        scan.children.add(plan);
+
+        return scan;
+      }
+
+    return plan;
+  }
+
+  /**
+   * <p>Returns a query tree equivalent to node, or to its negation if
+   * negated is true, with any QueryNotNodes pushed down to apply
+   * directly to comparisons.  node is not modified.</p>
+   */
+
+  static QueryNode rewrite(QueryNode node, boolean negated)
+  {
+    if (node instanceof QueryNotNode)
+      {
+        return rewrite(((QueryNotNode) node).child, !negated);
+      }
+
+    if (node instanceof QueryAndNode)
+      {
+        QueryNode child1 = rewrite(((QueryAndNode) node).child1, negated);
+        QueryNode child2 = rewrite(((QueryAndNode) node).child2, negated);
+
+        if (negated)
+          {
+            return new QueryOrNode(child1, child2);
+          }
+
+        return new QueryAndNode(child1, child2);
+      }
+
+    if (node instanceof QueryOrNode)
+      {
+        QueryNode child1 = rewrite(((QueryOrNode) node).child1, negated);
+        QueryNode child2 = rewrite(((QueryOrNode) node).child2, negated);
+
+        if (negated)
+          {
+            return new QueryAndNode(child1, child2);
+          }
+
+        return new QueryOrNode(child1, child2);
+      }
+
+    if (negated)
+      {
+        return new QueryNotNode(node);
+      }
+
+    return node;
+  }
+
+  /**
+   * <p>Plans node, a rewritten query tree, against a base holding
+   * total objects.</p>
+   */
+
+  private static DBQueryPlan plan(QueryNode node, DBObjectBase base, int total)
+  {
+    if (node instanceof QueryAndNode)
+      {
+        List<QueryNode> conjuncts = new ArrayList<QueryNode>();
+        flattenAnd(node, conjuncts);
+
+        DBQueryPlan plan = new DBQueryPlan(AND, node, 0);
+        plan.children = new ArrayList<DBQueryPlan>();
+
+        for (QueryNode conjunct: conjuncts)
+          {
+            DBQueryPlan child = plan(conjunct, base, total);
+
+            if (child.kind != SCAN &&
+                (plan.driver == -1 || child.estimate < plan.children.get(plan.driver).estimate))
+              {
+                plan.driver = plan.children.size();
+              }
+
+            plan.children.add(child);
+          }
+
+        if (plan.driver == -1)
+          {
+            return new DBQueryPlan(SCAN, node, total);
+          }
+
+        plan.estimate = plan.children.get(plan.driver).estimate;
+
+        return plan;
+      }
+
+    if (node instanceof QueryOrNode)
+      {
+        List<QueryNode> disjuncts = new ArrayList<QueryNode>();
+        flattenOr(node, disjuncts);
+
+        List<DBQueryPlan> children = new ArrayList<DBQueryPlan>();
+        long sum = 0;
+
+        for (QueryNode disjunct: disjuncts)
+          {
+            DBQueryPlan child = plan(disjunct, base, total);
+
+            if (child.kind == SCAN)
+              {
+                return new DBQueryPlan(SCAN, node, total);
+              }
+
+            children.add(child);
+            sum += child.estimate;
+          }
+
+        DBQueryPlan plan = new DBQueryPlan(OR, node, (int) Math.min(sum, total));
+        plan.children = children;
+
+        return plan;
+      }
+
+    if (node instanceof QueryDataNode)
+      {
+        return planComparison((QueryDataNode) node, base, total);
+      }
+
+    return new DBQueryPlan(SCAN, node, total);
+  }
+
+  /**
+   * <p>Chooses the access path for a single comparison.</p>
+   */
+
+  private static DBQueryPlan planComparison(QueryDataNode n, DBObjectBase base, int total)
+  {
+    // DBQueryHandler compares the Invid itself when fieldId is -2,
+    // regardless of fieldname
+
+    if (n.fieldId == QueryDataNode.INVIDVAL)
+      {
+        if (n.comparator == QueryDataNode.EQUALS && n.value instanceof Invid)
+          {
+            return new DBQueryPlan(INVID, n, 1);
+          }
+
+        return new DBQueryPlan(SCAN, n, total);
+      }
+
+    // we can't answer a length test on a vector field, or a test
+    // against the object's label
+
+    if (n.arrayOp != QueryDataNode.NONE && n.arrayOp != QueryDataNode.CONTAINS)
+      {
+        return new DBQueryPlan(SCAN, n, total);
+      }
+
+    DBObjectBaseField fieldDef = null;
+
+    if (n.fieldname != null)
+      {
+        fieldDef = base.getField(n.fieldname); // *sync* DBObjectBase
+      }
+    else if (n.fieldId >= 0)
+      {
+        fieldDef = base.getField(n.fieldId);
+      }
+
+    if (fieldDef == null)
+      {
+        return new DBQueryPlan(SCAN, n, total);
+      }
+
+    DBQueryPlan best = null;
+    DBFieldIndex index = fieldDef.getFieldIndex();
+
+    if (index != null)
+      {
+        int count = index.estimate(n.comparator, n.value);
+
+        if (count >= 0)
+          {
+            best = new DBQueryPlan(INDEX, n, count);
+            best.fieldDef = fieldDef;
+          }
+      }
+
+    // a namespace holds each value at most once, so a namespace
+    // lookup can only produce a single candidate.  an index lookup
+    // is exact, and needs no lock, so we prefer it when it is as
+    // selective
+
+    if (best == null || best.estimate > 1)
+      {
+        Object nsKey = namespaceKey(n, fieldDef);
+
+        if (nsKey != null)
+          {
+            best = new DBQueryPlan(NAMESPACE, n, 1);
+            best.fieldDef = fieldDef;
+            best.key = nsKey;
+          }
+      }
+
+    if (best == null)
+      {
+        return new DBQueryPlan(SCAN, n, total);
+      }
+
+    return best;
+  }
+
+  /**
+   * <p>Returns the value to look up in fieldDef's namespace to answer
+   * n, or null if n can't be answered from the namespace.</p>
+   */
+
+  private static Object namespaceKey(QueryDataNode n, DBObjectBaseField fieldDef)
+  {
+    if (n.comparator != QueryDataNode.EQUALS || n.value == null || fieldDef.getNameSpace() == null)
+      {
+        return null;
+      }
+
+    if (fieldDef.isString())
+      {
+        return (n.value instanceof String) ? n.value : null;
+      }
+
+    if (fieldDef.isNumeric())
+      {
+        return (n.value instanceof Integer) ? n.value : null;
+      }
+
+    if (fieldDef.isIP())
+      {
+        if (n.value instanceof IPAddress)
+          {
+            return n.value;
+          }
+
+        if (n.value instanceof String)
+          {
+            try
+              {
+                return new IPAddress((String) n.value);
+              }
+            catch (IllegalArgumentException ex)
+              {
+                return null;
+              }
+          }
+      }
+
+    return null;
+  }
+
+  private static void flattenAnd(QueryNode node, List<QueryNode> conjuncts)
+  {
+    if (node instanceof QueryAndNode)
+      {
+        flattenAnd(((QueryAndNode) node).child1, conjuncts);
+        flattenAnd(((QueryAndNode) node).child2, conjuncts);
+      }
+    else
+      {
+        conjuncts.add(node);
+      }
+  }
+
+  private static void flattenOr(QueryNode node, List<QueryNode> disjuncts)
+  {
+    if (node instanceof QueryOrNode)
+      {
+        flattenOr(((QueryOrNode) node).child1, disjuncts);
+        flattenOr(((QueryOrNode) node).child2, disjuncts);
+      }
+    else
+      {
+        disjuncts.add(node);
+      }
+  }
+
+  /**
+   * <p>Returns true if this plan calls for a full scan.</p>
+   */
+
+  boolean isScan()
+  {
+    return kind == SCAN;
+  }
+
+  /**
+   * <p>Returns the estimated number of objects this plan will have
+   * us examine.</p>
+   */
+
+  int getEstimate()
+  {
+    return estimate;
+  }
+
+  /**
+   * <p>Returns the ids, in ascending order, of the objects in set that
+   * need to be examined under this plan, or null if set needs to be
+   * scanned in full.  This may be the case even if this plan is not a
+   * SCAN plan, if an index or namespace we planned to use can't
+   * answer for set.</p>
+   */
+
+  int[] getCandidates(DBObjectBase base, DBIterationSet set)
+  {
+    switch (kind)
+      {
+      case INVID:
+        Invid invid = (Invid) ((QueryDataNode) node).value;
+
+        if (invid.getType() != base.getTypeID() || set.getByID(invid.getNum()) == null)
+          {
+            return new int[0];
+          }
+
+        return new int[] {invid.getNum()};
+
+      case NAMESPACE:
+
+        // the namespace holds the values as of the most recently
+        // integrated transaction.  we can only use it if no
+        // transaction is integrating, and if set is the current
+        // iteration set for our base
+
+        synchronized (Ganymede.db.integrationLock)
+          {
+            if (set != base.getIterationSnapshot())
+              {
+                return null;
+              }
+
+            DBNameSpace namespace = fieldDef.getNameSpace();
+
+            if (namespace == null)
+              {
+                return null;
+              }
+
+            Invid holder = namespace.lookupPersistentInvid(key, base.getTypeID(), fieldDef.getID());
+
+            if (holder == null || set.getByID(holder.getNum()) == null)
+              {
+                return new int[0];
+              }
+
+            return new int[] {holder.getNum()};
+          }
+
+      case INDEX:
+        DBFieldIndex index = fieldDef.getFieldIndex();
+
+        if (index == null)
+          {
+            return null;
+          }
+
+        QueryDataNode n = (QueryDataNode) node;
+
+        return index.lookup(n.comparator, n.value, set);
+
+      case AND:
+        return children.get(driver).getCandidates(base, set);
+
+      case OR:
+        int[] result = new int[0];
+
+        for (DBQueryPlan child: children)
+          {
+            int[] ids = child.getCandidates(base, set);
+
+            if (ids == null)
+              {
+                return null;
+              }
+
+            result = DBFieldIndex.union(result, ids);
+          }
+
+        return result;
+      }
+
+    return null;
+  }
+
+  /**
+   * <p>Returns a description of this plan, one step to a line, with
+   * field names resolved through query.</p>
+   */
+
+  String explain(Query query)
+  {
+    StringBuilder buffer = new StringBuilder();
+
+    explain(query, buffer, "");
+
+    return buffer.toString();
+  }
+
+  private void explain(Query query, StringBuilder buffer, String indent)
+  {
+    buffer.append(indent);
+
+    switch (kind)
+      {
+      case SCAN:
+        if (node == null)
+          {
+            // "Full scan of all {0,number,#} objects"
+            buffer.append(ts.l("explain.scan_all", Integer.valueOf(estimate)));
+          }
+        else if (children != null)
+          {
+            // "Full scan of {0,number,#} objects, cheaper than the best index plan"
+            buffer.append(ts.l("explain.scan_cheaper", Integer.valueOf(estimate)));
+          }
+        else
+          {
+            // "Full scan of {0,number,#} objects, nothing indexable"
+            buffer.append(ts.l("explain.scan", Integer.valueOf(estimate)));
+          }
+
+        buffer.append("\n");
+
+        if (node != null)
+          {
+            buffer.append(indent);
+            buffer.append("  ");
+
+            // "Filter: {0}"
+            buffer.append(ts.l("explain.filter", node.toString(query)));
+            buffer.append("\n");
+          }
+
+        if (children != null)
+          {
+            buffer.append(indent);
+            buffer.append("  ");
+
+            // "Rejected plan:"
+            buffer.append(ts.l("explain.rejected"));
+            buffer.append("\n");
+
+            children.get(0).explain(query, buffer, indent + "    ");
+          }
+
+        return;
+
+      case INVID:
+        // "Invid lookup: {0} (estimated {1,number,#} candidates)"
+        buffer.append(ts.l("explain.invid", node.toString(query), Integer.valueOf(estimate)));
+        break;
+
+      case NAMESPACE:
+        // "Namespace {0} lookup: {1} (estimated {2,number,#} candidates)"
+        buffer.append(ts.l("explain.namespace", fieldDef.getNameSpace().getName(),
+                           node.toString(query), Integer.valueOf(estimate)));
+        break;
+
+      case INDEX:
+        if (fieldDef.getFieldIndex() != null && fieldDef.getFieldIndex().isOrdered())
+          {
+            // "Ordered index lookup: {0} (estimated {1,number,#} candidates)"
+            buffer.append(ts.l("explain.ordered_index", node.toString(query), Integer.valueOf(estimate)));
+          }
+        else
+          {
+            // "Hash index lookup: {0} (estimated {1,number,#} candidates)"
+            buffer.append(ts.l("explain.hash_index", node.toString(query), Integer.valueOf(estimate)));
+          }
+        break;
+
+      case AND:
+        // "Driven by conjunct {0,number,#} of {1,number,#} (estimated {2,number,#} candidates)"
+        buffer.append(ts.l("explain.and", Integer.valueOf(driver + 1),
+                           Integer.valueOf(children.size()), Integer.valueOf(estimate)));
+        buffer.append("\n");
+
+        children.get(driver).explain(query, buffer, indent + "  ");
+
+        for (int i = 0; i < children.size(); i++)
+          {
+            if (i != driver)
+              {
+                buffer.append(indent);
+                buffer.append("  ");
+
+                // "Filter: {0}"
+                buffer.append(ts.l("explain.filter", children.get(i).node.toString(query)));
+                buffer.append("\n");
+              }
+          }
+
+        return;
+
+      case OR:
+        // "Union of {0,number,#} lookups (estimated {1,number,#} candidates)"
+        buffer.append(ts.l("explain.or", Integer.valueOf(children.size()), Integer.valueOf(estimate)));
+        buffer.append("\n");
+
+        for (DBQueryPlan child: children)
+          {
+            child.explain(query, buffer, indent + "  ");
+          }
+
+        return;
+      }
+
+    buffer.append("\n");
+  }
+}
@@ -0,0 +1,1203 @@
+/*
+
+   DBQueryPredicate.java
+
+   Compiled form of a Query, for matching against many objects.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.Date;
+import java.util.Vector;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import arlut.csd.Util.TranslationService;
+import arlut.csd.ganymede.common.Invid;
+import arlut.csd.ganymede.common.IPAddress;
+import arlut.csd.ganymede.common.Query;
+import arlut.csd.ganymede.common.QueryAndNode;
+import arlut.csd.ganymede.common.QueryDataNode;
+import arlut.csd.ganymede.common.QueryDeRefNode;
+import arlut.csd.ganymede.common.QueryNode;
+import arlut.csd.ganymede.common.QueryNotNode;
+import arlut.csd.ganymede.common.QueryOrNode;
+import arlut.csd.ganymede.common.RegexpException;
+
+/*------------------------------------------------------------------------------
+                                                                  abstract class
+                                                                DBQueryPredicate
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>A QueryNode tree compiled against a particular {@link
+ * arlut.csd.ganymede.server.DBObjectBase DBObjectBase}, for matching
+ * against many objects in that base.</p>
+ *
+ * <p>{@link arlut.csd.ganymede.server.DBQueryHandler DBQueryHandler}
+ * interprets a QueryNode tree afresh for every object it is given,
+ * looking each field up by name, testing the class of the query
+ * value and the field's value to decide what kind of comparison to
+ * make, and switching on the comparator.  When a query is compiled,
+ * all of that is done once.  Each comparison is resolved to the field
+ * id it tests and turned into a predicate specialized for the field's
+ * type and the comparator, with its query value unwrapped into the
+ * form it will be compared in, and any regular expression compiled.
+ * Matching an object is then a walk over the predicate tree.</p>
+ *
+ * <p>A compiled predicate produces exactly the same results as
+ * DBQueryHandler.nodeMatch() does for the same tree.  Comparisons
+ * that DBQueryHandler handles in unusual ways (length tests on scalar
+ * fields, password and permission matrix fields, and the like) are
+ * compiled into predicates that simply hand the node to
+ * DBQueryHandler.</p>
+ *
+ * <p>The compiled form of a Query is cached in the Query's transient
+ * compiledPredicate field by {@link #forQuery(arlut.csd.ganymede.common.Query,
+ * arlut.csd.ganymede.server.DBObjectBase) forQuery()}, and is reused
+ * for as long as the Query's root and the DBObjectBase being searched
+ * stay the same.  A schema edit replaces the DBObjectBases, so a
+ * predicate compiled against a superseded schema is never reused.
+ * Compiled predicates hold no per-session or per-object state, and
+ * may be used by any number of threads at once.</p>
+ */
+
+abstract class DBQueryPredicate {
+
+  /**
+   * <p>TranslationService object for handling string localization in
+   * the Ganymede server.</p>
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.DBQueryPredicate");
+
+  static final DBQueryPredicate TRUE = new Constant(true);
+  static final DBQueryPredicate FALSE = new Constant(false);
+
+  /**
+   * <p>Returns the compiled form of query for matching against
+   * objects in base, compiling it and caching it in the query if
+   * necessary.</p>
+   */
+
+  static DBQueryPredicate forQuery(Query query, DBObjectBase base)
+  {
+    Object cached = query.compiledPredicate;
+
+    if (cached instanceof Compiled)
+      {
+        Compiled compiled = (Compiled) cached;
+
+        if (compiled.base == base && compiled.root == query.root)
+          {
+            return compiled.predicate;
+          }
+      }
+
+    Compiled compiled = new Compiled(base, query.root, compile(query.root, base));
+
+    // another thread running the same query may replace this, but
+    // the predicates are immutable, so that's harmless
+
+    query.compiledPredicate = compiled;
+
+    return compiled.predicate;
+  }
+
+  /**
+   * <p>Compiles the QueryNode tree rooted at node for matching
+   * against objects in base.</p>
+   */
+
+  static DBQueryPredicate compile(QueryNode node, DBObjectBase base)
+  {
+    if (node == null)
+      {
+        return FALSE;
+      }
+
+    if (node instanceof QueryNotNode)
+      {
+        return new Not(compile(((QueryNotNode) node).child, base));
+      }
+
+    if (node instanceof QueryAndNode)
+      {
+        return new And(compile(((QueryAndNode) node).child1, base),
+                       compile(((QueryAndNode) node).child2, base));
+      }
+
+    if (node instanceof QueryOrNode)
+      {
+        return new Or(compile(((QueryOrNode) node).child1, base),
+                      compile(((QueryOrNode) node).child2, base));
+      }
+
+    if (node instanceof QueryDeRefNode)
+      {
+        return compileDeRef((QueryDeRefNode) node, base);
+      }
+
+    if (node instanceof QueryDataNode)
+      {
+        return compileData((QueryDataNode) node, base);
+      }
+
+    return new Interpreted(node);
+  }
+
+  private static DBQueryPredicate compileDeRef(QueryDeRefNode n, DBObjectBase base)
+  {
+    DBObjectBaseField fieldDef;
+
+    if (n.fieldname != null)
+      {
+        fieldDef = base.getField(n.fieldname); // *sync* DBObjectBase
+      }
+    else if (n.fieldId != -1)
+      {
+        fieldDef = base.getField(n.fieldId);
+      }
+    else
+      {
+        return FALSE;
+      }
+
+    if (fieldDef == null || !fieldDef.isInvid())
+      {
+        return FALSE;
+      }
+
+    DBObjectBase targetBase = null;
+    DBQueryPredicate subPredicate = null;
+    short target = fieldDef.getTargetBase();
+
+    if (target >= 0)
+      {
+        targetBase = Ganymede.db.getObjectBase(target);
+      }
+
+    if (targetBase != null)
+      {
+        subPredicate = compile(n.queryTree, targetBase);
+      }
+
+    return new DeRef(fieldDef.getID(), fieldDef.isArray(), n.queryTree, targetBase, subPredicate);
+  }
+
+  private static DBQueryPredicate compileData(QueryDataNode n, DBObjectBase base)
+  {
+    // DBQueryHandler compares the Invid itself when fieldId is -2,
+    // and the object's label when it is -1, regardless of fieldname
+
+    if (n.fieldId == QueryDataNode.INVIDVAL)
+      {
+        if (n.comparator == QueryDataNode.EQUALS)
+          {
+            return new InvidEquals(n.value);
+          }
+
+        return FALSE;
+      }
+
+    if (n.fieldId == QueryDataNode.LABELVAL)
+      {
+        if (n.comparator == QueryDataNode.DEFINED)
+          {
+            return FALSE;
+          }
+
+        if (n.arrayOp == QueryDataNode.NONE && n.value instanceof String)
+          {
+            return new Label(new StringTest(n.comparator, (String) n.value));
+          }
+
+        if (n.arrayOp == QueryDataNode.CONTAINS && n.value instanceof String)
+          {
+            return FALSE;
+          }
+
+        return new Interpreted(n);
+      }
+
+    DBObjectBaseField fieldDef;
+
+    if (n.fieldname != null)
+      {
+        fieldDef = base.getField(n.fieldname); // *sync* DBObjectBase
+      }
+    else
+      {
+        fieldDef = base.getField(n.fieldId);
+      }
+
+    // DBQueryHandler treats an undefined field as matching an equality
+    // test against false, as a boolean field may be left undefined if
+    // false
+
+    if (n.comparator == QueryDataNode.EQUALS && n.value == null)
+      {
+        return new Interpreted(n);
+      }
+
+    boolean undefined = n.comparator == QueryDataNode.EQUALS && n.value.equals(Boolean.FALSE);
+
+    if (fieldDef == null)
+      {
+        return undefined ? TRUE : FALSE;
+      }
+
+    short id = fieldDef.getID();
+    boolean vector = fieldDef.isArray();
+
+    if (n.comparator == QueryDataNode.DEFINED)
+      {
+        return new Defined(id, undefined);
+      }
+
+    if (n.arrayOp >= QueryDataNode.LENGTHEQ && n.arrayOp <= QueryDataNode.LENGTHGREQ)
+      {
+        if (!vector)
+          {
+            return new Interpreted(n);
+          }
+
+        if (n.value instanceof Integer)
+          {
+            return new Length(id, undefined, n.arrayOp, ((Integer) n.value).intValue());
+          }
+
+        return new Defined(id, undefined).negate();
+      }
+
+    // DBQueryHandler treats a comparison against a vector field with
+    // no array operator as a test against each of its elements
+
+    byte arrayOp = n.arrayOp;
+
+    if (vector && arrayOp == QueryDataNode.NONE)
+      {
+        arrayOp = QueryDataNode.CONTAINS;
+      }
+
+    if (arrayOp != (vector ? QueryDataNode.CONTAINS : QueryDataNode.NONE))
+      {
+        return new Interpreted(n);
+      }
+
+    DBQueryPredicate result = null;
+
+    if (fieldDef.isString())
+      {
+        if (n.value instanceof String)
+          {
+            result = new StringField(id, undefined, vector, new StringTest(n.comparator, (String) n.value));
+          }
+      }
+    else if (fieldDef.isInvid())
+      {
+        if (n.value instanceof Invid)
+          {
+            if (n.comparator == QueryDataNode.EQUALS)
+              {
+                result = new InvidField(id, undefined, vector, (Invid) n.value);
+              }
+          }
+        else if (n.value instanceof String)
+          {
+            result = new InvidLabelField(id, undefined, vector, new StringTest(n.comparator, (String) n.value));
+          }
+      }
+    else if (fieldDef.isIP())
+      {
+        if (n.value instanceof String)
+          {
+            result = new IPStringField(id, undefined, vector, new StringTest(n.comparator, (String) n.value));
+          }
+        else if (n.value instanceof IPAddress)
+          {
+            if (n.comparator == QueryDataNode.EQUALS ||
+                (!vector && (n.comparator == QueryDataNode.STARTSWITH || n.comparator == QueryDataNode.ENDSWITH)))
+              {
+                result = new IPField(id, undefined, vector, n.comparator, ((IPAddress) n.value).getBytes());
+              }
+          }
+      }
+    else if (fieldDef.isBoolean())
+      {
+        if (n.comparator == QueryDataNode.EQUALS && !(n.value instanceof IPAddress))
+          {
+            result = new BooleanField(id, undefined, n.value);
+          }
+      }
+    else if (fieldDef.isDate())
+      {
+        if (n.value instanceof Date && isOrderComparator(n.comparator))
+          {
+            result = new OrderedField(id, undefined, n.comparator, (Date) n.value);
+          }
+      }
+    else if (fieldDef.isNumeric())
+      {
+        if (n.value instanceof Integer && isOrderComparator(n.comparator))
+          {
+            result = new OrderedField(id, undefined, n.comparator, (Integer) n.value);
+          }
+      }
+    else if (fieldDef.isFloat())
+      {
+        if (n.value instanceof Double && isOrderComparator(n.comparator))
+          {
+            result = new OrderedField(id, undefined, n.comparator, (Double) n.value);
+          }
+      }
+    else
+      {
+        return new Interpreted(n);
+      }
+
+    if (result == null)
+      {
+        // the query value can't be compared with this field's values,
+        // so the comparison can only match if the field is undefined
+
+        return new Defined(id, undefined).negate();
+      }
+
+    return result;
+  }
+
+  private static boolean isOrderComparator(byte comparator)
+  {
+    return comparator >= QueryDataNode.EQUALS && comparator <= QueryDataNode.GREATEQ;
+  }
+
+  /* -- */
+
+  /**
+   * <p>Returns true if obj matches this predicate.</p>
+   *
+   * @param session The GanymedeSession performing the query, used
+   * for permission checks and to look up object labels.
+   * @param obj The object being tested.  This must be an object of
+   * the DBObjectBase that this predicate was compiled against.
+   * @param view The DBStoreView that Invids in any dereferencing
+   * clauses should be resolved against, or null to resolve them
+   * against the current state of the DBStore.
+   */
+
+  abstract boolean matches(GanymedeSession session, DBObject obj, DBStoreView view);
+
+  DBQueryPredicate negate()
+  {
+    return new Not(this);
+  }
+
+/*----------------------------------------------------------------------------
+                                                                    Compiled
+----------------------------------------------------------------------------*/
+
+  /**
+   * <p>The cached compiled form of a Query, along with the base it
+   * was compiled against and the root it was compiled from.</p>
+   */
+
+  private static final class Compiled {
+
+    final DBObjectBase base;
+    final QueryNode root;
+    final DBQueryPredicate predicate;
+
+    Compiled(DBObjectBase base, QueryNode root, DBQueryPredicate predicate)
+    {
+      this.base = base;
+      this.root = root;
+      this.predicate = predicate;
+    }
+  }
+
+/*----------------------------------------------------------------------------
+                                                                   StringTest
+----------------------------------------------------------------------------*/
+
+  /**
+   * <p>A string comparison, with its comparator and query value bound
+   * and its regular expression, if any, compiled.</p>
+   */
+
+  static final class StringTest {
+
+    private final byte comparator;
+    private final String queryValue;
+    private final Pattern pattern;
+
+    /**
+     * <p>If the query's regular expression could not be compiled,
+     * the parser's complaint.  Like DBQueryHandler, we only report
+     * a bad regular expression when we first try to match it against
+     * a value.</p>
+     */
+
+    private final String patternError;
+
+    StringTest(byte comparator, String queryValue)
+    {
+      Pattern pattern = null;
+      String patternError = null;
+
+      if ((comparator == QueryDataNode.MATCHES || comparator == QueryDataNode.NOCASEMATCHES) &&
+          queryValue != null && !queryValue.equals(""))
+        {
+          try
+            {
+              pattern = Pattern.compile(queryValue, (comparator == QueryDataNode.NOCASEMATCHES) ? Pattern.CASE_INSENSITIVE : 0);
+            }
+          catch (PatternSyntaxException ex)
+            {
+              patternError = ex.getMessage();
+            }
+        }
+
+      this.comparator = comparator;
+      this.queryValue = queryValue;
+      this.pattern = pattern;
+      this.patternError = patternError;
+    }
+
+    boolean test(String value)
+    {
+      if (queryValue == null || value == null)
+        {
+          return false;
+        }
+
+      switch (comparator)
+        {
+        case QueryDataNode.MATCHES:
+        case QueryDataNode.NOCASEMATCHES:
+
+          if (patternError != null)
+            {
+              // "Error, invalid pattern matching regular expression provided.  The Regular Expression parser reported the following error:\n\n{0}"
+              throw new RegexpException(ts.l("test.bad_regexp", patternError));
+            }
+
+          return pattern != null && pattern.matcher(value).find();
+
+        case QueryDataNode.EQUALS:
+          return queryValue.equals(value);
+
+        case QueryDataNode.NOCASEEQ:
+          return queryValue.equalsIgnoreCase(value);
+
+        case QueryDataNode.STARTSWITH:
+          return value.startsWith(queryValue);
+
+        case QueryDataNode.ENDSWITH:
+          return value.endsWith(queryValue);
+
+        case QueryDataNode.LESS:
+          return value.compareTo(queryValue) < 0;
+
+        case QueryDataNode.LESSEQ:
+          return value.compareTo(queryValue) <= 0;
+
+        case QueryDataNode.GREAT:
+          return value.compareTo(queryValue) > 0;
+
+        case QueryDataNode.GREATEQ:
+          return value.compareTo(queryValue) >= 0;
+        }
+
+      return false;
+    }
+  }
+
+/*----------------------------------------------------------------------------
+                                                           boolean structure
+----------------------------------------------------------------------------*/
+
+  private static final class Constant extends DBQueryPredicate {
+
+    private final boolean result;
+
+    Constant(boolean result)
+    {
+      this.result = result;
+    }
+
+    boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      return result;
+    }
+
+    DBQueryPredicate negate()
+    {
+      return result ? FALSE : TRUE;
+    }
+  }
+
+  private static final class Not extends DBQueryPredicate {
+
+    private final DBQueryPredicate child;
+
+    Not(DBQueryPredicate child)
+    {
+      this.child = child;
+    }
+
+    boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      return !child.matches(session, obj, view);
+    }
+
+    DBQueryPredicate negate()
+    {
+      return child;
+    }
+  }
+
+  private static final class And extends DBQueryPredicate {
+
+    private final DBQueryPredicate child1;
+    private final DBQueryPredicate child2;
+
+    And(DBQueryPredicate child1, DBQueryPredicate child2)
+    {
+      this.child1 = child1;
+      this.child2 = child2;
+    }
+
+    boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      return child1.matches(session, obj, view) && child2.matches(session, obj, view);
+    }
+  }
+
+  private static final class Or extends DBQueryPredicate {
+
+    private final DBQueryPredicate child1;
+    private final DBQueryPredicate child2;
+
+    Or(DBQueryPredicate child1, DBQueryPredicate child2)
+    {
+      this.child1 = child1;
+      this.child2 = child2;
+    }
+
+    boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      return child1.matches(session, obj, view) || child2.matches(session, obj, view);
+    }
+  }
+
+  /**
+   * <p>A node we don't compile, handed to DBQueryHandler as is.</p>
+   */
+
+  private static final class Interpreted extends DBQueryPredicate {
+
+    private final QueryNode node;
+
+    Interpreted(QueryNode node)
+    {
+      this.node = node;
+    }
+
+    boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      return DBQueryHandler.nodeMatch(session, node, obj, view);
+    }
+  }
+
+/*----------------------------------------------------------------------------
+                                                           object properties
+----------------------------------------------------------------------------*/
+
+  private static final class InvidEquals extends DBQueryPredicate {
+
+    private final Object invid;
+
+    InvidEquals(Object invid)
+    {
+      this.invid = invid;
+    }
+
+    boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      return obj.getInvid().equals(invid);
+    }
+  }
+
+  private static final class Label extends DBQueryPredicate {
+
+    private final StringTest test;
+
+    Label(StringTest test)
+    {
+      this.test = test;
+    }
+
+    boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      return test.test(obj.getLabel());
+    }
+  }
+
+  /**
+   * <p>A dereferencing clause.  The subtree is compiled against the
+   * invid field's target base, if it has one, and is interpreted
+   * otherwise.</p>
+   */
+
+  private static final class DeRef extends DBQueryPredicate {
+
+    private final short fieldID;
+    private final boolean vector;
+    private final QueryNode queryTree;
+    private final DBObjectBase targetBase;
+    private final DBQueryPredicate subPredicate;
+
+    DeRef(short fieldID, boolean vector, QueryNode queryTree, DBObjectBase targetBase, DBQueryPredicate subPredicate)
+    {
+      this.fieldID = fieldID;
+      this.vector = vector;
+      this.queryTree = queryTree;
+      this.targetBase = targetBase;
+      this.subPredicate = subPredicate;
+    }
+
+    boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      DBField field = obj.peekField(fieldID);
+
+      if (field == null || !field.isDefined() || !field.verifyReadPermission(session))
+        {
+          return false;
+        }
+
+      try
+        {
+          if (vector)
+            {
+              Vector values = field.getValuesLocal();
+
+              for (int i = 0; i < values.size(); i++)
+                {
+                  if (matchTarget(session, (Invid) values.get(i), view))
+                    {
+                      return true;
+                    }
+                }
+
+              return false;
+            }
+
+          return matchTarget(session, (Invid) field.getValueLocal(), view);
+        }
+      catch (ClassCastException ex)
+        {
+          return false;
+        }
+    }
+
+    private boolean matchTarget(GanymedeSession session, Invid invid, DBStoreView view)
+    {
+      DBObject derefObj = (view == null) ? session.getDBSession().viewDBObject(invid) :
+        session.getDBSession().viewDBObject(invid, view);
+
+      // *race*
+      //
+      // as in DBQueryHandler.nodeMatch(), a stale Invid may give us
+      // a null derefObj, in which case we ignore it
+
+      if (derefObj == null || !session.getPermManager().getPerm(derefObj).isVisible())
+        {
+          return false;
+        }
+
+      if (subPredicate != null && derefObj.getBase() == targetBase)
+        {
+          return subPredicate.matches(session, derefObj, view);
+        }
+
+      return DBQueryHandler.nodeMatch(session, queryTree, derefObj, view);
+    }
+  }
+
+/*----------------------------------------------------------------------------
+                                                                field tests
+----------------------------------------------------------------------------*/
+
+  /**
+   * <p>Base class for comparisons against a field.  Handles the
+   * field lookup, the undefined case, and the permissions check.</p>
+   */
+
+  private static abstract class FieldTest extends DBQueryPredicate {
+
+    final short fieldID;
+
+    /**
+     * <p>The result of the comparison when the field is undefined.</p>
+     */
+
+    final boolean undefined;
+
+    FieldTest(short fieldID, boolean undefined)
+    {
+      this.fieldID = fieldID;
+      this.undefined = undefined;
+    }
+
+    final boolean matches(GanymedeSession session, DBObject obj, DBStoreView view)
+    {
+      DBField field = obj.peekField(fieldID);
+
+      if (field == null || !field.isDefined())
+        {
+          return undefined;
+        }
+
+      if (!field.verifyReadPermission(session))
+        {
+          return false;
+        }
+
+      try
+        {
+          return test(session, field);
+        }
+      catch (ClassCastException ex)
+        {
+          return false;
+        }
+    }
+
+    abstract boolean test(GanymedeSession session, DBField field);
+  }
+
+  private static final class Defined extends FieldTest {
+
+    Defined(short fieldID, boolean undefined)
+    {
+      super(fieldID, undefined);
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      return true;
+    }
+
+    /**
+     * <p>Returns a predicate that matches if the field is undefined
+     * and undefined is true, for comparisons which can never match a
+     * defined field.</p>
+     */
+
+    DBQueryPredicate negate()
+    {
+      return undefined ? new Undefined(fieldID) : FALSE;
+    }
+  }
+
+  private static final class Undefined extends FieldTest {
+
+    Undefined(short fieldID)
+    {
+      super(fieldID, true);
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      return false;
+    }
+  }
+
+  private static final class Length extends FieldTest {
+
+    private final byte arrayOp;
+    private final int length;
+
+    Length(short fieldID, boolean undefined, byte arrayOp, int length)
+    {
+      super(fieldID, undefined);
+
+      this.arrayOp = arrayOp;
+      this.length = length;
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      int size = field.getValuesLocal().size();
+
+      switch (arrayOp)
+        {
+        case QueryDataNode.LENGTHEQ:
+          return size == length;
+
+        case QueryDataNode.LENGTHGR:
+          return size > length;
+
+        case QueryDataNode.LENGTHLE:
+          return size < length;
+
+        case QueryDataNode.LENGTHLEEQ:
+          return size <= length;
+
+        case QueryDataNode.LENGTHGREQ:
+          return size >= length;
+        }
+
+      return false;
+    }
+  }
+
+  private static final class StringField extends FieldTest {
+
+    private final boolean vector;
+    private final StringTest test;
+
+    StringField(short fieldID, boolean undefined, boolean vector, StringTest test)
+    {
+      super(fieldID, undefined);
+
+      this.vector = vector;
+      this.test = test;
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      if (!vector)
+        {
+          return test.test((String) field.getValueLocal());
+        }
+
+      Vector values = field.getValuesLocal();
+
+      for (int i = 0; i < values.size(); i++)
+        {
+          if (test.test((String) values.get(i)))
+            {
+              return true;
+            }
+        }
+
+      return false;
+    }
+  }
+
+  private static final class InvidField extends FieldTest {
+
+    private final boolean vector;
+    private final Invid invid;
+
+    InvidField(short fieldID, boolean undefined, boolean vector, Invid invid)
+    {
+      super(fieldID, undefined);
+
+      this.vector = vector;
+      this.invid = invid;
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      if (!vector)
+        {
+          return invid.equals(field.getValueLocal());
+        }
+
+      Vector values = field.getValuesLocal();
+
+      for (int i = 0; i < values.size(); i++)
+        {
+          if (invid.equals(values.get(i)))
+            {
+              return true;
+            }
+        }
+
+      return false;
+    }
+  }
+
+  /**
+   * <p>A string comparison against the labels of the objects pointed
+   * to by an invid field.</p>
+   */
+
+  private static final class InvidLabelField extends FieldTest {
+
+    private final boolean vector;
+    private final StringTest test;
+
+    InvidLabelField(short fieldID, boolean undefined, boolean vector, StringTest test)
+    {
+      super(fieldID, undefined);
+
+      this.vector = vector;
+      this.test = test;
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      DBSession dbSession = session.getDBSession();
+
+      if (!vector)
+        {
+          return test.test(dbSession.getObjectLabel((Invid) field.getValueLocal()));
+        }
+
+      Vector values = field.getValuesLocal();
+
+      for (int i = 0; i < values.size(); i++)
+        {
+          if (test.test(dbSession.getObjectLabel((Invid) values.get(i))))
+            {
+              return true;
+            }
+        }
+
+      return false;
+    }
+  }
+
+  private static final class IPStringField extends FieldTest {
+
+    private final boolean vector;
+    private final StringTest test;
+
+    IPStringField(short fieldID, boolean undefined, boolean vector, StringTest test)
+    {
+      super(fieldID, undefined);
+
+      this.vector = vector;
+      this.test = test;
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      if (!vector)
+        {
+          return test.test(((IPAddress) field.getValueLocal()).toString());
+        }
+
+      Vector values = field.getValuesLocal();
+
+      for (int i = 0; i < values.size(); i++)
+        {
+          if (test.test(((IPAddress) values.get(i)).toString()))
+            {
+              return true;
+            }
+        }
+
+      return false;
+    }
+  }
+
+  /**
+   * <p>An IP address comparison.  Scalar fields may be tested for
+   * equality, prefix, or suffix, vector fields only for
+   * equality.</p>
+   */
+
+  private static final class IPField extends FieldTest {
+
+    private final boolean vector;
+    private final byte comparator;
+    private final byte[] address;
+
+    IPField(short fieldID, boolean undefined, boolean vector, byte comparator, byte[] address)
+    {
+      super(fieldID, undefined);
+
+      this.vector = vector;
+      this.comparator = comparator;
+      this.address = address;
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      if (!vector)
+        {
+          byte[] bytes = ((IPAddress) field.getValueLocal()).getBytes();
+
+          switch (comparator)
+            {
+            case QueryDataNode.EQUALS:
+              return DBQueryHandler.compareIPs(bytes, address);
+
+            case QueryDataNode.STARTSWITH:
+              return DBQueryHandler.ipBeginsWith(bytes, address);
+
+            case QueryDataNode.ENDSWITH:
+              return DBQueryHandler.ipEndsWith(bytes, address);
+            }
+
+          return false;
+        }
+
+      Vector values = field.getValuesLocal();
+
+      for (int i = 0; i < values.size(); i++)
+        {
+          if (DBQueryHandler.compareIPs(address, ((IPAddress) values.get(i)).getBytes()))
+            {
+              return true;
+            }
+        }
+
+      return false;
+    }
+  }
+
+  private static final class BooleanField extends FieldTest {
+
+    private final Object value;
+
+    BooleanField(short fieldID, boolean undefined, Object value)
+    {
+      super(fieldID, undefined);
+
+      this.value = value;
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      return ((Boolean) field.getValueLocal()).equals(value);
+    }
+  }
+
+  /**
+   * <p>An ordered comparison against a scalar date, numeric, or float
+   * field.  The query value is held as a double for numeric and float
+   * fields, which represents any int exactly, and as milliseconds for
+   * date fields.</p>
+   */
+
+  private static final class OrderedField extends FieldTest {
+
+    private final byte comparator;
+    private final boolean date;
+    private final long time;
+    private final double number;
+
+    OrderedField(short fieldID, boolean undefined, byte comparator, Date value)
+    {
+      super(fieldID, undefined);
+
+      this.comparator = comparator;
+      this.date = true;
+      this.time = value.getTime();
+      this.number = 0;
+    }
+
+    OrderedField(short fieldID, boolean undefined, byte comparator, Number value)
+    {
+      super(fieldID, undefined);
+
+      this.comparator = comparator;
+      this.date = false;
+      this.time = 0;
+      this.number = value.doubleValue();
+    }
+
+    boolean test(GanymedeSession session, DBField field)
+    {
+      Object value = field.getValueLocal();
+      int result;
+
+      if (date)
+        {
+          long fieldTime = ((Date) value).getTime();
+
+          result = (fieldTime < time) ? -1 : ((fieldTime == time) ? 0 : 1);
+        }
+      else
+        {
+          double fieldNumber = ((Number) value).doubleValue();
+
+          if (fieldNumber == number)
+            {
+              result = 0;
+            }
+          else if (fieldNumber < number)
+            {
+              result = -1;
+            }
+          else if (fieldNumber > number)
+            {
+              result = 1;
+            }
+          else
+            {
+              return false;     // NaN compares false with everything
+            }
+        }
+
+      switch (comparator)
+        {
+        case QueryDataNode.EQUALS:
+          return result == 0;
+
+        case QueryDataNode.LESS:
+          return result < 0;
+
+        case QueryDataNode.LESSEQ:
+          return result <= 0;
+
+        case QueryDataNode.GREAT:
+          return result > 0;
+
+        case QueryDataNode.GREATEQ:
+          return result >= 0;
+        }
+
+      return false;
+    }
+  }
+}
@@ -50,8 +50,6 @@
 
 package arlut.csd.ganymede.server;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 
@@ -132,7 +130,7 @@ public final class DBReadLock extends DBLock {
   {
     super(store.lockSync);
 
-    this.baseSet = Collections.unmodifiableList(new ArrayList(store.getBases()));
+    this.baseSet = orderBases(store.getBases());
   }
 
   /**
@@ -144,7 +142,7 @@ public final class DBReadLock extends DBLock {
   {
     super(store.lockSync);
 
-    this.baseSet = Collections.unmodifiableList(new ArrayList(baseSet));
+    this.baseSet = orderBases(baseSet);
   }
 
   /**
@@ -174,6 +172,11 @@ public final class DBReadLock extends DBLock {
     return this.abort;
   }
 
+  @Override final int getLockKind()
+  {
+    return DBLockStats.READ;
+  }
+
   /**
    * Returns immutable list of DBObjectBases that this lock is meant
    * to cover.
@@ -198,8 +201,8 @@ public final class DBReadLock extends DBLock {
 
   /**
    * <p>A thread that calls establish() will be suspended (waiting on
-   * the server's {@link arlut.csd.ganymede.server.DBLockSync
-   * DBLockSync} until all DBObjectBases listed in this DBReadLock's
+   * a Condition of the server's {@link arlut.csd.ganymede.server.DBLockSync
+   * DBLockSync}) until all DBObjectBases listed in this DBReadLock's
    * constructor are available to be locked.  At that point, the
    * thread blocking on establish() will wake up possessing a shared
    * read lock on the requested DBObjectBases.</p>
@@ -228,6 +231,7 @@ public final class DBReadLock extends DBLock {
   @Override public final void establish(Object key) throws InterruptedException
   {
     boolean okay = false;
+    DBObjectBase blocker = null;
 
     /* -- */
 
@@ -238,13 +242,17 @@ public final class DBReadLock extends DBLock {
         Ganymede.printCallStack();
       }
 
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         if (!lockSync.claimLockKey(key, this))
           {
             throw new RuntimeException("Error: read lock sought by owner of existing write or dump lockset for key: " + key);
           }
 
+        noteRequested(key);
+
         try
           {
             lockSync.incLocksWaitingCount();
@@ -274,17 +282,18 @@ public final class DBReadLock extends DBLock {
                         if (debug) debug("establish() base " + base.getName() + " has writers queued/locked");
 
                         okay = false;
+                        blocker = base;
                         break;
                       }
                   }
 
                 if (!okay)
                   {
-                    if (debug) debug("establish() waiting on lockSync");
+                    if (debug) debug("establish() waiting on " + blocker.getName());
 
-                    lockSync.wait(2500);
+                    lockSync.await(this, blocker);
 
-                    if (debug) debug("establish() done waiting on lockSync");
+                    if (debug) debug("establish() done waiting on " + blocker.getName());
 
                     continue;
                   }
@@ -297,6 +306,7 @@ public final class DBReadLock extends DBLock {
                   }
 
                 this.locked = true;
+                noteGranted();
                 lockSync.incLockCount();
 
                 if (debug) debug("establish() read lock established");
@@ -304,17 +314,23 @@ public final class DBReadLock extends DBLock {
           }
         finally
           {
+            lockSync.dequeue(this);
             lockSync.decLocksWaitingCount();
             this.inEstablish = false;
 
             if (!this.locked)
               {
+                noteFailed();
                 lockSync.unclaimLockKey(key, this);
               }
 
-            lockSync.notifyAll();
+            this.settled.signalAll();
           }
       }
+    finally
+      {
+        lockSync.unlock();
+      }
   }
 
   /**
@@ -344,7 +360,9 @@ public final class DBReadLock extends DBLock {
         Ganymede.printCallStack();
       }
 
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         // if this lock is being established in another thread, we
         // need to wait until that thread exits its establish section.
@@ -355,13 +373,7 @@ public final class DBReadLock extends DBLock {
           {
             if (debug) debug("release() looping waiting on inEstablish");
 
-            try
-              {
-                lockSync.wait(2500);
-              }
-            catch (InterruptedException ex)
-              {
-              }
+            this.settled.awaitUninterruptibly();
           }
 
         if (!locked)
@@ -371,6 +383,8 @@ public final class DBReadLock extends DBLock {
             return;
           }
 
+        noteReleased();
+
         for (DBObjectBase base: baseSet)
           {
             base.removeReader(this);
@@ -384,7 +398,10 @@ public final class DBReadLock extends DBLock {
         this.key = null;             // for gc
 
         lockSync.decLockCount();
-        lockSync.notifyAll();
+      }
+    finally
+      {
+        lockSync.unlock();
       }
   }
 
@@ -408,12 +425,19 @@ public final class DBReadLock extends DBLock {
 
   @Override public final void abort()
   {
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         if (debug) debug("abort() aborting");
         this.abort = true;
+        lockSync.signal(this);  // wake establish() if it is waiting
         release();              // blocks until freed
       }
+    finally
+      {
+        lockSync.unlock();
+      }
   }
 
   private void debug(Object key, String message)
@@ -196,7 +196,7 @@ public final class DBSchemaEdit implements Unreferenced, SchemaEdit {
 
   /**
    * Constructor.  This constructor should only be called in a
-   * critical section synchronized on the Ganymede.db.lockSync object.
+   * critical section holding the Ganymede.db.lockSync mutex.
    */
 
   public DBSchemaEdit(String adminName) throws RemoteException
@@ -736,10 +736,58 @@ public final class DBSession implements QueryDescriber {
 
     // We use the DBObjectTable's synchronized get() method so that we
     // can look up objects even while the DBObjectBase is locked
-    // during another transaction's commit
+    // during another transaction's commit.  If this thread has a read
+    // view pinned, we'll get the object as of that view instead.
 
-    obj = base.getObject(objectID);
+    obj = Ganymede.db.lookupObject(base, objectID);
 
+    // if this thread is logging a committed transaction for the
+    // DBLogPipeline, we want to see objects as that transaction left
+    // them, whatever this session may be doing now
+
+    DBEditSet logged = DBEditSet.getLoggingTransaction();
+
+    if (logged != null)
+      {
+        return logged.viewLoggedObject(this, obj, Invid.createInvid(baseID, objectID), getOriginal);
+      }
+
+    // if our transaction is validating an optimistic commit, it
+    // needs to know what version of the object we saw
+
+    DBEditSet eSet = editSet;
+
+    if (eSet != null)
+      {
+        eSet.noteRead(Invid.createInvid(baseID, objectID), obj);
+      }
+
+    return viewDBObject(obj, baseID, objectID, getOriginal);
+  }
+
+  /**
+   * <p>Get a reference to a read-only copy of an object as of the
+   * given {@link arlut.csd.ganymede.server.DBStoreView DBStoreView},
+   * or the checked out shadow of the object if it has been checked
+   * out by this session's transaction.</p>
+   *
+   * <p>Used by the query engine to dereference Invids against the
+   * same point-in-time view that the query is iterating over.</p>
+   */
+
+  DBObject viewDBObject(Invid invid, DBStoreView view)
+  {
+    return viewDBObject(view.getObject(invid), invid.getType(), invid.getNum(), false);
+  }
+
+  /**
+   * <p>Returns obj, the persistent version of the object with the
+   * given ids, or this session's checked out version of it if there
+   * is one.</p>
+   */
+
+  private DBObject viewDBObject(DBObject obj, short baseID, int objectID, boolean getOriginal)
+  {
     // if we aren't editing anything, we can't possibly have our own
     // version of the object checked out
 
@@ -748,42 +796,64 @@ public final class DBSession implements QueryDescriber {
         return obj;
       }
 
+    // if our transaction is writing its sync channels, the
+    // committing thread holds our monitor on behalf of the sync
+    // channel worker threads calling us, and the transaction can't
+    // change until they're done
+
+    DBEditSet eSet = editSet;
+
+    if (eSet != null && eSet.isWritingSyncChannels())
+      {
+        return findShadow(eSet, obj, baseID, objectID, getOriginal);
+      }
+
     // if we are editing something, we need to be more careful about
     // synchronization with editing methods
 
     synchronized (this)
       {
-        if (obj == null)
-          {
-            // not in the persistent store.. maybe we created it in
-            // this transaction, or maybe it just doesn't exist.
+        return findShadow(editSet, obj, baseID, objectID, getOriginal);
+      }
+  }
 
-            return editSet.findObject(Invid.createInvid(baseID, objectID));
-          }
+  private DBObject findShadow(DBEditSet eSet, DBObject obj, short baseID, int objectID, boolean getOriginal)
+  {
+    if (eSet == null)
+      {
+        return obj;
+      }
 
-        // okay, we found it and we've got a transaction open.. see if the
-        // object is being edited and, if so, if it is us that is doing it
+    if (obj == null)
+      {
+        // not in the persistent store.. maybe we created it in
+        // this transaction, or maybe it just doesn't exist.
 
-        DBEditObject shadow = obj.getShadow();
+        return eSet.findObject(Invid.createInvid(baseID, objectID));
+      }
 
-        if (shadow == null || shadow.getDBSession() != this)
-          {
-            return obj;
-          }
+    // okay, we found it and we've got a transaction open.. see if the
+    // object is being edited and, if so, if it is us that is doing it
 
-        // okay, the object is being edited by us.. if we are supposed to
-        // return the original version of an object being deleted, and
-        // this one is, return the original
+    DBEditObject shadow = obj.getShadow();
 
-        if (getOriginal && shadow.getStatus() == ObjectStatus.DELETING)
-          {
-            return obj;
-          }
+    if (shadow == null || shadow.getDBSession() != this)
+      {
+        return obj;
+      }
 
-        // else return the object being edited
+    // okay, the object is being edited by us.. if we are supposed to
+    // return the original version of an object being deleted, and
+    // this one is, return the original
 
-        return shadow;
+    if (getOriginal && shadow.getStatus() == ObjectStatus.DELETING)
+      {
+        return obj;
       }
+
+    // else return the object being edited
+
+    return shadow;
   }
 
   /**
@@ -1434,6 +1504,20 @@ public final class DBSession implements QueryDescriber {
     return lockManager.openWriteLock(bases);
   }
 
+  /**
+   * <p>Establishes a shared write lock for the {@link
+   * arlut.csd.ganymede.server.DBObjectBase DBObjectBase}s in bases,
+   * for use by {@link arlut.csd.ganymede.server.DBEditSet DBEditSet}
+   * in committing a transaction.  Shared write locks held by
+   * different sessions may overlap, but otherwise behave as write
+   * locks.</p>
+   */
+
+  public DBWriteLock openCommitLock(List<DBObjectBase> bases) throws InterruptedException
+  {
+    return lockManager.openCommitLock(bases);
+  }
+
   /**
    * <p>This method establishes a dump lock on all object bases in this Ganymede
    * server.</p>
@@ -65,6 +65,10 @@ import java.util.List;
  * handles the logic to make sure that a session does not grant a new
  * lock that would conflict with a lock already held by the same
  * session.</p>
+ *
+ * <p>Locks opened through the DBSessionLockManager are tagged with
+ * the session's identity, so that the admin console's lock report
+ * can show which user is holding or waiting on each lock.</p>
  */
 
 public final class DBSessionLockManager {
@@ -139,6 +143,7 @@ public final class DBSessionLockManager {
       }
 
     DBReadLock lock = new DBReadLock(session.getStore(), bases);
+    lock.setOwner(session.getID());
     lockSet.add(lock);
     lock.establish(session.getKey()); // block
 
@@ -177,6 +182,7 @@ public final class DBSessionLockManager {
       }
 
     DBReadLock lock = new DBReadLock(session.getStore());
+    lock.setOwner(session.getID());
     lockSet.add(lock);
     lock.establish(session.getKey());
 
@@ -199,6 +205,27 @@ public final class DBSessionLockManager {
    */
 
   public synchronized DBWriteLock openWriteLock(List<DBObjectBase> bases) throws InterruptedException
+  {
+    return openWriteLock(bases, false);
+  }
+
+  /**
+   * <p>Establishes a shared write lock for the {@link
+   * arlut.csd.ganymede.server.DBObjectBase DBObjectBases} in bases,
+   * for use in committing a transaction whose objects are already
+   * checked out exclusively by this session.</p>
+   *
+   * <p>A shared write lock keeps readers, dumpers, and exclusive
+   * writers off of the bases, but may be held on those bases at the
+   * same time as shared write locks held by other sessions.</p>
+   */
+
+  public synchronized DBWriteLock openCommitLock(List<DBObjectBase> bases) throws InterruptedException
+  {
+    return openWriteLock(bases, true);
+  }
+
+  private DBWriteLock openWriteLock(List<DBObjectBase> bases, boolean shared) throws InterruptedException
   {
     // we'll never be able to establish a write lock if we have to
     // wait for this thread to release read, write, or dump locks..
@@ -221,7 +248,8 @@ public final class DBSessionLockManager {
                                        resultBuffer.toString());
       }
 
-    DBWriteLock lock = new DBWriteLock(session.getStore(), bases);
+    DBWriteLock lock = new DBWriteLock(session.getStore(), bases, shared);
+    lock.setOwner(session.getID());
     lockSet.add(lock);
     lock.establish(session.getKey());
 
@@ -249,6 +277,7 @@ public final class DBSessionLockManager {
       }
 
     DBDumpLock lock = new DBDumpLock(session.getStore());
+    lock.setOwner(session.getID());
     lockSet.add(lock);
     lock.establish(session.getKey());
 
@@ -52,16 +52,21 @@ package arlut.csd.ganymede.server;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.rmi.RemoteException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -78,13 +83,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import arlut.csd.Util.JythonMap;
 import arlut.csd.Util.TranslationService;
 import arlut.csd.Util.zipIt;
 import arlut.csd.ganymede.common.FieldType;
 import arlut.csd.ganymede.common.Invid;
-import arlut.csd.ganymede.common.InvidPool;
+import arlut.csd.ganymede.common.InvidTable;
 import arlut.csd.ganymede.common.NotLoggedInException;
 import arlut.csd.ganymede.common.PermEntry;
 import arlut.csd.ganymede.common.ReturnVal;
@@ -170,7 +181,23 @@ public final class DBStore implements JythonMap {
    * after id_string
    */
 
-  static final byte minor_version = 23;
+  static final byte minor_version = 26;
+
+  /**
+   * Format byte written after the version bytes when the rest of the
+   * ganymede.db file is written as a plain data stream.
+   */
+
+  static final byte raw_format = 0;
+
+  /**
+   * Format byte written after the version bytes when the rest of the
+   * ganymede.db file is written in compressed, checksummed blocks by
+   * a {@link arlut.csd.ganymede.server.DBBlockOutputStream
+   * DBBlockOutputStream}.
+   */
+
+  static final byte block_format = 1;
 
   /**
    * Enable/disable debug in the DBStore methods
@@ -202,6 +229,38 @@ public final class DBStore implements JythonMap {
   // "Normal Operation"
   public static final String normal_state = ts.l("init.okaystate");
 
+  /**
+   * <p>The most recently published read view across all bases.  May
+   * be null until first requested after load or schema editing.</p>
+   */
+
+  private volatile DBStoreView currentView = null;
+
+  /**
+   * <p>Monitor serializing publication of new read views, and the
+   * base and field time stamp updates that accompany them.</p>
+   */
+
+  private final Object viewLock = new Object();
+
+  /**
+   * <p>Monitor held by {@link arlut.csd.ganymede.server.DBEditSet
+   * DBEditSet} while it replaces a committed transaction's objects
+   * in their DBObjectBases and publishes the new read view.  Commits
+   * that hold shared write locks on the same bases may otherwise
+   * reach this step together, and one transaction's new read view
+   * must not include only part of another's changes.</p>
+   */
+
+  final Object integrationLock = new Object();
+
+  /**
+   * <p>The read view pinned to the current thread by pinView(), if
+   * any.</p>
+   */
+
+  private final ThreadLocal<DBStoreView> pinnedView = new ThreadLocal<DBStoreView>();
+
   /**
    * Monotonically increasing transaction number.
    */
@@ -323,6 +382,13 @@ public final class DBStore implements JythonMap {
 
   byte file_minor;
 
+  /**
+   * True if the body of the database file loaded by this DBStore
+   * object was written in compressed, checksummed blocks.
+   */
+
+  boolean file_compressed = false;
+
   /**
    * The Journal for this database, initialized when the database is
    * loaded.
@@ -330,6 +396,15 @@ public final class DBStore implements JythonMap {
 
   DBJournal journal = null;
 
+  /**
+   * The dense Invid canonicalization table used as the server's
+   * {@link arlut.csd.ganymede.common.InvidAllocator InvidAllocator}.
+   * Object bases reserve room in it as they load and allocate object
+   * numbers.
+   */
+
+  final InvidTable invidTable = new InvidTable();
+
   /**
    * A separate object to act as a synchronization monitor for DBLock
    * code.
@@ -344,6 +419,15 @@ public final class DBStore implements JythonMap {
 
   public boolean journalLoading = false;
 
+  /**
+   * <p>Set to false by loadJournal() if any journal file it loaded
+   * was not in a consistent state at startup.  If so, we'll need to
+   * do a full dump to clear out the unusable transaction before we
+   * can proceed.</p>
+   */
+
+  private boolean journalConsistent = true;
+
   /**
    * A count of how many database objects in this DBStore are currently
    * checked out for creation, editing, or removal.
@@ -533,6 +617,27 @@ public final class DBStore implements JythonMap {
             System.err.println("*** There may be errors in loading the data.");
           }
 
+        // at version 2.25, the rest of the file may be written in
+        // compressed, checksummed blocks
+
+        if (this.isAtLeast(2, 25))
+          {
+            file_compressed = (in.readByte() == block_format);
+
+            if (file_compressed)
+              {
+                // id string, version bytes, and format byte
+
+                long headerLength = 2 + file_id.length() + 3;
+
+                in = new DataInputStream(new DBBlockInputStream(in, headerLength, -1));
+              }
+          }
+        else
+          {
+            file_compressed = false;
+          }
+
         // at version 2.8, we started tracking monotonic transaction
         // id numbers
 
@@ -542,25 +647,15 @@ public final class DBStore implements JythonMap {
           }
 
         // at version 2.9, we started recording the size of our invid
-        // pool
+        // pool.  The InvidTable sizes itself from each base's maxid,
+        // so we no longer need it as a hint.
 
         if (this.isAtLeast(2, 9))
           {
             invidPoolSize = in.readInt();
           }
-        else
-          {
-            invidPoolSize = -1;
-          }
 
-        if (invidPoolSize != -1)
-          {
-            Invid.setAllocator(new InvidPool(invidPoolSize*2 + 1)); // let's make sure we don't immediately rehash
-          }
-        else
-          {
-            Invid.setAllocator(new InvidPool());
-          }
+        Invid.setAllocator(invidTable);
 
         // read in the namespace definitions
 
@@ -621,6 +716,15 @@ public final class DBStore implements JythonMap {
             rootCategory.resort();
           }
 
+        // at version 2.24, the objects for each base are written
+        // after the category tree in independently addressable
+        // sections, which we can load in parallel
+
+        if (isAtLeast(2,24))
+          {
+            loadBaseSections(filename, in);
+          }
+
         // print out loading statistics
         // "DBStore.load(): Loaded {0,number,#} fields in {1,number,#} objects"
         debug(ts.l("load.statistics", Integer.valueOf(DBField.fieldCount), Integer.valueOf(DBObject.objectCount)));
@@ -698,7 +802,13 @@ public final class DBStore implements JythonMap {
     // Notice that we are going to archive a copy of the
     // existing db file.
 
-    if (!isAtRev(major_version, minor_version) || !journal.isClean())
+    // if the journal is segmented and loaded cleanly, we'll leave
+    // it to the journal compaction task to fold it into ganymede.db
+    // in the background once the server is up, rather than making
+    // the server wait for a full dump before starting
+
+    if (!isAtRev(major_version, minor_version) ||
+        (!journal.isClean() && !(journal.isSegmented() && journalConsistent)))
       {
         try
           {
@@ -727,6 +837,345 @@ public final class DBStore implements JythonMap {
   }
 
 
+  /**
+   * <p>Writes the objects in each DBObjectBase to its own section of
+   * the ganymede.db file, preceded by a section table recording the
+   * file offset, length, object count, and maximum object id for each
+   * base.</p>
+   *
+   * <p>The section table is written first with placeholder values,
+   * and then overwritten in place once all of the sections have been
+   * written and their offsets are known.</p>
+   *
+   * <p>If blockOut is not null, out is writing through it in
+   * compressed blocks.  In that case, the section table is written
+   * as a stored block of its own so that it can still be overwritten
+   * in place, and each section begins with a fresh block so that it
+   * can be read independently.</p>
+   *
+   * <p>Added at DBStore version 2.24.</p>
+   */
+
+  private void emitBaseSections(DataOutputStream out, FileOutputStream outStream,
+                                DBBlockOutputStream blockOut, DBStoreSnapshot snapshot) throws IOException
+  {
+    FileChannel channel = outStream.getChannel();
+    List<DBObjectBase> bases = snapshot.bases;
+    long[] offsets = new long[bases.size()];
+    long[] lengths = new long[bases.size()];
+    int[] counts = new int[bases.size()];
+    int[] maxids = snapshot.maxids;
+
+    /* -- */
+
+    out.writeShort(bases.size());
+    out.flush();
+
+    long tablePosition = channel.position();
+
+    ByteArrayOutputStream placeholderBytes = new ByteArrayOutputStream();
+    DataOutputStream placeholderOut = new DataOutputStream(placeholderBytes);
+
+    for (int i = 0; i < bases.size(); i++)
+      {
+        writeSectionEntry(placeholderOut, (short) 0, 0, 0, 0, 0);
+      }
+
+    placeholderOut.flush();
+
+    if (blockOut == null)
+      {
+        out.write(placeholderBytes.toByteArray());
+      }
+    else
+      {
+        blockOut.writeStoredBlock(placeholderBytes.toByteArray());
+      }
+
+    for (int i = 0; i < bases.size(); i++)
+      {
+        out.flush();
+        offsets[i] = channel.position();
+
+        for (DBObject object: snapshot.objects.get(i))
+          {
+            object.emit(out);
+            counts[i]++;
+          }
+
+        out.flush();
+        lengths[i] = channel.position() - offsets[i];
+      }
+
+    // now go back and fill in the section table
+
+    ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+    DataOutputStream tableOut = new DataOutputStream(tableBytes);
+
+    for (int i = 0; i < bases.size(); i++)
+      {
+        writeSectionEntry(tableOut, bases.get(i).getTypeID(), offsets[i], lengths[i], counts[i], maxids[i]);
+      }
+
+    tableOut.flush();
+
+    byte[] table = tableBytes.toByteArray();
+
+    if (blockOut != null)
+      {
+        table = DBBlockOutputStream.encodeBlock(table, 0, table.length, null);
+      }
+
+    ByteBuffer buffer = ByteBuffer.wrap(table);
+    long position = tablePosition;
+
+    while (buffer.hasRemaining())
+      {
+        position += channel.write(buffer, position);
+      }
+  }
+
+  private void writeSectionEntry(DataOutputStream out, short typeID, long offset, long length,
+                                 int count, int maxid) throws IOException
+  {
+    out.writeShort(typeID);
+    out.writeLong(offset);
+    out.writeLong(length);
+    out.writeInt(count);
+    out.writeInt(maxid);
+  }
+
+  /**
+   * <p>Reads the section table written by emitBaseSections() and
+   * loads the objects for each DBObjectBase in parallel, each from
+   * its own stream on the ganymede.db file.</p>
+   *
+   * <p>Each section is read through a stream that ends at the
+   * section's recorded length, and must be consumed exactly, so that
+   * a damaged section table or a truncated section is reported
+   * against the base it belongs to.</p>
+   *
+   * <p>Added at DBStore version 2.24.</p>
+   */
+
+  private void loadBaseSections(String filename, DataInputStream in) throws IOException
+  {
+    final String fileName = filename;
+    int sectionCount = in.readShort();
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(sectionCount);
+
+    /* -- */
+
+    for (int i = 0; i < sectionCount; i++)
+      {
+        short typeID = in.readShort();
+        final long offset = in.readLong();
+        final long length = in.readLong();
+        final int count = in.readInt();
+        final int maxid = in.readInt();
+
+        final DBObjectBase base = getObjectBase(typeID);
+
+        if (base == null)
+          {
+            // "DBStore.load(): ganymede.db section table refers to undefined object base {0,number,#}"
+            throw new IOException(ts.l("loadBaseSections.nobase", Integer.valueOf(typeID)));
+          }
+
+        // reserve every base's object numbers in the InvidTable
+        // before any of them are loaded, so that Invids pointing into
+        // a base that hasn't been loaded yet are still interned
+
+        invidTable.reserve(typeID, maxid);
+
+        tasks.add(new Callable<Object>() {
+            public Object call() throws IOException
+            {
+              FileInputStream sectionStream = new FileInputStream(fileName);
+              int leftOver;
+
+              try
+                {
+                  sectionStream.getChannel().position(offset);
+
+                  BufferedInputStream bufferedIn = new BufferedInputStream(new SectionInputStream(sectionStream, length));
+                  DataInputStream sectionIn = new DataInputStream(bufferedIn);
+                  DBBlockInputStream blockIn = null;
+
+                  if (file_compressed)
+                    {
+                      blockIn = new DBBlockInputStream(sectionIn, offset, offset + length);
+                      sectionIn = new DataInputStream(blockIn);
+                    }
+
+                  try
+                    {
+                      base.receiveObjects(sectionIn, count, maxid);
+                    }
+                  catch (IOException ex)
+                    {
+                      // "DBStore.load(): couldn''t read the ganymede.db section for object base {0}, recorded as {1,number,#} bytes at offset {2,number,#}: {3}"
+                      IOException wrapped = new IOException(ts.l("loadBaseSections.badsection", base.getName(),
+                                                                 Long.valueOf(length), Long.valueOf(offset), ex.toString()));
+                      wrapped.initCause(ex);
+
+                      throw wrapped;
+                    }
+
+                  leftOver = bufferedIn.available() + (blockIn == null ? 0 : blockIn.available());
+                }
+              finally
+                {
+                  sectionStream.close();
+                }
+
+              if (leftOver != 0)
+                {
+                  // "DBStore.load(): the ganymede.db section for object base {0} is recorded as {1,number,#} bytes, but {2,number,#} bytes were left unread"
+                  throw new IOException(ts.l("loadBaseSections.overlong", base.getName(),
+                                             Long.valueOf(length), Integer.valueOf(leftOver)));
+                }
+
+              return null;
+            }
+          });
+      }
+
+    int threadCount = Math.max(1, Math.min(sectionCount, Runtime.getRuntime().availableProcessors()));
+
+    // "DBStore.load(): loading {0,number,#} object bases with {1,number,#} threads"
+    debug(ts.l("loadBaseSections.loading", Integer.valueOf(sectionCount), Integer.valueOf(threadCount)));
+
+    ExecutorService loaderPool = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+        private int count = 0;
+
+        public synchronized Thread newThread(Runnable r)
+        {
+          return new Thread(r, "Ganymede DBStore Loader Thread " + (++count));
+        }
+      });
+
+    try
+      {
+        for (Future<Object> result: loaderPool.invokeAll(tasks))
+          {
+            try
+              {
+                result.get();
+              }
+            catch (ExecutionException ex)
+              {
+                Throwable cause = ex.getCause();
+
+                if (cause instanceof IOException)
+                  {
+                    throw (IOException) cause;
+                  }
+                else if (cause instanceof RuntimeException)
+                  {
+                    throw (RuntimeException) cause;
+                  }
+                else if (cause instanceof Error)
+                  {
+                    throw (Error) cause;
+                  }
+
+                throw new RuntimeException(cause);
+              }
+          }
+      }
+    catch (InterruptedException ex)
+      {
+        throw new RuntimeException(ex);
+      }
+    finally
+      {
+        loaderPool.shutdownNow();
+      }
+  }
+
+  /*----------------------------------------------------------------------------
+                                                                    inner class
+                                                              SectionInputStream
+  ----------------------------------------------------------------------------*/
+
+  /**
+   * <p>Reads no more than a ganymede.db section's recorded length
+   * from the underlying stream, reporting the end of the stream at
+   * the end of the section.</p>
+   */
+
+  private static final class SectionInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    /* -- */
+
+    SectionInputStream(InputStream in, long length)
+    {
+      super(in);
+      this.remaining = length;
+    }
+
+    public int read() throws IOException
+    {
+      if (remaining <= 0)
+        {
+          return -1;
+        }
+
+      int result = in.read();
+
+      if (result >= 0)
+        {
+          remaining--;
+        }
+
+      return result;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      if (remaining <= 0)
+        {
+          return -1;
+        }
+
+      int result = in.read(b, off, (int) Math.min(len, remaining));
+
+      if (result > 0)
+        {
+          remaining -= result;
+        }
+
+      return result;
+    }
+
+    public long skip(long n) throws IOException
+    {
+      long result = in.skip(Math.min(n, remaining));
+
+      remaining -= result;
+
+      return result;
+    }
+
+    /**
+     * <p>Returns the number of bytes left in the section, whether or
+     * not the underlying file actually holds them.</p>
+     */
+
+    public int available()
+    {
+      return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    public boolean markSupported()
+    {
+      return false;
+    }
+  }
+
   /**
    * <p>Loads the current Journal file.</p>
    *
@@ -747,12 +1196,43 @@ public final class DBStore implements JythonMap {
 
     if (!journal.isClean())
       {
+        // if we're doing a bulk replay, the journal files will just
+        // record the net effect of their transactions in replay, and
+        // we'll apply it all at once when we've read them all
+
+        DBJournalReplay replay = null;
+
+        if (Ganymede.journalBulkReplayProperty)
+          {
+            replay = new DBJournalReplay();
+          }
+
         try
           {
             journalLoading = true;
 
-            if (!journal.load())
+            // any closed journal segments hold transactions that
+            // come before the ones in the active journal file, and
+            // which may not yet have been folded into ganymede.db
+
+            if (journal.hasClosedSegments())
               {
+                // "DBStore.loadJournal(): loading transactions from closed journal segments"
+                debug(ts.l("loadJournal.segments"));
+
+                if (!journal.loadSegments(replay))
+                  {
+                    journalConsistent = false;
+
+                    System.err.println("\nError, couldn't load all closed journal segments.. " +
+                                       "final transaction in a segment not processed.\n");
+                  }
+              }
+
+            if (!journal.load(replay))
+              {
+                journalConsistent = false;
+
                 // if the journal wasn't in a totally consistent
                 // state, print out a warning.  we'll still
                 // continue to do everything we normally would,
@@ -761,14 +1241,25 @@ public final class DBStore implements JythonMap {
                                    "final transaction in journal not processed.\n");
               }
 
-            // update the DBObjectBase iterationSets, since the journal
-            // loading bypasses the transaction mechanism where this is
-            // normally done
+            if (replay != null)
+              {
+                replay.apply(this);
 
-            for (DBObjectBase base: objectBases.values())
+                Ganymede.debug(replay.getStatistics());
+              }
+            else
               {
-                base.updateIterationSet();
+                // update the DBObjectBase iterationSets, since the journal
+                // loading bypasses the transaction mechanism where this is
+                // normally done
+
+                for (DBObjectBase base: objectBases.values())
+                  {
+                    base.updateIterationSet();
+                  }
               }
+
+            rebuildView();
           }
         catch (IOException ex)
           {
@@ -814,12 +1305,6 @@ public final class DBStore implements JythonMap {
   public synchronized void dump(String filename, boolean releaseLock,
                                 boolean archiveIt) throws IOException, InterruptedException
   {
-    File dbFile = null;
-    FileOutputStream outStream = null;
-    BufferedOutputStream bufStream = null;
-    DataOutputStream out = null;
-
-    short namespaceCount;
     DBDumpLock lock = null;
 
     /* -- */
@@ -830,6 +1315,126 @@ public final class DBStore implements JythonMap {
     lock.establish("System");   // wait until we get our lock
     debug("DBStore: dump lock established");
 
+    try
+      {
+        writeDBFile(filename, archiveIt, new DBStoreSnapshot(this));
+
+        // if our thread was terminated above, we won't get here.  If
+        // we've got here, we had an ok dump, and we don't need to
+        // worry about the journal.. if it isn't truncated properly
+        // somebody can just remove it and ganymede will recover
+        // ok.
+        //
+        // we reset the journal before we release the dump lock, so
+        // that no transaction can be committed to the journal we
+        // are about to set aside after we captured the database.
+
+        if (journal != null)
+          {
+            journal.reset();        // ** sync **
+          }
+      }
+    finally
+      {
+        if (releaseLock)
+          {
+            if (lock != null)
+              {
+                debug("DBStore: releasing dump lock");
+                lock.release();
+              }
+          }
+      }
+
+    dumpCompleted();
+  }
+
+  /**
+   * <p>Dumps the database to disk without holding up committing
+   * transactions while ganymede.db is written.</p>
+   *
+   * <p>snapshotDump() holds a {@link
+   * arlut.csd.ganymede.server.DBDumpLock DBDumpLock} only long enough
+   * to capture a {@link arlut.csd.ganymede.server.DBStoreSnapshot
+   * DBStoreSnapshot} of the database and to close the active journal
+   * file as a journal segment with {@link
+   * arlut.csd.ganymede.server.DBJournal#closeSegment()}.
+   * Transactions committed while the snapshot is being written go
+   * into a fresh journal file, and the closed segments captured by
+   * the snapshot are retired once the new ganymede.db is safely in
+   * place.  If the server goes down before then, the segments will
+   * be replayed on startup.</p>
+   *
+   * <p>This is how the {@link
+   * arlut.csd.ganymede.server.journalCompactionTask
+   * journalCompactionTask} folds closed journal segments into
+   * ganymede.db.</p>
+   *
+   * <p>The dump is guaranteed to be transaction consistent.</p>
+   *
+   * @param filename Name of the database file to emit
+   * @param archiveIt If true, dump will create a zipped copy of the previously existing
+   *                  ganymede.db file in an 'old' directory under the location where
+   *                  ganymede.db is held.
+   */
+
+  public synchronized void snapshotDump(String filename, boolean archiveIt) throws IOException, InterruptedException
+  {
+    DBDumpLock lock = null;
+    DBStoreSnapshot snapshot = null;
+    int lastSegment;
+
+    /* -- */
+
+    if (journal == null)
+      {
+        dump(filename, true, archiveIt);
+        return;
+      }
+
+    debug("DBStore: Snapshot dumping");
+    lock = new DBDumpLock(this);
+    debug("DBStore: establishing dump lock");
+    lock.establish("System");   // wait until we get our lock
+    debug("DBStore: dump lock established");
+
+    try
+      {
+        snapshot = new DBStoreSnapshot(this);
+        lastSegment = journal.closeSegment();
+      }
+    finally
+      {
+        debug("DBStore: releasing dump lock");
+        lock.release();
+      }
+
+    writeDBFile(filename, archiveIt, snapshot);
+
+    journal.retireSegments(lastSegment);
+
+    dumpCompleted();
+  }
+
+  /**
+   * <p>Writes the contents of snapshot out to filename, archiving the
+   * previous version of the file first if archiveIt is true.  The
+   * new file is written to filename.new and then moved into place,
+   * with the previous version kept as filename.bak.</p>
+   */
+
+  private void writeDBFile(String filename, boolean archiveIt, DBStoreSnapshot snapshot) throws IOException
+  {
+    File dbFile = null;
+    FileOutputStream outStream = null;
+    BufferedOutputStream bufStream = null;
+    DataOutputStream out = null;
+    DBBlockOutputStream blockOut = null;
+
+    short namespaceCount;
+
+    /* -- */
+
     // Move the old version of the file to a backup
 
     try
@@ -894,24 +1499,48 @@ public final class DBStore implements JythonMap {
         out.writeUTF(id_string);
         out.writeByte(major_version);
         out.writeByte(minor_version);
-        out.writeInt(transactionNumber); // added in version 2.8
-        out.writeInt(Invid.getCount());  // added in version 2.9
 
-        namespaceCount = (short) nameSpaces.size();
+        // added in version 2.25
+
+        if (Ganymede.compressedFormatProperty)
+          {
+            out.writeByte(block_format);
+            out.flush();
+
+            blockOut = new DBBlockOutputStream(outStream);
+            out = new DataOutputStream(blockOut);
+          }
+        else
+          {
+            out.writeByte(raw_format);
+          }
+
+        out.writeInt(snapshot.transactionNumber); // added in version 2.8
+        out.writeInt(snapshot.invidCount);        // added in version 2.9
+
+        namespaceCount = (short) snapshot.nameSpaces.size();
         out.writeShort(namespaceCount);
 
-        for (DBNameSpace ns: nameSpaces)
+        for (int i = 0; i < namespaceCount; i++)
           {
-            ns.emit(out);
+            snapshot.nameSpaces.get(i).emit(out, snapshot.nameSpaceSizes[i]);
           }
 
-        rootCategory.emit(out); // writes out categories and bases
+        rootCategory.emit(out, false); // writes out categories and base definitions
+
+        emitBaseSections(out, outStream, blockOut, snapshot); // added in version 2.24
 
         out.flush();
         outStream.getFD().sync();
         out.close();
         out = null;
 
+        if (blockOut != null)
+          {
+            // "DBStore: wrote {0}: {1}"
+            debug(ts.l("writeDBFile.compressed", filename, blockOut.getStatistics()));
+          }
+
         if (dbFile.exists())
           {
             // ok, we've successfully dumped to ganymede.db.new.. move
@@ -947,15 +1576,6 @@ public final class DBStore implements JythonMap {
       }
     finally
       {
-        if (releaseLock)
-          {
-            if (lock != null)
-              {
-                debug("DBStore: releasing dump lock");
-                lock.release();
-              }
-          }
-
         if (out != null)
           {
             out.close();
@@ -971,18 +1591,14 @@ public final class DBStore implements JythonMap {
             outStream.close();
           }
       }
+  }
 
-    // if our thread was terminated above, we won't get here.  If
-    // we've got here, we had an ok dump, and we don't need to
-    // worry about the journal.. if it isn't truncated properly
-    // somebody can just remove it and ganymede will recover
-    // ok.
-
-    if (journal != null)
-      {
-        journal.reset();        // ** sync **
-      }
+  /**
+   * <p>Records the completion of a dump.</p>
+   */
 
+  private void dumpCompleted()
+  {
     GanymedeAdmin.updateLastDump(new Date());
 
     if (Ganymede.log != null)
@@ -1090,7 +1706,7 @@ public final class DBStore implements JythonMap {
   {
     XMLDumpContext xmlOut = null;
 
-    DBDumpLock lock = null;
+    DBStoreView view = null;
     DBNameSpace ns;
     SyncRunner syncConstraint = null;
     boolean includePlaintext = false;
@@ -1118,23 +1734,13 @@ public final class DBStore implements JythonMap {
             return;             // but see finally {} below for cleanup
           }
 
-        lock = new DBDumpLock(this);
+        // rather than holding a dump lock for the duration of the
+        // dump, we pin a read view to this thread.  We'll iterate
+        // over the bases as of that view, and any invid targets we
+        // look up through the DBStore or a DBSession while emitting
+        // will be resolved against the same view.
 
-        try
-          {
-            lock.establish("System");   // wait until we get our lock
-          }
-        catch (InterruptedException ex)
-          {
-            // "DBStore.dumpXML(): Interrupted waiting for dump lock:\n\n{0}"
-            Ganymede.debug(ts.l("dumpXML.interrupted", Ganymede.stackTrace(ex)));
-            throw new RuntimeException(ex);
-          }
-
-        if (false)
-          {
-            System.err.println("DBStore.dumpXML(): got dump lock");
-          }
+        view = pinView();
 
         if (dumpDataObjects && !dumpSchema && syncChannel != null)
           {
@@ -1191,7 +1797,7 @@ public final class DBStore implements JythonMap {
                 continue;
               }
 
-            for (DBObject x: base.getObjects())
+            for (DBObject x: view.getIterationSet(base.getTypeID()))
               {
                 if (xmlOut.mayInclude(x))
                   {
@@ -1217,9 +1823,9 @@ public final class DBStore implements JythonMap {
             System.err.println("DBStore.dumpXML(): finally!");
           }
 
-        if (lock != null)
+        if (view != null)
           {
-            lock.release();
+            unpinView();
           }
 
         if (xmlOut != null)
@@ -1418,6 +2024,149 @@ public final class DBStore implements JythonMap {
   public void finishSchemaEditCommit()
   {
     this.permObjectBases = null;
+    rebuildView();
+  }
+
+  /**
+   * <p>Returns the read view pinned to this thread, if any, or else
+   * the most recently published read view.</p>
+   */
+
+  DBStoreView getView()
+  {
+    DBStoreView view = pinnedView.get();
+
+    if (view != null)
+      {
+        return view;
+      }
+
+    view = currentView;
+
+    if (view != null)
+      {
+        return view;
+      }
+
+    synchronized (viewLock)
+      {
+        if (currentView == null)
+          {
+            currentView = new DBStoreView(0, objectBases.values());
+          }
+
+        return currentView;
+      }
+  }
+
+  /**
+   * <p>Publishes a new read view in which the given bases have their
+   * current iteration sets, and marks those bases and fields as
+   * changed.</p>
+   *
+   * <p>Called at the end of a commit, with the bases write locked
+   * and their iteration sets already updated.  The time stamps are
+   * set under the same monitor that pinView() uses, so that a
+   * builder task that pins a view can tell precisely which changes
+   * its view includes.</p>
+   */
+
+  void publishView(Collection<DBObjectBase> bases, Collection<DBObjectBaseField> fieldsTouched)
+  {
+    synchronized (viewLock)
+      {
+        for (DBObjectBase base: bases)
+          {
+            base.updateTimeStamp();
+          }
+
+        for (DBObjectBaseField fieldDef: fieldsTouched)
+          {
+            fieldDef.updateTimeStamp();
+          }
+
+        DBStoreView view = currentView;
+
+        if (view == null)
+          {
+            currentView = new DBStoreView(0, objectBases.values());
+          }
+        else
+          {
+            currentView = view.with(bases);
+          }
+      }
+  }
+
+  /**
+   * <p>Replaces the current read view with one built from every
+   * base's iteration set.  Only to be called when no transaction can
+   * be committing, as after loading or schema editing.</p>
+   *
+   * <p>Brings each base's field indexes up to date with the new
+   * view as well, since a schema edit may have changed which fields
+   * are indexed.</p>
+   */
+
+  void rebuildView()
+  {
+    for (DBObjectBase base: objectBases.values())
+      {
+        base.syncFieldIndexes();
+      }
+
+    synchronized (viewLock)
+      {
+        long version = (currentView == null) ? 0 : currentView.getVersion() + 1;
+
+        currentView = new DBStoreView(version, objectBases.values());
+      }
+  }
+
+  /**
+   * <p>Pins the current read view to the calling thread, so that
+   * object lookups made through this DBStore and through DBSession
+   * on this thread resolve against it until unpinView() is called.
+   * Lets builder tasks and XML dumps see a consistent point in time
+   * without a DBDumpLock.</p>
+   */
+
+  DBStoreView pinView()
+  {
+    DBStoreView view;
+
+    synchronized (viewLock)
+      {
+        pinnedView.remove();
+        view = getView();
+      }
+
+    pinnedView.set(view);
+
+    return view;
+  }
+
+  void unpinView()
+  {
+    pinnedView.remove();
+  }
+
+  /**
+   * <p>Returns the object with the given id from base, as of the read
+   * view pinned to this thread if there is one, or else from the
+   * base's live object table.</p>
+   */
+
+  DBObject lookupObject(DBObjectBase base, int objectID)
+  {
+    DBStoreView view = pinnedView.get();
+
+    if (view != null)
+      {
+        return view.getObject(base.getTypeID(), objectID);
+      }
+
+    return base.getObject(objectID);
   }
 
   /**
@@ -1470,6 +2219,26 @@ public final class DBStore implements JythonMap {
       }
   }
 
+  /**
+   * This method is used by the {@link
+   * arlut.csd.ganymede.server.DBJournalWriter DBJournalWriter} to
+   * put back the numbers of all of the transactions in a group commit
+   * batch that failed to reach the disk, leaving lastNumber, the
+   * number of the last transaction in the journal, as the most recent
+   * transaction number allocated.
+   */
+
+  public void resetTransactionNumber(int lastNumber)
+  {
+    synchronized (transactionNumberLock)
+      {
+        if (transactionNumber > lastNumber)
+          {
+            transactionNumber = lastNumber;
+          }
+      }
+  }
+
   /**
    * This method is used when reading journal entries to
    * bump up the transaction number.  If the nextNumber provided
@@ -1514,7 +2283,7 @@ public final class DBStore implements JythonMap {
 
   public DBObject getObject(Invid invid)
   {
-    return getObjectBase(invid.getType()).getObject(invid.getNum());
+    return lookupObject(getObjectBase(invid.getType()), invid.getNum());
   }
 
   /**
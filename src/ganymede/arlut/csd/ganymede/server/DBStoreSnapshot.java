@@ -0,0 +1,174 @@
+/*
+   GASH 2
+
+   DBStoreSnapshot.java
+
+   The GANYMEDE object storage system.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package arlut.csd.ganymede.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import arlut.csd.ganymede.common.Invid;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                 DBStoreSnapshot
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>A DBStoreSnapshot captures everything that {@link
+ * arlut.csd.ganymede.server.DBStore#dump(java.lang.String, boolean,
+ * boolean) DBStore.dump()} needs to write a transaction consistent
+ * ganymede.db file: the transaction number, the namespace sizes, and
+ * the iteration set of every {@link
+ * arlut.csd.ganymede.server.DBObjectBase DBObjectBase}.</p>
+ *
+ * <p>Committed {@link arlut.csd.ganymede.server.DBObject DBObjects}
+ * are never modified in place.  A commit replaces them in their
+ * DBObjectBase with new DBObjects and then swaps in a new iteration
+ * set, so the iteration set references captured here stay valid and
+ * unchanging no matter what commits happen afterwards.  That means
+ * the snapshot only needs to be captured while holding a {@link
+ * arlut.csd.ganymede.server.DBDumpLock DBDumpLock}, and the dump lock
+ * can be released before the snapshot is written to disk.</p>
+ */
+
+final class DBStoreSnapshot {
+
+  /**
+   * <p>The DBStore's transaction number at the time of the
+   * snapshot.</p>
+   */
+
+  final int transactionNumber;
+
+  /**
+   * <p>The number of Invids allocated at the time of the
+   * snapshot.</p>
+   */
+
+  final int invidCount;
+
+  /**
+   * <p>The DBNameSpaces registered in the DBStore.  The namespace
+   * definitions can only change during schema editing, which can't
+   * happen while we hold the DBStore monitor during a dump.</p>
+   */
+
+  final List<DBNameSpace> nameSpaces;
+
+  /**
+   * <p>The number of values registered in each of the nameSpaces at
+   * the time of the snapshot, in the same order.</p>
+   */
+
+  final int[] nameSpaceSizes;
+
+  /**
+   * <p>The DBObjectBases in the DBStore, in the order their sections
+   * will be written.</p>
+   */
+
+  final List<DBObjectBase> bases;
+
+  /**
+   * <p>The iteration set of each of the bases at the time of the
+   * snapshot, in the same order.</p>
+   */
+
+  final List<List<DBObject>> objects;
+
+  /**
+   * <p>The maximum object id allocated in each of the bases at the
+   * time of the snapshot, in the same order.</p>
+   */
+
+  final int[] maxids;
+
+  /* -- */
+
+  /**
+   * <p>Captures a snapshot of the given DBStore.  The caller must
+   * have a {@link arlut.csd.ganymede.server.DBDumpLock DBDumpLock}
+   * established on all bases in the store, so that no transaction is
+   * in the middle of committing.</p>
+   */
+
+  DBStoreSnapshot(DBStore store)
+  {
+    this.transactionNumber = store.getTransactionNumber();
+    this.invidCount = Invid.getCount();
+
+    synchronized (store.nameSpaces)
+      {
+        this.nameSpaces = Collections.unmodifiableList(new ArrayList<DBNameSpace>(store.nameSpaces));
+      }
+
+    this.nameSpaceSizes = new int[nameSpaces.size()];
+
+    for (int i = 0; i < nameSpaceSizes.length; i++)
+      {
+        nameSpaceSizes[i] = nameSpaces.get(i).getValueCount();
+      }
+
+    this.bases = store.getBases();
+    this.maxids = new int[bases.size()];
+
+    List<List<DBObject>> tmpObjects = new ArrayList<List<DBObject>>(bases.size());
+
+    for (int i = 0; i < bases.size(); i++)
+      {
+        DBObjectBase base = bases.get(i);
+
+        tmpObjects.add(base.getIterationSet());
+        maxids[i] = base.getMaxID();
+      }
+
+    this.objects = Collections.unmodifiableList(tmpObjects);
+  }
+}
@@ -0,0 +1,174 @@
+/*
+
+   DBStoreView.java
+
+   Consistent, point-in-time read view across all bases in the DBStore.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import arlut.csd.ganymede.common.Invid;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                     DBStoreView
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>An immutable, versioned view of the committed state of every
+ * {@link arlut.csd.ganymede.server.DBObjectBase DBObjectBase} in the
+ * {@link arlut.csd.ganymede.server.DBStore DBStore}, made up of each
+ * base's {@link arlut.csd.ganymede.server.DBIterationSet
+ * DBIterationSet} as of a single commit.</p>
+ *
+ * <p>Every commit publishes a new DBStoreView through {@link
+ * arlut.csd.ganymede.server.DBStore#publishView(java.util.Collection,java.util.Collection)
+ * DBStore.publishView()}.  The new view shares the iteration sets of
+ * all the bases the commit didn't touch with the previous view.
+ * Since publication is serialized and a commit's bases are all
+ * swapped in at once, a reader holding a DBStoreView sees every
+ * transaction either completely or not at all, across any number of
+ * bases, without taking a DBReadLock or DBDumpLock.</p>
+ *
+ * <p>Queries grab the current view for the duration of a single
+ * query.  Builder tasks and XML dumps pin a view to their thread
+ * with {@link arlut.csd.ganymede.server.DBStore#pinView()
+ * DBStore.pinView()}, so that object lookups made through the
+ * DBStore and DBSession resolve against the same point in time.</p>
+ */
+
+final class DBStoreView {
+
+  /**
+   * <p>Monotonically increasing version number, incremented with each
+   * publication.</p>
+   */
+
+  private final long version;
+
+  private final Map<Short, DBIterationSet> sets;
+
+  /* -- */
+
+  /**
+   * <p>Creates a view of the current iteration sets of all of the
+   * given bases.  Should only be used when no commits can be in
+   * progress, as at startup or the end of schema editing.</p>
+   */
+
+  DBStoreView(long version, Collection<DBObjectBase> bases)
+  {
+    this.version = version;
+    this.sets = new HashMap<Short, DBIterationSet>(bases.size() * 2);
+
+    for (DBObjectBase base: bases)
+      {
+        sets.put(Short.valueOf(base.getTypeID()), base.getIterationSnapshot());
+      }
+  }
+
+  private DBStoreView(long version, Map<Short, DBIterationSet> sets)
+  {
+    this.version = version;
+    this.sets = sets;
+  }
+
+  /**
+   * <p>Returns a new view in which the iteration sets of the given
+   * bases are replaced by their current ones.  The caller must have
+   * those bases write locked, so that their iteration sets reflect
+   * exactly the transaction being published.</p>
+   */
+
+  DBStoreView with(Collection<DBObjectBase> bases)
+  {
+    Map<Short, DBIterationSet> newSets = new HashMap<Short, DBIterationSet>(this.sets);
+
+    for (DBObjectBase base: bases)
+      {
+        newSets.put(Short.valueOf(base.getTypeID()), base.getIterationSnapshot());
+      }
+
+    return new DBStoreView(version + 1, newSets);
+  }
+
+  public long getVersion()
+  {
+    return version;
+  }
+
+  /**
+   * <p>Returns the objects in the base with the given type id as of
+   * this view.</p>
+   */
+
+  public DBIterationSet getIterationSet(short typeID)
+  {
+    DBIterationSet set = sets.get(Short.valueOf(typeID));
+
+    return (set == null) ? DBIterationSet.EMPTY : set;
+  }
+
+  /**
+   * <p>Returns the object with the given type and id as of this view,
+   * or null if it did not exist.</p>
+   */
+
+  public DBObject getObject(short typeID, int objectID)
+  {
+    DBIterationSet set = sets.get(Short.valueOf(typeID));
+
+    return (set == null) ? null : set.getByID(objectID);
+  }
+
+  public DBObject getObject(Invid invid)
+  {
+    return getObject(invid.getType(), invid.getNum());
+  }
+}
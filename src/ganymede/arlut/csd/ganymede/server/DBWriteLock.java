@@ -50,8 +50,6 @@
 
 package arlut.csd.ganymede.server;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /*------------------------------------------------------------------------------
@@ -79,6 +77,15 @@ import java.util.List;
  * scrupulous about releasing the lock in a timely fashion once the
  * appropriate changes are made in the database.</p>
  *
+ * <p>A DBWriteLock may also be created in shared mode, for committing
+ * a transaction whose objects and namespace values are already held
+ * exclusively by its {@link arlut.csd.ganymede.server.DBEditSet
+ * DBEditSet}.  A shared DBWriteLock keeps out readers, dumpers and
+ * exclusive writers, but may be held on a DBObjectBase by any number
+ * of shared DBWriteLocks at once, so that transactions that changed
+ * different objects in the same DBObjectBase can commit
+ * concurrently.</p>
+ *
  * @see arlut.csd.ganymede.server.DBEditSet
  * @see arlut.csd.ganymede.server.DBObjectBase
  */
@@ -116,6 +123,13 @@ public final class DBWriteLock extends DBLock {
 
   private List<DBObjectBase> baseSet;
 
+  /**
+   * If true, this lock may be held on its bases at the same time as
+   * other shared DBWriteLocks.
+   */
+
+  private final boolean shared;
+
   /**
    * Constructor to get a write lock on all the object bases
    */
@@ -124,7 +138,8 @@ public final class DBWriteLock extends DBLock {
   {
     super(store.lockSync);
 
-    this.baseSet = Collections.unmodifiableList(new ArrayList(store.getBases()));
+    this.baseSet = orderBases(store.getBases());
+    this.shared = false;
   }
 
   /**
@@ -133,10 +148,30 @@ public final class DBWriteLock extends DBLock {
    */
 
   public DBWriteLock(DBStore store, List<DBObjectBase> baseSet)
+  {
+    this(store, baseSet, false);
+  }
+
+  /**
+   * Constructor to get an exclusive or shared write lock on a subset
+   * of the server's object bases.
+   */
+
+  public DBWriteLock(DBStore store, List<DBObjectBase> baseSet, boolean shared)
   {
     super(store.lockSync);
 
-    this.baseSet = Collections.unmodifiableList(new ArrayList(baseSet));
+    this.baseSet = orderBases(baseSet);
+    this.shared = shared;
+  }
+
+  /**
+   * Returns true if this is a shared write lock.
+   */
+
+  public final boolean isShared()
+  {
+    return this.shared;
   }
 
   /**
@@ -166,6 +201,11 @@ public final class DBWriteLock extends DBLock {
     return this.abort;
   }
 
+  @Override final int getLockKind()
+  {
+    return shared ? DBLockStats.COMMIT : DBLockStats.WRITE;
+  }
+
   /**
    * Returns immutable list of DBObjectBases that this lock is meant
    * to cover.
@@ -190,8 +230,8 @@ public final class DBWriteLock extends DBLock {
 
   /**
    * <p>A thread that calls establish() will be suspended (waiting on
-   * the server's {@link arlut.csd.ganymede.server.DBLockSync
-   * DBLockSync} until all DBObjectBases listed in this DBWriteLock's
+   * a Condition of the server's {@link arlut.csd.ganymede.server.DBLockSync
+   * DBLockSync}) until all DBObjectBases listed in this DBWriteLock's
    * constructor are available to be locked.  At that point, the
    * thread blocking on establish() will wake up possessing an
    * exclusive write lock on the requested DBObjectBases.</p>
@@ -221,6 +261,7 @@ public final class DBWriteLock extends DBLock {
   {
     boolean waiting = false;
     boolean okay = false;
+    DBObjectBase blocker = null;
 
     /* -- */
 
@@ -231,13 +272,17 @@ public final class DBWriteLock extends DBLock {
         Ganymede.printCallStack();
       }
 
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         if (!lockSync.claimLockKey(key, this))
           {
             throw new InterruptedException("DBWriteLock.establish(" + key + "): error, lock already held for key");
           }
 
+        noteRequested(key);
+
         try
           {
             lockSync.incLocksWaitingCount();
@@ -305,13 +350,14 @@ public final class DBWriteLock extends DBLock {
                           }
 
                         okay = false;
+                        blocker = base;
                         break;
                       }
                   }
 
                 if (!okay)
                   {
-                    lockSync.wait(2500);
+                    lockSync.await(this, blocker);
                   }
               }
 
@@ -334,7 +380,7 @@ public final class DBWriteLock extends DBLock {
 
             if (debug) debug("establish() added ourselves to the writerList");
 
-            // spinwait until we can get into all of the ObjectBases
+            // wait until we can get into all of the ObjectBases
             // note that since we added ourselves to the writer
             // queues, we know that any new dump or read locks will
             // wait until we finish.. at this point, we're just
@@ -344,7 +390,7 @@ public final class DBWriteLock extends DBLock {
 
             while (!okay)
               {
-                if (debug) debug("establish() spinning");
+                if (debug) debug("establish() checking bases");
 
                 if (this.abort)
                   {
@@ -358,10 +404,14 @@ public final class DBWriteLock extends DBLock {
 
                 for (DBObjectBase base: baseSet)
                   {
-                    // writers are exclusive.. if any lock of any kind
-                    // is asserted, we can't play
-
-                    if (base.isLocked())
+                    // exclusive writers can't play if any lock of any
+                    // kind is asserted, and wait their turn behind any
+                    // writer that queued up on this base before they
+                    // did.  shared writers can play alongside other
+                    // shared writers, and only wait for exclusive
+                    // writers ahead of them
+
+                    if (shared ? isBlockedShared(base) : (base.isLocked() || !base.isFirstWaitingWriter(this)))
                       {
                         if (debug)
                           {
@@ -377,16 +427,21 @@ public final class DBWriteLock extends DBLock {
                               {
                                 debug("establish() waiting for writer to release");
                               }
+                            else
+                              {
+                                debug("establish() waiting for earlier writer to establish");
+                              }
                           }
 
                         okay = false;
+                        blocker = base;
                         break;
                       }
                   }
 
                 if (!okay)
                   {
-                    lockSync.wait(2500);
+                    lockSync.await(this, blocker);
                     continue;
                   }
 
@@ -394,15 +449,24 @@ public final class DBWriteLock extends DBLock {
 
                 for (DBObjectBase base: baseSet)
                   {
-                    base.setWriteLock(this);
+                    if (shared)
+                      {
+                        base.addSharedWriter(this);
+                      }
+                    else
+                      {
+                        base.setWriteLock(this);
+                      }
                   }
 
                 this.locked = true;
+                noteGranted();
                 lockSync.incLockCount();
               }
           }
         finally
           {
+            lockSync.dequeue(this);
             lockSync.decLocksWaitingCount();
 
             this.inEstablish = false;
@@ -417,17 +481,33 @@ public final class DBWriteLock extends DBLock {
 
             if (!this.locked)
               {
+                noteFailed();
                 lockSync.unclaimLockKey(key, this);
                 this.key = null;
               }
 
-            lockSync.notifyAll();
+            this.settled.signalAll();
           }
       }
+    finally
+      {
+        lockSync.unlock();
+      }
 
     if (debug) debug("establish() got the lock.");
   }
 
+  /**
+   * Returns true if a shared write lock can't yet be granted on
+   * base.  Must be called while holding the DBLockSync mutex.
+   */
+
+  private boolean isBlockedShared(DBObjectBase base)
+  {
+    return !base.isReaderEmpty() || !base.isDumpLockListEmpty() ||
+      base.isWriteInProgress() || base.hasExclusiveWriterAhead(this);
+  }
+
   /**
    * Release this lock on all bases locked
    */
@@ -440,7 +520,9 @@ public final class DBWriteLock extends DBLock {
         Ganymede.printCallStack();
       }
 
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         // if we are trying to force this lock to go away on behalf of
         // a thread distinct from the locking thread, we have to wait
@@ -450,13 +532,7 @@ public final class DBWriteLock extends DBLock {
           {
             if (debug) debug("release() waiting for inEstablish");
 
-            try
-              {
-                lockSync.wait(2500);
-              }
-            catch (InterruptedException ex)
-              {
-              }
+            this.settled.awaitUninterruptibly();
           }
 
         // note that we have to check locked here or else we might
@@ -469,9 +545,18 @@ public final class DBWriteLock extends DBLock {
             return;
           }
 
+        noteReleased();
+
         for (DBObjectBase base: baseSet)
           {
-            base.clearWriteLock(this);
+            if (shared)
+              {
+                base.removeSharedWriter(this);
+              }
+            else
+              {
+                base.clearWriteLock(this);
+              }
           }
 
         this.locked = false;
@@ -482,7 +567,10 @@ public final class DBWriteLock extends DBLock {
         this.key = null;        // gc
 
         lockSync.decLockCount();
-        lockSync.notifyAll();   // many readers may want in
+      }
+    finally
+      {
+        lockSync.unlock();
       }
   }
 
@@ -501,12 +589,19 @@ public final class DBWriteLock extends DBLock {
 
   @Override public final void abort()
   {
-    synchronized (lockSync)
+    lockSync.lock();
+
+    try
       {
         if (debug) debug("abort() aborting");
         abort = true;
+        lockSync.signal(this);  // wake establish() if it is waiting
         release();              // blocks
       }
+    finally
+      {
+        lockSync.unlock();
+      }
   }
 
   private void debug(Object key, String message)
@@ -87,7 +87,6 @@ import arlut.csd.ganymede.common.BaseListTransport;
 import arlut.csd.ganymede.common.CategoryTransport;
 import arlut.csd.ganymede.common.ClientMessage;
 import arlut.csd.ganymede.common.Invid;
-import arlut.csd.ganymede.common.InvidPool;
 import arlut.csd.ganymede.common.NotLoggedInException;
 import arlut.csd.ganymede.common.ReturnVal;
 import arlut.csd.ganymede.common.scheduleHandle;
@@ -346,6 +345,204 @@ public final class Ganymede {
   static private boolean cracklibEnabled = false;
   static private String cracklibDirectoryProperty = null;
 
+  /**
+   * <p>If the ganymede.journal.groupcommit property is set to true,
+   * the {@link arlut.csd.ganymede.server.DBJournal DBJournal} will
+   * sync concurrently committing transactions to disk in batches
+   * through a background {@link
+   * arlut.csd.ganymede.server.DBJournalWriter DBJournalWriter}
+   * thread.</p>
+   */
+
+  static public boolean journalGroupCommitProperty = false;
+
+  /**
+   * <p>The maximum number of milliseconds that the journal writer
+   * will wait for other transactions to join a group commit batch
+   * before syncing, taken from the ganymede.journal.batchdelay
+   * property.</p>
+   */
+
+  static public int journalBatchDelayProperty = 0;
+
+  /**
+   * <p>If greater than zero, the {@link
+   * arlut.csd.ganymede.server.DBJournal DBJournal} will close its
+   * active file as a journal segment once it grows to this many
+   * bytes, taken from the ganymede.journal.segmentsize
+   * property.</p>
+   */
+
+  static public long journalSegmentSizeProperty = 0;
+
+  /**
+   * <p>If the ganymede.journal.bulkreplay property is set to true,
+   * the journal is replayed at startup by computing the net final
+   * state of each object it touches and applying those states all at
+   * once, rather than applying each transaction in turn.</p>
+   */
+
+  static public boolean journalBulkReplayProperty = false;
+
+  /**
+   * <p>If greater than zero, the {@link
+   * arlut.csd.ganymede.server.DBJournal DBJournal} will close its
+   * active file as a journal segment once it holds this many
+   * transactions, taken from the ganymede.journal.segmenttransactions
+   * property.</p>
+   */
+
+  static public int journalSegmentTransactionsProperty = 0;
+
+  /**
+   * <p>If the ganymede.snapshotdump property is set to true, the
+   * periodic {@link arlut.csd.ganymede.server.dumpTask dumpTask} and
+   * {@link arlut.csd.ganymede.server.dumpAndArchiveTask
+   * dumpAndArchiveTask} will use {@link
+   * arlut.csd.ganymede.server.DBStore#snapshotDump(java.lang.String,
+   * boolean) DBStore.snapshotDump()}, which only blocks committing
+   * transactions while the database is captured in memory, rather
+   * than for the entire time it takes to write ganymede.db.</p>
+   */
+
+  static public boolean snapshotDumpProperty = false;
+
+  /**
+   * <p>If the ganymede.compressedformat property is set to true, the
+   * ganymede.db file and new journal files will be written in
+   * compressed blocks, each protected by a CRC32 checksum.  See
+   * {@link arlut.csd.ganymede.server.DBBlockOutputStream
+   * DBBlockOutputStream}.</p>
+   */
+
+  static public boolean compressedFormatProperty = false;
+
+  /**
+   * <p>If the ganymede.compactobjects property is set to true, the
+   * objects loaded from ganymede.db will hold their field values in
+   * packed columns, materializing their DBFields only when they are
+   * asked for.  See {@link arlut.csd.ganymede.server.DBFieldColumns
+   * DBFieldColumns}.</p>
+   */
+
+  static public boolean compactObjectsProperty = false;
+
+  /**
+   * <p>If the ganymede.snapshotbuilds property is set to true, builder
+   * tasks will run their builderPhase1() methods against a pinned
+   * {@link arlut.csd.ganymede.server.DBStoreView DBStoreView} read
+   * view rather than under a DBDumpLock, so that transactions can
+   * continue to commit while builds are scanning the database.</p>
+   */
+
+  static public boolean snapshotBuildsProperty = false;
+
+  /**
+   * <p>If the ganymede.concurrentcommits property is set to true,
+   * transactions will commit under shared {@link
+   * arlut.csd.ganymede.server.DBWriteLock DBWriteLock}s, so that
+   * transactions that changed different objects in the same
+   * DBObjectBase can commit at the same time.  Objects and namespace
+   * values are already held exclusively by the transaction that
+   * checked them out, so only schema edits, dumps and readers need
+   * to be kept off of the bases during commit.</p>
+   */
+
+  static public boolean concurrentCommitsProperty = false;
+
+  /**
+   * <p>If the ganymede.optimisticcommits property is set to true,
+   * transactions will run their namespace verification and
+   * commitPhase1() checks before taking the write lock for commit,
+   * recording the objects, bases, and namespace values those checks
+   * look at.  The checks are
+   * repeated under the write lock only if a concurrent commit changed
+   * something they looked at.</p>
+   */
+
+  static public boolean optimisticCommitsProperty = false;
+
+  /**
+   * <p>The maximum number of threads that a committing transaction
+   * will use to write to incremental sync channels in parallel, taken
+   * from the ganymede.syncchannelthreads property.  If one or less,
+   * sync channels are written one at a time by the committing
+   * thread.</p>
+   *
+   * <p>Custom code run while a sync channel is being written, such
+   * as DBEditObject.getForeignSyncKeys() or a SyncMaster, must not
+   * call synchronized GanymedeSession methods such as query() when
+   * this is greater than one, as the committing thread holds the
+   * GanymedeSession's monitor while it waits for the sync channel
+   * threads to finish.</p>
+   */
+
+  static public int syncChannelThreadsProperty = 1;
+
+  /**
+   * <p>If the ganymede.asynclog property is set to true, the logging
+   * and mail notification for committed transactions will be done in
+   * transaction order by a {@link
+   * arlut.csd.ganymede.server.DBLogPipeline DBLogPipeline} thread,
+   * after the transaction's commit has returned to the client.</p>
+   */
+
+  static public boolean asyncLogProperty = false;
+
+  /**
+   * <p>The number of committed transactions that may be waiting for
+   * the {@link arlut.csd.ganymede.server.DBLogPipeline DBLogPipeline}
+   * before further commits must wait for it to catch up, taken from
+   * the ganymede.logqueuesize property.</p>
+   */
+
+  static public int logQueueSizeProperty = 256;
+
+  /**
+   * <p>If greater than zero, the {@link
+   * arlut.csd.ganymede.server.DBLogFileController DBLogFileController}
+   * will gather up log entries in memory until it has this many
+   * characters ready to write, rather than writing each entry to the
+   * log file as it is made.  Taken from the ganymede.logbatchsize
+   * property.</p>
+   */
+
+  static public int logBatchSizeProperty = 0;
+
+  /**
+   * <p>If ganymede.logbatchsize is set, this is the maximum number of
+   * milliseconds that a log entry may be held in memory before it is
+   * written to the log file, taken from the ganymede.logbatchmillis
+   * property.</p>
+   */
+
+  static public int logBatchMillisProperty = 1000;
+
+  /**
+   * <p>The number of worker threads shared by all sessions for
+   * scanning large object bases in parallel when answering queries,
+   * taken from the ganymede.querythreads property.  If zero, every
+   * query is answered by the thread that issued it alone.</p>
+   */
+
+  static public int queryThreadsProperty = 0;
+
+  /**
+   * <p>The most worker threads that any one query may use at once,
+   * alongside the thread that issued it, taken from the
+   * ganymede.querysessionthreads property.</p>
+   */
+
+  static public int querySessionThreadsProperty = 4;
+
+  /**
+   * <p>The fewest objects that a query must examine before it will
+   * be scanned in parallel, taken from the ganymede.queryparallelsize
+   * property.</p>
+   */
+
+  static public int queryParallelSizeProperty = 10000;
+
   /**
    * <p>If the ganymede.bugaddress property is set, that string will
    * be copied into this variable.  It should be an email address to
@@ -761,6 +958,219 @@ public final class Ganymede {
           }
       }
 
+    String groupCommitString = System.getProperty("ganymede.journal.groupcommit");
+
+    if (groupCommitString != null && groupCommitString.equalsIgnoreCase("true"))
+      {
+        journalGroupCommitProperty = true;
+      }
+
+    String bulkReplayString = System.getProperty("ganymede.journal.bulkreplay");
+
+    if (bulkReplayString != null && bulkReplayString.equalsIgnoreCase("true"))
+      {
+        journalBulkReplayProperty = true;
+      }
+
+    String segmentSizeString = System.getProperty("ganymede.journal.segmentsize");
+
+    if (segmentSizeString != null && !segmentSizeString.equals(""))
+      {
+        try
+          {
+            journalSegmentSizeProperty = java.lang.Long.parseLong(segmentSizeString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.journal.segmentsize property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_segmentsize", segmentSizeString));
+          }
+      }
+
+    String segmentTransString = System.getProperty("ganymede.journal.segmenttransactions");
+
+    if (segmentTransString != null && !segmentTransString.equals(""))
+      {
+        try
+          {
+            journalSegmentTransactionsProperty = java.lang.Integer.parseInt(segmentTransString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.journal.segmenttransactions property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_segmenttransactions", segmentTransString));
+          }
+      }
+
+    String snapshotDumpString = System.getProperty("ganymede.snapshotdump");
+
+    if (snapshotDumpString != null && snapshotDumpString.equalsIgnoreCase("true"))
+      {
+        snapshotDumpProperty = true;
+      }
+
+    String compressedFormatString = System.getProperty("ganymede.compressedformat");
+
+    if (compressedFormatString != null && compressedFormatString.equalsIgnoreCase("true"))
+      {
+        compressedFormatProperty = true;
+      }
+
+    String compactObjectsString = System.getProperty("ganymede.compactobjects");
+
+    if (compactObjectsString != null && compactObjectsString.equalsIgnoreCase("true"))
+      {
+        compactObjectsProperty = true;
+      }
+
+    String snapshotBuildsString = System.getProperty("ganymede.snapshotbuilds");
+
+    if (snapshotBuildsString != null && snapshotBuildsString.equalsIgnoreCase("true"))
+      {
+        snapshotBuildsProperty = true;
+      }
+
+    String concurrentCommitsString = System.getProperty("ganymede.concurrentcommits");
+
+    if (concurrentCommitsString != null && concurrentCommitsString.equalsIgnoreCase("true"))
+      {
+        concurrentCommitsProperty = true;
+      }
+
+    String syncChannelThreadsString = System.getProperty("ganymede.syncchannelthreads");
+
+    if (syncChannelThreadsString != null && !syncChannelThreadsString.equals(""))
+      {
+        try
+          {
+            syncChannelThreadsProperty = java.lang.Integer.parseInt(syncChannelThreadsString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.syncchannelthreads property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_syncchannelthreads", syncChannelThreadsString));
+          }
+      }
+
+    String asyncLogString = System.getProperty("ganymede.asynclog");
+
+    if (asyncLogString != null && asyncLogString.equalsIgnoreCase("true"))
+      {
+        asyncLogProperty = true;
+      }
+
+    String logQueueSizeString = System.getProperty("ganymede.logqueuesize");
+
+    if (logQueueSizeString != null && !logQueueSizeString.equals(""))
+      {
+        try
+          {
+            logQueueSizeProperty = java.lang.Integer.parseInt(logQueueSizeString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.logqueuesize property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_logqueuesize", logQueueSizeString));
+          }
+      }
+
+    String logBatchSizeString = System.getProperty("ganymede.logbatchsize");
+
+    if (logBatchSizeString != null && !logBatchSizeString.equals(""))
+      {
+        try
+          {
+            logBatchSizeProperty = java.lang.Integer.parseInt(logBatchSizeString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.logbatchsize property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_logbatchsize", logBatchSizeString));
+          }
+      }
+
+    String logBatchMillisString = System.getProperty("ganymede.logbatchmillis");
+
+    if (logBatchMillisString != null && !logBatchMillisString.equals(""))
+      {
+        try
+          {
+            logBatchMillisProperty = java.lang.Integer.parseInt(logBatchMillisString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.logbatchmillis property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_logbatchmillis", logBatchMillisString));
+          }
+      }
+
+    String queryThreadsString = System.getProperty("ganymede.querythreads");
+
+    if (queryThreadsString != null && !queryThreadsString.equals(""))
+      {
+        try
+          {
+            queryThreadsProperty = java.lang.Integer.parseInt(queryThreadsString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.querythreads property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_querythreads", queryThreadsString));
+          }
+      }
+
+    String querySessionThreadsString = System.getProperty("ganymede.querysessionthreads");
+
+    if (querySessionThreadsString != null && !querySessionThreadsString.equals(""))
+      {
+        try
+          {
+            querySessionThreadsProperty = java.lang.Integer.parseInt(querySessionThreadsString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.querysessionthreads property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_querysessionthreads", querySessionThreadsString));
+          }
+      }
+
+    String queryParallelSizeString = System.getProperty("ganymede.queryparallelsize");
+
+    if (queryParallelSizeString != null && !queryParallelSizeString.equals(""))
+      {
+        try
+          {
+            queryParallelSizeProperty = java.lang.Integer.parseInt(queryParallelSizeString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.queryparallelsize property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_queryparallelsize", queryParallelSizeString));
+          }
+      }
+
+    String optimisticCommitsString = System.getProperty("ganymede.optimisticcommits");
+
+    if (optimisticCommitsString != null && optimisticCommitsString.equalsIgnoreCase("true"))
+      {
+        optimisticCommitsProperty = true;
+      }
+
+    String batchDelayString = System.getProperty("ganymede.journal.batchdelay");
+
+    if (batchDelayString != null && !batchDelayString.equals(""))
+      {
+        try
+          {
+            journalBatchDelayProperty = java.lang.Integer.parseInt(batchDelayString);
+          }
+        catch (NumberFormatException ex)
+          {
+            // "Could not parse ganymede.journal.batchdelay property: {0}"
+            throw new GanymedeStartupException(ts.l("loadProperties.no_parse_batchdelay", batchDelayString));
+          }
+      }
+
     if (dbFilename == null)
       {
         // "Couldn''t get the ganymede.database property"
@@ -1096,7 +1506,7 @@ public final class Ganymede {
 
     firstrun = true;
 
-    Invid.setAllocator(new InvidPool());
+    Invid.setAllocator(db.invidTable);
 
     // "No DBStore exists under filename {0}, not loading"
     debug(ts.l("main.info_new_dbstore", dbFilename));
@@ -1203,14 +1613,14 @@ public final class Ganymede {
       {
         if (mailLogProperty != null && !mailLogProperty.equals(""))
           {
-            log = new DBLog(new DBLogFileController(logProperty),
-                            new DBLogFileController(mailLogProperty),
+            log = new DBLog(new DBLogFileController(logProperty, logBatchSizeProperty, logBatchMillisProperty),
+                            new DBLogFileController(mailLogProperty, logBatchSizeProperty, logBatchMillisProperty),
                             internalSession,
                             suppressEmail);
           }
         else
           {
-            log = new DBLog(new DBLogFileController(logProperty),
+            log = new DBLog(new DBLogFileController(logProperty, logBatchSizeProperty, logBatchMillisProperty),
                             null,
                             internalSession,
                             suppressEmail);
@@ -1298,6 +1708,14 @@ public final class Ganymede {
 
             db.journal.clearIncompleteTransaction();
           }
+
+        // if we loaded a segmented journal at startup without
+        // coalescing it, fold it into ganymede.db now that we're up
+
+        if (db.journal.isSegmented() && !db.journal.isClean())
+          {
+            runJournalCompaction();
+          }
       }
     catch (NotLoggedInException ex)
       {
@@ -1968,6 +2386,31 @@ public final class Ganymede {
 
     scheduler.addActionOnDemand(new GanymedeValidationTask(),
                                 ts.l("registerTasks.validation_task"));
+
+    // and if the journal is segmented, the task that folds closed
+    // journal segments into ganymede.db
+
+    if (db.journal.isSegmented())
+      {
+        scheduler.addActionOnDemand(new journalCompactionTask(),
+                                    ts.l("registerTasks.compaction_task"));
+      }
+  }
+
+  /**
+   * <p>This method schedules the journal compaction task for
+   * execution, if the journal is segmented and the scheduler is
+   * running.  This method is called by the {@link
+   * arlut.csd.ganymede.server.DBJournal DBJournal} whenever it closes
+   * a journal segment.</p>
+   */
+
+  static public void runJournalCompaction()
+  {
+    if (scheduler != null)
+      {
+        scheduler.demandTask(ts.l("registerTasks.compaction_task"));
+      }
   }
 
   /**
@@ -1537,12 +1537,14 @@ final class GanymedeAdmin implements adminSession, Unreferenced {
     // being guarded by the loginSemaphore, but there is little cost
     // in sync'ing here.
 
-    // All the DBLock establish methods synchronize on the DBLockSync
-    // object referenced by Ganymede.db.lockSync, so we are safe
-    // against lock establish race conditions by synchronizing this
-    // section on Ganymede.db.lockSync.
+    // All the DBLock establish methods hold the mutex of the
+    // DBLockSync object referenced by Ganymede.db.lockSync, so we are
+    // safe against lock establish race conditions by holding that
+    // mutex through this section.
 
-    synchronized (Ganymede.db.lockSync)
+    Ganymede.db.lockSync.lock();
+
+    try
       {
         // "Admin console {0} entering editSchema synchronization block."
         Ganymede.debug(ts.l("editSchema.synchronizing", this.toString()));
@@ -1573,7 +1575,7 @@ final class GanymedeAdmin implements adminSession, Unreferenced {
 
             // we've created our copy of all of our DBObjectBase and
             // DBObjectBaseField objects above.  We're going to return
-            // and drop the synchronization on Ganymede.db.lockSync.
+            // and drop the Ganymede.db.lockSync mutex.
 
             return result;
           }
@@ -1583,6 +1585,10 @@ final class GanymedeAdmin implements adminSession, Unreferenced {
             return null;
           }
       }
+    finally
+      {
+        Ganymede.db.lockSync.unlock();
+      }
   }
 
   /**
@@ -1604,6 +1610,21 @@ final class GanymedeAdmin implements adminSession, Unreferenced {
     return Ganymede.log.retrieveHistory(null, startDate, null, false, false, true).toString();
   }
 
+  /**
+   * <p>Retrieves a multi-line String describing the database locks
+   * currently held and waiting in the server, which locks the
+   * waiting locks are blocked behind, and wait and hold time
+   * statistics for each object base since the server was
+   * started.</p>
+   *
+   * @see arlut.csd.ganymede.rmi.adminSession
+   */
+
+  public String getLockReport()
+  {
+    return Ganymede.db.lockSync.getLockReport(Ganymede.db.bases());
+  }
+
   /**
    * <p>Return the Invid of the admin who is logged into this console.</p>
    */
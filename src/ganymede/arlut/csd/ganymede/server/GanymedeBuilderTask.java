@@ -59,6 +59,7 @@ import java.io.PrintWriter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.GregorianCalendar;
@@ -153,7 +154,11 @@ import arlut.csd.ganymede.common.SchemaConstants;
  * Ganymede in-memory database and write out some text files, this
  * usually doesn't take very long.  If you find that your
  * builderPhase1() method is taking too long, you may want to consider
- * splitting your build into multiple builder tasks.  The
+ * setting the ganymede.snapshotbuilds property, which runs
+ * builderPhase1() against a pinned {@link
+ * arlut.csd.ganymede.server.DBStoreView DBStoreView} read view
+ * instead of a dump lock, or splitting your build into multiple
+ * builder tasks.  The
  * GanymedeBuilderTask is designed so that the server can execute
  * multiple distinct builder tasks concurrently.  Splitting your build
  * into multiple pieces that can be run concurrently can also improve
@@ -263,6 +268,13 @@ public abstract class GanymedeBuilderTask implements Runnable {
   GanymedeSession session = null;
   DBDumpLock lock;
 
+  /**
+   * The read view pinned for builderPhase1() when running with
+   * ganymede.snapshotbuilds, in place of the dump lock.
+   */
+
+  DBStoreView view;
+
   /**
    * A list of options that were defined on this GanymedeBuilderTask.
    */
@@ -383,38 +395,37 @@ public abstract class GanymedeBuilderTask implements Runnable {
 
             session = new GanymedeSession("builder:");
 
-            try
+            if (Ganymede.snapshotBuildsProperty)
               {
-                lock = session.getDBSession().openDumpLock();
-              }
-            catch (InterruptedException ex)
-              {
-                // "Could not run task {0}, couldn''t get dump lock."
-                Ganymede.debug(ts.l("run.failed_lock_acquisition", this.getClass().getName()));
-                return;
-              }
+                // stamp our time before pinning our view.  Commits
+                // stamp their bases when they publish a new view, so
+                // anything our view misses will have a time stamp at
+                // or after this moment, and we back off a millisecond
+                // so that baseChanged() will catch it next time.
 
-            // update our time as soon as possible, so that any changes
-            // that are made in the database after we release the dump
-            // lock will have a time stamp after our 'last build' time
-            // stamp.
+                updateLastRunTime(System.currentTimeMillis() - 1);
 
-            if (lastRunTime == null)
-              {
-                lastRunTime = new Date();
+                view = Ganymede.db.pinView();
               }
             else
               {
-                if (oldLastRunTime == null)
+                try
                   {
-                    oldLastRunTime = new Date(lastRunTime.getTime());
+                    lock = session.getDBSession().openDumpLock();
                   }
-                else
+                catch (InterruptedException ex)
                   {
-                    oldLastRunTime.setTime(lastRunTime.getTime());
+                    // "Could not run task {0}, couldn''t get dump lock."
+                    Ganymede.debug(ts.l("run.failed_lock_acquisition", this.getClass().getName()));
+                    return;
                   }
 
-                lastRunTime.setTime(System.currentTimeMillis());
+                // update our time as soon as possible, so that any
+                // changes that are made in the database after we
+                // release the dump lock will have a time stamp after
+                // our 'last build' time stamp.
+
+                updateLastRunTime(System.currentTimeMillis());
               }
 
             success1 = this.builderPhase1();
@@ -436,6 +447,12 @@ public abstract class GanymedeBuilderTask implements Runnable {
 
             // release the lock, and so on
 
+            if (view != null)
+              {
+                Ganymede.db.unpinView();
+                view = null;
+              }
+
             if (session != null)
               {
                 session.logout();       // will clear the dump lock
@@ -516,6 +533,12 @@ public abstract class GanymedeBuilderTask implements Runnable {
 
         // and again, just in case
 
+        if (view != null)
+          {
+            Ganymede.db.unpinView();
+            view = null;
+          }
+
         optionsCache = null;
       }
   }
@@ -721,6 +744,32 @@ public abstract class GanymedeBuilderTask implements Runnable {
     return this.baseChanged((short) baseid, fieldIds);
   }
 
+  /**
+   * <p>Records time as our last run time, moving the previous last run
+   * time to oldLastRunTime.</p>
+   */
+
+  private void updateLastRunTime(long time)
+  {
+    if (lastRunTime == null)
+      {
+        lastRunTime = new Date(time);
+      }
+    else
+      {
+        if (oldLastRunTime == null)
+          {
+            oldLastRunTime = new Date(lastRunTime.getTime());
+          }
+        else
+          {
+            oldLastRunTime.setTime(lastRunTime.getTime());
+          }
+
+        lastRunTime.setTime(time);
+      }
+  }
+
   /**
    * <p>This method is used by subclasses of GanymedeBuilderTask to
    * obtain a list of DBObject references of the requested
@@ -742,12 +791,17 @@ public abstract class GanymedeBuilderTask implements Runnable {
     // this works only because we've already got our lock
     // established..  otherwise, we'd have to use the query system.
 
-    if (lock == null)
+    if (lock == null && view == null)
       {
         // "Can''t call enumerateObjects without a lock."
         throw new IllegalArgumentException(ts.l("enumerateObjects.no_lock"));
       }
 
+    if (view != null)
+      {
+        return Collections.enumeration(view.getIterationSet(baseid));
+      }
+
     DBObjectBase base = Ganymede.db.getObjectBase(baseid);
 
     return base.getObjectsEnum();
@@ -807,12 +861,17 @@ public abstract class GanymedeBuilderTask implements Runnable {
     // this works only because we've already got our lock
     // established..  otherwise, we'd have to use the query system.
 
-    if (lock == null)
+    if (lock == null && view == null)
       {
         // "Can''t call enumerateObjects without a lock."
         throw new IllegalArgumentException(ts.l("enumerateObjects.no_lock"));
       }
 
+    if (view != null)
+      {
+        return view.getIterationSet(baseid);
+      }
+
     DBObjectBase base = Ganymede.db.getObjectBase(baseid);
 
     return base.getObjects();
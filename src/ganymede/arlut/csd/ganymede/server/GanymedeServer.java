@@ -1383,7 +1383,7 @@ public final class GanymedeServer implements Server {
                         // clear out the invid's held in this field pending
                         // successful lookup
 
-                        iField.value = new Vector();
+                        iField.value = new InvidVector();
 
                         for (Invid invid: tempVector)
                           {
@@ -90,6 +90,7 @@ import arlut.csd.ganymede.common.Result;
 import arlut.csd.ganymede.common.ReturnVal;
 import arlut.csd.ganymede.common.SchemaConstants;
 import arlut.csd.ganymede.rmi.ClientAsyncResponder;
+import arlut.csd.ganymede.rmi.QueryCursor;
 import arlut.csd.ganymede.rmi.Session;
 import arlut.csd.ganymede.rmi.db_object;
 
@@ -356,6 +357,13 @@ final public class GanymedeSession implements Session, Unreferenced {
 
   private ArrayList<DBObject> exported = new ArrayList<DBObject>();
 
+  /**
+   * List of query cursors opened by this session and not yet closed,
+   * so we can close them at logout time.
+   */
+
+  private ArrayList<DBQueryCursor> cursors = new ArrayList<DBQueryCursor>();
+
   /* -- */
 
   /**
@@ -1758,6 +1766,135 @@ final public class GanymedeSession implements Session, Unreferenced {
     return queryEngine.query(query);
   }
 
+  /**
+   * <p>Runs query and returns a {@link
+   * arlut.csd.ganymede.rmi.QueryCursor QueryCursor} which the client
+   * can use to pull down the objects matching it pageSize at a time,
+   * in the order given by the Query's sort settings, or by label if
+   * it has none.</p>
+   *
+   * <p>The cursor should be closed when the client is done with
+   * it.</p>
+   *
+   * @see arlut.csd.ganymede.rmi.Session
+   */
+
+  public synchronized QueryCursor openQueryCursor(Query query, int pageSize) throws NotLoggedInException
+  {
+    checklogin();
+
+    if (pageSize <= 0)
+      {
+        // "Query cursor page size must be positive, not {0,number,#}"
+        throw new IllegalArgumentException(ts.l("openQueryCursor.bad_page_size", Integer.valueOf(pageSize)));
+      }
+
+    // a null query is rejected by queryEngine.openCursor()
+
+    if (query != null)
+      {
+        query.setDescriber(dbSession);
+
+        setLastEvent("cursor:" + query.toString());
+      }
+
+    DBQueryCursor cursor = queryEngine.openCursor(query, pageSize);
+
+    if (cursor == null)
+      {
+        return null;
+      }
+
+    synchronized (cursors)
+      {
+        cursors.add(cursor);
+      }
+
+    if (this.exportObjects)
+      {
+        Ganymede.rmi.publishObject(cursor);
+      }
+
+    return cursor;
+  }
+
+  /**
+   * <p>Called by {@link arlut.csd.ganymede.server.DBQueryCursor
+   * DBQueryCursor} when it is closed, so that we don't try to close
+   * it again at logout.</p>
+   */
+
+  void forgetCursor(DBQueryCursor cursor)
+  {
+    synchronized (cursors)
+      {
+        cursors.remove(cursor);
+      }
+  }
+
+  /**
+   * <p>Closes any query cursors this session still has open.</p>
+   */
+
+  private void closeCursors()
+  {
+    DBQueryCursor[] open;
+
+    synchronized (cursors)
+      {
+        open = cursors.toArray(new DBQueryCursor[cursors.size()]);
+      }
+
+    // DBQueryCursor.close() calls forgetCursor(), so we can't hold
+    // the cursors monitor while we close them
+
+    for (DBQueryCursor cursor: open)
+      {
+        cursor.close();
+      }
+  }
+
+  /**
+   * <p>Returns a description of the plan the server would follow to
+   * answer a query, showing which Invid, namespace, or field index
+   * lookups would be used to find candidate objects, or whether the
+   * server would need to scan every object of the query's type.</p>
+   *
+   * <p>This version of explainQuery() takes a query in string form,
+   * based on Deepak's ANTLR-specified Ganymede query grammar.</p>
+   *
+   * @see arlut.csd.ganymede.rmi.Session
+   */
+
+  public synchronized String explainQuery(String queryString) throws NotLoggedInException, GanyParseException
+  {
+    checklogin();
+
+    setLastEvent("explain:" + queryString);
+
+    return queryEngine.explain(queryString);
+  }
+
+  /**
+   * <p>Returns a description of the plan the server would follow to
+   * answer a query, showing which Invid, namespace, or field index
+   * lookups would be used to find candidate objects, or whether the
+   * server would need to scan every object of the query's type.</p>
+   *
+   * @see arlut.csd.ganymede.rmi.Session
+   */
+
+  public synchronized String explainQuery(Query query) throws NotLoggedInException
+  {
+    checklogin();
+
+    query.setDescriber(dbSession);
+
+    setLastEvent("explain:" + query.toString());
+
+    return queryEngine.explain(query);
+  }
+
   /**
    * <p>This method is intended as a lightweight way of returning the
    * current label of the specified invid.  No locking is done,
@@ -3170,6 +3307,8 @@ final public class GanymedeSession implements Session, Unreferenced {
                 unexportObjects(true);
               }
 
+            closeCursors();
+
             // if we're a userSession and weren't forced off, do
             // normal logout logging
 
@@ -3350,12 +3350,14 @@ public final class GanymedeXMLSession extends java.lang.Thread implements XMLSes
     // being guarded by the loginSemaphore, but there is little cost
     // in sync'ing here.
 
-    // All the DBLock establish methods synchronize on the DBLockSync
-    // object referenced by Ganymede.db.lockSync, so we are safe
-    // against lock establish race conditions by synchronizing this
-    // section on Ganymede.db.lockSync.
+    // All the DBLock establish methods hold the mutex of the
+    // DBLockSync object referenced by Ganymede.db.lockSync, so we are
+    // safe against lock establish race conditions by holding that
+    // mutex through this section.
 
-    synchronized (Ganymede.db.lockSync)
+    Ganymede.db.lockSync.lock();
+
+    try
       {
         // "GanymedeXMLSession entering editSchema synchronization block"
         Ganymede.debug(ts.l("editSchema.entering_synchronized"));
@@ -3391,6 +3393,10 @@ public final class GanymedeXMLSession extends java.lang.Thread implements XMLSes
             return null;
           }
       }
+    finally
+      {
+        Ganymede.db.lockSync.unlock();
+      }
   }
 
   /**
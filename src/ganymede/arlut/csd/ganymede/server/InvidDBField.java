@@ -54,6 +54,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Vector;
 
 import arlut.csd.JDialog.JDialogBuff;
@@ -167,7 +169,7 @@ public final class InvidDBField extends DBField implements invid_field {
 
     if (isVector())
       {
-        this.value = new Vector();
+        this.value = new InvidVector();
       }
     else
       {
@@ -185,7 +187,7 @@ public final class InvidDBField extends DBField implements invid_field {
 
     if (isVector())
       {
-        this.value = new Vector(field.getVectVal());
+        this.value = new InvidVector(field.getVectVal());
       }
     else
       {
@@ -226,11 +228,11 @@ public final class InvidDBField extends DBField implements invid_field {
 
     if (values == null)
       {
-        this.value = new Vector();
+        this.value = new InvidVector();
       }
     else
       {
-        this.value = new Vector(values);
+        this.value = new InvidVector(values);
       }
   }
 
@@ -239,6 +241,24 @@ public final class InvidDBField extends DBField implements invid_field {
     throw new CloneNotSupportedException();
   }
 
+  /**
+   * <p>Overridden so that a checkpointed vector value is restored by
+   * rollback() as an indexed {@link
+   * arlut.csd.ganymede.server.InvidVector InvidVector}.</p>
+   */
+
+  @Override public synchronized Object checkpoint()
+  {
+    if (isVector())
+      {
+        return new InvidVector(getVectVal());
+      }
+    else
+      {
+        return this.value;
+      }
+  }
+
   /**
    * This method is used to write the contents of this field to the
    * Ganymede.db file and/or to the Journal file.
@@ -305,7 +325,7 @@ public final class InvidDBField extends DBField implements invid_field {
 
         if (count > 0)
           {
-            this.value = new Vector(count);
+            this.value = new InvidVector(count);
 
             // a cast of convenience..
 
@@ -318,7 +338,7 @@ public final class InvidDBField extends DBField implements invid_field {
           }
         else
           {
-            this.value = new Vector();
+            this.value = new InvidVector();
           }
       }
     else
@@ -2781,9 +2801,22 @@ public final class InvidDBField extends DBField implements invid_field {
                                                Integer.toString(size()), Integer.toString(getMaxArraySize())));
       }
 
-    // Don't allow adding values we've already got
+    // Don't allow adding values we've already got.  We test
+    // membership against our own InvidVector one value at a time,
+    // rather than using VectorUtils.intersection(), so that adding a
+    // few members to a very large group doesn't mean hashing the
+    // whole group.
+
+    Vector<Invid> duplicateValues = new Vector<Invid>();
+    Set<Invid> seen = new HashSet<Invid>();
 
-    Vector<Invid> duplicateValues = VectorUtils.intersection(values, newValues);
+    for (Invid invid: newValues)
+      {
+        if (values.contains(invid) && seen.add(invid))
+          {
+            duplicateValues.add(invid);
+          }
+      }
 
     if (duplicateValues.size() > 0)
       {
@@ -2796,7 +2829,18 @@ public final class InvidDBField extends DBField implements invid_field {
             // we use difference because we know that Ganymede vector
             // fields are not allowed to contain duplications
 
-            newValues = VectorUtils.difference(newValues, values);
+            Vector<Invid> uniqueValues = new Vector<Invid>();
+            seen.clear();
+
+            for (Invid invid: newValues)
+              {
+                if (!values.contains(invid) && seen.add(invid))
+                  {
+                    uniqueValues.add(invid);
+                  }
+              }
+
+            newValues = uniqueValues;
           }
       }
 
@@ -3601,7 +3645,16 @@ public final class InvidDBField extends DBField implements invid_field {
 
     // see if we are being asked to remove items not in our vector
 
-    Vector<Invid> notPresent = VectorUtils.difference(invidsToDelete, currentValues);
+    Vector<Invid> notPresent = new Vector<Invid>();
+    Set<Invid> seen = new HashSet<Invid>();
+
+    for (Invid invid: invidsToDelete)
+      {
+        if (!currentValues.contains(invid) && seen.add(invid))
+          {
+            notPresent.add(invid);
+          }
+      }
 
     if (notPresent.size() != 0)
       {
@@ -0,0 +1,599 @@
+/*
+
+   InvidVector.java
+
+   Value vector for InvidDBField, with a primitive membership index.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package arlut.csd.ganymede.server;
+
+import java.util.Collection;
+import java.util.Vector;
+
+import arlut.csd.ganymede.common.Invid;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                     InvidVector
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>The Vector subclass used to hold the values of a vector {@link
+ * arlut.csd.ganymede.server.InvidDBField InvidDBField}.</p>
+ *
+ * <p>Group membership and netgroup fields in large Ganymede
+ * installations can hold tens of thousands of Invids, and the
+ * InvidDBField duplicate checks and back-link maintenance code lean
+ * heavily on contains() and indexOf(), which are linear scans on a
+ * plain Vector.  Once an InvidVector grows past {@link
+ * #INDEX_THRESHOLD} elements it builds an open-addressed hash index
+ * keyed on each Invid's packed type and object number, held in
+ * primitive arrays, so that membership tests take constant time and
+ * the index costs twelve bytes per slot rather than a HashMap entry
+ * per element.</p>
+ *
+ * <p>The index is maintained by the single-element mutators and is
+ * simply discarded by the bulk ones that cannot cheaply describe
+ * what they changed, to be rebuilt on the next lookup.  Since
+ * DBField code manipulates the value vector directly through
+ * getVectVal(), the Vector mutators are overridden here, and the
+ * single-element overrides are written so that they never pass
+ * through another overridden mutator, which would count the same
+ * change twice.</p>
+ *
+ * <p>We build to Java 6, so we can't override the mutators that
+ * later versions of Vector added, such as removeIf() and
+ * replaceAll().  Those do bump the Vector's modCount, however, so
+ * the index records the modCount it was last brought up to date
+ * with, and is discarded and rebuilt if the Vector has since been
+ * changed behind its back.</p>
+ *
+ * <p>InvidVectors are never sent to clients as such; writeReplace()
+ * substitutes a plain Vector during serialization.</p>
+ */
+
+final class InvidVector extends Vector<Invid> {
+
+  /**
+   * <p>Vectors smaller than this are scanned linearly, as a plain
+   * Vector would be.</p>
+   */
+
+  static final int INDEX_THRESHOLD = 32;
+
+  // ---
+
+  /**
+   * <p>Packed (type, object number) keys for the hash index, or null
+   * if the index has not been built.</p>
+   */
+
+  private transient long[] keys = null;
+
+  /**
+   * <p>Occurrence counts parallel to keys.  A zero count marks an
+   * empty slot.</p>
+   */
+
+  private transient int[] counts;
+
+  /**
+   * <p>Number of occupied slots in keys.</p>
+   */
+
+  private transient int used;
+
+  /**
+   * <p>The Vector's modCount as of the last change the index was
+   * brought up to date with.  If modCount differs, the Vector was
+   * changed by a mutator that we don't override.</p>
+   */
+
+  private transient int indexedModCount;
+
+  /* -- */
+
+  public InvidVector()
+  {
+    super();
+  }
+
+  public InvidVector(int initialCapacity)
+  {
+    super(initialCapacity);
+  }
+
+  public InvidVector(Collection<? extends Invid> values)
+  {
+    super(values);
+  }
+
+  // ---------------------------------------------------------------------------
+  // lookups
+
+  @Override public boolean contains(Object o)
+  {
+    return indexOf(o, 0) >= 0;
+  }
+
+  @Override public int indexOf(Object o)
+  {
+    return indexOf(o, 0);
+  }
+
+  @Override public synchronized int indexOf(Object o, int index)
+  {
+    if (o instanceof Invid && useIndex() && slotOf(key((Invid) o)) < 0)
+      {
+        return -1;
+      }
+
+    return super.indexOf(o, index);
+  }
+
+  @Override public synchronized int lastIndexOf(Object o, int index)
+  {
+    if (o instanceof Invid && useIndex() && slotOf(key((Invid) o)) < 0)
+      {
+        return -1;
+      }
+
+    return super.lastIndexOf(o, index);
+  }
+
+  // ---------------------------------------------------------------------------
+  // single-element mutators
+
+  @Override public synchronized boolean add(Invid e)
+  {
+    checkIndex();
+
+    super.add(e);
+    indexAdd(e);
+
+    return true;
+  }
+
+  @Override public synchronized void addElement(Invid e)
+  {
+    checkIndex();
+
+    super.addElement(e);
+    indexAdd(e);
+  }
+
+  @Override public void add(int index, Invid e)
+  {
+    insertElementAt(e, index);
+  }
+
+  @Override public synchronized void insertElementAt(Invid e, int index)
+  {
+    checkIndex();
+
+    super.insertElementAt(e, index);
+    indexAdd(e);
+  }
+
+  @Override public synchronized Invid set(int index, Invid e)
+  {
+    checkIndex();
+
+    Invid old = super.set(index, e);
+    indexRemove(old);
+    indexAdd(e);
+
+    return old;
+  }
+
+  @Override public synchronized void setElementAt(Invid e, int index)
+  {
+    checkIndex();
+
+    Invid old = elementAt(index);
+    super.setElementAt(e, index);
+    indexRemove(old);
+    indexAdd(e);
+  }
+
+  @Override public synchronized Invid remove(int index)
+  {
+    checkIndex();
+
+    Invid old = super.remove(index);
+    indexRemove(old);
+
+    return old;
+  }
+
+  @Override public synchronized void removeElementAt(int index)
+  {
+    checkIndex();
+
+    Invid old = elementAt(index);
+    super.removeElementAt(index);
+    indexRemove(old);
+  }
+
+  @Override public boolean remove(Object o)
+  {
+    return removeElement(o);
+  }
+
+  @Override public synchronized boolean removeElement(Object o)
+  {
+    int i = indexOf(o, 0);
+
+    if (i < 0)
+      {
+        return false;
+      }
+
+    removeElementAt(i);
+
+    return true;
+  }
+
+  // ---------------------------------------------------------------------------
+  // bulk mutators
+
+  @Override public synchronized boolean addAll(Collection<? extends Invid> c)
+  {
+    checkIndex();
+
+    Object[] added = c.toArray();
+
+    super.addAll(c);
+
+    for (Object o: added)
+      {
+        indexAdd((Invid) o);
+      }
+
+    return added.length != 0;
+  }
+
+  @Override public synchronized boolean addAll(int index, Collection<? extends Invid> c)
+  {
+    try
+      {
+        return super.addAll(index, c);
+      }
+    finally
+      {
+        dropIndex();
+      }
+  }
+
+  @Override public synchronized boolean removeAll(Collection<?> c)
+  {
+    try
+      {
+        return super.removeAll(c);
+      }
+    finally
+      {
+        dropIndex();
+      }
+  }
+
+  @Override public synchronized boolean retainAll(Collection<?> c)
+  {
+    try
+      {
+        return super.retainAll(c);
+      }
+    finally
+      {
+        dropIndex();
+      }
+  }
+
+  @Override public synchronized void setSize(int newSize)
+  {
+    try
+      {
+        super.setSize(newSize);
+      }
+    finally
+      {
+        dropIndex();
+      }
+  }
+
+  @Override protected synchronized void removeRange(int fromIndex, int toIndex)
+  {
+    try
+      {
+        super.removeRange(fromIndex, toIndex);
+      }
+    finally
+      {
+        dropIndex();
+      }
+  }
+
+  @Override public synchronized void removeAllElements()
+  {
+    super.removeAllElements();
+    dropIndex();
+  }
+
+  @Override public void clear()
+  {
+    removeAllElements();
+  }
+
+  @Override public synchronized Object clone()
+  {
+    InvidVector copy = (InvidVector) super.clone();
+    copy.keys = null;
+    copy.counts = null;
+    copy.used = 0;
+
+    return copy;
+  }
+
+  /**
+   * <p>Serialize as a plain Vector, so that clients never need this
+   * class.</p>
+   */
+
+  private Object writeReplace()
+  {
+    return new Vector<Invid>(this);
+  }
+
+  // ---------------------------------------------------------------------------
+  // index maintenance
+
+  /**
+   * <p>Returns true if the hash index should be consulted, building
+   * it first if this vector has grown past INDEX_THRESHOLD.</p>
+   */
+
+  private boolean useIndex()
+  {
+    checkIndex();
+
+    if (keys != null)
+      {
+        return true;
+      }
+
+    if (elementCount < INDEX_THRESHOLD)
+      {
+        return false;
+      }
+
+    int capacity = 64;
+
+    while (capacity < elementCount * 2)
+      {
+        capacity <<= 1;
+      }
+
+    keys = new long[capacity];
+    counts = new int[capacity];
+    used = 0;
+
+    for (int i = 0; i < elementCount; i++)
+      {
+        indexAdd((Invid) elementData[i]);
+      }
+
+    indexedModCount = modCount;
+
+    return true;
+  }
+
+  /**
+   * <p>Discards the index if the Vector has been changed by a
+   * mutator that doesn't maintain it.  Called before every lookup
+   * and before every change that the index will be updated for.</p>
+   */
+
+  private void checkIndex()
+  {
+    if (keys != null && indexedModCount != modCount)
+      {
+        dropIndex();
+      }
+  }
+
+  private void dropIndex()
+  {
+    keys = null;
+    counts = null;
+    used = 0;
+  }
+
+  private void indexAdd(Invid invid)
+  {
+    if (keys == null || invid == null)
+      {
+        return;
+      }
+
+    long key = key(invid);
+    int slot = slotOf(key);
+
+    indexedModCount = modCount;
+
+    if (slot >= 0)
+      {
+        counts[slot]++;
+        return;
+      }
+
+    if ((used + 1) * 2 > keys.length)
+      {
+        grow();
+      }
+
+    insert(key, 1);
+    used++;
+  }
+
+  /**
+   * <p>Doubles the size of the hash index, rehashing the occupied
+   * slots.</p>
+   */
+
+  private void grow()
+  {
+    long[] oldKeys = keys;
+    int[] oldCounts = counts;
+
+    keys = new long[oldKeys.length * 2];
+    counts = new int[oldKeys.length * 2];
+
+    for (int i = 0; i < oldKeys.length; i++)
+      {
+        if (oldCounts[i] != 0)
+          {
+            insert(oldKeys[i], oldCounts[i]);
+          }
+      }
+  }
+
+  /**
+   * <p>Places key, which must not already be present, in the first
+   * free slot along its probe sequence.</p>
+   */
+
+  private void insert(long key, int count)
+  {
+    int mask = keys.length - 1;
+    int i = home(key, mask);
+
+    while (counts[i] != 0)
+      {
+        i = (i + 1) & mask;
+      }
+
+    keys[i] = key;
+    counts[i] = count;
+  }
+
+  private void indexRemove(Invid invid)
+  {
+    if (keys == null || invid == null)
+      {
+        return;
+      }
+
+    int i = slotOf(key(invid));
+
+    indexedModCount = modCount;
+
+    if (i < 0)
+      {
+        return;
+      }
+
+    if (--counts[i] > 0)
+      {
+        return;
+      }
+
+    used--;
+
+    // backward-shift deletion, so that lookups never need tombstones
+
+    int mask = keys.length - 1;
+    int j = i;
+
+    while (true)
+      {
+        j = (j + 1) & mask;
+
+        if (counts[j] == 0)
+          {
+            return;
+          }
+
+        int k = home(keys[j], mask);
+
+        if ((j > i && (k <= i || k > j)) || (j < i && (k <= i && k > j)))
+          {
+            keys[i] = keys[j];
+            counts[i] = counts[j];
+            counts[j] = 0;
+            i = j;
+          }
+      }
+  }
+
+  private int slotOf(long key)
+  {
+    int mask = keys.length - 1;
+    int i = home(key, mask);
+
+    while (counts[i] != 0)
+      {
+        if (keys[i] == key)
+          {
+            return i;
+          }
+
+        i = (i + 1) & mask;
+      }
+
+    return -1;
+  }
+
+  private static long key(Invid invid)
+  {
+    return ((long) invid.getType() << 32) | (invid.getNum() & 0xffffffffL);
+  }
+
+  private static int home(long key, int mask)
+  {
+    int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
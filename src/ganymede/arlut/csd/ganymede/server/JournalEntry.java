@@ -0,0 +1,258 @@
+/*
+
+   JournalEntry.java
+
+   Modification record for a single object in the DBJournal.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package arlut.csd.ganymede.server;
+
+import arlut.csd.Util.StringUtils;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                    JournalEntry
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>This class holds data corresponding to a modification record for
+ * a single object in the server's {@link
+ * arlut.csd.ganymede.server.DBJournal DBJournal} class.</p>
+ */
+
+class JournalEntry {
+
+  static boolean debug = false;
+
+  // ---
+
+  DBObjectBase base;
+  int id;
+  DBObject obj;                 // if null, we'll delete
+
+  /* -- */
+
+  public JournalEntry(DBObjectBase base, int id, DBObject obj)
+  {
+    this.base = base;
+    this.id = id;
+    this.obj = obj;
+  }
+
+  void process(DBStore store)
+  {
+    DBObjectBaseField definition;
+    DBObject oldObject;
+
+    /* -- */
+
+    debug("JournalEntry.process():"+
+          "\t" + StringUtils.replaceStr(this.toString(), "\n", "\n\t"));
+
+    if (obj == null)
+      {
+        // delete the object
+        oldObject = base.getObject(id);
+
+        if (oldObject == null)
+          {
+            Ganymede.debug("Warning.. journal is instructing us to delete an object not in the database");
+          }
+        else
+          {
+            // Remove the object.  If any of the fields are namespace
+            // restricted, see if any of the values currently held in
+            // such a field are registered in a namespace.  If so, and
+            // if the field we're deleting is the one currently taking
+            // that value's slot in the namespace, remove the value
+            // from the namespace hash.
+
+            // NOTE: we don't want to do a full-up object delete here
+            // because that would just get put into a new transaction.
+            // All invid linking issues are taken care of when this
+            // transaction was written to the journal.. the invid
+            // unbinding process would automatically include the other
+            // objects in their post-commit state, so we don't have
+            // to worry about it here.
+
+            // We do need to unregister the former asymmetric links
+            // from the DBStore aSymLinkTracker, however.
+
+            oldObject.unregisterAsymmetricLinks();
+
+            // and we need to clear out any namespace pointers
+
+            DBField[] tempFields = oldObject.listDBFields();
+
+            for (DBField _field: tempFields)
+              {
+                definition = _field.getFieldDef();
+
+                if (definition.getNameSpace() != null)
+                  {
+                    if (_field.isVector())
+                      {
+                        for (int j = 0; j < _field.size(); j++)
+                          {
+                            if (definition.getNameSpace().lookupPersistent(_field.key(j)) != _field)
+                              {
+                                throw new RuntimeException("Error, namespace mismatch in DBJournal code [" + j + "]");
+                              }
+
+                            definition.getNameSpace().removeHandle(_field.key(j));
+                          }
+                      }
+                    else
+                      {
+                        if (definition.getNameSpace().lookupPersistent(_field.key()) != _field)
+                          {
+                            throw new RuntimeException("Error, namespace mismatch in DBJournal code");
+                          }
+
+                        definition.getNameSpace().removeHandle(_field.key());
+                      }
+                  }
+              }
+          }
+
+        base.remove(id);
+      }
+    else
+      {
+        // put the new object in place
+
+        // First we need to clear any back links from the old version
+        // of the object, if there was any such.
+
+        oldObject = base.getObject(id);
+
+        if (oldObject != null)
+          {
+            oldObject.unregisterAsymmetricLinks();
+          }
+
+        // Second, we need to go through and put these values in the namespace.. note that
+        // we don't bother checking to see if the values are already allocated in the
+        // namespace.. we are assuming that the transaction would not have been written
+        // out to disk with improper namespace management.  We pretty much have to make
+        // this assumption here unless we're going to go to the trouble of doing multiple
+        // passes through the set of changes in this transaction, first unmarking any
+        // values freed by object deletion or changes, then going through and allocating
+        // new values.  We may still wind up doing this.
+
+        DBField[] tempFields = obj.listDBFields();
+
+        for (DBField _field: tempFields)
+          {
+            definition = _field.getFieldDef();
+
+            if (definition.getNameSpace() != null)
+              {
+                if (_field.isVector())
+                  {
+                    // mark the elements in the vector in the namespace
+                    // note that we don't use the namespace mark method here,
+                    // because we are just setting up the namespace, not
+                    // manipulating it in the context of an editset
+
+                    for (int j = 0; j < _field.size(); j++)
+                      {
+                        definition.getNameSpace().receiveValue(_field.key(j), _field);
+                      }
+                  }
+                else
+                  {
+                    // mark the scalar value in the namespace
+                    definition.getNameSpace().receiveValue(_field.key(), _field);
+                  }
+              }
+          }
+
+        // update the backpointers for this object
+
+        obj.registerAsymmetricLinks();
+
+        base.put(obj);
+      }
+  }
+
+  public String toString()
+  {
+    if (base != null && obj != null)
+      {
+        return obj.getPrintString();
+      }
+    else if (base != null)
+      {
+        return "base: " + base.toString() + "\n" +
+          "id: " + id + "\n" +
+          "obj: null";
+      }
+    else if (obj != null)
+      {
+        return "base: null\n" +
+          "id: " + id + "\n" +
+          "obj: \n" + obj.getPrintString();
+      }
+    else
+      {
+        return "base: null\n" +
+          "id: " + id + "\n" +
+          "obj: null";
+      }
+  }
+
+  /**
+   * This is a convenience method used by server-side code to send
+   * debug output to stderr and to any attached admin consoles.
+   */
+
+  static public void debug(String string)
+  {
+    if (debug)
+      {
+        System.err.println(string);
+      }
+  }
+}
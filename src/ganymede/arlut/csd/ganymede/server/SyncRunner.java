@@ -77,6 +77,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -356,6 +357,15 @@ public final class SyncRunner implements Runnable {
   private boolean includePlaintextPasswords;
   private Map<String, SyncPrefEnum> matrix;
 
+  /**
+   * <p>Identifies the SyncMaster class and field options that
+   * determine which objects and fields this channel includes in its
+   * FieldBook.  Sync channels with the same fieldBookKey build the
+   * same FieldBook for a given transaction.</p>
+   */
+
+  private String fieldBookKey;
+
   /**
    * <p>Controls what type of Sync Channel we're handling.</p>
    */
@@ -508,6 +518,8 @@ public final class SyncRunner implements Runnable {
       {
         this.matrix = f.getInternalsCopy();
       }
+
+    this.fieldBookKey = master.getClass().getName() + new TreeMap<String, SyncPrefEnum>(this.matrix).toString();
   }
 
   /**
@@ -585,6 +597,28 @@ public final class SyncRunner implements Runnable {
    * incremental build channel.</p>
    */
 
+  /**
+   * <p>Returns true if this sync channel has not been disabled from
+   * the admin console.</p>
+   */
+
+  public boolean isActive()
+  {
+    return this.active.isSet();
+  }
+
+  /**
+   * <p>Returns a key identifying the FieldBook that this sync channel
+   * would build for a transaction.  Any two sync channels that return
+   * equal keys build identical FieldBooks, so a committing
+   * transaction need only build one for both.</p>
+   */
+
+  public synchronized String getFieldBookKey()
+  {
+    return this.fieldBookKey;
+  }
+
   public String getDirectory()
   {
     return directory;
@@ -643,6 +677,31 @@ public final class SyncRunner implements Runnable {
   public void writeIncrementalSync(DBJournalTransaction transRecord,
                                    DBEditObject[] objectList,
                                    DBEditSet transaction) throws IOException
+  {
+    writeIncrementalSync(transRecord, transaction, createFieldBook(objectList));
+  }
+
+  /**
+   * <p>This method writes out the differential transaction record to
+   * the delta Sync Channel defined by this SyncRunner object, using a
+   * FieldBook previously built by {@link
+   * arlut.csd.ganymede.server.SyncRunner#createFieldBook(arlut.csd.ganymede.server.DBEditObject[])
+   * createFieldBook()}, on this or another SyncRunner with the same
+   * {@link arlut.csd.ganymede.server.SyncRunner#getFieldBookKey()
+   * getFieldBookKey()}.</p>
+   *
+   * <p>The book is only read, so it may be shared by several
+   * SyncRunners writing the same transaction at the same time.</p>
+   *
+   * @param transRecord A transaction description record describing
+   * the transaction we are writing
+   * @param transaction The DBEditSet that is being committed.
+   * @param book The objects and fields this channel should write
+   */
+
+  public void writeIncrementalSync(DBJournalTransaction transRecord,
+                                   DBEditSet transaction,
+                                   FieldBook book) throws IOException
   {
     if (!this.active.isSet())
       {
@@ -666,16 +725,12 @@ public final class SyncRunner implements Runnable {
               {
                 System.err.println("SyncRunner.writeIncrementalSync: inside queueGrowthMonitor section");
 
-                for (DBEditObject eObj: objectList)
+                for (Invid invid: book.objects())
                   {
-                    Ganymede.debug("SyncRunner.writeIncrementalSync(): we'll be processing object " + eObj);
+                    Ganymede.debug("SyncRunner.writeIncrementalSync(): we'll be processing object " + invid);
                   }
               }
 
-            FieldBook book = new FieldBook();
-
-            initializeFieldBook(objectList, book);
-
             int context_count = 0;
 
             // we want to group the objects we write out by invid type
@@ -955,6 +1010,24 @@ public final class SyncRunner implements Runnable {
     return xmlOut;
   }
 
+  /**
+   * <p>Returns a new FieldBook listing the objects and fields from
+   * objectList that this SyncRunner's incremental Sync Channel should
+   * write out, including any augmentation by our SyncMaster.</p>
+   *
+   * @param objectList An array of DBEditObjects that the transaction
+   * has checked out at commit time
+   */
+
+  public FieldBook createFieldBook(DBEditObject[] objectList)
+  {
+    FieldBook book = new FieldBook();
+
+    initializeFieldBook(objectList, book);
+
+    return book;
+  }
+
   /**
    * <p>This method creates an initial internal FieldBook for this
    * SyncRunner, based on the parameters defined in the incremental
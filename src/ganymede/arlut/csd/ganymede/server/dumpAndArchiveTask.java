@@ -100,7 +100,14 @@ class dumpAndArchiveTask implements Runnable {
 
             try
               {
-                Ganymede.db.dump(Ganymede.dbFilename, true, true);
+                if (Ganymede.snapshotDumpProperty)
+                  {
+                    Ganymede.db.snapshotDump(Ganymede.dbFilename, true);
+                  }
+                else
+                  {
+                    Ganymede.db.dump(Ganymede.dbFilename, true, true);
+                  }
               }
             catch (IOException ex)
               {
@@ -103,7 +103,14 @@ class dumpTask implements Runnable {
 
         try
           {
-            Ganymede.db.dump(Ganymede.dbFilename, true, false);
+            if (Ganymede.snapshotDumpProperty)
+              {
+                Ganymede.db.snapshotDump(Ganymede.dbFilename, false);
+              }
+            else
+              {
+                Ganymede.db.dump(Ganymede.dbFilename, true, false);
+              }
           }
         catch (IOException ex)
           {
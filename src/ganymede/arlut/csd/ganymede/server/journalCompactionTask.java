@@ -0,0 +1,142 @@
+/*
+
+   journalCompactionTask.java
+
+   Runnable class to fold closed journal segments into ganymede.db.
+   Issued by the GanymedeScheduler
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package arlut.csd.ganymede.server;
+
+import java.io.IOException;
+
+import arlut.csd.Util.TranslationService;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                           journalCompactionTask
+
+------------------------------------------------------------------------------*/
+
+/**
+ * <p>Runnable class to fold the closed {@link
+ * arlut.csd.ganymede.server.DBJournal DBJournal} segments into a new
+ * ganymede.db file with a {@link
+ * arlut.csd.ganymede.server.DBStore#snapshotDump(java.lang.String,
+ * boolean) snapshot dump}, without holding up committing
+ * transactions while the file is written.</p>
+ *
+ * <p>Registered on demand with the {@link
+ * arlut.csd.ganymede.server.GanymedeScheduler GanymedeScheduler}
+ * when the journal is segmented, and demanded by the DBJournal each
+ * time it closes a segment.</p>
+ */
+
+class journalCompactionTask implements Runnable {
+
+  static TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.journalCompactionTask");
+
+  public journalCompactionTask()
+  {
+  }
+
+  public void run()
+  {
+    boolean started = false;
+    boolean completed = false;
+    boolean gotSemaphore = false;
+
+    /* -- */
+
+    try
+      {
+        if (Ganymede.db.journal.isClean())
+          {
+            Ganymede.debug(ts.l("deferring"));
+            return;
+          }
+
+        String error = GanymedeServer.lSemaphore.increment();
+
+        if (error != null)
+          {
+            Ganymede.debug(ts.l("semaphore_disabled", error));
+            return;
+          }
+        else
+          {
+            gotSemaphore = true;
+          }
+
+        started = true;
+        Ganymede.debug(ts.l("running", Integer.valueOf(Ganymede.db.journal.getTransactionsInJournal())));
+
+        try
+          {
+            Ganymede.db.snapshotDump(Ganymede.dbFilename, false);
+          }
+        catch (IOException ex)
+          {
+            Ganymede.debug(ts.l("dump_error", ex.getMessage()));
+          }
+        catch (InterruptedException ex)
+          {
+            Ganymede.debug(ts.l("dump_interrupted_error", ex.getMessage()));
+          }
+
+        completed = true;
+      }
+    finally
+      {
+        if (started && !completed)
+          {
+            Ganymede.debug(ts.l("forced_stop"));
+          }
+
+        if (gotSemaphore)
+          {
+            GanymedeServer.lSemaphore.decrement();
+          }
+
+        Ganymede.debug(ts.l("completed"));
+      }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+
+   rebuildLogIndex.java
+
+   Command-line tool to create the index file for a Ganymede log file.
+
+   Created: 17 October 2026
+
+   -----------------------------------------------------------------------
+
+   Ganymede Directory Management System
+
+   Copyright (C) 1996-2026
+   The University of Texas at Austin
+
+   Ganymede is a registered trademark of The University of Texas at Austin
+
+   Contact information
+
+   Web site: http://www.arlut.utexas.edu/gash2
+   Author Email: ganymede_author@arlut.utexas.edu
+   Email mailing list: ganymede@arlut.utexas.edu
+
+   US Mail:
+
+   Computer Science Division
+   Applied Research Laboratories
+   The University of Texas at Austin
+   PO Box 8029, Austin TX 78713-8029
+
+   Telephone: (512) 835-3200
+
+   This program is free software; you can redistribute it and/or modify
+   it under the terms of the GNU General Public License as published by
+   the Free Software Foundation; either version 2 of the License, or
+   (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License
+   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+
+package arlut.csd.ganymede.server;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import arlut.csd.Util.ParseArgs;
+import arlut.csd.Util.TranslationService;
+
+/*------------------------------------------------------------------------------
+                                                                           class
+                                                                 rebuildLogIndex
+
+------------------------------------------------------------------------------*/
+
+/**
+ * Command-line app to create or recreate the {@link
+ * arlut.csd.ganymede.server.DBLogIndex DBLogIndex} file that the
+ * Ganymede server uses to look up object and admin history in its
+ * log file.
+ *
+ * The server keeps the index file up to date as it writes to the
+ * log, but it can't index a log that was written before the index
+ * existed.  This tool reads through the whole log to build the
+ * index, and should be run while the server is shut down.
+ */
+
+public class rebuildLogIndex {
+
+  /**
+   * TranslationService object for handling string localization in the
+   * Ganymede server.
+   */
+
+  static final TranslationService ts = TranslationService.getTranslationService("arlut.csd.ganymede.server.rebuildLogIndex");
+
+  public static void main(String argv[])
+  {
+    String logFileName = ParseArgs.getArg("log", argv);
+    String propFilename = ParseArgs.getArg("properties", argv);
+
+    /* -- */
+
+    if (logFileName == null && propFilename != null)
+      {
+        Properties props = new Properties();
+        BufferedInputStream in = null;
+
+        try
+          {
+            in = new BufferedInputStream(new FileInputStream(propFilename));
+            props.load(in);
+          }
+        catch (IOException ex)
+          {
+            // "Ganymede rebuildLogIndex: Error, couldn''t successfully load properties from file "{0}"."
+            System.err.println(ts.l("main.no_props", propFilename));
+            System.exit(1);
+          }
+        finally
+          {
+            if (in != null)
+              {
+                try
+                  {
+                    in.close();
+                  }
+                catch (IOException ex)
+                  {
+                  }
+              }
+          }
+
+        logFileName = props.getProperty("ganymede.log");
+      }
+
+    if (logFileName == null)
+      {
+        // "Ganymede rebuildLogIndex: Error, invalid command line parameters.\nUsage: java rebuildLogIndex properties=<property file> | log=<log file>"
+        System.err.println(ts.l("main.usage"));
+        System.exit(1);
+      }
+
+    if (!new File(logFileName).exists())
+      {
+        // "Ganymede rebuildLogIndex: Error, log file "{0}" does not exist."
+        System.err.println(ts.l("main.no_log", logFileName));
+        System.exit(1);
+      }
+
+    // "Ganymede rebuildLogIndex: Indexing log file "{0}" into "{1}"."
+    System.out.println(ts.l("main.working", logFileName, DBLogIndex.getIndexFile(logFileName)));
+
+    long start = System.currentTimeMillis();
+
+    try
+      {
+        int count = DBLogFileController.rebuildIndex(logFileName);
+
+        // "Ganymede rebuildLogIndex: Indexed {0,number,#} log events in {1,number,#} seconds."
+        System.out.println(ts.l("main.done", Integer.valueOf(count),
+                                Long.valueOf((System.currentTimeMillis() - start) / 1000)));
+      }
+    catch (IOException ex)
+      {
+        // "Ganymede rebuildLogIndex: Error, couldn''t index log file "{0}".\n{1}"
+        System.err.println(ts.l("main.error", logFileName, ex.getMessage()));
+        System.exit(1);
+      }
+  }
+}